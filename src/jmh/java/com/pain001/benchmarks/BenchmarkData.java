@@ -0,0 +1,87 @@
+package com.pain001.benchmarks;
+
+import com.pain001.data.SyntheticDataGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+
+/**
+ * Input files for the benchmarks, written by the {@link SyntheticDataGenerator} with a
+ * fixed seed so every run measures the same rows.
+ * <p>
+ * Files are written once to "pain001-benchmarks" in the temp directory and reused by
+ * later forks and runs. Template and XSD paths are relative to the project root, so
+ * benchmarks have to be started from there.
+ */
+final class BenchmarkData {
+    private static final String TEMPLATES_DIR = "src/main/java/com/pain001/templates";
+    private static final File DATA_DIR = new File(System.getProperty("java.io.tmpdir"), "pain001-benchmarks");
+    private static final long SEED = 42L;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @param version The pain version, e.g. "pain.001.001.09"
+     * @return The directory holding the bundled template and XSD of the version
+     */
+    static String templateDir(String version) {
+        return TEMPLATES_DIR + "/" + version.replace(".", "");
+    }
+
+    /**
+     * @param version The pain version, e.g. "pain.001.001.09"
+     * @return The path of the bundled XSD of the version
+     */
+    static String xsdPath(String version) {
+        return templateDir(version) + "/" + version + ".xsd";
+    }
+
+    /**
+     * @param name File name inside the benchmark data directory
+     * @return The file, with the directory created
+     */
+    static File dataFile(String name) throws IOException {
+        Files.createDirectories(DATA_DIR.toPath());
+        return new File(DATA_DIR, name);
+    }
+
+    /**
+     * Returns a CSV file with the given number of synthetic rows, writing it on first use.
+     *
+     * @param rows Number of data rows
+     * @return Path of the CSV file
+     * @throws IOException If the file cannot be written
+     */
+    static String csvFile(int rows) throws IOException {
+        File file = dataFile(rows + ".csv");
+        if (!file.exists()) {
+            File partial = dataFile(file.getName() + ".tmp");
+            new SyntheticDataGenerator(SEED).writeCsv(partial.getPath(), rows);
+            Files.move(partial.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        return file.getPath();
+    }
+
+    /**
+     * Returns a SQLite database with a {@value SyntheticDataGenerator#SQLITE_TABLE_NAME}
+     * table holding the given number of synthetic rows, writing it on first use.
+     *
+     * @param rows Number of data rows
+     * @return Path of the database file
+     * @throws IOException If the file cannot be moved in place
+     * @throws SQLException If the database cannot be written
+     */
+    static String sqliteFile(int rows) throws IOException, SQLException {
+        File file = dataFile(rows + ".db");
+        if (!file.exists()) {
+            File partial = dataFile(file.getName() + ".tmp");
+            new SyntheticDataGenerator(SEED).writeSqlite(partial.getPath(), rows);
+            Files.move(partial.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        return file.getPath();
+    }
+}
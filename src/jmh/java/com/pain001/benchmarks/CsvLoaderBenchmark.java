@@ -0,0 +1,57 @@
+package com.pain001.benchmarks;
+
+import com.pain001.csv.CsvLoader;
+import com.pain001.csv.MappedCsvReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a CSV file into memory with the loader implementations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CsvLoaderBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private String csvPath;
+
+    @Setup
+    public void setUp() throws IOException {
+        csvPath = BenchmarkData.csvFile(rows);
+    }
+
+    @Benchmark
+    public List<Map<String, String>> loadCsvData() throws IOException {
+        return CsvLoader.loadCsvData(csvPath);
+    }
+
+    @Benchmark
+    public List<Map<String, String>> loadCsvData1() throws IOException {
+        return CsvLoader.loadCsvData1(csvPath);
+    }
+
+    @Benchmark
+    public List<Map<String, String>> mappedCsvReader() throws IOException {
+        return new MappedCsvReader(csvPath).readAll();
+    }
+}
@@ -0,0 +1,52 @@
+package com.pain001.benchmarks;
+
+import com.pain001.csv.CsvLoader;
+import com.pain001.csv.CsvValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates rows that are already loaded, sequentially and with the fork/join validator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CsvValidatorBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private List<Map<String, String>> data;
+
+    @Setup
+    public void setUp() throws IOException {
+        data = CsvLoader.loadCsvData(BenchmarkData.csvFile(rows));
+    }
+
+    @Benchmark
+    public boolean validateCsvData() {
+        return CsvValidator.validateCsvData(data);
+    }
+
+    @Benchmark
+    public boolean validateCsvDataParallel() {
+        return CsvValidator.validateCsvData(data, true);
+    }
+}
@@ -0,0 +1,46 @@
+package com.pain001.benchmarks;
+
+import com.pain001.data.SyntheticDataGenerator;
+import com.pain001.db.DataRecord;
+import com.pain001.db.DatabaseLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads all rows of a SQLite table into memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DatabaseLoaderBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private String dbPath;
+
+    @Setup
+    public void setUp() throws Exception {
+        dbPath = BenchmarkData.sqliteFile(rows);
+    }
+
+    @Benchmark
+    public List<DataRecord> loadDbData() throws Exception {
+        return DatabaseLoader.loadDbData(dbPath, SyntheticDataGenerator.SQLITE_TABLE_NAME);
+    }
+}
@@ -0,0 +1,62 @@
+package com.pain001.benchmarks;
+
+import com.pain001.csv.CsvLoader;
+import com.pain001.xml.GenerateXml;
+import com.pain001.xml.GenerationOptions;
+import freemarker.template.TemplateException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders loaded rows to a pain.001 file of each version, including the XSD validation
+ * that {@link GenerateXml#generateXml} runs on the written file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GenerateXmlBenchmark {
+
+    // pain.001.001.03 is left out: its template does not produce a valid message yet
+    @Param({"pain.001.001.04", "pain.001.001.05", "pain.001.001.06", "pain.001.001.07",
+            "pain.001.001.08", "pain.001.001.09"})
+    public String version;
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private List<Map<String, String>> data;
+    private String templatePath;
+    private String xsdPath;
+    private GenerationOptions options;
+
+    @Setup
+    public void setUp() throws IOException {
+        data = CsvLoader.loadCsvData(BenchmarkData.csvFile(rows));
+        templatePath = BenchmarkData.templateDir(version) + "/template.xml";
+        xsdPath = BenchmarkData.xsdPath(version);
+        options = new GenerationOptions()
+                .setOutputFilePath(BenchmarkData.dataFile(version + "-" + rows + ".xml").getPath());
+    }
+
+    @Benchmark
+    public void generateXml() throws IOException, TemplateException {
+        GenerateXml.generateXml(data, version, templatePath, xsdPath, options);
+    }
+}
@@ -0,0 +1,55 @@
+package com.pain001.benchmarks;
+
+import com.pain001.csv.CsvRowSource;
+import com.pain001.xml.GenerateXml;
+import com.pain001.xml.GenerationOptions;
+import com.pain001.xml.XmlValidator;
+import freemarker.template.TemplateException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates a generated pain.001.001.09 file against its XSD.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class XmlValidatorBenchmark {
+    private static final String VERSION = "pain.001.001.09";
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private String xmlPath;
+    private String xsdPath;
+
+    @Setup
+    public void setUp() throws IOException, TemplateException {
+        xsdPath = BenchmarkData.xsdPath(VERSION);
+        xmlPath = BenchmarkData.dataFile(VERSION + "-" + rows + ".xml").getPath();
+        // Stream the rows in so that setting up the largest file stays within the heap
+        GenerateXml.generateXml(new CsvRowSource(BenchmarkData.csvFile(rows)), VERSION,
+                BenchmarkData.templateDir(VERSION) + "/template.xml", xsdPath,
+                new GenerationOptions().setStreaming(true).setOutputFilePath(xmlPath));
+    }
+
+    @Benchmark
+    public boolean validateViaXsd() {
+        return XmlValidator.validateViaXsd(xmlPath, xsdPath);
+    }
+}
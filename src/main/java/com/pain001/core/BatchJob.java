@@ -0,0 +1,55 @@
+package com.pain001.core;
+
+import com.pain001.xml.GenerationOptions;
+
+/**
+ * One data file to turn into one pain.001 file as part of a batch run.
+ */
+public class BatchJob {
+    private final String xmlMessageType;
+    private final String xmlTemplateFilePath;
+    private final String xsdSchemaFilePath;
+    private final String dataFilePath;
+    private final GenerationOptions options;
+
+    /**
+     * @param xmlMessageType      The payment initiation message type (e.g. "pain.001.001.03").
+     * @param xmlTemplateFilePath Path of the XML template.
+     * @param xsdSchemaFilePath   Path of the XSD schema used to validate the output.
+     * @param dataFilePath        Path of the data file.
+     * @param options             Options for this job, including its output file path.
+     */
+    public BatchJob(String xmlMessageType, String xmlTemplateFilePath, String xsdSchemaFilePath,
+                    String dataFilePath, GenerationOptions options) {
+        this.xmlMessageType = xmlMessageType;
+        this.xmlTemplateFilePath = xmlTemplateFilePath;
+        this.xsdSchemaFilePath = xsdSchemaFilePath;
+        this.dataFilePath = dataFilePath;
+        this.options = options;
+    }
+
+    public String getXmlMessageType() {
+        return xmlMessageType;
+    }
+
+    public String getXmlTemplateFilePath() {
+        return xmlTemplateFilePath;
+    }
+
+    public String getXsdSchemaFilePath() {
+        return xsdSchemaFilePath;
+    }
+
+    public String getDataFilePath() {
+        return dataFilePath;
+    }
+
+    public GenerationOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public String toString() {
+        return dataFilePath + " -> " + xmlMessageType;
+    }
+}
@@ -0,0 +1,236 @@
+package com.pain001.core;
+
+import com.pain001.xml.GenerationOptions;
+import com.pain001.xml.SchemaRegistry;
+import com.pain001.xml.TemplateEngine;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Runs many {@link CoreProcessor} jobs in one JVM on a bounded worker pool.
+ * <p>
+ * Templates and schemas are compiled once before the first job starts and are shared by
+ * all workers. Every job writes to its own output file and fails independently; the run
+ * ends with one consolidated summary.
+ */
+public class BatchProcessor {
+    private static final Logger LOGGER = Logger.getLogger(BatchProcessor.class.getName());
+
+    /**
+     * Builds one job per CSV file in a directory, plain or gzip-compressed, and runs them in parallel.
+     *
+     * @param xmlMessageType      The payment initiation message type (e.g. "pain.001.001.03").
+     * @param xmlTemplateFilePath Path of the XML template.
+     * @param xsdSchemaFilePath   Path of the XSD schema used to validate the output.
+     * @param dataDirectory       Directory containing the data files.
+     * @param outputDirectory     Directory the generated files are written to.
+     * @param defaults            Options applied to every job; the output path is set per job.
+     * @return The result of every job, in file name order.
+     */
+    public static List<BatchResult> processDirectory(
+            String xmlMessageType,
+            String xmlTemplateFilePath,
+            String xsdSchemaFilePath,
+            String dataDirectory,
+            String outputDirectory,
+            GenerationOptions defaults
+    ) {
+        File[] dataFiles = new File(dataDirectory).listFiles((dir, name) -> name.endsWith(".csv") || name.endsWith(".csv.gz"));
+        if (dataFiles == null) {
+            throw new IllegalArgumentException("Error: Data directory '" + dataDirectory + "' does not exist.");
+        }
+        Arrays.sort(dataFiles);
+
+        File outputDir = new File(outputDirectory);
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IllegalArgumentException("Error: Unable to create output directory '" + outputDirectory + "'.");
+        }
+
+        List<BatchJob> jobs = new ArrayList<>();
+        for (File dataFile : dataFiles) {
+            String outputFilePath = new File(outputDir, outputFileName(dataFile.getName(), xmlMessageType)).getPath();
+            // Every job writes its own file
+            GenerationOptions options = new GenerationOptions(defaults).setOutputFilePath(outputFilePath).setOutputSink(null);
+            jobs.add(new BatchJob(xmlMessageType, xmlTemplateFilePath, xsdSchemaFilePath, dataFile.getPath(), options));
+        }
+        return processJobs(jobs);
+    }
+
+    /**
+     * Generates one data file as several pain.001 versions, loading and validating it
+     * once. Each version uses the template and schema in its directory of a tree laid out
+     * like the bundled templates, e.g. "pain00100103/template.xml" and
+     * "pain00100103/pain.001.001.03.xsd".
+     *
+     * @param xmlMessageTypes    The message types to generate, from {@link com.pain001.constants.Constants#VALID_XML_TYPES}.
+     * @param templatesDirectory Directory containing one directory per version.
+     * @param dataFilePath       Path of the CSV, gzip-compressed CSV or SQLite data file.
+     * @param outputDirectory    Directory the generated files are written to.
+     * @param defaults           Options applied to every version; the output path is set per version.
+     * @return The result of every version, in the order of the message types.
+     * @throws Exception If the data file cannot be loaded or is invalid.
+     */
+    public static List<BatchResult> processFanOut(
+            List<String> xmlMessageTypes,
+            String templatesDirectory,
+            String dataFilePath,
+            String outputDirectory,
+            GenerationOptions defaults
+    ) throws Exception {
+        File outputDir = new File(outputDirectory);
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IllegalArgumentException("Error: Unable to create output directory '" + outputDirectory + "'.");
+        }
+
+        List<BatchJob> jobs = new ArrayList<>();
+        String dataFileName = new File(dataFilePath).getName();
+        for (String xmlMessageType : xmlMessageTypes) {
+            File versionDirectory = new File(templatesDirectory,
+                    "pain" + xmlMessageType.replace("pain.", "").replace(".", ""));
+            String outputFilePath = new File(outputDir, outputFileName(dataFileName, xmlMessageType)).getPath();
+            GenerationOptions options = new GenerationOptions(defaults).setOutputFilePath(outputFilePath).setOutputSink(null);
+            jobs.add(new BatchJob(xmlMessageType, new File(versionDirectory, "template.xml").getPath(),
+                    new File(versionDirectory, xmlMessageType + ".xsd").getPath(), dataFilePath, options));
+        }
+        return CoreProcessor.processFanOut(jobs);
+    }
+
+    /**
+     * Runs jobs on a pool sized to the available cores.
+     *
+     * @param jobs The jobs to run; each must have a distinct output file path.
+     * @return The result of every job, in the order of the input list.
+     */
+    public static List<BatchResult> processJobs(List<BatchJob> jobs) {
+        return processJobs(jobs, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs jobs on a bounded pool.
+     *
+     * @param jobs        The jobs to run; each must have a distinct output file path.
+     * @param parallelism Maximum number of jobs running at the same time.
+     * @return The result of every job, in the order of the input list.
+     */
+    public static List<BatchResult> processJobs(List<BatchJob> jobs, int parallelism) {
+        checkDistinctOutputs(jobs);
+        if (jobs.isEmpty()) {
+            LOGGER.warning("No jobs to process.");
+            return new ArrayList<>();
+        }
+
+        // Compile shared state once instead of once per job
+        for (BatchJob job : jobs) {
+            try {
+                SchemaRegistry.getSchemaForFile(job.getXsdSchemaFilePath());
+            } catch (IllegalStateException e) {
+                // A missing or broken schema fails its own job
+            }
+        }
+        TemplateEngine.preload();
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, jobs.size())));
+        List<BatchResult> results = new ArrayList<>();
+        try {
+            List<Future<BatchResult>> futures = new ArrayList<>();
+            for (BatchJob job : jobs) {
+                futures.add(pool.submit(() -> runJob(job)));
+            }
+            for (Future<BatchResult> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+            throw new IllegalStateException("Batch run interrupted.", e);
+        } catch (ExecutionException e) {
+            // runJob catches everything a job can throw
+            throw new IllegalStateException("Unexpected batch failure.", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        LOGGER.info(summarize(results, (System.nanoTime() - start) / 1_000_000));
+        return results;
+    }
+
+    private static BatchResult runJob(BatchJob job) {
+        long start = System.nanoTime();
+        Exception failure = null;
+        try {
+            CoreProcessor.processFiles(job.getXmlMessageType(), job.getXmlTemplateFilePath(),
+                    job.getXsdSchemaFilePath(), job.getDataFilePath(), job.getOptions());
+        } catch (Exception e) {
+            LOGGER.severe("Job failed: " + job + ": " + e.getMessage());
+            failure = e;
+        }
+        return new BatchResult(job, failure, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Builds the consolidated summary of a batch run.
+     *
+     * @param results       The job results.
+     * @param elapsedMillis Wall-clock time of the whole run.
+     * @return A multi-line summary.
+     */
+    public static String summarize(List<BatchResult> results, long elapsedMillis) {
+        int failed = 0;
+        StringBuilder lines = new StringBuilder();
+        for (BatchResult result : results) {
+            if (!result.isSuccess()) {
+                failed++;
+            }
+            lines.append(System.lineSeparator()).append("  ").append(result);
+        }
+        return "Batch finished in " + elapsedMillis + " ms: " + (results.size() - failed) + " succeeded, "
+                + failed + " failed." + lines;
+    }
+
+    private static void checkDistinctOutputs(List<BatchJob> jobs) {
+        Set<String> outputs = new HashSet<>();
+        for (BatchJob job : jobs) {
+            String output = job.getOptions().getOutputFilePath();
+            if (output == null) {
+                throw new IllegalArgumentException("Error: Batch job '" + job + "' has no output file path.");
+            }
+            if (!outputs.add(new File(output).getAbsolutePath())) {
+                throw new IllegalArgumentException("Error: Output file '" + output + "' is used by more than one batch job.");
+            }
+        }
+    }
+
+    private static String outputFileName(String dataFileName, String xmlMessageType) {
+        if (dataFileName.endsWith(".gz")) {
+            dataFileName = dataFileName.substring(0, dataFileName.length() - ".gz".length());
+        }
+        int dot = dataFileName.lastIndexOf('.');
+        String baseName = dot > 0 ? dataFileName.substring(0, dot) : dataFileName;
+        return baseName + "_" + xmlMessageType.replace(".", "_") + ".xml";
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 5) {
+            System.err.println("Usage: BatchProcessor <message type> <template> <xsd> <data directory> <output directory>");
+            System.exit(2);
+        }
+        GenerationOptions defaults = new GenerationOptions().setStreaming(true).setValidateWhileWriting(true);
+        List<BatchResult> results = processDirectory(args[0], args[1], args[2], args[3], args[4], defaults);
+        for (BatchResult result : results) {
+            if (!result.isSuccess()) {
+                System.exit(1);
+            }
+        }
+    }
+}
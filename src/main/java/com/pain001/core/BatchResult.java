@@ -0,0 +1,42 @@
+package com.pain001.core;
+
+/**
+ * Outcome of a single {@link BatchJob}.
+ */
+public class BatchResult {
+    private final BatchJob job;
+    private final Exception failure;
+    private final long durationMillis;
+
+    public BatchResult(BatchJob job, Exception failure, long durationMillis) {
+        this.job = job;
+        this.failure = failure;
+        this.durationMillis = durationMillis;
+    }
+
+    public BatchJob getJob() {
+        return job;
+    }
+
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    /**
+     * @return The exception that failed the job, or null if it succeeded.
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    @Override
+    public String toString() {
+        String status = isSuccess() ? "OK    " : "FAILED";
+        String detail = isSuccess() ? job.getOptions().getOutputFilePath() : String.valueOf(failure.getMessage());
+        return status + " " + job.getDataFilePath() + " (" + durationMillis + " ms): " + detail;
+    }
+}
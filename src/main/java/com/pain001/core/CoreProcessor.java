@@ -1,19 +1,51 @@
 package com.pain001.core;
 
 import com.pain001.constants.Constants;
+import com.pain001.data.ParallelValidation;
+import com.pain001.data.PaymentIdIndex;
+import com.pain001.data.RowCursor;
+import com.pain001.data.RowSource;
 import com.pain001.csv.CsvLoader;
+import com.pain001.csv.CsvRowSource;
 import com.pain001.csv.CsvValidator;
-import com.pain001.db.DatabaseLoader;
+import com.pain001.csv.MappedCsvReader;
+import com.pain001.db.DatabaseValidator;
+import com.pain001.db.DbRowSource;
+import com.pain001.metrics.PipelineMetrics;
+import com.pain001.metrics.RunMetrics;
+import com.pain001.metrics.Stage;
+import com.pain001.xml.FacetRules;
 import com.pain001.xml.GenerateXml;
+import com.pain001.xml.GenerationOptions;
+import com.pain001.xml.PendingOutputs;
 import com.pain001.xml.RegisterNamespaces;
+import com.pain001.xml.StreamTotals;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 public class CoreProcessor {
     private static final Logger LOGGER = Logger.getLogger(CoreProcessor.class.getName());
+    private static final String SQLITE_TABLE_NAME = "pain001";
+    private static final String PAYMENT_ID_COLUMN = "payment_id";
+    // Further duplicates are only counted
+    private static final int MAX_REPORTED_DUPLICATES = 10;
 
     public static void processFiles(
             String xmlMessageType,
@@ -21,6 +53,73 @@ public class CoreProcessor {
             String xsdSchemaFilePath,
             String dataFilePath
     ) throws Exception {
+        processFiles(xmlMessageType, xmlTemplateFilePath, xsdSchemaFilePath, dataFilePath, false);
+    }
+
+    /**
+     * Generates a pain.001 XML file from a data file.
+     *
+     * @param xmlMessageType      The payment initiation message type (e.g. "pain.001.001.03").
+     * @param xmlTemplateFilePath Path of the XML template; the output is written next to it.
+     * @param xsdSchemaFilePath   Path of the XSD schema used to validate the output.
+     * @param dataFilePath        Path of the CSV or SQLite (.db) data file.
+     * @param streaming           If true, CSV rows are read one record at a time and each
+     *                            transaction is written as it is read, keeping heap use flat.
+     * @throws Exception If validation or generation fails.
+     */
+    public static void processFiles(
+            String xmlMessageType,
+            String xmlTemplateFilePath,
+            String xsdSchemaFilePath,
+            String dataFilePath,
+            boolean streaming
+    ) throws Exception {
+        processFiles(xmlMessageType, xmlTemplateFilePath, xsdSchemaFilePath, dataFilePath,
+                new GenerationOptions().setStreaming(streaming));
+    }
+
+    /**
+     * Generates a pain.001 XML file from a data file.
+     *
+     * @param xmlMessageType      The payment initiation message type (e.g. "pain.001.001.03").
+     * @param xmlTemplateFilePath Path of the XML template; the output is written next to it.
+     * @param xsdSchemaFilePath   Path of the XSD schema used to validate the output.
+     * @param dataFilePath        Path of the CSV, gzip-compressed CSV (.csv.gz) or SQLite (.db) data file.
+     * @param options             Streaming, validation and output options.
+     * @throws Exception If validation or generation fails.
+     */
+    public static void processFiles(
+            String xmlMessageType,
+            String xmlTemplateFilePath,
+            String xsdSchemaFilePath,
+            String dataFilePath,
+            GenerationOptions options
+    ) throws Exception {
+        // Every run is measured; callers that want the numbers pass their own instance
+        RunMetrics metrics = options.getMetrics();
+        if (!metrics.isEnabled()) {
+            metrics = new RunMetrics();
+            options = new GenerationOptions(options).setMetrics(metrics);
+        }
+        metrics.start(xmlMessageType, dataFilePath);
+        boolean success = false;
+        try {
+            generate(xmlMessageType, xmlTemplateFilePath, xsdSchemaFilePath, dataFilePath, options, metrics);
+            success = true;
+        } finally {
+            metrics.finish(success);
+            report(metrics, options);
+        }
+    }
+
+    private static void generate(
+            String xmlMessageType,
+            String xmlTemplateFilePath,
+            String xsdSchemaFilePath,
+            String dataFilePath,
+            GenerationOptions options,
+            RunMetrics metrics
+    ) throws Exception {
 
         // Check if the XML message type is supported
         if (!Constants.VALID_XML_TYPES.contains(xmlMessageType)) {
@@ -34,26 +133,91 @@ public class CoreProcessor {
         validateFileExists(xsdSchemaFilePath, "XSD schema");
         validateFileExists(dataFilePath, "Data file");
 
+        metrics.addBytesRead(new File(dataFilePath).length());
+
         // Determine data file type
-        boolean isCsv = dataFilePath.endsWith(".csv");
+        boolean isCsv = isCsv(dataFilePath);
         boolean isSqlite = dataFilePath.endsWith(".db");
         List<Map<String, String>> data;
 
-        if (isCsv) {
-            data = CsvLoader.loadCsvData(dataFilePath);
-            if (!CsvValidator.validateCsvData(data)) {
+        if (isCsv && options.isStreaming()) {
+            RowSource source = isMapped(dataFilePath, options)
+                    ? new MappedCsvReader(dataFilePath).columns(columnsRead(xmlMessageType, xsdSchemaFilePath))
+                    : new CsvRowSource(dataFilePath);
+            // The totals of the group header are gathered and the payment ids reserved in the validation pass
+            StreamTotals.Collector totals = new StreamTotals.Collector(xmlMessageType);
+            try (PaymentIdIndex.Reservation reservation = reserve(options)) {
+                PaymentIdCheck paymentIds = reservation == null ? null
+                        : new PaymentIdCheck(reservation, source.describe(), metrics.isEnabled());
+                boolean valid;
+                try {
+                    valid = metrics.time(Stage.VALIDATE, () -> CsvValidator.validateCsvData(source,
+                            options.isRejectInvalidAccounts(), ParallelValidation.<Map<String, String>>allOf(Arrays.asList(
+                                    facetChecks(xmlMessageType, xsdSchemaFilePath, options).get(), totals, paymentIds))));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                moveToDuplicateCheck(paymentIds, metrics);
+                if (!valid) {
+                    String errorMessage = "Error: Invalid CSV data.";
+                    LOGGER.severe(errorMessage);
+                    throw new IllegalArgumentException(errorMessage);
+                }
+                if (paymentIds != null) {
+                    paymentIds.finish(options.isRejectDuplicatePayments());
+                }
+                RegisterNamespaces.registerNamespaces(xmlMessageType);
+                GenerateXml.generateXml(source, xmlMessageType, xmlTemplateFilePath, xsdSchemaFilePath, options,
+                        totals.totals());
+                commit(reservation);
+            }
+            LOGGER.info("Successfully generated XML file: " + xmlTemplateFilePath);
+            return;
+        } else if (isCsv) {
+            List<Map<String, String>> rows = loadCsv(dataFilePath, options, metrics,
+                    columnsRead(xmlMessageType, xsdSchemaFilePath));
+            boolean valid = metrics.time(Stage.VALIDATE, () -> CsvValidator.validateCsvData(rows,
+                    options.isParallelValidation(), options.isRejectInvalidAccounts(),
+                    facetChecks(xmlMessageType, xsdSchemaFilePath, options)));
+            data = rows;
+            if (!valid) {
                 String errorMessage = "Error: Invalid CSV data.";
                 LOGGER.severe(errorMessage);
                 throw new IllegalArgumentException(errorMessage);
             }
-        } /*else if (isSqlite) {
-            data = DatabaseLoader.loadDbData(dataFilePath, "pain001");
-            if (!DatabaseValidator.validateDbData(data)) {
-                String errorMessage = "Error: Invalid SQLite data.";
-                LOGGER.severe(errorMessage);
-                throw new IllegalArgumentException(errorMessage);
+        } else if (isSqlite) {
+            // SQLite tables are always streamed through a forward-only cursor
+            RowSource source = new DbRowSource(dataFilePath, SQLITE_TABLE_NAME);
+            StreamTotals.Collector totals = new StreamTotals.Collector(xmlMessageType);
+            try (PaymentIdIndex.Reservation reservation = reserve(options)) {
+                PaymentIdCheck paymentIds = reservation == null ? null
+                        : new PaymentIdCheck(reservation, source.describe(), metrics.isEnabled());
+                boolean valid;
+                try {
+                    valid = metrics.time(Stage.VALIDATE, () -> DatabaseValidator.validateDbData(source,
+                            GenerateXml.columnsWithoutDefault(xmlMessageType), options.isRejectInvalidAccounts(),
+                            ParallelValidation.<Map<String, String>>allOf(Arrays.asList(
+                                    facetChecks(xmlMessageType, xsdSchemaFilePath, options).get(), totals, paymentIds))));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                moveToDuplicateCheck(paymentIds, metrics);
+                if (!valid) {
+                    String errorMessage = "Error: Invalid SQLite data.";
+                    LOGGER.severe(errorMessage);
+                    throw new IllegalArgumentException(errorMessage);
+                }
+                if (paymentIds != null) {
+                    paymentIds.finish(options.isRejectDuplicatePayments());
+                }
+                RegisterNamespaces.registerNamespaces(xmlMessageType);
+                GenerateXml.generateXml(source, xmlMessageType, xmlTemplateFilePath, xsdSchemaFilePath, options,
+                        totals.totals());
+                commit(reservation);
             }
-        }*/ else {
+            LOGGER.info("Successfully generated XML file: " + xmlTemplateFilePath);
+            return;
+        } else {
             String errorMessage = "Error: Unsupported data file type.";
             LOGGER.severe(errorMessage);
             throw new IllegalArgumentException(errorMessage);
@@ -63,7 +227,10 @@ public class CoreProcessor {
         RegisterNamespaces.registerNamespaces(xmlMessageType);
 
         // Generate XML file
-        GenerateXml.generateXml(data, xmlMessageType, xmlTemplateFilePath, xsdSchemaFilePath);
+        try (PaymentIdIndex.Reservation reservation = reservePaymentIds(data.iterator(), dataFilePath, options, metrics)) {
+            GenerateXml.generateXml(data, xmlMessageType, xmlTemplateFilePath, xsdSchemaFilePath, options);
+            commit(reservation);
+        }
 
         // Confirm XML file generation
         if (new File(xmlTemplateFilePath).exists()) {
@@ -73,6 +240,442 @@ public class CoreProcessor {
         }
     }
 
+    /**
+     * Generates one data file as several pain.001 versions, e.g. the same batch as
+     * pain.001.001.03 and pain.001.001.09 during a bank migration.
+     * <p>
+     * The file is loaded into memory and validated once, against the schema facets of
+     * every version in the same pass, and its payment ids are checked against the
+     * duplicate index once, following the options of the first job. The versions are then
+     * rendered and XSD-validated concurrently from the shared rows, each with its own
+     * options and metrics. The output files are published, and the payment ids committed
+     * to the index, only if every version succeeds; otherwise no output of the run appears
+     * and the versions that rendered fine are reported as not published.
+     *
+     * @param jobs        One job per message type, all with the same data file.
+     * @param parallelism Maximum number of versions rendered at the same time.
+     * @return The result of every version, in the order of the input list.
+     * @throws Exception If the data file cannot be loaded or is invalid.
+     */
+    public static List<BatchResult> processFanOut(List<BatchJob> jobs, int parallelism) throws Exception {
+        if (jobs.isEmpty()) {
+            throw new IllegalArgumentException("Error: No message types to generate.");
+        }
+        String dataFilePath = jobs.get(0).getDataFilePath();
+        Set<String> messageTypes = new LinkedHashSet<>();
+        for (BatchJob job : jobs) {
+            String xmlMessageType = job.getXmlMessageType();
+            if (!Constants.VALID_XML_TYPES.contains(xmlMessageType)) {
+                String errorMessage = "Error: Invalid XML message type: '" + xmlMessageType + "'.";
+                LOGGER.severe(errorMessage);
+                throw new IllegalArgumentException(errorMessage);
+            }
+            if (!messageTypes.add(xmlMessageType)) {
+                throw new IllegalArgumentException("Error: Message type '" + xmlMessageType + "' is generated more than once.");
+            }
+            if (!job.getDataFilePath().equals(dataFilePath)) {
+                throw new IllegalArgumentException("Error: Job '" + job + "' does not read '" + dataFilePath + "'.");
+            }
+            validateFileExists(job.getXmlTemplateFilePath(), "XML template");
+            validateFileExists(job.getXsdSchemaFilePath(), "XSD schema");
+        }
+
+        long start = System.nanoTime();
+        GenerationOptions options = jobs.get(0).getOptions();
+        RunMetrics metrics = new RunMetrics();
+        metrics.start(String.join(",", messageTypes), dataFilePath);
+        List<Map<String, String>> data;
+        PaymentIdIndex.Reservation reservation;
+        boolean loaded = false;
+        try {
+            Set<String> readColumns = new HashSet<>();
+            Set<String> csvColumns = new HashSet<>();
+            for (BatchJob job : jobs) {
+                readColumns.addAll(GenerateXml.columnsWithoutDefault(job.getXmlMessageType()));
+                csvColumns.addAll(columnsRead(job.getXmlMessageType(), job.getXsdSchemaFilePath()));
+            }
+            data = loadAndValidate(dataFilePath, options, metrics, readColumns, csvColumns, facetChecks(jobs));
+            reservation = reservePaymentIds(data.iterator(), dataFilePath, options, metrics);
+            loaded = true;
+        } finally {
+            metrics.finish(loaded);
+            report(metrics, options);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, jobs.size())));
+        List<BatchResult> results = new ArrayList<>();
+        // The outputs of all versions are published together, once every version is valid
+        PendingOutputs outputs = new PendingOutputs();
+        boolean published = false;
+        // An uncommitted reservation is rolled back when it is closed
+        try (PaymentIdIndex.Reservation ids = reservation) {
+            List<Future<BatchResult>> futures = new ArrayList<>();
+            for (BatchJob job : jobs) {
+                futures.add(pool.submit(() -> runFanOutJob(job, data, outputs)));
+            }
+            int failures = 0;
+            for (Future<BatchResult> future : futures) {
+                BatchResult result = future.get();
+                failures += result.isSuccess() ? 0 : 1;
+                results.add(result);
+            }
+            if (failures == 0) {
+                outputs.publishAll();
+                published = true;
+                commit(ids);
+            } else {
+                results = notPublished(results, failures);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+            throw new IllegalStateException("Fan-out run interrupted.", e);
+        } catch (ExecutionException e) {
+            // runFanOutJob catches everything a version can throw
+            throw new IllegalStateException("Unexpected fan-out failure.", e.getCause());
+        } finally {
+            pool.shutdown();
+            if (!published) {
+                outputs.discardAll();
+            }
+        }
+
+        LOGGER.info(BatchProcessor.summarize(results, (System.nanoTime() - start) / 1_000_000));
+        return results;
+    }
+
+    /**
+     * Generates one data file as several pain.001 versions on a pool sized to the available cores.
+     *
+     * @param jobs One job per message type, all with the same data file.
+     * @return The result of every version, in the order of the input list.
+     * @throws Exception If the data file cannot be loaded or is invalid.
+     * @see #processFanOut(List, int)
+     */
+    public static List<BatchResult> processFanOut(List<BatchJob> jobs) throws Exception {
+        return processFanOut(jobs, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Marks the versions that succeeded as failed, since their output is discarded along
+     * with that of the versions that failed.
+     */
+    private static List<BatchResult> notPublished(List<BatchResult> results, int failures) {
+        List<BatchResult> marked = new ArrayList<>(results.size());
+        for (BatchResult result : results) {
+            marked.add(result.isSuccess()
+                    ? new BatchResult(result.getJob(), new IllegalStateException("Error: Output not published because "
+                    + failures + " other versions failed."), result.getDurationMillis())
+                    : result);
+        }
+        return marked;
+    }
+
+    private static BatchResult runFanOutJob(BatchJob job, List<Map<String, String>> data, PendingOutputs outputs) {
+        long start = System.nanoTime();
+        Exception failure = null;
+        try {
+            generateFromRows(job, data, outputs);
+        } catch (Exception e) {
+            LOGGER.severe("Job failed: " + job + ": " + e.getMessage());
+            failure = e;
+        }
+        return new BatchResult(job, failure, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Renders one version from rows that are already loaded and validated, holding its
+     * output back in the pending outputs. The rows are only read, so several versions can
+     * share them.
+     */
+    private static void generateFromRows(BatchJob job, List<Map<String, String>> data, PendingOutputs outputs)
+            throws Exception {
+        String xmlMessageType = job.getXmlMessageType();
+        GenerationOptions options = new GenerationOptions(job.getOptions()).setPendingOutputs(outputs);
+        RunMetrics metrics = job.getOptions().getMetrics();
+        if (!metrics.isEnabled()) {
+            metrics = new RunMetrics();
+        }
+        options.setMetrics(metrics);
+        metrics.start(xmlMessageType, job.getDataFilePath());
+        boolean success = false;
+        try {
+            RegisterNamespaces.registerNamespaces(xmlMessageType);
+            GenerateXml.generateXml(data, xmlMessageType, job.getXmlTemplateFilePath(), job.getXsdSchemaFilePath(), options);
+            success = true;
+        } finally {
+            metrics.finish(success);
+            report(metrics, options);
+        }
+    }
+
+    /**
+     * Loads a CSV or SQLite data file into memory and validates it, running the further
+     * checks on every row that passes the column checks. SQLite rows must have values for
+     * the required columns among the columns read.
+     *
+     * @param readColumns The columns read without a default, which SQLite rows must have.
+     * @param csvColumns  The columns decoded from a memory-mapped CSV file.
+     * @throws IllegalArgumentException If the data is invalid.
+     */
+    private static List<Map<String, String>> loadAndValidate(
+            String dataFilePath, GenerationOptions options, RunMetrics metrics, Set<String> readColumns,
+            Set<String> csvColumns, Supplier<ParallelValidation.RowCheck<Map<String, String>>> rowChecks) throws Exception {
+        validateFileExists(dataFilePath, "Data file");
+        metrics.addBytesRead(new File(dataFilePath).length());
+
+        List<Map<String, String>> data;
+        boolean valid;
+        if (isCsv(dataFilePath)) {
+            List<Map<String, String>> rows = loadCsv(dataFilePath, options, metrics, csvColumns);
+            valid = metrics.time(Stage.VALIDATE, () -> CsvValidator.validateCsvData(rows,
+                    options.isParallelValidation(), options.isRejectInvalidAccounts(), rowChecks));
+            data = rows;
+        } else if (dataFilePath.endsWith(".db")) {
+            List<Map<String, String>> rows = metrics.time(Stage.LOAD, () -> {
+                List<Map<String, String>> loaded = new ArrayList<>();
+                try (RowCursor cursor = new DbRowSource(dataFilePath, SQLITE_TABLE_NAME).open()) {
+                    while (cursor.hasNext()) {
+                        loaded.add(cursor.next());
+                    }
+                }
+                return loaded;
+            });
+            valid = metrics.time(Stage.VALIDATE, () -> DatabaseValidator.validateDbData(rows, readColumns,
+                    options.isParallelValidation(), options.isRejectInvalidAccounts(), rowChecks));
+            data = rows;
+        } else {
+            String errorMessage = "Error: Unsupported data file type.";
+            LOGGER.severe(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        if (!valid) {
+            String errorMessage = isCsv(dataFilePath) ? "Error: Invalid CSV data." : "Error: Invalid SQLite data.";
+            LOGGER.severe(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        return data;
+    }
+
+    /**
+     * @return Creates the checks of the schema facets of a message type, one per chunk of rows.
+     */
+    private static Supplier<ParallelValidation.RowCheck<Map<String, String>>> facetChecks(
+            String xmlMessageType, String xsdSchemaFilePath, GenerationOptions options) {
+        FacetRules rules = FacetRules.forSchema(xmlMessageType, xsdSchemaFilePath);
+        return () -> rules.rowCheck(options.isGroupPaymentInformation());
+    }
+
+    /**
+     * @return Creates the checks of the schema facets of every job's message type, one
+     * per chunk of rows. A row is checked against all of them.
+     */
+    private static Supplier<ParallelValidation.RowCheck<Map<String, String>>> facetChecks(List<BatchJob> jobs) {
+        List<Supplier<ParallelValidation.RowCheck<Map<String, String>>>> suppliers = new ArrayList<>();
+        for (BatchJob job : jobs) {
+            suppliers.add(facetChecks(job.getXmlMessageType(), job.getXsdSchemaFilePath(), job.getOptions()));
+        }
+        return () -> {
+            List<ParallelValidation.RowCheck<Map<String, String>>> checks = new ArrayList<>();
+            for (Supplier<ParallelValidation.RowCheck<Map<String, String>>> supplier : suppliers) {
+                checks.add(supplier.get());
+            }
+            return ParallelValidation.allOf(checks);
+        };
+    }
+
+    /**
+     * @param columns The columns decoded when the file is memory-mapped; the others are skipped.
+     */
+    private static List<Map<String, String>> loadCsv(String dataFilePath, GenerationOptions options,
+                                                     RunMetrics metrics, Collection<String> columns) throws IOException {
+        return metrics.time(Stage.LOAD, () -> isMapped(dataFilePath, options)
+                ? new MappedCsvReader(dataFilePath).columns(columns).readAll()
+                : CsvLoader.loadCsvData(dataFilePath));
+    }
+
+    /**
+     * @return true if the CSV file is parsed through memory-mapped chunks. Compressed files
+     * cannot be memory-mapped and are decompressed while they are read.
+     */
+    private static boolean isMapped(String dataFilePath, GenerationOptions options) {
+        return options.isMappedCsvParsing() && !CsvLoader.isCompressed(dataFilePath);
+    }
+
+    /**
+     * @return The columns a run of the message type reads from each row: those the
+     * validators, the facet checks, the duplicate check and the generator look up.
+     */
+    private static Set<String> columnsRead(String xmlMessageType, String xsdSchemaFilePath) {
+        Set<String> columns = new LinkedHashSet<>(CsvValidator.columnsRead());
+        columns.addAll(FacetRules.forSchema(xmlMessageType, xsdSchemaFilePath).columns());
+        columns.addAll(GenerateXml.columnsRead(xmlMessageType));
+        columns.add(PAYMENT_ID_COLUMN);
+        return columns;
+    }
+
+    private static boolean isCsv(String dataFilePath) {
+        return dataFilePath.endsWith(".csv") || dataFilePath.endsWith(".csv.gz");
+    }
+
+    /**
+     * @return A new reservation in the duplicate index, or null if there is no index.
+     */
+    private static PaymentIdIndex.Reservation reserve(GenerationOptions options) throws IOException {
+        PaymentIdIndex index = options.getPaymentIdIndex();
+        return index == null ? null : index.reserve();
+    }
+
+    /**
+     * Looks up the payment ids of rows held in memory in the duplicate index and reserves
+     * the new ones, before any XML is written.
+     *
+     * @return The reservation to commit once the output is published, or null if there is no index.
+     * @throws IllegalArgumentException If the input holds duplicates and they are rejected.
+     */
+    private static PaymentIdIndex.Reservation reservePaymentIds(Iterator<Map<String, String>> rows, String description,
+                                                                GenerationOptions options, RunMetrics metrics)
+            throws IOException {
+        PaymentIdIndex.Reservation reservation = reserve(options);
+        if (reservation == null) {
+            return null;
+        }
+        try {
+            PaymentIdCheck check = new PaymentIdCheck(reservation, description, false);
+            try {
+                metrics.time(Stage.DUPLICATE_CHECK, () -> {
+                    long rowNumber = 0;
+                    while (rows.hasNext()) {
+                        check.check(rows.next(), ++rowNumber, null);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            check.finish(options.isRejectDuplicatePayments());
+        } catch (IOException | RuntimeException e) {
+            reservation.rollback();
+            throw e;
+        }
+        return reservation;
+    }
+
+    /**
+     * Moves the time spent reserving payment ids in the validation pass of a streamed run
+     * from {@link Stage#VALIDATE} to {@link Stage#DUPLICATE_CHECK}.
+     */
+    private static void moveToDuplicateCheck(PaymentIdCheck paymentIds, RunMetrics metrics) {
+        if (paymentIds != null) {
+            metrics.addStageNanos(Stage.VALIDATE, -paymentIds.getNanos());
+            metrics.addStageNanos(Stage.DUPLICATE_CHECK, paymentIds.getNanos());
+        }
+    }
+
+    private static void commit(PaymentIdIndex.Reservation reservation) throws IOException {
+        if (reservation != null) {
+            reservation.commit();
+        }
+    }
+
+    /**
+     * Reserves the payment id of each row in the duplicate index, so streamed rows are
+     * checked in the validation pass instead of a pass of their own. Rows without a
+     * payment id are skipped. Duplicates are counted and only rejected by
+     * {@link #finish(boolean)}, once every row is seen. Not thread-safe.
+     */
+    private static final class PaymentIdCheck implements ParallelValidation.RowCheck<Map<String, String>> {
+        private final PaymentIdIndex.Reservation reservation;
+        private final String description;
+        private final boolean timed;
+        private long duplicates;
+        private long nanos;
+
+        /**
+         * @param timed true to add up the time spent in the index, for a pass that is
+         *              timed as another stage.
+         */
+        PaymentIdCheck(PaymentIdIndex.Reservation reservation, String description, boolean timed) {
+            this.reservation = reservation;
+            this.description = description;
+            this.timed = timed;
+        }
+
+        /**
+         * @throws UncheckedIOException If the index cannot be updated.
+         */
+        @Override
+        public void check(Map<String, String> row, long rowNumber, List<String> errors) {
+            String paymentId = row.get(PAYMENT_ID_COLUMN);
+            if (paymentId == null || paymentId.isEmpty()) {
+                return;
+            }
+            long start = timed ? System.nanoTime() : 0;
+            boolean added;
+            try {
+                added = reservation.add(paymentId);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (timed) {
+                    nanos += System.nanoTime() - start;
+                }
+            }
+            if (added) {
+                return;
+            }
+            if (++duplicates <= MAX_REPORTED_DUPLICATES) {
+                LOGGER.warning("Duplicate payment id '" + paymentId + "' in row " + rowNumber + " of " + description);
+            }
+        }
+
+        /**
+         * @return The time spent in the index, if timed.
+         */
+        long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @param reject true if duplicates are an error.
+         * @throws IllegalArgumentException If the input holds duplicates and they are rejected;
+         *                                  the caller rolls the reservation back.
+         */
+        void finish(boolean reject) {
+            if (duplicates > 0 && reject) {
+                String errorMessage = "Error: " + duplicates + " duplicate payment ids in " + description + ".";
+                LOGGER.severe(errorMessage);
+                throw new IllegalArgumentException(errorMessage);
+            }
+            if (duplicates > 0) {
+                LOGGER.warning(duplicates + " duplicate payment ids in " + description + " are sent again.");
+            }
+        }
+    }
+
+    /**
+     * Adds the run to the JMX totals, logs its summary and writes the JSON summary file if requested.
+     */
+    private static void report(RunMetrics metrics, GenerationOptions options) {
+        PipelineMetrics.getInstance().record(metrics);
+        LOGGER.info("Run metrics: " + metrics.toJson());
+        String outputFilePath = metrics.getOutputFilePath();
+        if (options.isWriteMetricsSummary() && outputFilePath != null) {
+            String summaryFilePath = metricsSummaryFilePath(outputFilePath);
+            try {
+                metrics.writeJson(summaryFilePath);
+            } catch (IOException e) {
+                LOGGER.warning("Unable to write run summary '" + summaryFilePath + "': " + e.getMessage());
+            }
+        }
+    }
+
+    private static String metricsSummaryFilePath(String outputFilePath) {
+        int dot = outputFilePath.lastIndexOf('.');
+        int separator = outputFilePath.lastIndexOf(File.separatorChar);
+        String baseName = dot > separator ? outputFilePath.substring(0, dot) : outputFilePath;
+        return baseName + ".metrics.json";
+    }
+
     private static void validateFileExists(String filePath, String fileType) throws Exception {
         File file = new File(filePath);
         if (!file.exists()) {
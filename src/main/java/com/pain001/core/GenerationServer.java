@@ -0,0 +1,344 @@
+package com.pain001.core;
+
+import com.pain001.constants.Constants;
+import com.pain001.xml.GenerationOptions;
+import com.pain001.xml.SchemaRegistry;
+import com.pain001.xml.TemplateEngine;
+import com.pain001.xml.XmlValidationException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates pain.001 files over HTTP, so a long-running JVM keeps its compiled templates
+ * and schemas warm across requests.
+ * <p>
+ * {@code POST /generate?type=pain.001.001.09} takes a CSV file as the request body and
+ * answers with the generated XML once it has been validated against the XSD. Optional
+ * parameter: {@code group=true} groups the payment information blocks.
+ * {@code GET /health} answers "OK".
+ * A body sent with {@code Content-Encoding: gzip} is read compressed, and the XML is
+ * answered gzip-compressed when the request has {@code Accept-Encoding: gzip}.
+ * <p>
+ * The upload is spooled to a temporary file, as rows are read more than once, and run
+ * through {@link CoreProcessor} in streaming tee mode. An upload larger than the
+ * configured limit is answered with 413.
+ * <p>
+ * At most {@code concurrency} requests generate at the same time and as many more wait
+ * for their turn. A waiting request that cannot start within
+ * {@value #ACQUIRE_TIMEOUT_SECONDS} seconds, and any request beyond those, is answered
+ * with 503.
+ */
+public class GenerationServer {
+    private static final Logger LOGGER = Logger.getLogger(GenerationServer.class.getName());
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+    public static final long DEFAULT_MAX_UPLOAD_BYTES = 256L * 1024 * 1024;
+    private static final int REJECTION_QUEUE_SIZE = 64;
+
+    private final String templatesDirectory;
+    private final Semaphore permits;
+    private final long maxUploadBytes;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor rejections;
+    // Set on the thread answering a request the executor had no room for
+    private final ThreadLocal<Boolean> rejected = ThreadLocal.withInitial(() -> false);
+    private final HttpServer server;
+
+    /**
+     * @param port               Port to listen on, or 0 for any free port.
+     * @param templatesDirectory Directory holding a "pain001001XX" folder with the XML
+     *                           template and XSD of every message type.
+     * @param concurrency        Maximum number of requests generating at the same time.
+     * @throws IOException If the port cannot be bound.
+     */
+    public GenerationServer(int port, String templatesDirectory, int concurrency) throws IOException {
+        this(port, templatesDirectory, concurrency, DEFAULT_MAX_UPLOAD_BYTES);
+    }
+
+    /**
+     * @param port               Port to listen on, or 0 for any free port.
+     * @param templatesDirectory Directory holding a "pain001001XX" folder with the XML
+     *                           template and XSD of every message type.
+     * @param concurrency        Maximum number of requests generating at the same time.
+     * @param maxUploadBytes     Maximum size of a request body, as sent.
+     * @throws IOException If the port cannot be bound.
+     */
+    public GenerationServer(int port, String templatesDirectory, int concurrency, long maxUploadBytes)
+            throws IOException {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Error: Concurrency must be positive.");
+        }
+        if (maxUploadBytes < 1) {
+            throw new IllegalArgumentException("Error: Maximum upload size must be positive.");
+        }
+        this.templatesDirectory = templatesDirectory;
+        this.permits = new Semaphore(concurrency, true);
+        this.maxUploadBytes = maxUploadBytes;
+        // One thread answers the overflow with 503; past its queue the connection is closed
+        this.rejections = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(REJECTION_QUEUE_SIZE));
+        // No queue: every accepted request is on a thread whose wait for a permit is timed,
+        // and a request arriving when all threads are taken is handed to the rejections
+        this.executor = new ThreadPoolExecutor(concurrency * 2, concurrency * 2, 0, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), (task, pool) -> reject(task));
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/generate", this::handleGenerate);
+        server.createContext("/health", exchange -> respond(exchange, 200, "OK"));
+    }
+
+    /**
+     * Compiles all templates and schemas and starts accepting requests.
+     */
+    public void start() {
+        SchemaRegistry.preload(templatesDirectory);
+        TemplateEngine.preload();
+        server.start();
+        LOGGER.info("Generation server listening on port " + getPort() + " with "
+                + permits.availablePermits() + " concurrent requests.");
+    }
+
+    /**
+     * Stops accepting requests and waits up to the given time for running ones.
+     *
+     * @param delaySeconds Seconds to wait for running requests.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdownNow();
+        rejections.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void reject(Runnable task) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Generation server stopped.");
+        }
+        rejections.execute(() -> {
+            rejected.set(true);
+            try {
+                task.run();
+            } finally {
+                rejected.remove();
+            }
+        });
+    }
+
+    private void handleGenerate(HttpExchange exchange) throws IOException {
+        try {
+            if (rejected.get()) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, "Error: Server busy, try again later.");
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "Error: Use POST with a CSV body.");
+                return;
+            }
+            Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+            String messageType = parameters.get("type");
+            if (messageType == null || !Constants.VALID_XML_TYPES.contains(messageType)) {
+                respond(exchange, 400, "Error: Invalid XML message type: '" + messageType + "'.");
+                return;
+            }
+            GenerationOptions options = options(parameters);
+
+            if (!permits.tryAcquire(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, "Error: Server busy, try again later.");
+                return;
+            }
+            try {
+                generate(exchange, messageType, options);
+            } finally {
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "Error: Server shutting down.");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void generate(HttpExchange exchange, String messageType, GenerationOptions options) throws IOException {
+        // Compressed bodies stay compressed on disk and are only inflated while streaming
+        boolean compressedUpload = accepts(exchange.getRequestHeaders().getFirst("Content-Encoding"), "gzip");
+        boolean compressedResponse = accepts(exchange.getRequestHeaders().getFirst("Accept-Encoding"), "gzip");
+        Path upload = Files.createTempFile("pain001-upload-", compressedUpload ? ".csv.gz" : ".csv");
+        Path output = Files.createTempFile("pain001-output-", compressedResponse ? ".xml.gz" : ".xml");
+        long start = System.nanoTime();
+        try {
+            if (!spool(exchange, upload)) {
+                respond(exchange, 413, "Error: Upload larger than " + maxUploadBytes + " bytes.");
+                return;
+            }
+            options.setOutputFilePath(output.toString());
+            try {
+                CoreProcessor.processFiles(messageType, templateFilePath(messageType), xsdFilePath(messageType),
+                        upload.toString(), options);
+            } catch (XmlValidationException e) {
+                respond(exchange, 422, e.getMessage());
+                return;
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, e.getMessage());
+                return;
+            } catch (Exception e) {
+                // The message may name server files, so it is only logged
+                LOGGER.log(Level.SEVERE, "Generation of " + messageType + " failed.", e);
+                respond(exchange, 500, "Error: Generation failed.");
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/xml; charset=UTF-8");
+            if (compressedResponse) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, Files.size(output));
+            try (OutputStream body = exchange.getResponseBody()) {
+                Files.copy(output, body);
+            }
+            LOGGER.info("Generated " + messageType + " in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        } finally {
+            Files.deleteIfExists(upload);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    /**
+     * Copies the request body to the upload file, up to the maximum upload size.
+     *
+     * @return false if the body is larger than the maximum; the file is then incomplete.
+     */
+    private boolean spool(HttpExchange exchange, Path upload) throws IOException {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null) {
+            try {
+                if (Long.parseLong(contentLength.trim()) > maxUploadBytes) {
+                    return false;
+                }
+            } catch (NumberFormatException e) {
+                // The server rejects malformed lengths itself; count the bytes instead
+            }
+        }
+        byte[] buffer = new byte[8192];
+        long size = 0;
+        try (InputStream body = exchange.getRequestBody(); OutputStream out = Files.newOutputStream(upload)) {
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                size += read;
+                if (size > maxUploadBytes) {
+                    return false;
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param header   Value of a Content-Encoding or Accept-Encoding header, or null.
+     * @param encoding The encoding to look for.
+     * @return true if the header lists the encoding, without a quality of zero.
+     */
+    private static boolean accepts(String header, String encoding) {
+        if (header == null) {
+            return false;
+        }
+        for (String value : header.split(",")) {
+            String[] parts = value.split(";");
+            if (!parts[0].trim().equalsIgnoreCase(encoding)) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static GenerationOptions options(Map<String, String> parameters) {
+        return new GenerationOptions().setStreaming(true).setValidateWhileWriting(true)
+                .setGroupPaymentInformation(Boolean.parseBoolean(parameters.get("group")));
+    }
+
+    private String templateFilePath(String messageType) {
+        return new File(typeDirectory(messageType), "template.xml").getPath();
+    }
+
+    private String xsdFilePath(String messageType) {
+        return new File(typeDirectory(messageType), messageType + ".xsd").getPath();
+    }
+
+    private File typeDirectory(String messageType) {
+        return new File(templatesDirectory, "pain" + messageType.replace("pain.", "").replace(".", ""));
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return parameters;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: GenerationServer <port> <templates directory> [concurrency] [max upload bytes]");
+            System.exit(2);
+        }
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long maxUploadBytes = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_MAX_UPLOAD_BYTES;
+        GenerationServer server = new GenerationServer(Integer.parseInt(args[0]), args[1], concurrency,
+                maxUploadBytes);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(5)));
+        server.start();
+    }
+}
@@ -1,16 +1,50 @@
 package com.pain001.csv;
 
+import com.pain001.data.PaymentRow;
+import com.pain001.data.RowSchema;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
 
 public class CsvLoader {
     private static final Logger LOGGER = Logger.getLogger(CsvLoader.class.getName());
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Opens a UTF-8 CSV file for reading; files ending in ".gz" are decompressed while they are read.
+     *
+     * @param filePath Path to the CSV file, e.g. "payments.csv" or "payments.csv.gz".
+     * @return A reader over the uncompressed CSV text.
+     * @throws IOException If the file cannot be opened or is not in gzip format.
+     */
+    static Reader openReader(String filePath) throws IOException {
+        InputStream in = new FileInputStream(filePath);
+        if (!isCompressed(filePath)) {
+            return new InputStreamReader(in, StandardCharsets.UTF_8);
+        }
+        try {
+            return new InputStreamReader(new GZIPInputStream(in, GZIP_BUFFER_SIZE), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param filePath Path to a data file.
+     * @return true if the file is gzip-compressed, judging by its ".gz" extension.
+     */
+    public static boolean isCompressed(String filePath) {
+        return filePath.endsWith(GZIP_SUFFIX);
+    }
 
     /**
      * Loads CSV data from a file.
@@ -23,23 +57,27 @@ public class CsvLoader {
     public static List<Map<String, String>> loadCsvData1(String filePath) throws IOException {
         List<Map<String, String>> data = new ArrayList<>();
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+        try (BufferedReader reader = new BufferedReader(openReader(filePath))) {
             String headerLine = reader.readLine();
             if (headerLine == null || headerLine.isEmpty()) {
                 throw new IOException("The CSV file '" + filePath + "' is empty.");
             }
 
             String[] headers = headerLine.split(",");
+            for (int i = 0; i < headers.length; i++) {
+                headers[i] = headers[i].trim();
+            }
+            RowSchema schema = new RowSchema(Arrays.asList(headers));
             String line;
 
             while ((line = reader.readLine()) != null) {
                 String[] values = line.split(",");
-                Map<String, String> row = new HashMap<>();
+                String[] rowValues = new String[headers.length];
 
                 for (int i = 0; i < headers.length; i++) {
-                    row.put(headers[i].trim(), i < values.length ? values[i].trim() : "");
+                    rowValues[i] = i < values.length ? values[i].trim() : "";
                 }
-                data.add(row);
+                data.add(new PaymentRow(schema, rowValues));
             }
 
         } catch (FileNotFoundException e) {
@@ -54,13 +92,10 @@ public class CsvLoader {
     }
     public static List<Map<String, String>> loadCsvData(String filePath) throws IOException {
         List<Map<String, String>> data = new ArrayList<>();
-        try (CSVParser parser = CSVParser.parse(new FileReader(filePath), CSVFormat.DEFAULT.withHeader())) {
+        try (CSVParser parser = CSVParser.parse(openReader(filePath), CSVFormat.DEFAULT.withHeader())) {
+            RowSchema schema = new RowSchema(parser.getHeaderNames());
             for (CSVRecord record : parser) {
-                Map<String, String> row = new HashMap<>();
-                for (String header : parser.getHeaderMap().keySet()) {
-                    row.put(header, record.isMapped(header) ? record.get(header) : "");
-                }
-                data.add(row);
+                data.add(toPaymentRow(schema, record));
             }
         }
 
@@ -75,6 +110,23 @@ public class CsvLoader {
         return data;
     }
 
+    /**
+     * Copies a CSV record into an array-backed row. Columns are matched by position,
+     * which is what the header names resolve to; missing trailing fields become "".
+     *
+     * @param schema Schema built from the CSV header.
+     * @param record The CSV record.
+     * @return The row.
+     */
+    static PaymentRow toPaymentRow(RowSchema schema, CSVRecord record) {
+        String[] values = new String[schema.size()];
+        int available = record.size();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i < available ? record.get(i) : "";
+        }
+        return new PaymentRow(schema, values);
+    }
+
     public static void main(String[] args) {
         String filePath = "src/main/java/com/pain001/templates/pain00100103/template.csv"; // Example CSV file path
 
@@ -0,0 +1,133 @@
+package com.pain001.csv;
+
+import com.pain001.data.RowSchema;
+import com.pain001.data.SeekableRowCursor;
+import com.pain001.data.SeekableRowSource;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams a CSV file one {@link CSVRecord} at a time. Unlike
+ * {@link CsvLoader#loadCsvData(String)} nothing is collected, so the file can be
+ * arbitrarily large.
+ * <p>
+ * Files ending in ".gz" are decompressed while they are read. Row offsets are character
+ * positions in the uncompressed text, so a cursor can be reopened at a row without
+ * parsing the rows before it.
+ */
+public class CsvRowSource implements SeekableRowSource {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // The first record names the columns
+    private static final CSVFormat HEADER_FORMAT = CSVFormat.Builder.create(CSVFormat.DEFAULT)
+            .setHeader()
+            .setSkipHeaderRecord(true)
+            .build();
+
+    private final String filePath;
+
+    public CsvRowSource(String filePath) {
+        this.filePath = filePath;
+    }
+
+    @Override
+    public SeekableRowCursor open() throws IOException {
+        CSVParser parser = CSVParser.parse(
+                new BufferedReader(CsvLoader.openReader(filePath), READ_BUFFER_SIZE),
+                HEADER_FORMAT);
+        return new CsvRowCursor(parser, parser.getHeaderNames(), 0);
+    }
+
+    @Override
+    public SeekableRowCursor open(long offset) throws IOException {
+        if (offset == 0) {
+            return open();
+        }
+        List<String> header;
+        try (CSVParser headerParser = CSVParser.parse(CsvLoader.openReader(filePath), HEADER_FORMAT)) {
+            header = headerParser.getHeaderNames();
+        }
+        Reader reader = new BufferedReader(CsvLoader.openReader(filePath), READ_BUFFER_SIZE);
+        try {
+            long remaining = offset;
+            while (remaining > 0) {
+                long skipped = reader.skip(remaining);
+                if (skipped <= 0) {
+                    throw new IOException("Offset " + offset + " is beyond the end of '" + filePath + "'.");
+                }
+                remaining -= skipped;
+            }
+            // The header was read above; the rest of the file starts at a record
+            CSVFormat format = CSVFormat.Builder.create(CSVFormat.DEFAULT)
+                    .setHeader(header.toArray(new String[0]))
+                    .setSkipHeaderRecord(false)
+                    .build();
+            CSVParser parser = CSVParser.parse(reader, format);
+            return new CsvRowCursor(parser, header, offset);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String fingerprint() {
+        File file = new File(filePath);
+        return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    }
+
+    @Override
+    public String describe() {
+        return filePath;
+    }
+
+    private static class CsvRowCursor implements SeekableRowCursor {
+        private final CSVParser parser;
+        private final Iterator<CSVRecord> records;
+        private final RowSchema schema;
+        // Character position the parser started at
+        private final long baseOffset;
+        private long offset = -1;
+
+        CsvRowCursor(CSVParser parser, List<String> header, long baseOffset) {
+            this.parser = parser;
+            this.records = parser.iterator();
+            this.schema = new RowSchema(header);
+            this.baseOffset = baseOffset;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return records.hasNext();
+        }
+
+        @Override
+        public Map<String, String> next() {
+            if (!records.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            CSVRecord record = records.next();
+            offset = baseOffset + record.getCharacterPosition();
+            return CsvLoader.toPaymentRow(schema, record);
+        }
+
+        @Override
+        public long offset() {
+            return offset;
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+}
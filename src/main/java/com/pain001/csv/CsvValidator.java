@@ -1,10 +1,16 @@
 package com.pain001.csv;
 
+import com.pain001.data.BankIdentifiers;
+import com.pain001.data.ParallelValidation;
+import com.pain001.data.PaymentRow;
+import com.pain001.data.RowCursor;
+import com.pain001.data.RowSchema;
+import com.pain001.data.RowSource;
+
+import java.io.IOException;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.logging.Level;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 public class CsvValidator {
@@ -39,6 +45,20 @@ public class CsvValidator {
         // REQUIRED_COLUMNS = Collections.unmodifiableMap(REQUIRED_COLUMNS);
     }
 
+    private enum ValueType { INTEGER, DECIMAL, BOOLEAN, DATE, TEXT }
+
+    // REQUIRED_COLUMNS compiled into parallel arrays, in the map's iteration order
+    private static final String[] COLUMN_NAMES = new String[REQUIRED_COLUMNS.size()];
+    private static final ValueType[] COLUMN_TYPES = new ValueType[REQUIRED_COLUMNS.size()];
+    static {
+        int i = 0;
+        for (Map.Entry<String, Class<?>> entry : REQUIRED_COLUMNS.entrySet()) {
+            COLUMN_NAMES[i] = entry.getKey();
+            COLUMN_TYPES[i] = valueTypeOf(entry.getValue());
+            i++;
+        }
+    }
+
     /**
      * Validates the CSV data before processing.
      *
@@ -46,86 +66,296 @@ public class CsvValidator {
      * @return true if the data is valid, false otherwise.
      */
     public static boolean validateCsvData(List<Map<String, String>> data) {
+        return validateCsvData(data, false);
+    }
+
+    /**
+     * @return The columns the validator reads from each row: the required columns and
+     * the IBAN and BIC columns.
+     */
+    public static Set<String> columnsRead() {
+        Set<String> columns = new LinkedHashSet<>(Arrays.asList(COLUMN_NAMES));
+        columns.addAll(Arrays.asList(BankIdentifiers.IBAN_COLUMNS));
+        columns.addAll(Arrays.asList(BankIdentifiers.BIC_COLUMNS));
+        return columns;
+    }
+
+    /**
+     * Validates the CSV data before processing, optionally splitting the rows into chunks
+     * that are checked on the common fork/join pool. Errors are reported in row order, so
+     * the log is the same as for a sequential run.
+     *
+     * @param data     List of rows where each row is a map of column names to values.
+     * @param parallel true to validate chunks of rows in parallel.
+     * @return true if the data is valid, false otherwise.
+     */
+    public static boolean validateCsvData(List<Map<String, String>> data, boolean parallel) {
+        return validateCsvData(data, parallel, false);
+    }
+
+    /**
+     * Validates the CSV data before processing, including the IBAN and BIC columns.
+     *
+     * @param data                   List of rows where each row is a map of column names to values.
+     * @param parallel               true to validate chunks of rows in parallel.
+     * @param rejectInvalidAccounts  true if an invalid IBAN or BIC makes the row invalid,
+     *                               false if it is only logged as a warning.
+     * @return true if the data is valid, false otherwise.
+     */
+    public static boolean validateCsvData(List<Map<String, String>> data, boolean parallel,
+                                          boolean rejectInvalidAccounts) {
+        return validateCsvData(data, parallel, rejectInvalidAccounts, null);
+    }
+
+    /**
+     * Validates the CSV data before processing, running further checks on every row
+     * that has valid columns, e.g. the {@link com.pain001.xml.FacetRules} of the message type.
+     *
+     * @param data                  List of rows where each row is a map of column names to values.
+     * @param parallel              true to validate chunks of rows in parallel.
+     * @param rejectInvalidAccounts true if an invalid IBAN or BIC makes the row invalid,
+     *                              false if it is only logged as a warning.
+     * @param rowChecks             Creates the further check of each chunk of rows; may be null.
+     * @return true if the data is valid, false otherwise.
+     */
+    public static boolean validateCsvData(List<Map<String, String>> data, boolean parallel,
+                                          boolean rejectInvalidAccounts,
+                                          Supplier<? extends ParallelValidation.RowCheck<? super Map<String, String>>> rowChecks) {
         if (data.isEmpty()) {
             LOGGER.severe("Error: The CSV data is empty.");
             return false;
         }
 
+        ParallelValidation.Warnings warnings = new ParallelValidation.Warnings();
+        if (parallel) {
+            List<String> errors = ParallelValidation.validate(data,
+                    () -> new RowChecker(rejectInvalidAccounts, rowChecks == null ? null : rowChecks.get()), false,
+                    warnings);
+            for (String error : errors) {
+                LOGGER.severe(error);
+            }
+            warnings.log(LOGGER);
+            return errors.isEmpty();
+        }
+
         boolean isValid = true;
+        RowChecker checker = new RowChecker(rejectInvalidAccounts, rowChecks == null ? null : rowChecks.get());
+        List<String> errors = new ArrayList<>();
+        long rowNumber = 0;
 
         for (Map<String, String> row : data) {
-            List<String> missingColumns = new ArrayList<>();
-            List<String> invalidColumns = new ArrayList<>();
+            if (!checker.validate(row, ++rowNumber, errors, warnings)) {
+                isValid = false;
+            }
+        }
+
+        warnings.log(LOGGER);
+        return isValid;
+    }
+
+    /**
+     * Validates CSV data by streaming it from a {@link RowSource}, one row at a time.
+     *
+     * @param source The source to read rows from.
+     * @return true if the data is valid, false otherwise.
+     * @throws IOException If the source cannot be read.
+     */
+    public static boolean validateCsvData(RowSource source) throws IOException {
+        return validateCsvData(source, false);
+    }
+
+    /**
+     * Validates CSV data by streaming it from a {@link RowSource}, including the IBAN and
+     * BIC columns.
+     *
+     * @param source                The source to read rows from.
+     * @param rejectInvalidAccounts true if an invalid IBAN or BIC makes the row invalid,
+     *                              false if it is only logged as a warning.
+     * @return true if the data is valid, false otherwise.
+     * @throws IOException If the source cannot be read.
+     */
+    public static boolean validateCsvData(RowSource source, boolean rejectInvalidAccounts) throws IOException {
+        return validateCsvData(source, rejectInvalidAccounts, null);
+    }
 
-            for (Map.Entry<String, Class<?>> entry : REQUIRED_COLUMNS.entrySet()) {
-                String column = entry.getKey();
-                Class<?> expectedType = entry.getValue();
-                String value = row.get(column);
+    /**
+     * Validates CSV data streamed from a {@link RowSource}, running a further check on
+     * every row that has valid columns in the same pass, e.g. the
+     * {@link com.pain001.xml.FacetRules} of the message type.
+     *
+     * @param source                The source to read rows from.
+     * @param rejectInvalidAccounts true if an invalid IBAN or BIC makes the row invalid,
+     *                              false if it is only logged as a warning.
+     * @param rowCheck              The further check; may be null.
+     * @return true if the data is valid, false otherwise.
+     * @throws IOException If the source cannot be read.
+     */
+    public static boolean validateCsvData(RowSource source, boolean rejectInvalidAccounts,
+                                          ParallelValidation.RowCheck<? super Map<String, String>> rowCheck)
+            throws IOException {
+        boolean isValid = true;
+        RowChecker checker = new RowChecker(rejectInvalidAccounts, rowCheck);
+        List<String> errors = new ArrayList<>();
+        ParallelValidation.Warnings warnings = new ParallelValidation.Warnings();
+        long rowNumber = 0;
 
-                if (value == null || value.trim().isEmpty()) {
-                    missingColumns.add(column);
+        try (RowCursor cursor = source.open()) {
+            while (cursor.hasNext()) {
+                if (!checker.validate(cursor.next(), ++rowNumber, errors, warnings)) {
                     isValid = false;
-                } else {
-                    try {
-                        validateDataType(value, expectedType);
-                    } catch (Exception e) {
-                        invalidColumns.add(column);
-                        isValid = false;
-                    }
                 }
             }
-
-            if (!missingColumns.isEmpty()) {
-                LOGGER.severe("Error: Missing values for columns " + missingColumns + " in row: " + row);
-            }
-            if (!invalidColumns.isEmpty()) {
-                LOGGER.severe("Error: Invalid data types for columns " + invalidColumns + " in row: " + row);
-            }
         }
+        warnings.log(LOGGER);
 
+        if (rowNumber == 0) {
+            LOGGER.severe("Error: The CSV data is empty.");
+            return false;
+        }
         return isValid;
     }
 
     /**
-     * Validates if the value matches the expected data type.
-     *
-     * @param value        The value to validate.
-     * @param expectedType The expected Java data type.
-     * @throws Exception If the value does not match the expected type.
+     * Validates rows against the required columns and their data types.
+     * <p>
+     * Column ordinals are resolved once per {@link RowSchema}, values are checked with the
+     * non-throwing {@link ValueParsers}, and the failure buffers are reused, so a valid row
+     * allocates nothing. Error messages are only built for rows that fail. A checker keeps
+     * per-row state and must not be shared between threads.
      */
-    private static void validateDataType(String value, Class<?> expectedType) throws Exception {
+    private static final class RowChecker implements ParallelValidation.RowCheck<Map<String, String>> {
+        private final int[] missing = new int[COLUMN_NAMES.length];
+        private final int[] invalid = new int[COLUMN_NAMES.length];
+        private final BankIdentifiers.RowChecker accounts;
+        private final ParallelValidation.RowCheck<? super Map<String, String>> next;
+        private RowSchema boundSchema;
+        private int[] ordinals;
+
+        /**
+         * @param rejectInvalidAccounts true if an invalid IBAN or BIC makes the row invalid.
+         * @param next                  Check for rows without errors so far; may be null.
+         */
+        RowChecker(boolean rejectInvalidAccounts, ParallelValidation.RowCheck<? super Map<String, String>> next) {
+            this.accounts = new BankIdentifiers.RowChecker(rejectInvalidAccounts);
+            this.next = next;
+        }
+
+        /**
+         * Checks a row and logs its errors straight away.
+         *
+         * @param row       Map of column names to values.
+         * @param rowNumber One-based data row number, used in error messages.
+         * @param errors    Scratch list for the row's error messages; cleared before returning.
+         * @param warnings  The warnings of the pass so far.
+         * @return true if the row is valid, false otherwise.
+         */
+        boolean validate(Map<String, String> row, long rowNumber, List<String> errors,
+                         ParallelValidation.Warnings warnings) {
+            check(row, rowNumber, errors, warnings);
+            if (errors.isEmpty()) {
+                return true;
+            }
+            for (String error : errors) {
+                LOGGER.severe(error);
+            }
+            errors.clear();
+            return false;
+        }
+
+        @Override
+        public void check(Map<String, String> row, long rowNumber, List<String> errors) {
+            check(row, rowNumber, errors, new ParallelValidation.Warnings());
+        }
+
+        @Override
+        public void check(Map<String, String> row, long rowNumber, List<String> errors,
+                          ParallelValidation.Warnings warnings) {
+            int before = errors.size();
+            checkColumns(row, rowNumber, errors);
+            accounts.check(row, rowNumber, errors, warnings);
+            if (next != null && errors.size() == before) {
+                next.check(row, rowNumber, errors, warnings);
+            }
+        }
+
+        private void checkColumns(Map<String, String> row, long rowNumber, List<String> errors) {
+            PaymentRow paymentRow = null;
+            if (row instanceof PaymentRow) {
+                paymentRow = (PaymentRow) row;
+                if (paymentRow.schema() != boundSchema) {
+                    boundSchema = paymentRow.schema();
+                    ordinals = boundSchema.ordinals(Arrays.asList(COLUMN_NAMES));
+                }
+            }
+
+            int missingCount = 0;
+            int invalidCount = 0;
+            for (int i = 0; i < COLUMN_NAMES.length; i++) {
+                String value = paymentRow != null ? paymentRow.get(ordinals[i]) : row.get(COLUMN_NAMES[i]);
+                if (value == null || isBlank(value)) {
+                    missing[missingCount++] = i;
+                } else if (!accepts(COLUMN_TYPES[i], value)) {
+                    invalid[invalidCount++] = i;
+                }
+            }
+
+            if (missingCount > 0) {
+                errors.add("Error: Missing values for columns " + columnList(missing, missingCount)
+                        + " in row " + rowNumber + ": " + row);
+            }
+            if (invalidCount > 0) {
+                errors.add("Error: Invalid data types for columns " + columnList(invalid, invalidCount)
+                        + " in row " + rowNumber + ": " + row);
+            }
+        }
+    }
+
+    private static boolean accepts(ValueType type, String value) {
+        switch (type) {
+            case INTEGER:
+                return ValueParsers.isInteger(value);
+            case DECIMAL:
+                return ValueParsers.isDecimal(value);
+            case BOOLEAN:
+                return ValueParsers.isBoolean(value);
+            case DATE:
+                return ValueParsers.isDate(value);
+            default:
+                // Strings are always valid, so no need to check.
+                return true;
+        }
+    }
+
+    private static ValueType valueTypeOf(Class<?> expectedType) {
         if (expectedType == Integer.class) {
-            Integer.parseInt(value);
+            return ValueType.INTEGER;
         } else if (expectedType == Double.class) {
-            Double.parseDouble(value);
+            return ValueType.DECIMAL;
         } else if (expectedType == Boolean.class) {
-            if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
-                throw new IllegalArgumentException("Invalid boolean value: " + value);
-            }
+            return ValueType.BOOLEAN;
         } else if (expectedType == LocalDate.class) {
-            parseDate(value);
+            return ValueType.DATE;
         } else if (expectedType == String.class) {
-            // Strings are always valid, so no need to check.
-        } else {
-            throw new IllegalArgumentException("Unsupported data type: " + expectedType.getName());
+            return ValueType.TEXT;
         }
+        throw new IllegalArgumentException("Unsupported data type: " + expectedType.getName());
     }
 
-    /**
-     * Parses a date string and ensures it matches the expected format.
-     *
-     * @param dateStr The date string.
-     * @throws Exception If the format is incorrect.
-     */
-    private static void parseDate(String dateStr) throws Exception {
-        if (dateStr.endsWith("Z")) {
-            dateStr = dateStr.replace("Z", "+00:00");
+    private static boolean isBlank(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return false;
+            }
         }
-        try {
-            DateTimeFormatter.ISO_LOCAL_DATE.parse(dateStr);
-        } catch (Exception e) {
-            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss").parse(dateStr);
+        return true;
+    }
+
+    private static List<String> columnList(int[] columns, int count) {
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(COLUMN_NAMES[columns[i]]);
         }
+        return names;
     }
 
     public static void main(String[] args) {
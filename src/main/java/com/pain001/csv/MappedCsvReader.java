@@ -0,0 +1,494 @@
+package com.pain001.csv;
+
+import com.pain001.data.PaymentRow;
+import com.pain001.data.RowCursor;
+import com.pain001.data.RowSchema;
+import com.pain001.data.RowSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a UTF-8 CSV file through memory-mapped chunks that are parsed on the common
+ * fork/join pool.
+ * <p>
+ * The file is cut into chunks of about {@link #chunkSize(int)} bytes that end on a
+ * record boundary. Quoted fields may contain line breaks: a first parallel pass counts
+ * the quotes of every chunk so each chunk knows whether it starts inside a quoted
+ * field, and moves its start to the first line break outside one. Chunks are then
+ * parsed in parallel and handed out in file order, with at most a few chunks ahead of
+ * the consumer held in memory.
+ * <p>
+ * Fields are decoded straight from the mapped bytes, and only those of the selected
+ * {@link #columns(Collection)} are turned into strings. The format matches
+ * {@link CsvLoader#loadCsvData(String)}: comma separated, double quotes with "" as
+ * escape, a header record, empty lines skipped and missing trailing fields read as "".
+ */
+public class MappedCsvReader implements RowSource {
+    private static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+    // Every chunk is a mapping of its own, so tiny chunks would exhaust the mapping limit
+    private static final int MIN_CHUNK_SIZE = 4096;
+    // A header record longer than this is not a CSV header
+    private static final int MAX_HEADER_SIZE = 1024 * 1024;
+
+    private final String filePath;
+    private List<String> columns;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * @param filePath Path of the CSV file.
+     */
+    public MappedCsvReader(String filePath) {
+        this.filePath = filePath;
+    }
+
+    /**
+     * Restricts the rows to some columns; the other fields are skipped without being
+     * decoded. Columns missing from the file are left out of the rows.
+     *
+     * @param columns The columns to read, or null for all columns of the header.
+     * @return This reader.
+     */
+    public MappedCsvReader columns(Collection<String> columns) {
+        this.columns = columns == null ? null : new ArrayList<>(columns);
+        return this;
+    }
+
+    /**
+     * @param chunkSize Approximate number of bytes parsed by one task, at least 4096.
+     * @return This reader.
+     */
+    public MappedCsvReader chunkSize(int chunkSize) {
+        if (chunkSize < MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be at least " + MIN_CHUNK_SIZE + " bytes.");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Loads all rows into memory.
+     *
+     * @return The rows in file order.
+     * @throws IOException If the file cannot be read or is not valid CSV.
+     */
+    public List<Map<String, String>> readAll() throws IOException {
+        List<Map<String, String>> rows = new ArrayList<>();
+        try (RowCursor cursor = open()) {
+            while (cursor.hasNext()) {
+                rows.add(cursor.next());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows;
+    }
+
+    @Override
+    public RowCursor open() throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        try {
+            return new MappedRowCursor(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String describe() {
+        return filePath;
+    }
+
+    /**
+     * Reads the header record at the start of the file.
+     *
+     * @return The offset of the first data record.
+     */
+    private static long readHeader(FileChannel channel, List<String> header) throws IOException {
+        long size = channel.size();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_HEADER_SIZE));
+        int start = 0;
+        // A UTF-8 byte order mark is not part of the first column name
+        if (buffer.limit() >= 3 && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB
+                && (buffer.get(2) & 0xFF) == 0xBF) {
+            start = 3;
+        }
+        RecordParser parser = new RecordParser(buffer, 0, start, buffer.limit());
+        while (parser.skipEmptyLines() && header.isEmpty()) {
+            parser.readRecord(header);
+        }
+        if (header.isEmpty()) {
+            throw new IOException("The CSV file has no header record.");
+        }
+        if (!parser.atRecordStart() && size > MAX_HEADER_SIZE) {
+            throw new IOException("The CSV header is longer than " + MAX_HEADER_SIZE + " bytes.");
+        }
+        return parser.position();
+    }
+
+    /**
+     * Finds the record boundaries the chunks start at, scanning all chunks in parallel.
+     *
+     * @return The start offsets of the chunks, ending with the file size.
+     */
+    private static long[] chunkBoundaries(FileChannel channel, long dataStart, int chunkSize) throws IOException {
+        long size = channel.size();
+        if (size - dataStart <= chunkSize) {
+            return new long[]{dataStart, size};
+        }
+        List<Callable<QuoteScan>> scans = new ArrayList<>();
+        for (long start = dataStart; start < size; start += chunkSize) {
+            final long from = start;
+            final long to = Math.min(size, start + chunkSize);
+            scans.add(() -> QuoteScan.scan(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from), from));
+        }
+        List<QuoteScan> results = new ArrayList<>(scans.size());
+        for (Future<QuoteScan> future : ForkJoinPool.commonPool().invokeAll(scans)) {
+            results.add(await(future));
+        }
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(dataStart);
+        boolean insideQuotes = false;
+        for (int i = 0; i < results.size(); i++) {
+            QuoteScan scan = results.get(i);
+            if (i > 0) {
+                long boundary = insideQuotes ? scan.firstBreakInsideQuotes : scan.firstBreakOutsideQuotes;
+                // A chunk without a record boundary is parsed as part of the previous one
+                if (boundary >= 0) {
+                    boundaries.add(boundary);
+                }
+            }
+            insideQuotes ^= (scan.quotes & 1) == 1;
+        }
+        boundaries.add(size);
+
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+            if (i > 0 && result[i] - result[i - 1] > Integer.MAX_VALUE) {
+                throw new IOException("A CSV record at offset " + result[i - 1] + " is longer than 2 GB.");
+            }
+        }
+        return result;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading CSV", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // The pool wraps the checked exceptions of a Callable in plain RuntimeExceptions
+            while (cause != null && cause.getClass() == RuntimeException.class && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to read CSV", cause);
+        }
+    }
+
+    /**
+     * Quote count of one chunk and its first line break for either quoting state at
+     * the chunk start.
+     */
+    private static final class QuoteScan {
+        private long quotes;
+        private long firstBreakOutsideQuotes = -1;
+        private long firstBreakInsideQuotes = -1;
+
+        static QuoteScan scan(ByteBuffer buffer, long offset) {
+            QuoteScan scan = new QuoteScan();
+            long quotes = 0;
+            for (int i = 0, limit = buffer.limit(); i < limit; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    quotes++;
+                } else if (b == '\n') {
+                    // An even count so far means the break is outside quotes if the chunk starts outside
+                    if ((quotes & 1) == 0) {
+                        if (scan.firstBreakOutsideQuotes < 0) {
+                            scan.firstBreakOutsideQuotes = offset + i + 1;
+                        }
+                    } else if (scan.firstBreakInsideQuotes < 0) {
+                        scan.firstBreakInsideQuotes = offset + i + 1;
+                    }
+                }
+            }
+            scan.quotes = quotes;
+            return scan;
+        }
+    }
+
+    private final class MappedRowCursor implements RowCursor {
+        private final FileChannel channel;
+        private final RowSchema schema;
+        // Position of every file column in the row, -1 for columns that are skipped
+        private final int[] targets;
+        private final long[] boundaries;
+        private final Deque<Future<List<PaymentRow>>> pending = new ArrayDeque<>();
+        private final int lookahead = ForkJoinPool.commonPool().getParallelism() + 1;
+        private int nextChunk;
+        private Iterator<PaymentRow> current = Collections.emptyIterator();
+
+        MappedRowCursor(FileChannel channel) throws IOException {
+            this.channel = channel;
+            List<String> header = new ArrayList<>();
+            long dataStart = readHeader(channel, header);
+            List<String> selected = columns != null ? columns : header;
+            List<String> rowColumns = new ArrayList<>();
+            this.targets = new int[header.size()];
+            Arrays.fill(targets, -1);
+            for (String column : selected) {
+                // Last occurrence wins for duplicated header names, as with the other loaders
+                int index = header.lastIndexOf(column);
+                if (index >= 0 && targets[index] < 0) {
+                    targets[index] = rowColumns.size();
+                    rowColumns.add(column);
+                }
+            }
+            this.schema = new RowSchema(rowColumns);
+            this.boundaries = chunkBoundaries(channel, dataStart, chunkSize);
+            fill();
+        }
+
+        private void fill() {
+            while (pending.size() < lookahead && nextChunk < boundaries.length - 1) {
+                final long from = boundaries[nextChunk];
+                final long to = boundaries[nextChunk + 1];
+                nextChunk++;
+                pending.add(ForkJoinPool.commonPool().submit(() -> parseChunk(from, to)));
+            }
+        }
+
+        private List<PaymentRow> parseChunk(long from, long to) throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+            RecordParser parser = new RecordParser(buffer, from, 0, buffer.limit());
+            List<PaymentRow> rows = new ArrayList<>();
+            while (parser.skipEmptyLines()) {
+                rows.add(new PaymentRow(schema, parser.readRow(targets, schema.size())));
+            }
+            return rows;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (pending.isEmpty()) {
+                    return false;
+                }
+                try {
+                    current = await(pending.poll()).iterator();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Unable to read '" + filePath + "': " + e.getMessage(), e);
+                }
+                fill();
+            }
+            return true;
+        }
+
+        @Override
+        public Map<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Future<List<PaymentRow>> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+            // Mapped regions stay valid after the channel is closed and are released by the GC
+            channel.close();
+        }
+    }
+
+    /**
+     * Parses records from a mapped region that starts at a record boundary.
+     */
+    private static final class RecordParser {
+        private final ByteBuffer buffer;
+        // File offset of the region, for error messages
+        private final long base;
+        private final int limit;
+        private int position;
+        private byte[] scratch = new byte[256];
+
+        RecordParser(ByteBuffer buffer, long base, int position, int limit) {
+            this.buffer = buffer;
+            this.base = base;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        int position() {
+            return position;
+        }
+
+        boolean atRecordStart() {
+            return position == limit || position > 0 && buffer.get(position - 1) == '\n';
+        }
+
+        /**
+         * @return true if a record follows the skipped empty lines.
+         */
+        boolean skipEmptyLines() {
+            while (position < limit) {
+                byte b = buffer.get(position);
+                if (b != '\n' && b != '\r') {
+                    return true;
+                }
+                position++;
+            }
+            return false;
+        }
+
+        /**
+         * Reads one record with every field decoded.
+         */
+        void readRecord(List<String> fields) throws IOException {
+            boolean more = true;
+            while (more) {
+                int end = fieldEnd(true);
+                fields.add(new String(scratch, 0, end, StandardCharsets.UTF_8));
+                more = endField();
+            }
+        }
+
+        /**
+         * Reads one record, decoding only the fields that have a target position.
+         */
+        String[] readRow(int[] targets, int width) throws IOException {
+            String[] values = new String[width];
+            int field = 0;
+            boolean more = true;
+            while (more) {
+                int target = field < targets.length ? targets[field] : -1;
+                int length = fieldEnd(target >= 0);
+                if (target >= 0) {
+                    values[target] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                }
+                more = endField();
+                field++;
+            }
+            for (int i = 0; i < width; i++) {
+                if (values[i] == null) {
+                    values[i] = "";
+                }
+            }
+            return values;
+        }
+
+        /**
+         * Moves past the current field, copying its unescaped bytes to the scratch
+         * buffer if it is decoded.
+         *
+         * @return The number of bytes copied.
+         */
+        private int fieldEnd(boolean decode) throws IOException {
+            if (position < limit && buffer.get(position) == '"') {
+                int start = position;
+                int length = 0;
+                boolean closed = false;
+                position++;
+                while (position < limit) {
+                    byte b = buffer.get(position++);
+                    if (b == '"') {
+                        if (position < limit && buffer.get(position) == '"') {
+                            position++;
+                        } else {
+                            closed = true;
+                            break;
+                        }
+                    }
+                    if (decode) {
+                        ensureScratch(length + 1);
+                        scratch[length] = b;
+                    }
+                    length++;
+                }
+                if (!closed) {
+                    throw new IOException("EOF reached before the quoted field at offset " + (base + start) + " ended.");
+                }
+                if (position < limit && buffer.get(position) == '\r' && position + 1 < limit && buffer.get(position + 1) == '\n') {
+                    position++;
+                }
+                if (position < limit && !isFieldEnd(buffer.get(position)) && !(buffer.get(position) == '\r' && position + 1 == limit)) {
+                    throw new IOException("Invalid character after the quoted field at offset " + (base + start) + ".");
+                }
+                if (position < limit && buffer.get(position) == '\r') {
+                    position++;
+                }
+                return decode ? length : 0;
+            }
+            int start = position;
+            while (position < limit && !isFieldEnd(buffer.get(position))) {
+                position++;
+            }
+            int length = position - start;
+            if (length > 0 && buffer.get(position - 1) == '\r' && (position == limit || buffer.get(position) == '\n')) {
+                length--;
+            }
+            if (decode) {
+                ensureScratch(length);
+                ByteBuffer view = buffer.duplicate();
+                view.position(start);
+                view.get(scratch, 0, length);
+                return length;
+            }
+            return 0;
+        }
+
+        private static boolean isFieldEnd(byte b) {
+            return b == ',' || b == '\n';
+        }
+
+        /**
+         * Consumes the delimiter after a field.
+         *
+         * @return true if another field of the same record follows.
+         */
+        private boolean endField() {
+            if (position >= limit) {
+                return false;
+            }
+            return buffer.get(position++) == ',';
+        }
+
+        private void ensureScratch(int length) {
+            if (length > scratch.length) {
+                scratch = Arrays.copyOf(scratch, Math.max(length, scratch.length * 2));
+            }
+        }
+    }
+}
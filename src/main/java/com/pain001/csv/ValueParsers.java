@@ -0,0 +1,201 @@
+package com.pain001.csv;
+
+/**
+ * Non-throwing checks for the value types used by {@link CsvValidator}.
+ * <p>
+ * Each check scans the characters once and allocates nothing, so a column full of bad
+ * values costs no more than a column of good ones. The accepted syntax matches what the
+ * corresponding {@code parse} methods accept for the inputs found in payment files.
+ */
+final class ValueParsers {
+
+    private ValueParsers() {
+    }
+
+    /**
+     * @return true if {@link Integer#parseInt(String)} would accept the value.
+     */
+    static boolean isInteger(String value) {
+        int length = value.length();
+        if (length == 0) {
+            return false;
+        }
+        int i = 0;
+        boolean negative = false;
+        char first = value.charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (length == 1) {
+                return false;
+            }
+        }
+        long result = 0;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            // parseInt also reads digits of other scripts, such as fullwidth digits
+            int digit = c >= '0' && c <= '9' ? c - '0' : c < 128 ? -1 : Character.digit(c, 10);
+            if (digit < 0) {
+                return false;
+            }
+            result = result * 10 + digit;
+            if (result > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if {@link Double#parseDouble(String)} would accept the value.
+     */
+    static boolean isDecimal(String value) {
+        int end = value.length();
+        int i = 0;
+        // parseDouble trims leading and trailing whitespace
+        while (i < end && value.charAt(i) <= ' ') {
+            i++;
+        }
+        while (end > i && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (i == end) {
+            return false;
+        }
+        char c = value.charAt(i);
+        if (c == '+' || c == '-') {
+            i++;
+        }
+        if (value.startsWith("NaN", i)) {
+            return i + 3 == end;
+        }
+        if (value.startsWith("Infinity", i)) {
+            return i + 8 == end;
+        }
+        if (i + 1 < end && value.charAt(i) == '0' && (value.charAt(i + 1) == 'x' || value.charAt(i + 1) == 'X')) {
+            // Hexadecimal floating point literals are rare enough to defer to the JDK
+            try {
+                Double.parseDouble(value);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        int digits = 0;
+        while (i < end && isDigit(value.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < end && value.charAt(i) == '.') {
+            i++;
+            while (i < end && isDigit(value.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < end && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (value.charAt(i) == '+' || value.charAt(i) == '-')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < end && isDigit(value.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+        if (i < end) {
+            c = value.charAt(i);
+            if (c == 'd' || c == 'D' || c == 'f' || c == 'F') {
+                i++;
+            }
+        }
+        return i == end;
+    }
+
+    /**
+     * @return true if the value is "true" or "false", ignoring case.
+     */
+    static boolean isBoolean(String value) {
+        return value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false");
+    }
+
+    /**
+     * Accepts an ISO local date ({@code yyyy-MM-dd}) or a local date-time without
+     * fraction or offset ({@code yyyy-MM-dd'T'HH:mm:ss}). As before, values carrying a
+     * zone designator are rejected.
+     *
+     * @return true if the value is a valid date or date-time.
+     */
+    static boolean isDate(String value) {
+        int length = value.length();
+        if (length != 10 && length != 19) {
+            return false;
+        }
+        if (value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return false;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1) {
+            return false;
+        }
+        if (length == 10) {
+            // ISO_LOCAL_DATE resolves strictly: the day must exist in that month
+            return day <= monthLength(year, month);
+        }
+        if (value.charAt(10) != 'T' || value.charAt(13) != ':' || value.charAt(16) != ':') {
+            return false;
+        }
+        int hour = digits(value, 11, 2);
+        int minute = digits(value, 14, 2);
+        int second = digits(value, 17, 2);
+        // The pattern's year-of-era has no year zero
+        if (year == 0 || hour < 0 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return false;
+        }
+        // The date-time pattern resolves smartly: days up to 31 are clamped and 24:00:00 is midnight
+        return day <= 31 && (hour <= 23 || (hour == 24 && minute == 0 && second == 0));
+    }
+
+    private static int monthLength(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * @return The non-negative number in value[offset, offset + count), or -1 if it is not all digits.
+     */
+    private static int digits(String value, int offset, int count) {
+        int result = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = value.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
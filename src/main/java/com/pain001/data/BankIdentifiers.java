@@ -0,0 +1,224 @@
+package com.pain001.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Structural checks for IBANs (ISO 13616) and BICs (ISO 9362).
+ * <p>
+ * An IBAN is checked for its country's length and for the mod-97 checksum, which is
+ * computed over the characters in a single pass: letters count as two digits
+ * (A = 10 to Z = 35), the digits are accumulated in a long that is reduced modulo 97
+ * only when it grows large, so no BigInteger or substring is built and nothing is
+ * allocated. A BIC is checked for its length and the
+ * character classes of its bank, country, location and branch codes, and for a known
+ * country. Neither check tells whether the account or bank exists.
+ */
+public final class BankIdentifiers {
+
+    private static final int MIN_IBAN_LENGTH = 15;
+    private static final int MAX_IBAN_LENGTH = 34;
+    // Appending two more digits to a smaller number cannot overflow a long
+    private static final long REDUCTION_THRESHOLD = 1_000_000_000_000_000L;
+
+    /**
+     * IBAN lengths by country, from the SWIFT IBAN registry. IBANs of other countries
+     * are only checked against the general length limits.
+     */
+    private static final String IBAN_LENGTHS =
+            "AD24 AE23 AL28 AT20 AZ28 BA20 BE16 BG22 BH22 BI27 BR29 BY28 CH21 CR22 CY28 CZ24 "
+            + "DE22 DJ27 DK18 DO28 EE20 EG29 ES24 FI18 FK18 FO18 FR27 GB22 GE22 GI23 GL18 GR27 "
+            + "GT28 HR21 HU28 IE22 IL23 IQ23 IS26 IT27 JO30 KW30 KZ20 LB28 LC32 LI21 LT20 LU20 "
+            + "LV21 LY25 MC27 MD24 ME22 MK19 MN20 MR27 MT31 MU30 NI28 NL18 NO15 OM23 PK24 PL28 "
+            + "PS29 PT25 QA29 RO24 RS22 RU33 SA24 SC31 SD18 SE24 SI19 SK24 SM27 SO23 ST25 SV28 "
+            + "TL23 TN24 TR26 UA29 VA22 VG24 XK20";
+
+    // Indexed by country code, see countryIndex
+    private static final byte[] IBAN_LENGTH_BY_COUNTRY = new byte[26 * 26];
+    private static final boolean[] KNOWN_COUNTRIES = new boolean[26 * 26];
+    // Value of each ASCII character in the checksum, -1 if not allowed in an IBAN
+    private static final byte[] CHARACTER_VALUES = new byte[128];
+    static {
+        Arrays.fill(CHARACTER_VALUES, (byte) -1);
+        for (char c = '0'; c <= '9'; c++) {
+            CHARACTER_VALUES[c] = (byte) (c - '0');
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            CHARACTER_VALUES[c] = (byte) (c - 'A' + 10);
+            CHARACTER_VALUES[Character.toLowerCase(c)] = (byte) (c - 'A' + 10);
+        }
+        for (String entry : IBAN_LENGTHS.split(" ")) {
+            IBAN_LENGTH_BY_COUNTRY[countryIndex(entry, 0)] = Byte.parseByte(entry.substring(2));
+        }
+        for (String country : Locale.getISOCountries()) {
+            KNOWN_COUNTRIES[countryIndex(country, 0)] = true;
+        }
+        // Kosovo has no ISO 3166 code yet, but banks there use XK
+        KNOWN_COUNTRIES[countryIndex("XK", 0)] = true;
+    }
+
+    /**
+     * Input columns holding IBANs.
+     */
+    public static final String[] IBAN_COLUMNS = {
+            "debtor_account_IBAN",
+            "creditor_account_IBAN",
+            "debtor_agent_account_IBAN",
+            "charge_account_IBAN"
+    };
+
+    /**
+     * Input columns holding BICs.
+     */
+    public static final String[] BIC_COLUMNS = {
+            "debtor_agent_BIC",
+            "creditor_agent_BIC",
+            "creditor_agent_BICFI",
+            "forwarding_agent_BIC",
+            "charge_agent_BICFI"
+    };
+
+    private BankIdentifiers() {
+    }
+
+    /**
+     * @param iban The IBAN in electronic format, without spaces.
+     * @return true if the country, length, character classes and check digits are valid.
+     */
+    public static boolean isValidIban(CharSequence iban) {
+        int length = iban.length();
+        if (length < MIN_IBAN_LENGTH || length > MAX_IBAN_LENGTH
+                || !isUpperLetter(iban.charAt(0)) || !isUpperLetter(iban.charAt(1))
+                || !isDigit(iban.charAt(2)) || !isDigit(iban.charAt(3))) {
+            return false;
+        }
+        int expectedLength = IBAN_LENGTH_BY_COUNTRY[countryIndex(iban, 0)];
+        if (expectedLength != 0 && length != expectedLength) {
+            return false;
+        }
+        // 00, 01 and 99 are never computed as check digits
+        int checkDigits = (iban.charAt(2) - '0') * 10 + (iban.charAt(3) - '0');
+        if (checkDigits < 2 || checkDigits > 98) {
+            return false;
+        }
+        // The account number is read as one long number, reduced only before it could overflow
+        long remainder = 0;
+        for (int i = 4; i < length; i++) {
+            char c = iban.charAt(i);
+            int value = c < CHARACTER_VALUES.length ? CHARACTER_VALUES[c] : -1;
+            if (value < 0) {
+                return false;
+            }
+            remainder = value < 10 ? remainder * 10 + value : remainder * 100 + value;
+            if (remainder >= REDUCTION_THRESHOLD) {
+                remainder %= 97;
+            }
+        }
+        // followed by the country code and check digits
+        remainder = (remainder % 97) * 1000000
+                + (CHARACTER_VALUES[iban.charAt(0)] * 100 + CHARACTER_VALUES[iban.charAt(1)]) * 100 + checkDigits;
+        return remainder % 97 == 1;
+    }
+
+    /**
+     * @param bic The BIC, 8 or 11 characters.
+     * @return true if the bank code is four letters or digits, the country code a known
+     * country, and the location and branch codes letters or digits.
+     */
+    public static boolean isValidBic(CharSequence bic) {
+        int length = bic.length();
+        if (length != 8 && length != 11) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = bic.charAt(i);
+            boolean valid = i == 4 || i == 5 ? isUpperLetter(c) : isUpperLetter(c) || isDigit(c);
+            if (!valid) {
+                return false;
+            }
+        }
+        return KNOWN_COUNTRIES[countryIndex(bic, 4)];
+    }
+
+    /**
+     * Checks the IBAN and BIC columns of rows. Empty values are left to the
+     * required-column checks. Column ordinals are resolved once per {@link RowSchema}, so
+     * a checker must not be shared between threads.
+     */
+    public static final class RowChecker {
+        private static final List<String> COLUMNS = new ArrayList<>();
+        static {
+            COLUMNS.addAll(Arrays.asList(IBAN_COLUMNS));
+            COLUMNS.addAll(Arrays.asList(BIC_COLUMNS));
+        }
+
+        private final boolean reject;
+        private RowSchema boundSchema;
+        private int[] ordinals;
+
+        /**
+         * @param reject true to report invalid identifiers as errors, false to report
+         *               them as warnings and accept the row.
+         */
+        public RowChecker(boolean reject) {
+            this.reject = reject;
+        }
+
+        /**
+         * @param row       Map of column names to values.
+         * @param rowNumber One-based row number, used in messages.
+         * @param errors    List that error messages are added to when rejecting.
+         * @param warnings  Receives the warnings when not rejecting.
+         */
+        public void check(Map<String, ?> row, long rowNumber, List<String> errors,
+                          ParallelValidation.Warnings warnings) {
+            PaymentRow paymentRow = null;
+            if (row instanceof PaymentRow) {
+                paymentRow = (PaymentRow) row;
+                if (paymentRow.schema() != boundSchema) {
+                    boundSchema = paymentRow.schema();
+                    ordinals = boundSchema.ordinals(COLUMNS);
+                }
+            }
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                Object value = paymentRow != null ? paymentRow.get(ordinals[i]) : row.get(COLUMNS.get(i));
+                if (value == null || isEmpty(value)) {
+                    continue;
+                }
+                boolean iban = i < IBAN_COLUMNS.length;
+                if (iban ? !isValidIban(value.toString()) : !isValidBic(value.toString())) {
+                    report(iban ? "IBAN" : "BIC", COLUMNS.get(i), value, rowNumber, errors, warnings);
+                }
+            }
+        }
+
+        private void report(String kind, String column, Object value, long rowNumber, List<String> errors,
+                            ParallelValidation.Warnings warnings) {
+            String message = "Invalid " + kind + " '" + value + "' for column '" + column + "' in row " + rowNumber;
+            if (reject) {
+                errors.add("Error: " + message + ".");
+            } else {
+                warnings.add(message + ".");
+            }
+        }
+
+        private static boolean isEmpty(Object value) {
+            return value instanceof CharSequence && ((CharSequence) value).length() == 0;
+        }
+    }
+
+    private static boolean isUpperLetter(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int countryIndex(CharSequence value, int offset) {
+        return (value.charAt(offset) - 'A') * 26 + (value.charAt(offset + 1) - 'A');
+    }
+}
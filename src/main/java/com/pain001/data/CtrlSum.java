@@ -0,0 +1,182 @@
+package com.pain001.data;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exact control sum of payment amounts, kept as a long count of 0.00001 units.
+ * <p>
+ * Amounts are parsed straight from their decimal digits, so the sum does not drift
+ * however many amounts are added. Totals up to about 92 trillion are exact, which covers
+ * tens of millions of transactions of a million each; an overflow fails instead of
+ * losing precision.
+ * Five fraction digits are the most the pain schemas allow for an amount.
+ * <p>
+ * Subtotals are kept per currency. Instances are not thread-safe; parallel workers each
+ * fill their own sum and {@link #merge(CtrlSum)} the results, in any order.
+ */
+public final class CtrlSum {
+    /**
+     * Fraction digits of a unit.
+     */
+    public static final int SCALE = 5;
+
+    private static final int MIN_FORMAT_SCALE = 2;
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L};
+
+    private final boolean subtotal;
+    private long units;
+    private long count;
+    private Map<String, CtrlSum> currencies;
+
+    public CtrlSum() {
+        this(false);
+    }
+
+    private CtrlSum(boolean subtotal) {
+        this.subtotal = subtotal;
+    }
+
+    /**
+     * Parses a decimal amount such as "1234.5" without going through a double. Leading
+     * and trailing whitespace and a sign are allowed, exponents are not.
+     *
+     * @param amount The amount as written in the input.
+     * @return The amount in units of 0.00001.
+     * @throws NumberFormatException If the amount is not a plain decimal number, has more
+     *                               than {@value #SCALE} significant fraction digits or is out of range.
+     */
+    public static long parseUnits(CharSequence amount) {
+        int start = 0;
+        int end = amount.length();
+        while (start < end && amount.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && amount.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        boolean negative = false;
+        if (start < end && (amount.charAt(start) == '-' || amount.charAt(start) == '+')) {
+            negative = amount.charAt(start) == '-';
+            start++;
+        }
+
+        long value = 0;
+        int fractionDigits = -1;
+        boolean hasDigits = false;
+        try {
+            for (int i = start; i < end; i++) {
+                char c = amount.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    hasDigits = true;
+                    if (fractionDigits == SCALE) {
+                        // Trailing zeros beyond the scale do not change the value
+                        if (c != '0') {
+                            throw new NumberFormatException("More than " + SCALE + " fraction digits: " + amount);
+                        }
+                        continue;
+                    }
+                    if (fractionDigits >= 0) {
+                        fractionDigits++;
+                    }
+                    value = Math.addExact(Math.multiplyExact(value, 10L), c - '0');
+                } else if (c == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                } else {
+                    throw new NumberFormatException("Not a decimal amount: " + amount);
+                }
+            }
+            if (!hasDigits) {
+                throw new NumberFormatException("Not a decimal amount: " + amount);
+            }
+            value = Math.multiplyExact(value, POWERS_OF_TEN[SCALE - Math.max(fractionDigits, 0)]);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + amount);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Adds a parsed amount.
+     *
+     * @param currency The currency of the amount, or null if it is not known.
+     * @param units    The amount in units of 0.00001, see {@link #parseUnits(CharSequence)}.
+     * @throws ArithmeticException If the sum overflows.
+     */
+    public void add(String currency, long units) {
+        addUnits(units, 1);
+        if (currency != null && !subtotal) {
+            currency(currency).addUnits(units, 1);
+        }
+    }
+
+    /**
+     * Adds another sum to this one, including its subtotals.
+     *
+     * @param other The sum to add; it is not changed.
+     * @return This sum.
+     * @throws ArithmeticException If the sum overflows.
+     */
+    public CtrlSum merge(CtrlSum other) {
+        addUnits(other.units, other.count);
+        if (other.currencies != null && !subtotal) {
+            for (Map.Entry<String, CtrlSum> entry : other.currencies.entrySet()) {
+                currency(entry.getKey()).addUnits(entry.getValue().units, entry.getValue().count);
+            }
+        }
+        return this;
+    }
+
+    private void addUnits(long units, long count) {
+        try {
+            this.units = Math.addExact(this.units, units);
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Control sum out of range after " + this.count + " amounts");
+        }
+        this.count += count;
+    }
+
+    private CtrlSum currency(String currency) {
+        if (currencies == null) {
+            currencies = new LinkedHashMap<>();
+        }
+        return currencies.computeIfAbsent(currency, key -> new CtrlSum(true));
+    }
+
+    /**
+     * @return The sum in units of 0.00001.
+     */
+    public long units() {
+        return units;
+    }
+
+    /**
+     * @return The number of amounts added.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return The subtotal of every currency, in order of first appearance.
+     */
+    public Map<String, CtrlSum> byCurrency() {
+        return currencies == null ? Collections.<String, CtrlSum>emptyMap() : Collections.unmodifiableMap(currencies);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(units, SCALE);
+    }
+
+    /**
+     * @return The exact sum with at least two fraction digits and no trailing zeros
+     * beyond them, e.g. "1500.75" or "0.125".
+     */
+    @Override
+    public String toString() {
+        BigDecimal value = toBigDecimal().stripTrailingZeros();
+        return value.setScale(Math.max(MIN_FORMAT_SCALE, value.scale())).toPlainString();
+    }
+}
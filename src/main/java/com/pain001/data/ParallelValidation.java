@@ -0,0 +1,271 @@
+package com.pain001.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Validates in-memory rows in chunks on the common fork/join pool.
+ * <p>
+ * Each chunk is checked by its own {@link RowCheck} instance and collects its error
+ * and warning messages locally; results are concatenated left to right, so the errors
+ * and warnings come back in row order exactly as a sequential pass would produce them.
+ */
+public final class ParallelValidation {
+
+    // Chunks smaller than this are not worth the fork overhead
+    private static final int MIN_CHUNK_SIZE = 1024;
+
+    private ParallelValidation() {
+    }
+
+    /**
+     * Checks a single row and adds any error messages to the given list.
+     * Implementations may keep reusable state; each chunk gets its own instance.
+     *
+     * @param <T> The row type.
+     */
+    public interface RowCheck<T> {
+        /**
+         * @param row       The row to check.
+         * @param rowNumber One-based row number.
+         * @param errors    List that error messages are added to.
+         */
+        void check(T row, long rowNumber, List<String> errors);
+
+        /**
+         * Checks a row that may also raise warnings, which do not make it invalid. By
+         * default the row is checked without warnings.
+         *
+         * @param row       The row to check.
+         * @param rowNumber One-based row number.
+         * @param errors    List that error messages are added to.
+         * @param warnings  The warnings of the pass so far.
+         */
+        default void check(T row, long rowNumber, List<String> errors, Warnings warnings) {
+            check(row, rowNumber, errors);
+        }
+    }
+
+    /**
+     * The warnings of a validation pass, in row order: the first few messages and the
+     * count of all of them. Not thread-safe; a parallel pass keeps one per chunk and
+     * merges them left to right.
+     */
+    public static final class Warnings {
+        // Further warnings are only counted
+        private static final int MAX_REPORTED_WARNINGS = 10;
+
+        private final List<String> messages = new ArrayList<String>();
+        private long count;
+
+        public void add(String message) {
+            if (messages.size() < MAX_REPORTED_WARNINGS) {
+                messages.add(message);
+            }
+            count++;
+        }
+
+        /**
+         * @return The first messages, in row order.
+         */
+        public List<String> getMessages() {
+            return Collections.unmodifiableList(messages);
+        }
+
+        /**
+         * @return The number of warnings, including those not kept.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Appends the warnings of later rows.
+         */
+        public void addAll(Warnings later) {
+            for (String message : later.messages) {
+                if (messages.size() == MAX_REPORTED_WARNINGS) {
+                    break;
+                }
+                messages.add(message);
+            }
+            count += later.count;
+        }
+
+        /**
+         * Logs the kept messages, and how many more there were.
+         */
+        public void log(Logger logger) {
+            for (String message : messages) {
+                logger.warning(message);
+            }
+            if (count > messages.size()) {
+                logger.warning((count - messages.size()) + " further warnings not shown.");
+            }
+        }
+    }
+
+    /**
+     * Combines row checks into one that runs each of them on every row.
+     *
+     * @param checks The checks, in order; null entries are skipped.
+     * @param <T>    The row type.
+     * @return The combined check.
+     */
+    public static <T> RowCheck<T> allOf(List<? extends RowCheck<? super T>> checks) {
+        List<RowCheck<? super T>> present = new ArrayList<RowCheck<? super T>>(checks.size());
+        for (RowCheck<? super T> check : checks) {
+            if (check != null) {
+                present.add(check);
+            }
+        }
+        return new RowCheck<T>() {
+            @Override
+            public void check(T row, long rowNumber, List<String> errors) {
+                for (RowCheck<? super T> check : present) {
+                    check.check(row, rowNumber, errors);
+                }
+            }
+
+            @Override
+            public void check(T row, long rowNumber, List<String> errors, Warnings warnings) {
+                for (RowCheck<? super T> check : present) {
+                    check.check(row, rowNumber, errors, warnings);
+                }
+            }
+        };
+    }
+
+    /**
+     * Validates all rows in parallel.
+     *
+     * @param rows           The rows to validate.
+     * @param checks         Creates one row check per chunk.
+     * @param firstErrorOnly If true, only the errors of the first failing row are returned
+     *                       and chunks after it stop early.
+     * @param <T>            The row type.
+     * @return The error messages in row order; empty if all rows are valid.
+     */
+    public static <T> List<String> validate(List<T> rows, Supplier<? extends RowCheck<T>> checks,
+                                            boolean firstErrorOnly) {
+        return validate(rows, checks, firstErrorOnly, new Warnings());
+    }
+
+    /**
+     * Validates all rows in parallel, collecting their warnings.
+     *
+     * @param rows           The rows to validate.
+     * @param checks         Creates one row check per chunk.
+     * @param firstErrorOnly If true, only the errors of the first failing row are returned
+     *                       and chunks after it stop early; so are the warnings up to it.
+     * @param warnings       Receives the warnings in row order.
+     * @param <T>            The row type.
+     * @return The error messages in row order; empty if all rows are valid.
+     */
+    public static <T> List<String> validate(List<T> rows, Supplier<? extends RowCheck<T>> checks,
+                                            boolean firstErrorOnly, Warnings warnings) {
+        if (rows.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, rows.size() / (pool.getParallelism() * 4));
+        AtomicLong firstFailure = firstErrorOnly ? new AtomicLong(Long.MAX_VALUE) : null;
+        ChunkResult result = pool.invoke(new ChunkTask<T>(rows, 0, rows.size(), chunkSize, checks, firstFailure));
+        warnings.addAll(result.warnings);
+        return result.errors;
+    }
+
+    /**
+     * The errors and warnings of a range of rows.
+     */
+    private static final class ChunkResult {
+        final List<String> errors;
+        final Warnings warnings;
+
+        ChunkResult(List<String> errors, Warnings warnings) {
+            this.errors = errors;
+            this.warnings = warnings;
+        }
+    }
+
+    private static final class ChunkTask<T> extends RecursiveTask<ChunkResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> rows;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final Supplier<? extends RowCheck<T>> checks;
+        private final AtomicLong firstFailure;
+
+        ChunkTask(List<T> rows, int from, int to, int chunkSize,
+                  Supplier<? extends RowCheck<T>> checks, AtomicLong firstFailure) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.checks = checks;
+            this.firstFailure = firstFailure;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            if (to - from <= chunkSize) {
+                return checkChunk();
+            }
+            int mid = (from + to) >>> 1;
+            ChunkTask<T> right = new ChunkTask<T>(rows, mid, to, chunkSize, checks, firstFailure);
+            right.fork();
+            ChunkResult left = new ChunkTask<T>(rows, from, mid, chunkSize, checks, firstFailure).compute();
+            ChunkResult rightResult = right.join();
+            if (firstFailure != null && !left.errors.isEmpty()) {
+                return left;
+            }
+            left.warnings.addAll(rightResult.warnings);
+            if (rightResult.errors.isEmpty()) {
+                return left;
+            }
+            if (left.errors.isEmpty()) {
+                return new ChunkResult(rightResult.errors, left.warnings);
+            }
+            List<String> merged = new ArrayList<String>(left.errors.size() + rightResult.errors.size());
+            merged.addAll(left.errors);
+            merged.addAll(rightResult.errors);
+            return new ChunkResult(merged, left.warnings);
+        }
+
+        private ChunkResult checkChunk() {
+            RowCheck<T> check = checks.get();
+            List<String> errors = new ArrayList<String>();
+            Warnings warnings = new Warnings();
+            for (int i = from; i < to; i++) {
+                if (firstFailure != null && i > firstFailure.get()) {
+                    // An earlier row has already failed
+                    break;
+                }
+                int before = errors.size();
+                check.check(rows.get(i), i + 1L, errors, warnings);
+                if (firstFailure != null && errors.size() > before) {
+                    recordFailure(i);
+                    break;
+                }
+            }
+            return new ChunkResult(errors, warnings);
+        }
+
+        private void recordFailure(long index) {
+            long current;
+            while (index < (current = firstFailure.get())) {
+                if (firstFailure.compareAndSet(current, index)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,528 @@
+package com.pain001.data;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * On-disk set of the payment ids that have been sent, used to stop the same id from
+ * going out twice within a batch or across runs.
+ * <p>
+ * The index is an open-addressing hash table of 64-bit fingerprints of the ids, with
+ * linear probing, in a memory-mapped file. A lookup touches one or two slots, and heap
+ * use does not depend on the number of ids: 100 million ids take 2^28 slots of 8 bytes,
+ * about 2.1 GB of file, paged in by the operating system as needed. Two different ids
+ * share a fingerprint with odds of about 1 in 2^64 per pair, so among 100 million ids
+ * there is roughly a 1 in 3,700 chance that one id is wrongly reported as a duplicate.
+ * <p>
+ * Ids of a run are added through a {@link Reservation}, which also finds duplicates
+ * within the run and records the added fingerprints in a journal next to the index. The
+ * reservation is committed once the output is published, or rolled back so the ids can
+ * be sent again. Journals left behind by a process that died before committing are rolled
+ * back the next time the index is opened.
+ * <p>
+ * One process uses an index at a time; instances are thread-safe and can be shared by
+ * the jobs of a batch.
+ */
+public final class PaymentIdIndex implements Closeable {
+    /**
+     * Default number of slots of a new index, room for about half a million ids before it grows.
+     */
+    public static final long DEFAULT_CAPACITY = 1L << 20;
+
+    private static final long MAGIC = 0x5041494e49445831L; // "PAINIDX1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4096;
+    private static final int CAPACITY_OFFSET = 16;
+    private static final int SIZE_OFFSET = 24;
+    private static final int USED_OFFSET = 32;
+    private static final long MIN_CAPACITY = 1024;
+    // Live and deleted slots may fill this share of the table before it doubles
+    private static final double MAX_LOAD = 0.5;
+    // Slots per mapping; a mapping cannot exceed 2 GB
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final long EMPTY = 0;
+    private static final long DELETED = 1;
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    private final Path path;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] segments;
+    private long capacity;
+    private long size;
+    private long used;
+    private boolean closed;
+
+    private PaymentIdIndex(Path path, FileChannel lockChannel, FileLock lock) {
+        this.path = path;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+    }
+
+    /**
+     * Opens an index, creating it if the file does not exist, and rolls back the
+     * reservations of a process that did not finish.
+     *
+     * @param filePath Path of the index file.
+     * @return The open index; close it to release the file.
+     * @throws IOException If the file is not an index, or is in use by another process.
+     */
+    public static PaymentIdIndex open(String filePath) throws IOException {
+        return open(filePath, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param filePath        Path of the index file.
+     * @param initialCapacity Number of slots if the index is created; rounded up to a power of two.
+     * @return The open index; close it to release the file.
+     * @throws IOException If the file is not an index, or is in use by another process.
+     */
+    public static PaymentIdIndex open(String filePath, long initialCapacity) throws IOException {
+        Path path = Paths.get(filePath).toAbsolutePath();
+        FileChannel lockChannel = FileChannel.open(Paths.get(path + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Already open in this JVM
+            lock = null;
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Payment id index " + path + " is already open.");
+        }
+        PaymentIdIndex index = new PaymentIdIndex(path, lockChannel, lock);
+        try {
+            if (!Files.exists(path)) {
+                create(path, tableCapacity(initialCapacity));
+            }
+            index.map();
+            index.recoverJournals();
+        } catch (IOException | RuntimeException e) {
+            index.close();
+            throw e;
+        }
+        return index;
+    }
+
+    /**
+     * @param id A payment id.
+     * @return true if the id is in the index, including ids reserved by a run that has not finished.
+     */
+    public synchronized boolean contains(CharSequence id) {
+        checkOpen();
+        return slotOf(fingerprint(id)) >= 0;
+    }
+
+    /**
+     * Adds an id outside of a reservation, e.g. to import the ids sent by another system.
+     *
+     * @param id A payment id.
+     * @return false if the id was already in the index.
+     * @throws IOException If the index has to grow and cannot.
+     */
+    public synchronized boolean add(CharSequence id) throws IOException {
+        checkOpen();
+        return insert(fingerprint(id));
+    }
+
+    /**
+     * @return The number of ids in the index.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Starts adding the ids of a run.
+     *
+     * @return A reservation; commit it once the run's output is published.
+     * @throws IOException If the journal cannot be created.
+     */
+    public Reservation reserve() throws IOException {
+        synchronized (this) {
+            checkOpen();
+        }
+        Path journal = Paths.get(path + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + JOURNAL_SUFFIX);
+        return new Reservation(journal);
+    }
+
+    /**
+     * Forces the index to disk.
+     */
+    public synchronized void force() {
+        checkOpen();
+        forceMappings();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (channel != null) {
+                forceMappings();
+                channel.close();
+            }
+        } finally {
+            segments = null;
+            header = null;
+            lock.release();
+            lockChannel.close();
+        }
+    }
+
+    /**
+     * Ids added by one run. Each new id is written to the journal before it goes into
+     * the index, so the run can be undone even if the process dies. Closing a reservation
+     * that was not committed rolls it back.
+     */
+    public final class Reservation implements Closeable {
+        private static final int JOURNAL_CHUNK = 64 * 1024;
+
+        private final Path journalPath;
+        private final FileChannel journalChannel;
+        private MappedByteBuffer journal;
+        private long count;
+        private boolean finished;
+
+        private Reservation(Path journalPath) throws IOException {
+            this.journalPath = journalPath;
+            this.journalChannel = FileChannel.open(journalPath, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            mapJournal(JOURNAL_CHUNK);
+        }
+
+        /**
+         * Adds an id to the index.
+         *
+         * @param id A payment id.
+         * @return false if the id is a duplicate: it is already in the index, either sent
+         * before or added earlier in this run.
+         * @throws IOException If the journal or the index cannot grow.
+         */
+        public boolean add(CharSequence id) throws IOException {
+            long fingerprint = fingerprint(id);
+            synchronized (PaymentIdIndex.this) {
+                checkOpen();
+                if (finished) {
+                    throw new IllegalStateException("Reservation already finished");
+                }
+                if (slotOf(fingerprint) >= 0) {
+                    return false;
+                }
+                // A process crash keeps both mappings, so the journal always covers the index
+                if ((count + 2) * 8 > journal.capacity()) {
+                    mapJournal(journal.capacity() * 2L);
+                }
+                journal.putLong((int) ((count + 1) * 8), fingerprint);
+                journal.putLong(0, ++count);
+                insert(fingerprint);
+                return true;
+            }
+        }
+
+        /**
+         * @return The number of ids added.
+         */
+        public long count() {
+            synchronized (PaymentIdIndex.this) {
+                return count;
+            }
+        }
+
+        /**
+         * Keeps the added ids and forces them to disk.
+         *
+         * @throws IOException If the journal cannot be deleted.
+         */
+        public void commit() throws IOException {
+            synchronized (PaymentIdIndex.this) {
+                if (finished) {
+                    return;
+                }
+                force();
+                finish();
+            }
+        }
+
+        /**
+         * Removes the added ids from the index.
+         *
+         * @throws IOException If the journal cannot be deleted.
+         */
+        public void rollback() throws IOException {
+            synchronized (PaymentIdIndex.this) {
+                if (finished) {
+                    return;
+                }
+                if (!closed) {
+                    for (long i = 1; i <= count; i++) {
+                        remove(journal.getLong((int) (i * 8)));
+                    }
+                }
+                finish();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            rollback();
+        }
+
+        private void finish() throws IOException {
+            finished = true;
+            journal = null;
+            journalChannel.close();
+            Files.deleteIfExists(journalPath);
+        }
+
+        private void mapJournal(long bytes) throws IOException {
+            if (bytes > Integer.MAX_VALUE) {
+                throw new IOException("Too many payment ids in one run: " + count);
+            }
+            journal = journalChannel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+    }
+
+    /**
+     * @param id A payment id.
+     * @return A well-mixed 64-bit hash of the id that is never one of the marker values.
+     */
+    static long fingerprint(CharSequence id) {
+        // FNV-1a over the characters, then the MurmurHash3 finalizer for the low bits used as slot
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY || hash == DELETED ? hash + 2 : hash;
+    }
+
+    private long slotOf(long fingerprint) {
+        long mask = capacity - 1;
+        for (long slot = fingerprint & mask; ; slot = (slot + 1) & mask) {
+            long value = get(slot);
+            if (value == fingerprint) {
+                return slot;
+            }
+            if (value == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private boolean insert(long fingerprint) throws IOException {
+        if (slotOf(fingerprint) >= 0) {
+            return false;
+        }
+        if (used + 1 > capacity * MAX_LOAD) {
+            // Rebuilding also drops the deleted slots, so the table may stay the same size
+            grow(size + 1 > capacity * MAX_LOAD / 2 ? capacity * 2 : capacity);
+        }
+        long mask = capacity - 1;
+        long slot = fingerprint & mask;
+        while (get(slot) != EMPTY && get(slot) != DELETED) {
+            slot = (slot + 1) & mask;
+        }
+        if (get(slot) == EMPTY) {
+            used++;
+        }
+        put(slot, fingerprint);
+        size++;
+        writeCounts();
+        return true;
+    }
+
+    private void remove(long fingerprint) {
+        long slot = slotOf(fingerprint);
+        if (slot >= 0) {
+            // Later entries of the probe sequence stay reachable through the marker
+            put(slot, DELETED);
+            size--;
+            writeCounts();
+        }
+    }
+
+    private long get(long slot) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)].getLong((int) ((slot & SEGMENT_MASK) << 3));
+    }
+
+    private void put(long slot, long value) {
+        segments[(int) (slot >>> SEGMENT_SHIFT)].putLong((int) ((slot & SEGMENT_MASK) << 3), value);
+    }
+
+    private void writeCounts() {
+        header.putLong(SIZE_OFFSET, size);
+        header.putLong(USED_OFFSET, used);
+    }
+
+    /**
+     * Rebuilds the table into a new file of the given capacity and renames it over the old one.
+     */
+    private void grow(long newCapacity) throws IOException {
+        Path resized = Paths.get(path + ".resize");
+        Files.deleteIfExists(resized);
+        create(resized, newCapacity);
+        PaymentIdIndex target = new PaymentIdIndex(resized, null, null);
+        target.map();
+        try {
+            for (long slot = 0; slot < capacity; slot++) {
+                long value = get(slot);
+                if (value != EMPTY && value != DELETED) {
+                    target.insert(value);
+                }
+            }
+            target.forceMappings();
+        } finally {
+            target.channel.close();
+        }
+        channel.close();
+        Files.move(resized, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map();
+    }
+
+    private static void create(Path path, long capacity) throws IOException {
+        Path temporary = Paths.get(path + ".tmp");
+        try (RandomAccessFile file = new RandomAccessFile(temporary.toFile(), "rw")) {
+            // Sparse: unwritten slots read as empty
+            file.setLength(HEADER_SIZE + capacity * 8);
+            file.writeLong(MAGIC);
+            file.writeInt(VERSION);
+            file.seek(CAPACITY_OFFSET);
+            file.writeLong(capacity);
+            file.getFD().sync();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void map() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        capacity = header.getLong(CAPACITY_OFFSET);
+        if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION
+                || capacity < MIN_CAPACITY || Long.bitCount(capacity) != 1
+                || channel.size() < HEADER_SIZE + capacity * 8) {
+            throw new IOException(path + " is not a payment id index.");
+        }
+        size = header.getLong(SIZE_OFFSET);
+        used = header.getLong(USED_OFFSET);
+        long segmentSlots = 1L << SEGMENT_SHIFT;
+        segments = new MappedByteBuffer[(int) ((capacity + segmentSlots - 1) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < segments.length; i++) {
+            long slots = Math.min(segmentSlots, capacity - i * segmentSlots);
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * segmentSlots * 8, slots * 8);
+        }
+    }
+
+    private void forceMappings() {
+        if (segments != null) {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        }
+        if (header != null) {
+            header.force();
+        }
+    }
+
+    private void recoverJournals() throws IOException {
+        Path directory = path.getParent();
+        String prefix = path.getFileName() + ".";
+        try (DirectoryStream<Path> journals = Files.newDirectoryStream(directory, prefix + "*" + JOURNAL_SUFFIX)) {
+            for (Path journalPath : journals) {
+                long removed = 0;
+                try (FileChannel journalChannel = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+                    if (journalChannel.size() >= 8) {
+                        MappedByteBuffer journal = journalChannel.map(FileChannel.MapMode.READ_ONLY, 0, journalChannel.size());
+                        long count = Math.min(journal.getLong(0), journalChannel.size() / 8 - 1);
+                        for (long i = 1; i <= count; i++) {
+                            remove(journal.getLong((int) (i * 8)));
+                        }
+                        removed = count;
+                    }
+                }
+                Files.delete(journalPath);
+                System.out.println("Rolled back " + removed + " payment ids of an unfinished run from " + journalPath);
+            }
+        }
+        force();
+    }
+
+    private static long tableCapacity(long ids) {
+        long capacity = MIN_CAPACITY;
+        while (capacity < ids) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Payment id index " + path + " is closed");
+        }
+    }
+
+    /**
+     * Adds the ids listed in text files, one per line, to an index, e.g. to seed it with
+     * the ids sent before it was introduced.
+     *
+     * @param args The index file, followed by the id files.
+     * @throws IOException If a file cannot be read or the index cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PaymentIdIndex <index file> <id file>...");
+            System.exit(2);
+        }
+        try (PaymentIdIndex index = open(args[0])) {
+            for (int i = 1; i < args.length; i++) {
+                long added = 0;
+                long lines = 0;
+                try (BufferedReader reader = Files.newBufferedReader(new File(args[i]).toPath(), StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        String id = line.trim();
+                        if (!id.isEmpty()) {
+                            lines++;
+                            if (index.add(id)) {
+                                added++;
+                            }
+                        }
+                    }
+                }
+                System.out.println("Added " + added + " of " + lines + " payment ids from " + args[i]);
+            }
+            System.out.println(index.size() + " payment ids in " + args[0]);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.pain001.data;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A payment row stored as a value array indexed by the ordinals of a shared
+ * {@link RowSchema}.
+ * <p>
+ * The row is also a read-only {@code Map<String, String>} view so it can be handed to
+ * existing code and to FreeMarker unchanged; hot paths should resolve ordinals once
+ * from the schema and use {@link #get(int)} instead.
+ */
+public final class PaymentRow extends AbstractMap<String, String> {
+    private final RowSchema schema;
+    private final String[] values;
+
+    /**
+     * @param schema The schema shared by all rows of the same source.
+     * @param values The values in schema order; the array is owned by the row.
+     */
+    public PaymentRow(RowSchema schema, String[] values) {
+        if (values.length != schema.size()) {
+            throw new IllegalArgumentException("Expected " + schema.size() + " values but got " + values.length + ".");
+        }
+        this.schema = schema;
+        this.values = values;
+    }
+
+    public RowSchema schema() {
+        return schema;
+    }
+
+    /**
+     * @param ordinal Column ordinal from {@link RowSchema#ordinal(String)}.
+     * @return The value, or null if the ordinal is -1.
+     */
+    public String get(int ordinal) {
+        return ordinal < 0 ? null : values[ordinal];
+    }
+
+    @Override
+    public String get(Object key) {
+        return key instanceof String ? get(schema.ordinal((String) key)) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && schema.ordinal((String) key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < values.length;
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (next >= values.length) {
+                            throw new NoSuchElementException();
+                        }
+                        int ordinal = next++;
+                        return new SimpleImmutableEntry<>(schema.column(ordinal), values[ordinal]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+        };
+    }
+}
@@ -0,0 +1,13 @@
+package com.pain001.data;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Forward-only iterator over input rows that holds an open underlying resource
+ * (file handle, JDBC result set, ...). Rows are handed out one at a time and are
+ * not retained by the cursor, so heap use does not grow with the input size.
+ */
+public interface RowCursor extends Iterator<Map<String, String>>, Closeable {
+}
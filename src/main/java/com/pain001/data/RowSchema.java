@@ -0,0 +1,67 @@
+package com.pain001.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column layout shared by all rows read from one source. Column names are resolved to
+ * fixed ordinals once, from the CSV header or the JDBC result set metadata, so rows can
+ * store their values in a plain array and callers can look them up by index.
+ */
+public final class RowSchema {
+    private final String[] columns;
+    private final Map<String, Integer> ordinals;
+
+    public RowSchema(List<String> columns) {
+        this.columns = columns.toArray(new String[0]);
+        Map<String, Integer> byName = new HashMap<>(this.columns.length * 2);
+        for (int i = 0; i < this.columns.length; i++) {
+            // Last occurrence wins for duplicated header names, as with Map.put
+            byName.put(this.columns[i], i);
+        }
+        this.ordinals = byName;
+    }
+
+    /**
+     * @param column Column name.
+     * @return The ordinal of the column, or -1 if the schema does not contain it.
+     */
+    public int ordinal(String column) {
+        Integer ordinal = ordinals.get(column);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Resolves several column names at once.
+     *
+     * @param columns Column names.
+     * @return The ordinal of every column, -1 for columns the schema does not contain.
+     */
+    public int[] ordinals(List<String> columns) {
+        int[] result = new int[columns.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ordinal(columns.get(i));
+        }
+        return result;
+    }
+
+    public String column(int ordinal) {
+        return columns[ordinal];
+    }
+
+    public int size() {
+        return columns.length;
+    }
+
+    public List<String> columns() {
+        return Collections.unmodifiableList(Arrays.asList(columns));
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(columns);
+    }
+}
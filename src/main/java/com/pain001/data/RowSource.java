@@ -0,0 +1,25 @@
+package com.pain001.data;
+
+import java.io.IOException;
+
+/**
+ * A re-readable source of payment rows. Every call to {@link #open()} starts a
+ * new pass from the first data row, which lets streaming consumers make more
+ * than one pass (e.g. totals first, then rendering) without materializing the
+ * input in memory.
+ */
+public interface RowSource {
+
+    /**
+     * Opens a new cursor positioned before the first data row.
+     *
+     * @return A cursor that must be closed by the caller.
+     * @throws IOException If the underlying input cannot be opened.
+     */
+    RowCursor open() throws IOException;
+
+    /**
+     * @return A human readable description of the source, used in log messages.
+     */
+    String describe();
+}
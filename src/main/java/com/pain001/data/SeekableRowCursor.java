@@ -0,0 +1,13 @@
+package com.pain001.data;
+
+/**
+ * A row cursor that reports where in its source each row starts.
+ */
+public interface SeekableRowCursor extends RowCursor {
+
+    /**
+     * @return The offset of the row last returned by {@link #next()}, for
+     * {@link SeekableRowSource#open(long)}.
+     */
+    long offset();
+}
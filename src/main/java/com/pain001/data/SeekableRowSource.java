@@ -0,0 +1,29 @@
+package com.pain001.data;
+
+import java.io.IOException;
+
+/**
+ * A row source that can be reopened in the middle, at a row position reported by one of
+ * its earlier cursors, e.g. to resume an interrupted run.
+ */
+public interface SeekableRowSource extends RowSource {
+
+    @Override
+    SeekableRowCursor open() throws IOException;
+
+    /**
+     * Opens a new cursor positioned before the row at an offset.
+     *
+     * @param offset A row offset from {@link SeekableRowCursor#offset()}.
+     * @return A cursor that must be closed by the caller.
+     * @throws IOException If the underlying input cannot be opened.
+     */
+    SeekableRowCursor open(long offset) throws IOException;
+
+    /**
+     * @return A value that changes whenever the content of the source may have changed,
+     * so that offsets recorded for another content are not reused.
+     * @throws IOException If the source cannot be inspected.
+     */
+    String fingerprint() throws IOException;
+}
@@ -0,0 +1,587 @@
+package com.pain001.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Writes synthetic payment rows for load tests to a CSV file or a SQLite database.
+ * <p>
+ * The output depends only on the seed, the row count and the settings: the same
+ * arguments give byte-identical CSV files. Rows are written as they are generated, so
+ * the row count is bounded by disk space, not by the heap.
+ * <p>
+ * Every row carries the columns required by the CSV and database validators and the
+ * columns read by the bundled templates. IBANs have valid mod-97 check digits (and
+ * valid national check digits where the country has them), BICs are well-formed bank
+ * codes of the account's country, and amounts follow a log-normal distribution around
+ * a typical invoice amount. Debtors and creditors are drawn from pools of configurable
+ * size; each debtor always has the same account, agent and execution date, so the
+ * debtor count is also the number of payment information groups.
+ */
+public final class SyntheticDataGenerator {
+    public static final String SQLITE_TABLE_NAME = "pain001";
+
+    private static final List<String> COLUMN_LIST = new ArrayList<>();
+    // Group header and initiating party
+    private static final int ID = column("id");
+    private static final int DATE = column("date");
+    private static final int NB_OF_TXS = column("nb_of_txs");
+    private static final int CTRL_SUM = column("ctrl_sum");
+    private static final int INITIATOR_NAME = column("initiator_name");
+    private static final int INITIATOR_STREET_NAME = column("initiator_street_name");
+    private static final int INITIATOR_BUILDING_NUMBER = column("initiator_building_number");
+    private static final int INITIATOR_POSTAL_CODE = column("initiator_postal_code");
+    private static final int INITIATOR_TOWN_NAME = column("initiator_town_name");
+    private static final int INITIATOR_TOWN = column("initiator_town");
+    private static final int INITIATOR_COUNTRY_CODE = column("initiator_country_code");
+    private static final int INITIATOR_COUNTRY = column("initiator_country");
+    private static final int ULTIMATE_DEBTOR_NAME = column("ultimate_debtor_name");
+    // Payment information
+    private static final int PAYMENT_INFORMATION_ID = column("payment_information_id");
+    private static final int PAYMENT_METHOD = column("payment_method");
+    private static final int BATCH_BOOKING = column("batch_booking");
+    private static final int SERVICE_LEVEL_CODE = column("service_level_code");
+    private static final int CATEGORY_PURPOSE = column("category_purpose");
+    private static final int REQUESTED_EXECUTION_DATE = column("requested_execution_date");
+    private static final int DEBTOR_NAME = column("debtor_name");
+    private static final int DEBTOR_STREET_NAME = column("debtor_street_name");
+    private static final int DEBTOR_STREET = column("debtor_street");
+    private static final int DEBTOR_BUILDING_NUMBER = column("debtor_building_number");
+    private static final int DEBTOR_POSTAL_CODE = column("debtor_postal_code");
+    private static final int DEBTOR_TOWN_NAME = column("debtor_town_name");
+    private static final int DEBTOR_TOWN = column("debtor_town");
+    private static final int DEBTOR_COUNTRY_CODE = column("debtor_country_code");
+    private static final int DEBTOR_COUNTRY = column("debtor_country");
+    private static final int DEBTOR_ACCOUNT_IBAN = column("debtor_account_IBAN");
+    private static final int DEBTOR_AGENT_BIC = column("debtor_agent_BIC");
+    private static final int FORWARDING_AGENT_BIC = column("forwarding_agent_BIC");
+    private static final int CHARGE_BEARER = column("charge_bearer");
+    private static final int CHARGE_ACCOUNT_IBAN = column("charge_account_IBAN");
+    // Transaction
+    private static final int PAYMENT_ID = column("payment_id");
+    private static final int PAYMENT_INSTRUCTION_ID = column("payment_instruction_id");
+    private static final int INSTRUCTION_ID = column("instruction_id");
+    private static final int END_TO_END_ID = column("end_to_end_id");
+    private static final int PAYMENT_END_TO_END_ID = column("payment_end_to_end_id");
+    private static final int ADDTL_END_TO_END_ID = column("addtl_end_to_end_id");
+    private static final int PAYMENT_AMOUNT = column("payment_amount");
+    private static final int CURRENCY = column("currency");
+    private static final int PAYMENT_CURRENCY = column("payment_currency");
+    private static final int CREDITOR_AGENT_BIC = column("creditor_agent_BIC");
+    private static final int CREDITOR_AGENT_BICFI = column("creditor_agent_BICFI");
+    private static final int CREDITOR_NAME = column("creditor_name");
+    private static final int CREDITOR_STREET_NAME = column("creditor_street_name");
+    private static final int CREDITOR_STREET = column("creditor_street");
+    private static final int CREDITOR_BUILDING_NUMBER = column("creditor_building_number");
+    private static final int CREDITOR_POSTAL_CODE = column("creditor_postal_code");
+    private static final int CREDITOR_TOWN_NAME = column("creditor_town_name");
+    private static final int CREDITOR_TOWN = column("creditor_town");
+    private static final int CREDITOR_COUNTRY_CODE = column("creditor_country_code");
+    private static final int CREDITOR_COUNTRY = column("creditor_country");
+    private static final int CREDITOR_ACCOUNT_IBAN = column("creditor_account_IBAN");
+    private static final int PURPOSE_CODE = column("purpose_code");
+    private static final int REFERENCE_NUMBER = column("reference_number");
+    private static final int REFERENCE_DATE = column("reference_date");
+    private static final int REMITTANCE_INFORMATION = column("remittance_information");
+    private static final int REMITTANCE_INFO_UNSTRUCTURED = column("remittance_info_unstructured");
+    private static final int REMITTANCE_INFO_STRUCTURED = column("remittance_info_structured");
+    private static final int PAYMENT_INFO_STRUCTURED = column("payment_info_structured");
+
+    /**
+     * The generated columns, in output order.
+     */
+    public static final List<String> COLUMNS = Collections.unmodifiableList(COLUMN_LIST);
+
+    private static final String CREATION_DATE_TIME = "2024-01-15T09:30:00";
+    private static final String REFERENCE_DAY = "2024-01-15";
+    private static final LocalDate FIRST_EXECUTION_DATE = LocalDate.of(2024, 1, 16);
+    private static final int EXECUTION_DAYS = 5;
+    private static final String CURRENCY_CODE = "EUR";
+
+    // Log-normal amounts: median 250.00, most between 30 and 2,000, capped at 999,999.99
+    private static final double AMOUNT_MEDIAN_LOG = Math.log(25_000);
+    private static final double AMOUNT_SIGMA = 1.1;
+    private static final long MAX_AMOUNT_CENTS = 99_999_999L;
+
+    // Parties with an index below this are built once and kept
+    private static final int PARTY_CACHE_SIZE = 1 << 16;
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    // Salts that give the debtors, creditors and amounts their own random streams
+    private static final long DEBTOR_STREAM = 0x5DEECE66DL;
+    private static final long CREDITOR_STREAM = 0x2545F4914F6CDD1DL;
+    private static final long AMOUNT_STREAM = 0x9E3779B97F4A7C15L;
+
+    private static final String[] COMPANY_NAMES = {
+            "Acme", "Globex", "Initech", "Umbrella", "Stark", "Wayne", "Hooli", "Vandelay",
+            "Soylent", "Tyrell", "Cyberdyne", "Wonka", "Oceanic", "Gringotts", "Monarch", "Aperture"
+    };
+    private static final String[] COMPANY_KINDS = {
+            "Industries", "Trading", "Logistics", "Holding", "Services", "Retail", "Energy", "Foods"
+    };
+
+    private long seed;
+    private int debtorCount = 100;
+    private int creditorCount = 10_000;
+
+    /**
+     * @param seed Seed of all random choices
+     */
+    public SyntheticDataGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public SyntheticDataGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @return The number of distinct debtors, and so of payment information groups.
+     */
+    public int getDebtorCount() {
+        return debtorCount;
+    }
+
+    public SyntheticDataGenerator setDebtorCount(int debtorCount) {
+        if (debtorCount < 1) {
+            throw new IllegalArgumentException("Error: The debtor count must be at least 1.");
+        }
+        this.debtorCount = debtorCount;
+        return this;
+    }
+
+    /**
+     * @return The number of distinct creditors.
+     */
+    public int getCreditorCount() {
+        return creditorCount;
+    }
+
+    public SyntheticDataGenerator setCreditorCount(int creditorCount) {
+        if (creditorCount < 1) {
+            throw new IllegalArgumentException("Error: The creditor count must be at least 1.");
+        }
+        this.creditorCount = creditorCount;
+        return this;
+    }
+
+    /**
+     * Writes the rows to a CSV file or, for a ".db" path, to a new SQLite database.
+     *
+     * @param outputFilePath Path of the file to create; an existing file is replaced
+     * @param rows Number of rows to write
+     * @throws IOException If the file cannot be written
+     * @throws SQLException If the database cannot be written
+     */
+    public void write(String outputFilePath, long rows) throws IOException, SQLException {
+        if (outputFilePath.endsWith(".db")) {
+            writeSqlite(outputFilePath, rows);
+        } else {
+            writeCsv(outputFilePath, rows);
+        }
+    }
+
+    /**
+     * Writes the rows to a CSV file with a header line.
+     *
+     * @param outputFilePath Path of the file to create; an existing file is replaced
+     * @param rows Number of rows to write
+     * @throws IOException If the file cannot be written
+     */
+    public void writeCsv(String outputFilePath, long rows) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(new File(outputFilePath).toPath(), StandardCharsets.UTF_8)) {
+            writeCsvLine(writer, COLUMN_LIST.toArray(new String[0]));
+            generate(rows, values -> writeCsvLine(writer, values));
+        }
+        System.out.println(rows + " synthetic rows have been written to " + outputFilePath);
+    }
+
+    /**
+     * Writes the rows to the {@value #SQLITE_TABLE_NAME} table of a new SQLite database.
+     * All columns are TEXT, like the values of a CSV file.
+     *
+     * @param outputFilePath Path of the database to create; an existing file is replaced
+     * @param rows Number of rows to write
+     * @throws IOException If an existing file cannot be replaced
+     * @throws SQLException If the database cannot be written
+     */
+    public void writeSqlite(String outputFilePath, long rows) throws IOException, SQLException {
+        Files.deleteIfExists(new File(outputFilePath).toPath());
+        StringBuilder create = new StringBuilder("CREATE TABLE " + SQLITE_TABLE_NAME + " (");
+        StringBuilder insert = new StringBuilder("INSERT INTO " + SQLITE_TABLE_NAME + " VALUES (");
+        for (int i = 0; i < COLUMN_LIST.size(); i++) {
+            create.append(i == 0 ? "" : ", ").append('"').append(COLUMN_LIST.get(i)).append("\" TEXT");
+            insert.append(i == 0 ? "?" : ", ?");
+        }
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + outputFilePath)) {
+            try (Statement stmt = conn.createStatement()) {
+                // A half-written file is useless anyway, so skip the journal and fsyncs
+                stmt.execute("PRAGMA journal_mode = OFF");
+                stmt.execute("PRAGMA synchronous = OFF");
+                stmt.execute(create.append(')').toString());
+            }
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(insert.append(')').toString())) {
+                long[] pending = new long[1];
+                generate(rows, values -> {
+                    for (int i = 0; i < values.length; i++) {
+                        stmt.setString(i + 1, values[i]);
+                    }
+                    stmt.addBatch();
+                    if (++pending[0] == INSERT_BATCH_SIZE) {
+                        stmt.executeBatch();
+                        pending[0] = 0;
+                    }
+                });
+                stmt.executeBatch();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            System.err.println("Error writing SQLite database: " + e.getMessage());
+            throw e;
+        }
+        System.out.println(rows + " synthetic rows have been written to " + outputFilePath);
+    }
+
+    /**
+     * Generates the rows in order, reusing one value array for all of them.
+     */
+    private <E extends Exception> void generate(long rows, RowSink<E> sink) throws IOException, E {
+        if (rows < 0) {
+            throw new IllegalArgumentException("Error: The row count must not be negative.");
+        }
+        // The group header repeats the totals on every row, so add up the amounts first
+        SplittableRandom amounts = new SplittableRandom(seed ^ AMOUNT_STREAM);
+        long totalCents = 0;
+        for (long i = 0; i < rows; i++) {
+            totalCents += nextAmountCents(amounts);
+        }
+
+        Party[] debtors = new Party[Math.min(debtorCount, PARTY_CACHE_SIZE)];
+        Party[] creditors = new Party[Math.min(creditorCount, PARTY_CACHE_SIZE)];
+        Party initiator = party(DEBTOR_STREAM, -1);
+        SplittableRandom random = new SplittableRandom(seed);
+        amounts = new SplittableRandom(seed ^ AMOUNT_STREAM);
+
+        String[] values = new String[COLUMN_LIST.size()];
+        values[DATE] = CREATION_DATE_TIME;
+        values[NB_OF_TXS] = Long.toString(rows);
+        values[CTRL_SUM] = formatCents(totalCents);
+        values[INITIATOR_NAME] = initiator.name;
+        values[INITIATOR_STREET_NAME] = initiator.street;
+        values[INITIATOR_BUILDING_NUMBER] = initiator.buildingNumber;
+        values[INITIATOR_POSTAL_CODE] = initiator.postalCode;
+        values[INITIATOR_TOWN_NAME] = initiator.town;
+        values[INITIATOR_TOWN] = initiator.town;
+        values[INITIATOR_COUNTRY_CODE] = initiator.country.code;
+        values[INITIATOR_COUNTRY] = initiator.country.code;
+        values[ULTIMATE_DEBTOR_NAME] = initiator.name;
+        values[PAYMENT_METHOD] = "TRF";
+        values[BATCH_BOOKING] = "true";
+        values[SERVICE_LEVEL_CODE] = "SEPA";
+        values[CATEGORY_PURPOSE] = "SUPP";
+        values[CHARGE_BEARER] = "SLEV";
+        values[CURRENCY] = CURRENCY_CODE;
+        values[PAYMENT_CURRENCY] = CURRENCY_CODE;
+        values[PURPOSE_CODE] = "SUPP";
+        values[REFERENCE_DATE] = REFERENCE_DAY;
+
+        for (long i = 0; i < rows; i++) {
+            String id = Long.toString(i + 1);
+            Party debtor = cachedParty(debtors, DEBTOR_STREAM, random.nextInt(debtorCount));
+            Party creditor = cachedParty(creditors, CREDITOR_STREAM, random.nextInt(creditorCount));
+            String invoice = "INV-" + (100_000 + random.nextInt(900_000));
+
+            values[ID] = id;
+            values[PAYMENT_INFORMATION_ID] = debtor.paymentInformationId;
+            values[REQUESTED_EXECUTION_DATE] = debtor.executionDate;
+            values[DEBTOR_NAME] = debtor.name;
+            values[DEBTOR_STREET_NAME] = debtor.street;
+            values[DEBTOR_STREET] = debtor.street;
+            values[DEBTOR_BUILDING_NUMBER] = debtor.buildingNumber;
+            values[DEBTOR_POSTAL_CODE] = debtor.postalCode;
+            values[DEBTOR_TOWN_NAME] = debtor.town;
+            values[DEBTOR_TOWN] = debtor.town;
+            values[DEBTOR_COUNTRY_CODE] = debtor.country.code;
+            values[DEBTOR_COUNTRY] = debtor.country.code;
+            values[DEBTOR_ACCOUNT_IBAN] = debtor.iban;
+            values[DEBTOR_AGENT_BIC] = debtor.bic;
+            values[FORWARDING_AGENT_BIC] = debtor.bic;
+            values[CHARGE_ACCOUNT_IBAN] = debtor.iban;
+
+            values[PAYMENT_ID] = "PAY-" + id;
+            values[PAYMENT_INSTRUCTION_ID] = "INSTR-" + id;
+            values[INSTRUCTION_ID] = "INSTR-" + id;
+            values[END_TO_END_ID] = "E2E-" + id;
+            values[PAYMENT_END_TO_END_ID] = "E2E-" + id;
+            values[ADDTL_END_TO_END_ID] = "E2E-" + id + "-A";
+            values[PAYMENT_AMOUNT] = formatCents(nextAmountCents(amounts));
+            values[CREDITOR_AGENT_BIC] = creditor.bic;
+            values[CREDITOR_AGENT_BICFI] = creditor.bic;
+            values[CREDITOR_NAME] = creditor.name;
+            values[CREDITOR_STREET_NAME] = creditor.street;
+            values[CREDITOR_STREET] = creditor.street;
+            values[CREDITOR_BUILDING_NUMBER] = creditor.buildingNumber;
+            values[CREDITOR_POSTAL_CODE] = creditor.postalCode;
+            values[CREDITOR_TOWN_NAME] = creditor.town;
+            values[CREDITOR_TOWN] = creditor.town;
+            values[CREDITOR_COUNTRY_CODE] = creditor.country.code;
+            values[CREDITOR_COUNTRY] = creditor.country.code;
+            values[CREDITOR_ACCOUNT_IBAN] = creditor.iban;
+            values[REFERENCE_NUMBER] = invoice;
+            values[REMITTANCE_INFORMATION] = "Payment for invoice " + invoice;
+            values[REMITTANCE_INFO_UNSTRUCTURED] = "Payment for invoice " + invoice;
+            values[REMITTANCE_INFO_STRUCTURED] = invoice;
+            values[PAYMENT_INFO_STRUCTURED] = invoice;
+            sink.accept(values);
+        }
+    }
+
+    /**
+     * @return A log-normal amount in cents, at least one cent.
+     */
+    private static long nextAmountCents(SplittableRandom random) {
+        // Box-Muller; 1 - nextDouble() is never zero
+        double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+        long cents = Math.round(Math.exp(AMOUNT_MEDIAN_LOG + AMOUNT_SIGMA * gaussian));
+        return Math.max(1, Math.min(MAX_AMOUNT_CENTS, cents));
+    }
+
+    private static String formatCents(long cents) {
+        long fraction = cents % 100;
+        return (cents / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    private Party cachedParty(Party[] cache, long stream, int index) {
+        if (index >= cache.length) {
+            return party(stream, index);
+        }
+        Party party = cache[index];
+        if (party == null) {
+            party = party(stream, index);
+            cache[index] = party;
+        }
+        return party;
+    }
+
+    /**
+     * Builds the party with an index from its own random stream, so it is the same no
+     * matter which row first refers to it.
+     */
+    private Party party(long stream, int index) {
+        SplittableRandom random = new SplittableRandom(seed ^ stream ^ (index * 0xBF58476D1CE4E5B9L));
+        Country country = Country.values()[random.nextInt(Country.values().length)];
+        Bank bank = country.banks[random.nextInt(country.banks.length)];
+        String prefix = stream == DEBTOR_STREAM ? "DBT" : "CDT";
+        String label = index < 0 ? "Initiator" : Integer.toString(index + 1);
+
+        Party party = new Party();
+        party.country = country;
+        party.name = COMPANY_NAMES[random.nextInt(COMPANY_NAMES.length)] + " "
+                + COMPANY_KINDS[random.nextInt(COMPANY_KINDS.length)] + " " + label;
+        party.street = country.streets[random.nextInt(country.streets.length)];
+        party.buildingNumber = Integer.toString(1 + random.nextInt(250));
+        party.town = country.towns[random.nextInt(country.towns.length)];
+        party.postalCode = country.postalCode(random);
+        party.bic = bank.bic;
+        party.iban = Iban.of(country, bank, random);
+        party.paymentInformationId = prefix + "-PMTINF-" + label;
+        party.executionDate = FIRST_EXECUTION_DATE.plusDays(Math.max(0, index) % EXECUTION_DAYS).toString();
+        return party;
+    }
+
+    private static void writeCsvLine(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String value = values[i];
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write('\n');
+    }
+
+    private static int column(String name) {
+        COLUMN_LIST.add(name);
+        return COLUMN_LIST.size() - 1;
+    }
+
+    private interface RowSink<E extends Exception> {
+        void accept(String[] values) throws IOException, E;
+    }
+
+    private static final class Party {
+        Country country;
+        String name;
+        String street;
+        String buildingNumber;
+        String postalCode;
+        String town;
+        String iban;
+        String bic;
+        String paymentInformationId;
+        String executionDate;
+    }
+
+    private static final class Bank {
+        final String bic;
+        final String code;
+
+        Bank(String bic, String code) {
+            this.bic = bic;
+            this.code = code;
+        }
+    }
+
+    /**
+     * SEPA countries with their account number layout and a few real bank codes.
+     */
+    private enum Country {
+        DE(new Bank[]{new Bank("DEUTDEFFXXX", "50070010"), new Bank("COBADEFFXXX", "50040000"), new Bank("INGDDEFFXXX", "50010517")},
+                new String[]{"Berlin", "Frankfurt am Main", "Hamburg", "Munich", "Cologne"},
+                new String[]{"Hauptstrasse", "Bahnhofstrasse", "Schillerstrasse", "Gartenweg"}),
+        FR(new Bank[]{new Bank("BNPAFRPPXXX", "3000400001"), new Bank("SOGEFRPPXXX", "3000300011")},
+                new String[]{"Paris", "Lyon", "Marseille", "Toulouse"},
+                new String[]{"Rue de la Paix", "Avenue Victor Hugo", "Boulevard Voltaire"}),
+        NL(new Bank[]{new Bank("INGBNL2AXXX", "INGB"), new Bank("ABNANL2AXXX", "ABNA"), new Bank("RABONL2UXXX", "RABO")},
+                new String[]{"Amsterdam", "Rotterdam", "Utrecht", "Eindhoven"},
+                new String[]{"Keizersgracht", "Stationsplein", "Damrak"}),
+        BE(new Bank[]{new Bank("GEBABEBBXXX", "001"), new Bank("BBRUBEBBXXX", "310")},
+                new String[]{"Brussels", "Antwerp", "Ghent", "Liege"},
+                new String[]{"Rue Neuve", "Meir", "Avenue Louise"}),
+        AT(new Bank[]{new Bank("BKAUATWWXXX", "12000"), new Bank("RZBAATWWXXX", "31000")},
+                new String[]{"Vienna", "Graz", "Linz", "Salzburg"},
+                new String[]{"Ringstrasse", "Mariahilfer Strasse", "Herrengasse"});
+
+        final String code = name();
+        final Bank[] banks;
+        final String[] towns;
+        final String[] streets;
+
+        Country(Bank[] banks, String[] towns, String[] streets) {
+            this.banks = banks;
+            this.towns = towns;
+            this.streets = streets;
+        }
+
+        String postalCode(SplittableRandom random) {
+            switch (this) {
+                case NL:
+                    return (1000 + random.nextInt(9000)) + " " + (char) ('A' + random.nextInt(26)) + (char) ('A' + random.nextInt(26));
+                case BE:
+                case AT:
+                    return Integer.toString(1000 + random.nextInt(9000));
+                default:
+                    return Integer.toString(10000 + random.nextInt(90000));
+            }
+        }
+    }
+
+    /**
+     * Builds IBANs from a bank code and random account digits.
+     */
+    private static final class Iban {
+
+        static String of(Country country, Bank bank, SplittableRandom random) {
+            String bban;
+            switch (country) {
+                case DE:
+                    bban = bank.code + digits(random, 10);
+                    break;
+                case FR: {
+                    // Bank and branch code, account number and the RIB key over all three
+                    String account = digits(random, 11);
+                    long key = 97 - ((89 * Long.parseLong(bank.code.substring(0, 5))
+                            + 15 * Long.parseLong(bank.code.substring(5))
+                            + 3 * Long.parseLong(account)) % 97);
+                    bban = bank.code + account + (key < 10 ? "0" : "") + key;
+                    break;
+                }
+                case NL:
+                    bban = bank.code + digits(random, 10);
+                    break;
+                case BE: {
+                    // Ten digits followed by their remainder modulo 97, 97 for zero
+                    String account = bank.code + digits(random, 7);
+                    long key = Long.parseLong(account) % 97;
+                    key = key == 0 ? 97 : key;
+                    bban = account + (key < 10 ? "0" : "") + key;
+                    break;
+                }
+                case AT:
+                    bban = bank.code + digits(random, 11);
+                    break;
+                default:
+                    throw new IllegalStateException("No IBAN layout for " + country);
+            }
+            int check = 98 - mod97(bban + country.code + "00");
+            return country.code + (check < 10 ? "0" : "") + check + bban;
+        }
+
+        /**
+         * @return The remainder modulo 97 of the number formed by the characters, with
+         * letters counting as 10 to 35.
+         */
+        private static int mod97(String value) {
+            int remainder = 0;
+            for (int i = 0; i < value.length(); i++) {
+                int digit = Character.digit(value.charAt(i), 36);
+                remainder = (digit < 10 ? remainder * 10 + digit : remainder * 100 + digit) % 97;
+            }
+            return remainder;
+        }
+
+        private static String digits(SplittableRandom random, int count) {
+            char[] chars = new char[count];
+            for (int i = 0; i < count; i++) {
+                chars[i] = (char) ('0' + random.nextInt(10));
+            }
+            return new String(chars);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: SyntheticDataGenerator <output .csv or .db> <rows> [seed] [debtors] [creditors]");
+            System.exit(2);
+        }
+        try {
+            SyntheticDataGenerator generator = new SyntheticDataGenerator(args.length > 2 ? Long.parseLong(args[2]) : 42L);
+            if (args.length > 3) {
+                generator.setDebtorCount(Integer.parseInt(args[3]));
+            }
+            if (args.length > 4) {
+                generator.setCreditorCount(Integer.parseInt(args[4]));
+            }
+            generator.write(args[0], Long.parseLong(args[1]));
+        } catch (IOException | SQLException | IllegalArgumentException e) {
+            System.err.println("Error generating synthetic data: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -1,25 +1,269 @@
 package com.pain001.db;
 
-import java.util.HashMap;
+import com.pain001.data.RowSchema;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
+/**
+ * A database row.
+ * <p>
+ * Records built with a {@link RowSchema} keep the values of its columns in an array
+ * indexed by the column ordinals, so the loader fills them without hashing column names.
+ * Fields outside the schema, and all fields of a record built without one, are kept in a
+ * map. Either way the record behaves as a map of field names to values: a field is
+ * absent until it is added, and {@link #getAllFields()} is a live, writable view.
+ */
 public class DataRecord {
-    private final Map<String, Object> fields = new HashMap<>();
+    private static final RowSchema NO_COLUMNS = new RowSchema(Collections.<String>emptyList());
+    // Marks a schema column whose field has not been added or was removed
+    private static final Object ABSENT = new Object();
+
+    private final RowSchema schema;
+    private final Object[] values;
+    private Map<String, Object> otherFields;
+
+    public DataRecord() {
+        this(NO_COLUMNS);
+    }
+
+    /**
+     * @param schema Column layout shared by all records of the same result set.
+     */
+    public DataRecord(RowSchema schema) {
+        this.schema = schema;
+        this.values = new Object[schema.size()];
+        Arrays.fill(values, ABSENT);
+    }
+
+    public RowSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @param ordinal Column ordinal from {@link RowSchema#ordinal(String)}.
+     * @param value   The value, may be null.
+     */
+    public void setField(int ordinal, Object value) {
+        values[ordinal] = value;
+    }
 
     public void addField(String key, Object value) {
-        fields.put(key, value);
+        int ordinal = schema.ordinal(key);
+        if (ordinal >= 0) {
+            values[ordinal] = value;
+            return;
+        }
+        if (otherFields == null) {
+            otherFields = new LinkedHashMap<>();
+        }
+        otherFields.put(key, value);
+    }
+
+    /**
+     * @param ordinal Column ordinal from {@link RowSchema#ordinal(String)}.
+     * @return The value, or null if the ordinal is -1 or the field is absent.
+     */
+    public Object getField(int ordinal) {
+        return ordinal < 0 || values[ordinal] == ABSENT ? null : values[ordinal];
     }
 
     public Object getField(String key) {
-        return fields.get(key);
+        int ordinal = schema.ordinal(key);
+        if (ordinal >= 0) {
+            return getField(ordinal);
+        }
+        return otherFields == null ? null : otherFields.get(key);
     }
 
+    /**
+     * @return A live map view of the record; changes to either are visible in the other.
+     */
     public Map<String, Object> getAllFields() {
-        return fields;
+        return new FieldMap();
     }
 
     @Override
     public String toString() {
-        return fields.toString();
+        return getAllFields().toString();
+    }
+
+    private boolean containsField(String key) {
+        int ordinal = schema.ordinal(key);
+        if (ordinal >= 0) {
+            return values[ordinal] != ABSENT;
+        }
+        return otherFields != null && otherFields.containsKey(key);
+    }
+
+    /**
+     * A column that appears twice in the schema is a single field, held at the ordinal
+     * the schema resolves its name to.
+     */
+    private boolean isPresent(int ordinal) {
+        return values[ordinal] != ABSENT && schema.ordinal(schema.column(ordinal)) == ordinal;
+    }
+
+    private Object removeField(String key) {
+        int ordinal = schema.ordinal(key);
+        if (ordinal < 0) {
+            return otherFields == null ? null : otherFields.remove(key);
+        }
+        Object previous = getField(ordinal);
+        values[ordinal] = ABSENT;
+        return previous;
+    }
+
+    private final class FieldMap extends AbstractMap<String, Object> {
+        @Override
+        public Object get(Object key) {
+            return key instanceof String ? getField((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && containsField((String) key);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            Object previous = getField(key);
+            addField(key, value);
+            return previous;
+        }
+
+        @Override
+        public Object remove(Object key) {
+            return key instanceof String ? removeField((String) key) : null;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new FieldIterator();
+                }
+
+                @Override
+                public int size() {
+                    int size = otherFields == null ? 0 : otherFields.size();
+                    for (int i = 0; i < values.length; i++) {
+                        if (isPresent(i)) {
+                            size++;
+                        }
+                    }
+                    return size;
+                }
+            };
+        }
+    }
+
+    /**
+     * Iterates over the present schema columns in ordinal order, then over the other fields.
+     */
+    private final class FieldIterator implements Iterator<Map.Entry<String, Object>> {
+        private int next = advance(0);
+        private int current = -1;
+        private Iterator<Map.Entry<String, Object>> others;
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length || others().hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (next < values.length) {
+                current = next;
+                next = advance(next + 1);
+                return new ColumnEntry(current);
+            }
+            current = -1;
+            return others().next();
+        }
+
+        @Override
+        public void remove() {
+            if (current >= 0) {
+                if (values[current] == ABSENT) {
+                    throw new IllegalStateException();
+                }
+                values[current] = ABSENT;
+            } else if (others != null) {
+                others.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+
+        private int advance(int from) {
+            while (from < values.length && !isPresent(from)) {
+                from++;
+            }
+            return from;
+        }
+
+        private Iterator<Map.Entry<String, Object>> others() {
+            if (others == null) {
+                others = otherFields == null
+                        ? Collections.<Map.Entry<String, Object>>emptyIterator()
+                        : otherFields.entrySet().iterator();
+            }
+            return others;
+        }
+    }
+
+    private final class ColumnEntry implements Map.Entry<String, Object> {
+        private final int ordinal;
+
+        ColumnEntry(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public String getKey() {
+            return schema.column(ordinal);
+        }
+
+        @Override
+        public Object getValue() {
+            return getField(ordinal);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            Object previous = getField(ordinal);
+            values[ordinal] = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            Object value = getValue();
+            return getKey().equals(other.getKey())
+                    && (value == null ? other.getValue() == null : value.equals(other.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,13 @@
 package com.pain001.db;
 
+import com.pain001.data.RowSchema;
+
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -13,6 +16,7 @@ import java.util.logging.Logger;
 public class DatabaseLoader {
     private static final Logger LOGGER = Logger.getLogger(DatabaseLoader.class.getName());
     private static final String SQLITE_JDBC_URL_PREFIX = "jdbc:sqlite:";
+    private static final int FETCH_SIZE = 1000;
 
     public static List<DataRecord> loadDbData(String dataFilePath, String tableName) throws Exception {
         // Validate if the SQLite file exists
@@ -27,14 +31,18 @@ public class DatabaseLoader {
 
         // Establish SQLite connection
         try (Connection conn = DriverManager.getConnection(SQLITE_JDBC_URL_PREFIX + dataFilePath);
-             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM " + tableName);
-             ResultSet rs = stmt.executeQuery()) {
+             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM " + tableName,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(FETCH_SIZE);
+            ResultSet rs = stmt.executeQuery();
 
-            int columnCount = rs.getMetaData().getColumnCount();
+            // Resolve the column layout once for the whole result set
+            RowSchema schema = schemaOf(rs.getMetaData());
+            int columnCount = schema.size();
             while (rs.next()) {
-                DataRecord record = new DataRecord();
-                for (int i = 1; i <= columnCount; i++) {
-                    record.addField(rs.getMetaData().getColumnName(i), rs.getObject(i));
+                DataRecord record = new DataRecord(schema);
+                for (int i = 0; i < columnCount; i++) {
+                    record.setField(i, rs.getObject(i + 1));
                 }
                 data.add(record);
             }
@@ -45,7 +53,23 @@ public class DatabaseLoader {
         return data;
     }
 
-    private static String sanitizeTableName(String tableName) {
+    /**
+     * Builds the row schema from result set metadata.
+     *
+     * @param metaData The result set metadata.
+     * @return The schema, with ordinal i holding JDBC column i + 1.
+     * @throws SQLException If the metadata cannot be read.
+     */
+    static RowSchema schemaOf(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        List<String> columns = new ArrayList<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            columns.add(metaData.getColumnName(i));
+        }
+        return new RowSchema(columns);
+    }
+
+    static String sanitizeTableName(String tableName) {
         return tableName.replaceAll("[^a-zA-Z0-9_]", "_");
     }
 }
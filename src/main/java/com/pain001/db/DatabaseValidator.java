@@ -1,6 +1,15 @@
 package com.pain001.db;
 
+import com.pain001.data.BankIdentifiers;
+import com.pain001.data.ParallelValidation;
+import com.pain001.data.PaymentRow;
+import com.pain001.data.RowCursor;
+import com.pain001.data.RowSchema;
+import com.pain001.data.RowSource;
+
+import java.io.IOException;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 public class DatabaseValidator {
@@ -58,15 +67,220 @@ public class DatabaseValidator {
             "remittance_information"
     ));
 
+    // REQUIRED_COLUMNS in the set's iteration order, so both modes report the same column
+    private static final String[] COLUMN_NAMES = REQUIRED_COLUMNS.toArray(new String[0]);
+
     public static boolean validateDbData(List<Map<String, Object>> data) {
-        for (Map<String, Object> row : data) {
-            for (String column : REQUIRED_COLUMNS) {
-                if (!row.containsKey(column) || row.get(column) == null) {
-                    LOGGER.severe("Error: Missing value for column '" + column + "' in row: " + row);
-                    return false;
+        return validateDbData(data, false);
+    }
+
+    /**
+     * Validates the database rows, optionally checking chunks of rows in parallel on the
+     * common fork/join pool. Either way only the first missing value is reported, so the
+     * result and the log are the same as for a sequential run.
+     *
+     * @param data     List of rows where each row is a map of column names to values.
+     * @param parallel true to validate chunks of rows in parallel.
+     * @return true if the data is valid, false otherwise.
+     */
+    public static boolean validateDbData(List<Map<String, Object>> data, boolean parallel) {
+        return validateDbData(data, parallel, false);
+    }
+
+    /**
+     * Validates the database rows, including the IBAN and BIC columns.
+     *
+     * @param data                  List of rows where each row is a map of column names to values.
+     * @param parallel              true to validate chunks of rows in parallel.
+     * @param rejectInvalidAccounts true if an invalid IBAN or BIC is an error, false if it
+     *                              is only logged as a warning.
+     * @return true if the data is valid, false otherwise.
+     */
+    public static boolean validateDbData(List<Map<String, Object>> data, boolean parallel,
+                                         boolean rejectInvalidAccounts) {
+        return validateDbData(data, null, parallel, rejectInvalidAccounts, null);
+    }
+
+    /**
+     * Validates the database rows, running further checks on every row that has all
+     * required values, e.g. the {@link com.pain001.xml.FacetRules} of the message type.
+     *
+     * @param data                  List of rows where each row is a map of column names to values.
+     * @param readColumns           The columns the generated message types read without a
+     *                              default; only the required columns among them are
+     *                              checked. null to check all required columns.
+     * @param parallel              true to validate chunks of rows in parallel.
+     * @param rejectInvalidAccounts true if an invalid IBAN or BIC is an error, false if it
+     *                              is only logged as a warning.
+     * @param rowChecks             Creates the further check of each chunk of rows; may be null.
+     * @param <T>                   The row type.
+     * @return true if the data is valid, false otherwise.
+     */
+    public static <T extends Map<String, ?>> boolean validateDbData(
+            List<T> data, Collection<String> readColumns, boolean parallel, boolean rejectInvalidAccounts,
+            Supplier<? extends ParallelValidation.RowCheck<? super T>> rowChecks) {
+        String[] columns = requiredColumns(readColumns);
+        List<String> errors;
+        ParallelValidation.Warnings warnings = new ParallelValidation.Warnings();
+        if (parallel) {
+            errors = ParallelValidation.validate(data,
+                    () -> new RowChecker<T>(columns, rejectInvalidAccounts, rowChecks == null ? null : rowChecks.get()), true,
+                    warnings);
+        } else {
+            ParallelValidation.RowCheck<T> check = new RowChecker<T>(columns, rejectInvalidAccounts,
+                    rowChecks == null ? null : rowChecks.get());
+            errors = new ArrayList<String>(1);
+            long rowNumber = 0;
+            for (T row : data) {
+                check.check(row, ++rowNumber, errors, warnings);
+                if (!errors.isEmpty()) {
+                    break;
                 }
             }
         }
+        return report(errors, warnings);
+    }
+
+    /**
+     * Validates database rows by streaming them from a {@link RowSource}, stopping at the
+     * first missing value.
+     *
+     * @param source The source to read rows from.
+     * @return true if the data is valid, false otherwise.
+     * @throws IOException If the source cannot be read.
+     */
+    public static boolean validateDbData(RowSource source) throws IOException {
+        return validateDbData(source, false);
+    }
+
+    /**
+     * Validates database rows streamed from a {@link RowSource}, including the IBAN and
+     * BIC columns, stopping at the first error.
+     *
+     * @param source                The source to read rows from.
+     * @param rejectInvalidAccounts true if an invalid IBAN or BIC is an error, false if it
+     *                              is only logged as a warning.
+     * @return true if the data is valid, false otherwise.
+     * @throws IOException If the source cannot be read.
+     */
+    public static boolean validateDbData(RowSource source, boolean rejectInvalidAccounts) throws IOException {
+        return validateDbData(source, null, rejectInvalidAccounts, null);
+    }
+
+    /**
+     * Validates database rows streamed from a {@link RowSource}, running a further check
+     * on every row that has all required values in the same pass, e.g. the
+     * {@link com.pain001.xml.FacetRules} of the message type. Stops at the first error.
+     *
+     * @param source                The source to read rows from.
+     * @param readColumns           The columns the generated message types read without a
+     *                              default; only the required columns among them are
+     *                              checked. null to check all required columns.
+     * @param rejectInvalidAccounts true if an invalid IBAN or BIC is an error, false if it
+     *                              is only logged as a warning.
+     * @param rowCheck              The further check; may be null.
+     * @return true if the data is valid, false otherwise.
+     * @throws IOException If the source cannot be read.
+     */
+    public static boolean validateDbData(RowSource source, Collection<String> readColumns,
+                                         boolean rejectInvalidAccounts,
+                                         ParallelValidation.RowCheck<? super Map<String, String>> rowCheck)
+            throws IOException {
+        ParallelValidation.RowCheck<Map<String, String>> check = new RowChecker<Map<String, String>>(
+                requiredColumns(readColumns), rejectInvalidAccounts, rowCheck);
+        List<String> errors = new ArrayList<String>(1);
+        ParallelValidation.Warnings warnings = new ParallelValidation.Warnings();
+        try (RowCursor cursor = source.open()) {
+            long rowNumber = 0;
+            while (cursor.hasNext() && errors.isEmpty()) {
+                check.check(cursor.next(), ++rowNumber, errors, warnings);
+            }
+        }
+        return report(errors, warnings);
+    }
+
+    /**
+     * @return The required columns among the columns read, in the order of COLUMN_NAMES.
+     */
+    private static String[] requiredColumns(Collection<String> readColumns) {
+        if (readColumns == null) {
+            return COLUMN_NAMES;
+        }
+        List<String> columns = new ArrayList<String>();
+        for (String column : COLUMN_NAMES) {
+            if (readColumns.contains(column)) {
+                columns.add(column);
+            }
+        }
+        return columns.toArray(new String[0]);
+    }
+
+    private static boolean report(List<String> errors, ParallelValidation.Warnings warnings) {
+        warnings.log(LOGGER);
+        if (!errors.isEmpty()) {
+            LOGGER.severe(errors.get(0));
+            return false;
+        }
         return true;
     }
+
+    /**
+     * Checks the required columns, then the IBAN and BIC columns, then the further check
+     * of one row at a time. Column ordinals are resolved once per {@link RowSchema}, so
+     * rows read from a cursor are checked without hashing column names. Not thread-safe.
+     */
+    private static final class RowChecker<T extends Map<String, ?>> implements ParallelValidation.RowCheck<T> {
+        private final String[] columns;
+        private final BankIdentifiers.RowChecker accounts;
+        private final ParallelValidation.RowCheck<? super T> next;
+        private RowSchema boundSchema;
+        private int[] ordinals;
+
+        /**
+         * @param columns               The columns that must have a value.
+         * @param rejectInvalidAccounts true if an invalid IBAN or BIC is an error.
+         * @param next                  Check for rows without errors so far; may be null.
+         */
+        RowChecker(String[] columns, boolean rejectInvalidAccounts, ParallelValidation.RowCheck<? super T> next) {
+            this.columns = columns;
+            this.accounts = new BankIdentifiers.RowChecker(rejectInvalidAccounts);
+            this.next = next;
+        }
+
+        @Override
+        public void check(T row, long rowNumber, List<String> errors) {
+            check(row, rowNumber, errors, new ParallelValidation.Warnings());
+        }
+
+        @Override
+        public void check(T row, long rowNumber, List<String> errors, ParallelValidation.Warnings warnings) {
+            if (!checkRow(row, errors)) {
+                return;
+            }
+            int before = errors.size();
+            accounts.check(row, rowNumber, errors, warnings);
+            if (next != null && errors.size() == before) {
+                next.check(row, rowNumber, errors, warnings);
+            }
+        }
+
+        private boolean checkRow(Map<String, ?> row, List<String> errors) {
+            PaymentRow paymentRow = null;
+            if (row instanceof PaymentRow) {
+                paymentRow = (PaymentRow) row;
+                if (paymentRow.schema() != boundSchema) {
+                    boundSchema = paymentRow.schema();
+                    ordinals = boundSchema.ordinals(Arrays.asList(columns));
+                }
+            }
+            for (int i = 0; i < columns.length; i++) {
+                Object value = paymentRow != null ? paymentRow.get(ordinals[i]) : row.get(columns[i]);
+                if (value == null) {
+                    errors.add("Error: Missing value for column '" + columns[i] + "' in row: " + row);
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
@@ -0,0 +1,136 @@
+package com.pain001.db;
+
+import com.pain001.data.PaymentRow;
+import com.pain001.data.RowCursor;
+import com.pain001.data.RowSchema;
+import com.pain001.data.RowSource;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the rows of an SQLite table through a forward-only, read-only cursor.
+ * Unlike {@link DatabaseLoader#loadDbData(String, String)} nothing is collected, so
+ * the table can be arbitrarily large.
+ * <p>
+ * Column names are resolved once per cursor and each row is read by index into a
+ * {@link PaymentRow}. SQL NULL values stay null so that {@link DatabaseValidator}
+ * can report them.
+ */
+public class DbRowSource implements RowSource {
+    private static final String SQLITE_JDBC_URL_PREFIX = "jdbc:sqlite:";
+    private static final int FETCH_SIZE = 1000;
+
+    private final String dataFilePath;
+    private final String tableName;
+
+    /**
+     * @param dataFilePath Path of the SQLite database file.
+     * @param tableName    Name of the table to read; characters other than letters,
+     *                     digits and underscores are replaced.
+     */
+    public DbRowSource(String dataFilePath, String tableName) {
+        this.dataFilePath = dataFilePath;
+        this.tableName = DatabaseLoader.sanitizeTableName(tableName);
+    }
+
+    @Override
+    public RowCursor open() throws IOException {
+        if (!new File(dataFilePath).exists()) {
+            throw new FileNotFoundException("SQLite file '" + dataFilePath + "' does not exist.");
+        }
+
+        Connection conn = null;
+        try {
+            conn = DriverManager.getConnection(SQLITE_JDBC_URL_PREFIX + dataFilePath);
+            PreparedStatement stmt = conn.prepareStatement("SELECT * FROM " + tableName,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(FETCH_SIZE);
+            ResultSet rs = stmt.executeQuery();
+            return new DbRowCursor(conn, rs, DatabaseLoader.schemaOf(rs.getMetaData()));
+        } catch (SQLException e) {
+            closeQuietly(conn);
+            throw new IOException("Error accessing SQLite database: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String describe() {
+        return dataFilePath + " (" + tableName + ")";
+    }
+
+    private static void closeQuietly(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException ignored) {
+                // The original failure is more useful than this one
+            }
+        }
+    }
+
+    private static class DbRowCursor implements RowCursor {
+        private final Connection conn;
+        private final ResultSet rs;
+        private final RowSchema schema;
+        private final int columnCount;
+        private boolean advanced;
+        private boolean hasRow;
+
+        DbRowCursor(Connection conn, ResultSet rs, RowSchema schema) {
+            this.conn = conn;
+            this.rs = rs;
+            this.schema = schema;
+            this.columnCount = schema.size();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!advanced) {
+                try {
+                    hasRow = rs.next();
+                } catch (SQLException e) {
+                    throw new UncheckedIOException(new IOException("Error reading SQLite row: " + e.getMessage(), e));
+                }
+                advanced = true;
+            }
+            return hasRow;
+        }
+
+        @Override
+        public Map<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            advanced = false;
+            String[] values = new String[columnCount];
+            try {
+                for (int i = 0; i < columnCount; i++) {
+                    values[i] = rs.getString(i + 1);
+                }
+            } catch (SQLException e) {
+                throw new UncheckedIOException(new IOException("Error reading SQLite row: " + e.getMessage(), e));
+            }
+            return new PaymentRow(schema, values);
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Closing the connection also closes its statement and result set
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                throw new IOException("Error closing SQLite database: " + e.getMessage(), e);
+            }
+        }
+    }
+}
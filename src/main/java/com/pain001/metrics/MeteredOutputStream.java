@@ -0,0 +1,65 @@
+package com.pain001.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes passed to an output stream and the time spent writing them.
+ * Meant to sit below a buffer, where it sees few large writes.
+ */
+public class MeteredOutputStream extends FilterOutputStream {
+    private long bytes;
+    private long nanos;
+
+    public MeteredOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        long start = System.nanoTime();
+        out.write(b);
+        nanos += System.nanoTime() - start;
+        bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        out.write(b, off, len);
+        nanos += System.nanoTime() - start;
+        bytes += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        long start = System.nanoTime();
+        out.flush();
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        long start = System.nanoTime();
+        try {
+            out.close();
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * @return The number of bytes written so far.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return The time spent in the underlying stream so far, in nanoseconds.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+}
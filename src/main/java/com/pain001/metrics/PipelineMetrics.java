@@ -0,0 +1,196 @@
+package com.pain001.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide totals of all generation runs, published over JMX.
+ * <p>
+ * The MBean is registered with the platform MBean server the first time a run is
+ * recorded. Registration failures are logged and do not affect generation.
+ */
+public final class PipelineMetrics implements PipelineMetricsMBean {
+    public static final String OBJECT_NAME = "com.pain001:type=PipelineMetrics";
+
+    private static final Logger LOGGER = Logger.getLogger(PipelineMetrics.class.getName());
+    private static final PipelineMetrics INSTANCE = register(new PipelineMetrics());
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder failedRuns = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder transactions = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final AtomicLongArray stageNanos = new AtomicLongArray(Stage.values().length);
+    private volatile RunMetrics lastRun;
+
+    private PipelineMetrics() {
+    }
+
+    private static PipelineMetrics register(PipelineMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException | SecurityException e) {
+            LOGGER.warning("Unable to register " + OBJECT_NAME + ": " + e.getMessage());
+        }
+        return metrics;
+    }
+
+    /**
+     * @return The shared instance, registered with the platform MBean server.
+     */
+    public static PipelineMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Adds a finished run to the totals.
+     *
+     * @param run The metrics of the run.
+     */
+    public void record(RunMetrics run) {
+        if (!run.isEnabled()) {
+            return;
+        }
+        runs.increment();
+        if (!run.isSuccess()) {
+            failedRuns.increment();
+        }
+        rows.add(run.getRows());
+        transactions.add(run.getTransactions());
+        bytesRead.add(run.getBytesRead());
+        bytesWritten.add(run.getBytesWritten());
+        for (Stage stage : Stage.values()) {
+            stageNanos.addAndGet(stage.ordinal(), run.getStageNanos(stage));
+        }
+        lastRun = run;
+    }
+
+    @Override
+    public long getRunCount() {
+        return runs.sum();
+    }
+
+    @Override
+    public long getFailedRunCount() {
+        return failedRuns.sum();
+    }
+
+    @Override
+    public long getRowCount() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getTransactionCount() {
+        return transactions.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getLoadMillis() {
+        return stageMillis(Stage.LOAD);
+    }
+
+    @Override
+    public long getValidateMillis() {
+        return stageMillis(Stage.VALIDATE);
+    }
+
+    @Override
+    public long getDuplicateCheckMillis() {
+        return stageMillis(Stage.DUPLICATE_CHECK);
+    }
+
+    @Override
+    public long getPrepareMillis() {
+        return stageMillis(Stage.PREPARE);
+    }
+
+    @Override
+    public long getRenderMillis() {
+        return stageMillis(Stage.RENDER);
+    }
+
+    @Override
+    public long getWriteMillis() {
+        return stageMillis(Stage.WRITE);
+    }
+
+    @Override
+    public long getXsdValidationMillis() {
+        return stageMillis(Stage.XSD_VALIDATION);
+    }
+
+    private long stageMillis(Stage stage) {
+        return stageNanos.get(stage.ordinal()) / 1_000_000;
+    }
+
+    @Override
+    public double getLastRowsPerSecond() {
+        RunMetrics run = lastRun;
+        return run != null ? run.getRowsPerSecond() : 0.0;
+    }
+
+    @Override
+    public long getLastPeakHeapBytes() {
+        RunMetrics run = lastRun;
+        return run != null ? run.getPeakHeapBytes() : 0L;
+    }
+
+    @Override
+    public long getPeakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    @Override
+    public String getLastRunSummary() {
+        RunMetrics run = lastRun;
+        return run != null ? run.toJson() : null;
+    }
+
+    @Override
+    public void reset() {
+        runs.reset();
+        failedRuns.reset();
+        rows.reset();
+        transactions.reset();
+        bytesRead.reset();
+        bytesWritten.reset();
+        for (int i = 0; i < stageNanos.length(); i++) {
+            stageNanos.set(i, 0);
+        }
+        lastRun = null;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+}
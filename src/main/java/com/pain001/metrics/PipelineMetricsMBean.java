@@ -0,0 +1,51 @@
+package com.pain001.metrics;
+
+/**
+ * JMX view of the generation runs of this JVM, registered as
+ * {@value PipelineMetrics#OBJECT_NAME}. Counters add up all runs since start or the
+ * last {@link #reset()}; the "Last" attributes describe the most recent finished run.
+ */
+public interface PipelineMetricsMBean {
+
+    long getRunCount();
+
+    long getFailedRunCount();
+
+    long getRowCount();
+
+    long getTransactionCount();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getLoadMillis();
+
+    long getValidateMillis();
+
+    long getDuplicateCheckMillis();
+
+    long getPrepareMillis();
+
+    long getRenderMillis();
+
+    long getWriteMillis();
+
+    long getXsdValidationMillis();
+
+    double getLastRowsPerSecond();
+
+    long getLastPeakHeapBytes();
+
+    /**
+     * @return The peak heap use of the JVM since start or the last reset, summed over the heap pools.
+     */
+    long getPeakHeapBytes();
+
+    /**
+     * @return The JSON summary of the most recent run, or null if none has finished.
+     */
+    String getLastRunSummary();
+
+    void reset();
+}
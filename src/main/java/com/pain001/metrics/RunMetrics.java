@@ -0,0 +1,350 @@
+package com.pain001.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timings and counters of one generation run.
+ * <p>
+ * All updates are thread-safe, so the parallel validators and split writers of a run
+ * report into the same instance. Stage times are added up across threads and can exceed
+ * the elapsed time of the run when work runs in parallel. Peak heap is the highest heap
+ * use seen at the end of a stage, which is a lower bound of the true peak.
+ */
+public final class RunMetrics {
+    /**
+     * Ignores all updates; used when no metrics are collected.
+     */
+    public static final RunMetrics DISABLED = new RunMetrics(false);
+
+    private static final Timer NO_OP_TIMER = () -> { };
+
+    private final boolean enabled;
+    private final AtomicLongArray stageNanos = new AtomicLongArray(Stage.values().length);
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong transactions = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong peakHeapBytes = new AtomicLong();
+    private volatile String messageType;
+    private volatile String dataFilePath;
+    private volatile String outputFilePath;
+    private volatile long startNanos;
+    private volatile long elapsedNanos;
+    private volatile boolean finished;
+    private volatile boolean success;
+
+    public RunMetrics() {
+        this(true);
+    }
+
+    private RunMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return false for {@link #DISABLED}.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Marks the start of the run.
+     *
+     * @param messageType The payment initiation message type being generated.
+     * @param dataFilePath Path of the input file.
+     */
+    public void start(String messageType, String dataFilePath) {
+        if (!enabled) {
+            return;
+        }
+        this.messageType = messageType;
+        this.dataFilePath = dataFilePath;
+        this.startNanos = System.nanoTime();
+        sampleHeap();
+    }
+
+    /**
+     * Marks the end of the run.
+     *
+     * @param success true if the output was generated and validated.
+     */
+    public void finish(boolean success) {
+        if (!enabled) {
+            return;
+        }
+        sampleHeap();
+        this.elapsedNanos = System.nanoTime() - startNanos;
+        this.success = success;
+        this.finished = true;
+    }
+
+    /**
+     * Starts timing a stage; closing the timer adds the elapsed time to the stage.
+     *
+     * @param stage The stage being timed.
+     * @return The running timer.
+     */
+    public Timer time(Stage stage) {
+        if (!enabled) {
+            return NO_OP_TIMER;
+        }
+        long start = System.nanoTime();
+        return () -> {
+            addStageNanos(stage, System.nanoTime() - start);
+            sampleHeap();
+        };
+    }
+
+    /**
+     * Runs an action and adds its elapsed time to a stage, also when it throws.
+     *
+     * @param stage  The stage being timed.
+     * @param action The work of the stage.
+     * @return The result of the action.
+     * @throws E If the action throws.
+     */
+    public <T, E extends Exception> T time(Stage stage, TimedCall<T, E> action) throws E {
+        Timer timer = time(stage);
+        try {
+            return action.call();
+        } finally {
+            timer.close();
+        }
+    }
+
+    /**
+     * Runs an action and adds its elapsed time to a stage, also when it throws.
+     *
+     * @param stage  The stage being timed.
+     * @param action The work of the stage.
+     * @throws E If the action throws.
+     */
+    public <E extends Exception> void time(Stage stage, TimedRun<E> action) throws E {
+        Timer timer = time(stage);
+        try {
+            action.run();
+        } finally {
+            timer.close();
+        }
+    }
+
+    public void addStageNanos(Stage stage, long nanos) {
+        if (enabled) {
+            stageNanos.addAndGet(stage.ordinal(), nanos);
+        }
+    }
+
+    public void addRows(long count) {
+        if (enabled) {
+            rows.addAndGet(count);
+        }
+    }
+
+    public void addTransactions(long count) {
+        if (enabled) {
+            transactions.addAndGet(count);
+        }
+    }
+
+    public void addBytesRead(long count) {
+        if (enabled) {
+            bytesRead.addAndGet(count);
+        }
+    }
+
+    /**
+     * Records a written output file.
+     *
+     * @param bytes Size of the file.
+     */
+    public void addFile(long bytes) {
+        if (enabled) {
+            files.incrementAndGet();
+            bytesWritten.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * @param outputFilePath Path of the output, or the base path of a split output.
+     */
+    public void setOutputFilePath(String outputFilePath) {
+        if (enabled) {
+            this.outputFilePath = outputFilePath;
+        }
+    }
+
+    private void sampleHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        peakHeapBytes.accumulateAndGet(used, Math::max);
+    }
+
+    public String getMessageType() {
+        return messageType;
+    }
+
+    public String getDataFilePath() {
+        return dataFilePath;
+    }
+
+    public String getOutputFilePath() {
+        return outputFilePath;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * @return The elapsed time of the run, or up to now if it has not finished.
+     */
+    public long getElapsedNanos() {
+        return finished ? elapsedNanos : System.nanoTime() - startNanos;
+    }
+
+    public long getStageNanos(Stage stage) {
+        return stageNanos.get(stage.ordinal());
+    }
+
+    /**
+     * @return The number of input rows read.
+     */
+    public long getRows() {
+        return rows.get();
+    }
+
+    /**
+     * @return The number of transactions written.
+     */
+    public long getTransactions() {
+        return transactions.get();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * @return The number of output files written.
+     */
+    public long getFiles() {
+        return files.get();
+    }
+
+    public long getPeakHeapBytes() {
+        return peakHeapBytes.get();
+    }
+
+    /**
+     * @return Input rows per second of elapsed time.
+     */
+    public double getRowsPerSecond() {
+        long nanos = getElapsedNanos();
+        return nanos > 0 ? getRows() * 1e9 / nanos : 0.0;
+    }
+
+    /**
+     * @return The run as a single-line JSON object.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(512).append('{');
+        json.append("\"messageType\":").append(quote(messageType));
+        json.append(",\"dataFile\":").append(quote(dataFilePath));
+        json.append(",\"outputFile\":").append(quote(outputFilePath));
+        json.append(",\"success\":").append(success);
+        json.append(",\"elapsedMillis\":").append(millis(getElapsedNanos()));
+        json.append(",\"rows\":").append(getRows());
+        json.append(",\"transactions\":").append(getTransactions());
+        json.append(",\"rowsPerSecond\":").append(String.format(Locale.ROOT, "%.1f", getRowsPerSecond()));
+        json.append(",\"bytesRead\":").append(getBytesRead());
+        json.append(",\"bytesWritten\":").append(getBytesWritten());
+        json.append(",\"files\":").append(getFiles());
+        json.append(",\"peakHeapBytes\":").append(getPeakHeapBytes());
+        json.append(",\"stageMillis\":{");
+        for (Stage stage : Stage.values()) {
+            json.append(stage.ordinal() == 0 ? "" : ",").append('"').append(stage.key()).append("\":")
+                    .append(millis(getStageNanos(stage)));
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Writes {@link #toJson()} to a file.
+     *
+     * @param filePath Path of the summary file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeJson(String filePath) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+            writer.write(System.lineSeparator());
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+
+    /**
+     * A running stage timer. Work that throws more than one kind of checked exception is
+     * timed by closing the timer in a finally block.
+     */
+    public interface Timer extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Timed work with a result.
+     */
+    public interface TimedCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * Timed work without a result.
+     */
+    public interface TimedRun<E extends Exception> {
+        void run() throws E;
+    }
+}
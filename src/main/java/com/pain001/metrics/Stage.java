@@ -0,0 +1,54 @@
+package com.pain001.metrics;
+
+/**
+ * Stages of a generation run that are timed separately.
+ * <p>
+ * In streaming mode rows are read while a stage runs, so reading time is part of the
+ * stage that consumes the rows rather than of {@link #LOAD}.
+ */
+public enum Stage {
+    /**
+     * Reading the input file into memory.
+     */
+    LOAD("load"),
+    /**
+     * Checking the input rows for missing values and wrong types.
+     */
+    VALIDATE("validate"),
+    /**
+     * Looking up and reserving the payment ids in the duplicate index. When rows are
+     * streamed, the ids are reserved in the validation pass and that time is moved here
+     * from {@link #VALIDATE}.
+     */
+    DUPLICATE_CHECK("duplicate_check"),
+    /**
+     * Computing totals, mapping and grouping rows into the data handed to the renderer.
+     */
+    PREPARE("prepare"),
+    /**
+     * Rendering the XML, excluding the time spent in {@link #WRITE}.
+     */
+    RENDER("render"),
+    /**
+     * Writing the rendered bytes to disk, including the final flush.
+     */
+    WRITE("write"),
+    /**
+     * Validating the written file against the XSD. When the XML is validated while it is
+     * written, this time is part of {@link #RENDER} instead.
+     */
+    XSD_VALIDATION("xsd_validation");
+
+    private final String key;
+
+    Stage(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @return The name of the stage in the JSON summary.
+     */
+    public String key() {
+        return key;
+    }
+}
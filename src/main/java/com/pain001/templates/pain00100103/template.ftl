@@ -19,33 +19,38 @@
                 </PstlAdr>
             </InitgPty>
         </GrpHdr>
+        <#list payment_informations as pmt_inf>
         <PmtInf>
-            <PmtInfId>${payment_information_id}</PmtInfId>
-            <PmtMtd>${payment_method}</PmtMtd>
-            <BtchBookg>${batch_booking}</BtchBookg>
-            <ReqdExctnDt>${requested_execution_date}</ReqdExctnDt>
+            <PmtInfId>${pmt_inf.payment_information_id}</PmtInfId>
+            <PmtMtd>${pmt_inf.payment_method}</PmtMtd>
+            <BtchBookg>${pmt_inf.batch_booking}</BtchBookg>
+            <#if pmt_inf.pmt_inf_nb_of_txs??>
+            <NbOfTxs>${pmt_inf.pmt_inf_nb_of_txs}</NbOfTxs>
+            <CtrlSum>${pmt_inf.pmt_inf_ctrl_sum}</CtrlSum>
+            </#if>
+            <ReqdExctnDt>${pmt_inf.requested_execution_date}</ReqdExctnDt>
             <Dbtr>
-                <Nm>${debtor_name}</Nm>
+                <Nm>${pmt_inf.debtor_name}</Nm>
                 <PstlAdr>
-                    <#if debtor_street_name??><StrtNm>${debtor_street_name}</StrtNm></#if>
-                    <#if debtor_building_number??><BldgNb>${debtor_building_number}</BldgNb></#if>
-                    <#if debtor_postal_code??><PstCd>${debtor_postal_code}</PstCd></#if>
-                    <#if debtor_town_name??><TwnNm>${debtor_town_name}</TwnNm></#if>
-                    <#if debtor_country_code??><Ctry>${debtor_country_code}</Ctry></#if>
+                    <#if pmt_inf.debtor_street_name??><StrtNm>${pmt_inf.debtor_street_name}</StrtNm></#if>
+                    <#if pmt_inf.debtor_building_number??><BldgNb>${pmt_inf.debtor_building_number}</BldgNb></#if>
+                    <#if pmt_inf.debtor_postal_code??><PstCd>${pmt_inf.debtor_postal_code}</PstCd></#if>
+                    <#if pmt_inf.debtor_town_name??><TwnNm>${pmt_inf.debtor_town_name}</TwnNm></#if>
+                    <#if pmt_inf.debtor_country_code??><Ctry>${pmt_inf.debtor_country_code}</Ctry></#if>
                 </PstlAdr>
             </Dbtr>
             <DbtrAcct>
                 <Id>
-                    <IBAN>${debtor_account_IBAN}</IBAN>
+                    <IBAN>${pmt_inf.debtor_account_IBAN}</IBAN>
                 </Id>
             </DbtrAcct>
             <DbtrAgt>
                 <FinInstnId>
-                    <BIC>${debtor_agent_BIC}</BIC>
+                    <BIC>${pmt_inf.debtor_agent_BIC}</BIC>
                 </FinInstnId>
             </DbtrAgt>
-            <ChrgBr>${charge_bearer}</ChrgBr>
-            <#list transactions as tx>
+            <ChrgBr>${pmt_inf.charge_bearer}</ChrgBr>
+            <#list pmt_inf.transactions as tx>
                 <CdtTrfTxInf>
                     <PmtId>
                         <InstrId>TX-${tx_index + 1}</InstrId>
@@ -89,5 +94,6 @@
                 </CdtTrfTxInf>
             </#list>
         </PmtInf>
+        </#list>
     </CstmrCdtTrfInitn>
 </Document>
\ No newline at end of file
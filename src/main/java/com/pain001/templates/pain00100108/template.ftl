@@ -19,37 +19,42 @@
                 </PstlAdr>
             </InitgPty>
         </GrpHdr>
+        <#list payment_informations as pmt_inf>
         <PmtInf>
-            <PmtInfId>${payment_information_id}</PmtInfId>
-            <PmtMtd>${payment_method}</PmtMtd>
-            <BtchBookg>${batch_booking}</BtchBookg>
+            <PmtInfId>${pmt_inf.payment_information_id}</PmtInfId>
+            <PmtMtd>${pmt_inf.payment_method}</PmtMtd>
+            <BtchBookg>${pmt_inf.batch_booking}</BtchBookg>
+            <#if pmt_inf.pmt_inf_nb_of_txs??>
+            <NbOfTxs>${pmt_inf.pmt_inf_nb_of_txs}</NbOfTxs>
+            <CtrlSum>${pmt_inf.pmt_inf_ctrl_sum}</CtrlSum>
+            </#if>
             <ReqdExctnDt>
-                <Dt>${requested_execution_date}</Dt>
+                <Dt>${pmt_inf.requested_execution_date}</Dt>
             </ReqdExctnDt>
             <Dbtr>
-                <Nm>${debtor_name}</Nm>
+                <Nm>${pmt_inf.debtor_name}</Nm>
                 <PstlAdr>
-                    <StrtNm>${debtor_street}</StrtNm>
-                    <BldgNb>${debtor_building_number}</BldgNb>
-                    <PstCd>${debtor_postal_code}</PstCd>
-                    <TwnNm>${debtor_town}</TwnNm>
-                    <Ctry>${debtor_country}</Ctry>
+                    <StrtNm>${pmt_inf.debtor_street}</StrtNm>
+                    <BldgNb>${pmt_inf.debtor_building_number}</BldgNb>
+                    <PstCd>${pmt_inf.debtor_postal_code}</PstCd>
+                    <TwnNm>${pmt_inf.debtor_town}</TwnNm>
+                    <Ctry>${pmt_inf.debtor_country}</Ctry>
                 </PstlAdr>
             </Dbtr>
             <DbtrAcct>
                 <Id>
                     <Othr>
-                        <Id>${debtor_account_IBAN}</Id>
+                        <Id>${pmt_inf.debtor_account_IBAN}</Id>
                     </Othr>
                 </Id>
             </DbtrAcct>
             <DbtrAgt>
                 <FinInstnId>
-                    <BICFI>${debtor_agent_BIC}</BICFI>
+                    <BICFI>${pmt_inf.debtor_agent_BIC}</BICFI>
                 </FinInstnId>
             </DbtrAgt>
 
-            <#list transactions as tx>
+            <#list pmt_inf.transactions as tx>
                 <CdtTrfTxInf>
                     <PmtId>
                         <InstrId>${tx.payment_instruction_id}</InstrId>
@@ -95,5 +100,6 @@
             </#list>
 
         </PmtInf>
+        </#list>
     </CstmrCdtTrfInitn>
 </Document>
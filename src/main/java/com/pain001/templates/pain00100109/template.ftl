@@ -11,28 +11,33 @@
                 <Nm>${initiator_name}</Nm>
             </InitgPty>
         </GrpHdr>
+        <#list payment_informations as pmt_inf>
         <PmtInf>
-            <PmtInfId>${payment_id}</PmtInfId>
-            <PmtMtd>${payment_method}</PmtMtd>
+            <PmtInfId>${pmt_inf.payment_id}</PmtInfId>
+            <PmtMtd>${pmt_inf.payment_method}</PmtMtd>
+            <#if pmt_inf.pmt_inf_nb_of_txs??>
+            <NbOfTxs>${pmt_inf.pmt_inf_nb_of_txs}</NbOfTxs>
+            <CtrlSum>${pmt_inf.pmt_inf_ctrl_sum}</CtrlSum>
+            </#if>
             <ReqdExctnDt>
-                <Dt>${requested_execution_date}</Dt>
+                <Dt>${pmt_inf.requested_execution_date}</Dt>
             </ReqdExctnDt>
             <Dbtr>
-                <Nm>${debtor_name}</Nm>
+                <Nm>${pmt_inf.debtor_name}</Nm>
             </Dbtr>
             <DbtrAcct>
                 <Id>
-                    <IBAN>${debtor_account_IBAN}</IBAN>
+                    <IBAN>${pmt_inf.debtor_account_IBAN}</IBAN>
                 </Id>
             </DbtrAcct>
             <DbtrAgt>
                 <FinInstnId>
-                    <BICFI>${debtor_agent_BIC}</BICFI>
+                    <BICFI>${pmt_inf.debtor_agent_BIC}</BICFI>
                 </FinInstnId>
             </DbtrAgt>
-            <ChrgBr>${charge_bearer}</ChrgBr>
+            <ChrgBr>${pmt_inf.charge_bearer}</ChrgBr>
 
-            <#list transactions as tx>
+            <#list pmt_inf.transactions as tx>
                 <CdtTrfTxInf>
                     <PmtId>
                         <EndToEndId>${tx.payment_id}</EndToEndId>
@@ -69,5 +74,6 @@
             </#list>
 
         </PmtInf>
+        </#list>
     </CstmrCdtTrfInitn>
 </Document>
@@ -0,0 +1,156 @@
+package com.pain001.xml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Progress of a streamed generation run, saved next to the output so an interrupted
+ * run can resume instead of starting over.
+ * <p>
+ * A checkpoint is taken between two transactions: the partial output holds exactly the
+ * message up to the end of the last emitted transaction, and the input offset points
+ * at the next row. The header totals are kept too, so a resumed run skips the totals
+ * pass and renders the same header.
+ */
+final class Checkpoint {
+    private static final String SUFFIX = ".checkpoint";
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    final String messageType;
+    final String sourceFingerprint;
+    final String outputFilePath;
+    final long rowCount;
+    final long transactionCount;
+    final String nbOfTxs;
+    final String ctrlSum;
+    final long rowsEmitted;
+    final long inputOffset;
+    final long outputPosition;
+    final long emittedAmountUnits;
+
+    Checkpoint(String messageType, String sourceFingerprint, String outputFilePath, long rowCount,
+               long transactionCount, String nbOfTxs, String ctrlSum, long rowsEmitted, long inputOffset,
+               long outputPosition, long emittedAmountUnits) {
+        this.messageType = messageType;
+        this.sourceFingerprint = sourceFingerprint;
+        this.outputFilePath = outputFilePath;
+        this.rowCount = rowCount;
+        this.transactionCount = transactionCount;
+        this.nbOfTxs = nbOfTxs;
+        this.ctrlSum = ctrlSum;
+        this.rowsEmitted = rowsEmitted;
+        this.inputOffset = inputOffset;
+        this.outputPosition = outputPosition;
+        this.emittedAmountUnits = emittedAmountUnits;
+    }
+
+    /**
+     * @param outputFilePath Path of the generated file.
+     * @return The path of its checkpoint, e.g. "x.xml.checkpoint" for "x.xml".
+     */
+    static String filePathFor(String outputFilePath) {
+        return outputFilePath + SUFFIX;
+    }
+
+    /**
+     * @param outputFilePath Path of the generated file.
+     * @return The path the message is written to until it is complete, e.g. "x.xml.partial" for "x.xml".
+     */
+    static String partialFilePathFor(String outputFilePath) {
+        return outputFilePath + PARTIAL_SUFFIX;
+    }
+
+    /**
+     * @param messageType       The pain version being generated.
+     * @param sourceFingerprint Fingerprint of the input source.
+     * @param outputFilePath    Path of the generated file.
+     * @return true if this checkpoint was taken by a run with the same input and output,
+     * and the partial output still holds everything up to the checkpoint.
+     */
+    boolean matches(String messageType, String sourceFingerprint, String outputFilePath) {
+        return this.messageType.equals(messageType)
+                && this.sourceFingerprint.equals(sourceFingerprint)
+                && this.outputFilePath.equals(outputFilePath)
+                && new File(partialFilePathFor(outputFilePath)).length() >= outputPosition;
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file and moves it in place, so a crash leaves
+     * either the previous or the new checkpoint.
+     *
+     * @param filePath Path of the checkpoint file.
+     * @throws IOException If the file cannot be written.
+     */
+    void save(String filePath) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("messageType", messageType);
+        properties.setProperty("source", sourceFingerprint);
+        properties.setProperty("output", outputFilePath);
+        properties.setProperty("rowCount", String.valueOf(rowCount));
+        properties.setProperty("transactionCount", String.valueOf(transactionCount));
+        if (nbOfTxs != null) {
+            properties.setProperty("nbOfTxs", nbOfTxs);
+            properties.setProperty("ctrlSum", ctrlSum);
+        }
+        properties.setProperty("rowsEmitted", String.valueOf(rowsEmitted));
+        properties.setProperty("inputOffset", String.valueOf(inputOffset));
+        properties.setProperty("outputPosition", String.valueOf(outputPosition));
+        properties.setProperty("emittedAmountUnits", String.valueOf(emittedAmountUnits));
+
+        Path target = Paths.get(filePath);
+        Path temporary = Paths.get(filePath + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            properties.store(out, "pain.001 generation checkpoint");
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param filePath Path of the checkpoint file.
+     * @return The checkpoint, or null if there is none or it cannot be read.
+     */
+    static Checkpoint load(String filePath) {
+        Path path = Paths.get(filePath);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            properties.load(in);
+            return new Checkpoint(
+                    required(properties, "messageType"),
+                    required(properties, "source"),
+                    required(properties, "output"),
+                    Long.parseLong(required(properties, "rowCount")),
+                    Long.parseLong(required(properties, "transactionCount")),
+                    properties.getProperty("nbOfTxs"),
+                    properties.getProperty("ctrlSum"),
+                    Long.parseLong(required(properties, "rowsEmitted")),
+                    Long.parseLong(required(properties, "inputOffset")),
+                    Long.parseLong(required(properties, "outputPosition")),
+                    Long.parseLong(required(properties, "emittedAmountUnits")));
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Ignoring unreadable checkpoint " + filePath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String required(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("missing " + key);
+        }
+        return value;
+    }
+
+    static void delete(String filePath) throws IOException {
+        Files.deleteIfExists(Paths.get(filePath));
+    }
+}
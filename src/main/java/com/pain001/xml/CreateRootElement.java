@@ -3,9 +3,7 @@ package com.pain001.xml;
 import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.Map;
-import freemarker.template.Configuration;
 import freemarker.template.Template;
-import freemarker.template.TemplateExceptionHandler;
 
 public class CreateRootElement {
     private static final String NAMESPACE = "urn:iso:std:iso:20022:tech:xsd:";
@@ -13,14 +11,8 @@ public class CreateRootElement {
 
     public static String createRootElement(String messageType) {
         try {
-            // Configure FreeMarker
-            Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
-            cfg.setClassForTemplateLoading(CreateRootElement.class, "/templates");
-            cfg.setDefaultEncoding("UTF-8");
-            cfg.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
-
-            // Load the FreeMarker template
-            Template template = cfg.getTemplate("root_element.ftl");
+            // Load the FreeMarker template from the shared engine
+            Template template = TemplateEngine.getConfiguration().getTemplate("root_element.ftl");
 
             // Data model for FreeMarker
             Map<String, String> dataModel = new HashMap<>();
@@ -13,13 +13,8 @@ public class CreateXMLV3 {
         Element cstmrCdtTrfInitnElement = doc.createElement("CstmrCdtTrfInitn");
         root.appendChild(cstmrCdtTrfInitnElement);
 
-        // Configure FreeMarker
-        Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
-        cfg.setDirectoryForTemplateLoading(new File("com/templates/pain.001.001.03"));
-        cfg.setDefaultEncoding("UTF-8");
-
         // Load the template
-        Template template = cfg.getTemplate("template.xml");
+        Template template = TemplateEngine.getTemplate("pain.001.001.03");
 
         // Prepare data for FreeMarker
         Map<String, Object> templateData = new HashMap<>();
@@ -15,13 +15,8 @@ public class CreateXMLV4 {
         Element cstmrCdtTrfInitn = root.createElement("CstmrCdtTrfInitn");
         root.getDocumentElement().appendChild(cstmrCdtTrfInitn);
 
-        // Configure FreeMarker
-        Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
-        cfg.setClassForTemplateLoading(CreateXMLV4.class, "/templates");
-        cfg.setDefaultEncoding("UTF-8");
-
         // Load the FreeMarker template
-        Template template = cfg.getTemplate("com/templates/pain.001.001.04/template.ftl");
+        Template template = TemplateEngine.getTemplate("pain.001.001.04");
 
         // Prepare data for rendering
         Map<String, Object> xmlData = new HashMap<>();
@@ -13,13 +13,8 @@ public class CreateXMLV5 {
         Element cstmrCdtTrfInitnElement = doc.createElement("CstmrCdtTrfInitn");
         doc.appendChild(cstmrCdtTrfInitnElement);
 
-        // Configure FreeMarker
-        Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
-        cfg.setDirectoryForTemplateLoading(new File("com/templates/pain.001.001.05"));
-        cfg.setDefaultEncoding("UTF-8");
-
         // Load template
-        Template template = cfg.getTemplate("template.xml");
+        Template template = TemplateEngine.getTemplate("pain.001.001.05");
 
         // Prepare data model
         Map<String, Object> xmlData = new HashMap<>();
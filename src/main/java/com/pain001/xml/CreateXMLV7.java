@@ -1,8 +1,6 @@
 package com.pain001.xml;
 
-import freemarker.template.Configuration;
 import freemarker.template.Template;
-import freemarker.template.TemplateExceptionHandler;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -14,14 +12,8 @@ import java.util.Map;
 public class CreateXMLV7 {
     public static Document createXmlV7(Document root, Map<String, String> data) {
         try {
-            // Configure FreeMarker
-            Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
-            cfg.setClassForTemplateLoading(CreateXMLV7.class, "/templates");
-            cfg.setDefaultEncoding("UTF-8");
-            cfg.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
-
             // Load the FreeMarker template
-            Template template = cfg.getTemplate("pain001_v7.ftl");
+            Template template = TemplateEngine.getTemplate("pain.001.001.07");
 
             // Process the template
             StringWriter writer = new StringWriter();
@@ -13,12 +13,7 @@ public class CreateXMLV9 {
         Element cstmrCdtTrfInitnElement = root.createElement("CstmrCdtTrfInitn");
         root.getDocumentElement().appendChild(cstmrCdtTrfInitnElement);
 
-        // Configure FreeMarker
-        Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
-        cfg.setDirectoryForTemplateLoading(new File("com/templates/pain.001.001.09"));
-        cfg.setDefaultEncoding("UTF-8");
-
-        Template template = cfg.getTemplate("template.xml");
+        Template template = TemplateEngine.getTemplate("pain.001.001.09");
 
         // Prepare data for FreeMarker
         Map<String, Object> xmlData = new HashMap<>();
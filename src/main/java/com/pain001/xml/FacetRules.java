@@ -0,0 +1,764 @@
+package com.pain001.xml;
+
+import com.pain001.data.PaymentRow;
+import com.pain001.data.ParallelValidation;
+import com.pain001.data.RowSchema;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Per-column checks compiled from the facets of an XSD schema, so input rows with values
+ * the schema would reject fail before any XML is rendered, with their row numbers.
+ * <p>
+ * The bundled template of a version tells which element or attribute every input column
+ * is written to. The simple type of that element is looked up in the schema and its
+ * maxLength, minLength, pattern, enumeration, totalDigits, fractionDigits and range
+ * facets, including those of the types it restricts, become the column's check.
+ * Transaction columns are checked in every row; header columns in the first row, and
+ * payment information columns in every row when rows are grouped, since any row may
+ * open a group. Empty values are left to the required-column checks, and totals that
+ * are computed while rendering are not checked.
+ * <p>
+ * Rules are compiled once per message type and schema file and shared. Checking a valid
+ * row allocates nothing but the trimmed copy of a padded decimal value.
+ */
+public final class FacetRules {
+    private static final Logger LOGGER = Logger.getLogger(FacetRules.class.getName());
+    private static final String XS = XMLConstants.W3C_XML_SCHEMA_NS_URI;
+    private static final Pattern INTERPOLATION = Pattern.compile("\\$\\{\\s*([\\w.]+)\\s*}");
+    private static final Pattern DECIMAL = Pattern.compile("[+-]?(\\d+(\\.\\d*)?|\\.\\d+)");
+    // Escapes and class subtraction that java.util.regex reads differently
+    private static final Pattern XSD_ONLY_SYNTAX = Pattern.compile("\\\\[iIcC]|\\\\[pP]\\{Is|-\\[");
+    private static final Pattern IF_DIRECTIVE = Pattern.compile("<#if\\s+([\\w.]+)\\?\\?\\s*>");
+    private static final Pattern LIST_DIRECTIVE = Pattern.compile("<#list\\s+([\\w.]+)\\s+as\\s+(\\w+)\\s*>");
+    private static final String IF_ELEMENT = "ftl-if";
+    private static final String LIST_ELEMENT = "ftl-list";
+    private static final String TRANSACTION_VARIABLE = "tx";
+    private static final String PAYMENT_INFORMATION_VARIABLE = "pmt_inf";
+    private static final Set<String> COMPUTED_FIELDS = new HashSet<>(Arrays.asList(
+            "nb_of_txs", "ctrl_sum", "pmt_inf_nb_of_txs", "pmt_inf_ctrl_sum"));
+    private static final int MAX_QUOTED_LENGTH = 40;
+
+    private static final ConcurrentMap<String, FacetRules> RULES = new ConcurrentHashMap<>();
+
+    private enum Scope { TRANSACTION, PAYMENT_INFORMATION, HEADER }
+
+    private final String messageType;
+    private final ColumnRule[] rules;
+
+    private FacetRules(String messageType, List<ColumnRule> rules) {
+        this.messageType = messageType;
+        this.rules = rules.toArray(new ColumnRule[0]);
+    }
+
+    /**
+     * Returns the rules for a message type and schema, compiling them on first use.
+     * A schema that cannot be compiled yields no rules; the output is still validated
+     * against it after rendering.
+     *
+     * @param messageType The payment initiation message type (e.g. "pain.001.001.03").
+     * @param xsdFilePath Path to the XSD schema the output is validated against.
+     * @return The shared rules.
+     */
+    public static FacetRules forSchema(String messageType, String xsdFilePath) {
+        return RULES.computeIfAbsent(messageType + "|" + fileKey(xsdFilePath),
+                key -> compile(messageType, xsdFilePath));
+    }
+
+    /**
+     * @return The number of column checks.
+     */
+    public int size() {
+        return rules.length;
+    }
+
+    /**
+     * @return The input columns that are checked.
+     */
+    public Set<String> columns() {
+        Set<String> columns = new LinkedHashSet<>();
+        for (ColumnRule rule : rules) {
+            columns.add(rule.column);
+        }
+        return columns;
+    }
+
+    /**
+     * Returns a check of one row at a time, for the validators to run in their pass over
+     * the input. Header columns are checked in row 1. Each check reuses its matchers and
+     * must not be shared between threads; create one per chunk of rows.
+     *
+     * @param groupPaymentInformation true if rows are grouped into several payment information blocks.
+     * @return The check, or null if the schema yields no column checks.
+     */
+    public ParallelValidation.RowCheck<Map<String, String>> rowCheck(boolean groupPaymentInformation) {
+        if (rules.length == 0) {
+            return null;
+        }
+        Checker checker = new Checker();
+        return (row, rowNumber, errors) -> {
+            boolean firstRow = rowNumber == 1;
+            checker.check(row, rowNumber, firstRow, firstRow || groupPaymentInformation, errors);
+        };
+    }
+
+    /**
+     * Reads the values a row gives the checked columns. Column ordinals are resolved once
+     * per {@link RowSchema} and pattern matchers are reused; not thread-safe.
+     */
+    private final class Checker {
+        private final Matcher[][] matchers = new Matcher[rules.length][];
+        private RowSchema boundSchema;
+        private int[] ordinals;
+
+        Checker() {
+            for (int i = 0; i < rules.length; i++) {
+                List<Pattern> patterns = rules[i].facets.patterns;
+                matchers[i] = new Matcher[patterns.size()];
+                for (int j = 0; j < matchers[i].length; j++) {
+                    matchers[i][j] = patterns.get(j).matcher("");
+                }
+            }
+        }
+
+        void check(Map<String, String> row, long rowNumber, boolean header, boolean paymentInformation,
+                   List<String> errors) {
+            PaymentRow paymentRow = null;
+            if (row instanceof PaymentRow) {
+                paymentRow = (PaymentRow) row;
+                if (paymentRow.schema() != boundSchema) {
+                    boundSchema = paymentRow.schema();
+                    List<String> columns = new ArrayList<>(rules.length);
+                    for (ColumnRule rule : rules) {
+                        columns.add(rule.column);
+                    }
+                    ordinals = boundSchema.ordinals(columns);
+                }
+            }
+            for (int i = 0; i < rules.length; i++) {
+                ColumnRule rule = rules[i];
+                if ((rule.scope == Scope.HEADER && !header)
+                        || (rule.scope == Scope.PAYMENT_INFORMATION && !paymentInformation)) {
+                    continue;
+                }
+                String value = paymentRow != null ? paymentRow.get(ordinals[i]) : row.get(rule.column);
+                if (value == null || value.isEmpty()) {
+                    continue;
+                }
+                String violation = rule.facets.violation(value, matchers[i]);
+                if (violation != null) {
+                    errors.add("Error: Invalid value " + quote(value) + " for column '" + rule.column + "' in row "
+                            + rowNumber + " for " + messageType + ": " + rule.location + " (" + rule.facets.typeName + ") " + violation + ".");
+                }
+            }
+        }
+    }
+
+    private static final class ColumnRule {
+        final String column;
+        final Scope scope;
+        final String location;
+        final Facets facets;
+
+        ColumnRule(String column, Scope scope, String location, Facets facets) {
+            this.column = column;
+            this.scope = scope;
+            this.location = location;
+            this.facets = facets;
+        }
+    }
+
+    /**
+     * The facets of a simple type merged with those of the types it restricts.
+     */
+    private static final class Facets {
+        final String typeName;
+        final List<Pattern> patterns = new ArrayList<>();
+        int minLength = -1;
+        int maxLength = -1;
+        Set<String> enumeration;
+        int totalDigits = -1;
+        int fractionDigits = -1;
+        BigDecimal minInclusive;
+        BigDecimal maxInclusive;
+        BigDecimal minExclusive;
+        BigDecimal maxExclusive;
+        boolean decimal;
+        boolean collapseWhitespace;
+
+        Facets(String typeName) {
+            this.typeName = typeName;
+        }
+
+        boolean isEmpty() {
+            return patterns.isEmpty() && minLength < 0 && maxLength < 0 && enumeration == null && !decimal;
+        }
+
+        /**
+         * @return A description of the first facet the value violates, or null if it passes.
+         */
+        String violation(String value, Matcher[] matchers) {
+            if (collapseWhitespace) {
+                value = value.trim();
+            } else {
+                int length = value.codePointCount(0, value.length());
+                if (maxLength >= 0 && length > maxLength) {
+                    return "is longer than " + maxLength + " characters";
+                }
+                if (minLength >= 0 && length < minLength) {
+                    return "is shorter than " + minLength + " characters";
+                }
+            }
+            for (int i = 0; i < matchers.length; i++) {
+                if (!matchers[i].reset(value).matches()) {
+                    return "does not match pattern " + patterns.get(i).pattern();
+                }
+            }
+            if (enumeration != null && !enumeration.contains(value)) {
+                return "is not one of " + enumeration;
+            }
+            return decimal ? decimalViolation(value) : null;
+        }
+
+        private String decimalViolation(String value) {
+            if (!DECIMAL.matcher(value).matches()) {
+                return "is not a decimal number";
+            }
+            if (totalDigits >= 0 || fractionDigits >= 0) {
+                // Leading zeros of the integer part and trailing zeros of the fraction do not count
+                int start = value.charAt(0) == '+' || value.charAt(0) == '-' ? 1 : 0;
+                int point = value.indexOf('.');
+                int integerEnd = point < 0 ? value.length() : point;
+                while (start < integerEnd && value.charAt(start) == '0') {
+                    start++;
+                }
+                int fractionEnd = value.length();
+                if (point >= 0) {
+                    while (fractionEnd > point + 1 && value.charAt(fractionEnd - 1) == '0') {
+                        fractionEnd--;
+                    }
+                }
+                int fraction = point < 0 ? 0 : fractionEnd - point - 1;
+                if (fractionDigits >= 0 && fraction > fractionDigits) {
+                    return "has more than " + fractionDigits + " fraction digits";
+                }
+                if (totalDigits >= 0 && integerEnd - start + fraction > totalDigits) {
+                    return "has more than " + totalDigits + " digits";
+                }
+            }
+            if (minInclusive == null && maxInclusive == null && minExclusive == null && maxExclusive == null) {
+                return null;
+            }
+            BigDecimal number = new BigDecimal(value.startsWith("+") ? value.substring(1) : value);
+            if (minInclusive != null && number.compareTo(minInclusive) < 0) {
+                return "is less than " + minInclusive.toPlainString();
+            }
+            if (maxInclusive != null && number.compareTo(maxInclusive) > 0) {
+                return "is greater than " + maxInclusive.toPlainString();
+            }
+            if (minExclusive != null && number.compareTo(minExclusive) <= 0) {
+                return "is not greater than " + minExclusive.toPlainString();
+            }
+            if (maxExclusive != null && number.compareTo(maxExclusive) >= 0) {
+                return "is not less than " + maxExclusive.toPlainString();
+            }
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------------ compilation
+
+    private static FacetRules compile(String messageType, String xsdFilePath) {
+        try {
+            return compile(messageType, xsdFilePath, readTemplate(messageType));
+        } catch (IOException e) {
+            return noRules(messageType, xsdFilePath, e);
+        }
+    }
+
+    /**
+     * Compiles the rules of a schema for the columns a template writes. A template or
+     * schema that cannot be compiled yields no rules.
+     *
+     * @param messageType The pain version
+     * @param xsdFilePath Path to the XSD schema
+     * @param template    The FreeMarker source of the template
+     * @return The rules
+     */
+    static FacetRules compile(String messageType, String xsdFilePath, String template) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            Document schema = factory.newDocumentBuilder().parse(new File(xsdFilePath));
+            Compiler compiler = new Compiler(messageType, schema.getDocumentElement());
+            compiler.template(parseTemplate(template).getDocumentElement());
+            FacetRules rules = new FacetRules(messageType, new ArrayList<>(compiler.rules.values()));
+            LOGGER.info("Compiled " + rules.size() + " column checks for " + messageType + " from " + xsdFilePath + ".");
+            return rules;
+        } catch (Exception e) {
+            return noRules(messageType, xsdFilePath, e);
+        }
+    }
+
+    private static FacetRules noRules(String messageType, String xsdFilePath, Exception e) {
+        LOGGER.warning("Unable to compile column checks for " + messageType + " from " + xsdFilePath
+                + ", values are only checked after rendering: " + e.getMessage());
+        return new FacetRules(messageType, Collections.<ColumnRule>emptyList());
+    }
+
+    /**
+     * @param messageType The pain version
+     * @return The source of the bundled template of the version
+     * @throws IOException If the template cannot be read
+     */
+    private static String readTemplate(String messageType) throws IOException {
+        String resource = TemplateEngine.getTemplateResource(messageType);
+        try (InputStream in = FacetRules.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Template resource '" + resource + "' not found.");
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Parses a template, with its {@code <#if>} and {@code <#list>} directives turned into
+     * {@value #IF_ELEMENT} and {@value #LIST_ELEMENT} elements.
+     *
+     * @param template The FreeMarker source of the template
+     * @return The template as a document; namespaces are not resolved
+     * @throws Exception If the template uses other directives or cannot be parsed
+     */
+    private static Document parseTemplate(String template) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(toXml(template))));
+    }
+
+    /**
+     * Turns the supported FTL directives into plain elements so the template parses as XML.
+     */
+    private static String toXml(String template) {
+        String xml = IF_DIRECTIVE.matcher(template).replaceAll("<" + IF_ELEMENT + " test=\"$1\">");
+        xml = xml.replace("</#if>", "</" + IF_ELEMENT + ">");
+        xml = LIST_DIRECTIVE.matcher(xml).replaceAll("<" + LIST_ELEMENT + " items=\"$1\" as=\"$2\">");
+        xml = xml.replace("</#list>", "</" + LIST_ELEMENT + ">");
+        if (xml.contains("<#") || xml.contains("</#")) {
+            throw new IllegalArgumentException("Unsupported FreeMarker directive in template.");
+        }
+        return xml;
+    }
+
+    /**
+     * Walks the template and the schema side by side, from the root element down.
+     */
+    private static final class Compiler {
+        private final Map<String, Element> elements = new HashMap<>();
+        private final Map<String, Element> complexTypes = new HashMap<>();
+        private final Map<String, Element> simpleTypes = new HashMap<>();
+        private final Map<String, Facets> facets = new HashMap<>();
+        private final Map<String, String> headerColumns;
+        private final TransactionLayout layout;
+        private final Map<String, ColumnRule> rules = new LinkedHashMap<>();
+
+        Compiler(String messageType, Element schema) {
+            for (Element child : children(schema)) {
+                String name = child.getAttribute("name");
+                switch (child.getLocalName()) {
+                    case "element":
+                        elements.put(name, child);
+                        break;
+                    case "complexType":
+                        complexTypes.put(name, child);
+                        break;
+                    case "simpleType":
+                        simpleTypes.put(name, child);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            headerColumns = headerColumns(messageType);
+            layout = TransactionLayout.forMessageType(messageType);
+        }
+
+        void template(Element root) {
+            Element declaration = elements.get(localName(root));
+            if (declaration == null) {
+                throw new IllegalArgumentException("The schema declares no root element " + localName(root) + ".");
+            }
+            element(root, declaration, localName(root));
+        }
+
+        private void element(Element templateElement, Element declaration, String location) {
+            String typeName = declaration.getAttribute("type");
+            Element complexType = complexTypes.get(localName(typeName));
+            Element simpleContent = complexType == null ? null : child(complexType, "simpleContent");
+            Element extension = simpleContent == null ? null : child(simpleContent, "extension");
+
+            NamedNodeMap attributes = templateElement.getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Node attribute = attributes.item(i);
+                String variable = variable(attribute.getNodeValue());
+                Element attributeDeclaration = extension == null ? null : attributeDeclaration(extension, attribute.getNodeName());
+                if (variable != null && attributeDeclaration != null) {
+                    rule(variable, location + "/@" + attribute.getNodeName(),
+                            simpleType(attributeDeclaration, attributeDeclaration.getAttribute("type")));
+                }
+            }
+
+            String variable = variable(text(templateElement));
+            if (variable != null) {
+                String contentType = extension != null ? extension.getAttribute("base") : typeName;
+                rule(variable, location, simpleType(declaration, contentType));
+            }
+            if (complexType != null) {
+                children(templateElement, complexType, location);
+            }
+        }
+
+        private void children(Element templateElement, Element complexType, String location) {
+            for (Element child : children(templateElement)) {
+                String name = localName(child);
+                if (name.equals(IF_ELEMENT) || name.equals(LIST_ELEMENT)) {
+                    children(child, complexType, location);
+                    continue;
+                }
+                Element declaration = elementDeclaration(complexType, name);
+                if (declaration == null) {
+                    LOGGER.fine("No declaration of " + location + "/" + name + " in the schema, its values are not checked.");
+                } else {
+                    element(child, declaration, location + "/" + name);
+                }
+            }
+        }
+
+        private void rule(String variable, String location, Facets facets) {
+            if (facets == null || facets.isEmpty()) {
+                return;
+            }
+            Scope scope;
+            String field;
+            String column;
+            int dot = variable.indexOf('.');
+            if (dot < 0) {
+                scope = Scope.HEADER;
+                field = variable;
+                column = headerColumns.get(field);
+            } else if (variable.substring(0, dot).equals(TRANSACTION_VARIABLE)) {
+                scope = Scope.TRANSACTION;
+                field = variable.substring(dot + 1);
+                column = layout == null ? null : layout.sourceColumn(field);
+            } else if (variable.substring(0, dot).equals(PAYMENT_INFORMATION_VARIABLE)) {
+                scope = Scope.PAYMENT_INFORMATION;
+                field = variable.substring(dot + 1);
+                column = headerColumns.get(field);
+            } else {
+                return;
+            }
+            if (column == null || COMPUTED_FIELDS.contains(field)) {
+                return;
+            }
+            String key = scope + "|" + column + "|" + facets.typeName;
+            if (!rules.containsKey(key)) {
+                rules.put(key, new ColumnRule(column, scope, location, facets));
+            }
+        }
+
+        /**
+         * @return The facets of a named or anonymous simple type, or null if the type is a
+         * complex or unknown type.
+         */
+        private Facets simpleType(Element declaration, String typeName) {
+            if (typeName.isEmpty()) {
+                Element anonymous = child(declaration, "simpleType");
+                return anonymous == null ? null : restrictions(new Facets("anonymous type"), anonymous);
+            }
+            if (isBuiltIn(declaration, typeName)) {
+                return null;
+            }
+            String name = localName(typeName);
+            Facets cached = facets.get(name);
+            if (cached == null && simpleTypes.containsKey(name)) {
+                cached = restrictions(new Facets(name), simpleTypes.get(name));
+                facets.put(name, cached);
+            }
+            return cached;
+        }
+
+        /**
+         * Adds the facets of a simple type and of the types it restricts, most derived first.
+         */
+        private Facets restrictions(Facets facets, Element simpleType) {
+            Set<Element> visited = new HashSet<>();
+            while (simpleType != null && visited.add(simpleType)) {
+                Element restriction = child(simpleType, "restriction");
+                if (restriction == null) {
+                    // Lists and unions are not checked
+                    return null;
+                }
+                List<String> patterns = new ArrayList<>();
+                Set<String> enumeration = new HashSet<>();
+                for (Element facet : children(restriction)) {
+                    String value = facet.getAttribute("value");
+                    switch (facet.getLocalName()) {
+                        case "length":
+                            facets.minLength = Math.max(facets.minLength, Integer.parseInt(value));
+                            facets.maxLength = tighter(facets.maxLength, Integer.parseInt(value));
+                            break;
+                        case "minLength":
+                            facets.minLength = Math.max(facets.minLength, Integer.parseInt(value));
+                            break;
+                        case "maxLength":
+                            facets.maxLength = tighter(facets.maxLength, Integer.parseInt(value));
+                            break;
+                        case "pattern":
+                            patterns.add(value);
+                            break;
+                        case "enumeration":
+                            enumeration.add(value);
+                            break;
+                        case "totalDigits":
+                            facets.totalDigits = tighter(facets.totalDigits, Integer.parseInt(value));
+                            break;
+                        case "fractionDigits":
+                            facets.fractionDigits = tighter(facets.fractionDigits, Integer.parseInt(value));
+                            break;
+                        case "minInclusive":
+                            facets.minInclusive = facets.minInclusive != null ? facets.minInclusive : new BigDecimal(value);
+                            break;
+                        case "maxInclusive":
+                            facets.maxInclusive = facets.maxInclusive != null ? facets.maxInclusive : new BigDecimal(value);
+                            break;
+                        case "minExclusive":
+                            facets.minExclusive = facets.minExclusive != null ? facets.minExclusive : new BigDecimal(value);
+                            break;
+                        case "maxExclusive":
+                            facets.maxExclusive = facets.maxExclusive != null ? facets.maxExclusive : new BigDecimal(value);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                if (!patterns.isEmpty()) {
+                    addPattern(facets, patterns);
+                }
+                // A derived enumeration is a subset of its base's
+                if (!enumeration.isEmpty() && facets.enumeration == null) {
+                    facets.enumeration = enumeration;
+                }
+
+                String base = restriction.getAttribute("base");
+                if (isBuiltIn(restriction, base)) {
+                    String builtIn = localName(base);
+                    facets.decimal = builtIn.equals("decimal");
+                    facets.collapseWhitespace = !builtIn.equals("string") && !builtIn.equals("normalizedString");
+                    if (facets.collapseWhitespace && !facets.decimal && (facets.minLength >= 0 || facets.maxLength >= 0)) {
+                        // Lengths of other built-in types are not counted in characters
+                        facets.minLength = -1;
+                        facets.maxLength = -1;
+                    }
+                    return facets;
+                }
+                simpleType = base.isEmpty() ? child(restriction, "simpleType") : simpleTypes.get(localName(base));
+            }
+            return null;
+        }
+
+        /**
+         * Adds the patterns of one derivation step, which a value must match one of.
+         * XSD patterns are implicitly anchored, as {@link Matcher#matches()} is.
+         */
+        private static void addPattern(Facets facets, List<String> patterns) {
+            StringBuilder regex = new StringBuilder();
+            for (String pattern : patterns) {
+                if (XSD_ONLY_SYNTAX.matcher(pattern).find()) {
+                    LOGGER.fine("Pattern " + pattern + " of " + facets.typeName + " is only checked after rendering.");
+                    return;
+                }
+                regex.append(regex.length() == 0 ? "" : "|").append(patterns.size() == 1 ? pattern : "(?:" + pattern + ")");
+            }
+            try {
+                facets.patterns.add(Pattern.compile(regex.toString()));
+            } catch (PatternSyntaxException e) {
+                LOGGER.fine("Pattern " + regex + " of " + facets.typeName + " is only checked after rendering: " + e.getMessage());
+            }
+        }
+
+        private static int tighter(int current, int value) {
+            return current < 0 ? value : Math.min(current, value);
+        }
+
+        private static Element elementDeclaration(Element parent, String name) {
+            for (Element child : children(parent)) {
+                switch (child.getLocalName()) {
+                    case "element":
+                        if (name.equals(child.getAttribute("name"))) {
+                            return child;
+                        }
+                        break;
+                    case "sequence":
+                    case "choice":
+                    case "all":
+                    case "complexContent":
+                    case "extension":
+                    case "restriction":
+                        Element found = elementDeclaration(child, name);
+                        if (found != null) {
+                            return found;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return null;
+        }
+
+        private static Element attributeDeclaration(Element extension, String name) {
+            for (Element child : children(extension)) {
+                if (child.getLocalName().equals("attribute") && name.equals(child.getAttribute("name"))) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        private static boolean isBuiltIn(Element context, String typeName) {
+            int colon = typeName.indexOf(':');
+            String prefix = colon < 0 ? null : typeName.substring(0, colon);
+            return XS.equals(context.lookupNamespaceURI(prefix));
+        }
+
+        private static Element child(Element parent, String localName) {
+            for (Element child : children(parent)) {
+                if (localName.equals(child.getLocalName())) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return The child elements of a schema element in the XSD namespace, or all
+         * child elements of a template element.
+         */
+        private static List<Element> children(Element parent) {
+            List<Element> children = new ArrayList<>();
+            for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE
+                        && (child.getNamespaceURI() == null || XS.equals(child.getNamespaceURI()))) {
+                    children.add((Element) child);
+                }
+            }
+            return children;
+        }
+
+        private static String text(Element element) {
+            StringBuilder text = new StringBuilder();
+            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                    text.append(child.getNodeValue());
+                }
+            }
+            return text.toString().trim();
+        }
+
+        /**
+         * @return The variable a value consists of, or null if it is a constant or mixes
+         * text and variables.
+         */
+        private static String variable(String value) {
+            Matcher matcher = INTERPOLATION.matcher(value.trim());
+            return matcher.matches() ? matcher.group(1) : null;
+        }
+
+        private static String localName(Element element) {
+            return localName(element.getTagName());
+        }
+
+        private static String localName(String qualifiedName) {
+            return qualifiedName.substring(qualifiedName.indexOf(':') + 1);
+        }
+    }
+
+    /**
+     * @return The input column each header field of the template is read from.
+     */
+    private static Map<String, String> headerColumns(String messageType) {
+        // Every lookup returns the column name it asks for, so the header data names its sources
+        Map<String, String> probe = new AbstractMap<String, String>() {
+            @Override
+            public String get(Object key) {
+                return (String) key;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return true;
+            }
+
+            @Override
+            public Set<Entry<String, String>> entrySet() {
+                return Collections.emptySet();
+            }
+        };
+        Map<String, String> columns = new HashMap<>();
+        for (Map.Entry<String, Object> entry : GenerateXml.prepareHeaderData(probe, messageType).entrySet()) {
+            if (entry.getValue() instanceof String) {
+                columns.put(entry.getKey(), (String) entry.getValue());
+            }
+        }
+        return columns;
+    }
+
+    private static String quote(String value) {
+        if (value.length() > MAX_QUOTED_LENGTH) {
+            return "'" + value.substring(0, MAX_QUOTED_LENGTH) + "...'";
+        }
+        return "'" + value + "'";
+    }
+
+    private static String fileKey(String xsdFilePath) {
+        try {
+            return new File(xsdFilePath).getCanonicalPath();
+        } catch (IOException e) {
+            return new File(xsdFilePath).getAbsolutePath();
+        }
+    }
+}
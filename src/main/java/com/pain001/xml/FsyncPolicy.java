@@ -0,0 +1,20 @@
+package com.pain001.xml;
+
+/**
+ * How far a file output is forced to disk before it is reported as written.
+ */
+public enum FsyncPolicy {
+    /**
+     * Leaves flushing to the operating system. The file still appears atomically, but may
+     * be lost or empty after a power failure.
+     */
+    NONE,
+    /**
+     * Forces the file contents to disk before it is renamed into place.
+     */
+    FILE,
+    /**
+     * Also forces the directory after the rename, so the new name survives a power failure.
+     */
+    FILE_AND_DIRECTORY
+}
@@ -1,17 +1,44 @@
 package com.pain001.xml;
 
-import freemarker.template.Configuration;
+import com.pain001.data.CtrlSum;
+import com.pain001.data.RowCursor;
+import com.pain001.data.RowSource;
+import com.pain001.data.SeekableRowCursor;
+import com.pain001.data.SeekableRowSource;
+import com.pain001.metrics.MeteredOutputStream;
+import com.pain001.metrics.RunMetrics;
+import com.pain001.metrics.Stage;
 import freemarker.template.Template;
 import freemarker.template.TemplateException;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * XML generator class that creates ISO 20022 pain.001 XML files from input data
@@ -20,6 +47,33 @@ import java.util.Map;
  */
 public class GenerateXml {
 
+    // Versions whose NbOfTxs and CtrlSum are computed from the rendered transactions
+    static final Set<String> COMPUTED_TOTALS_TYPES = new HashSet<>(Arrays.asList(
+            "pain.001.001.03",
+            "pain.001.001.04"
+    ));
+
+    // Versions whose templates list transactions, so rows can be grouped or split
+    private static final Set<String> TRANSACTION_LIST_TYPES = new HashSet<>(Arrays.asList(
+            "pain.001.001.03",
+            "pain.001.001.04",
+            "pain.001.001.07",
+            "pain.001.001.08",
+            "pain.001.001.09"
+    ));
+
+    private static final String GZIP_SUFFIX = ".gz";
+
+    // Input column the control sum subtotals are kept by
+    static final String CURRENCY_FIELD = "payment_currency";
+
+    // Template field holding the payment information id, which must be unique per group
+    private static final String PAYMENT_INFORMATION_ID_FIELD = "payment_information_id";
+    private static final Map<String, String> PAYMENT_INFORMATION_ID_FIELDS = new HashMap<>();
+    static {
+        PAYMENT_INFORMATION_ID_FIELDS.put("pain.001.001.09", "payment_id");
+    }
+
     /**
      * Generates an ISO 20022 pain.001 XML file from input data.
      *
@@ -35,6 +89,30 @@ public class GenerateXml {
             String paymentInitiationMessageType,
             String xmlFilePath,
             String xsdFilePath) throws IOException, TemplateException {
+        generateXml(data, paymentInitiationMessageType, xmlFilePath, xsdFilePath, new GenerationOptions());
+    }
+
+    /**
+     * Generates an ISO 20022 pain.001 XML file from input data.
+     *
+     * @param data List of maps containing payment data
+     * @param paymentInitiationMessageType String indicating message type such as "pain.001.001.03"
+     * @param xmlFilePath Path to write generated XML file to
+     * @param xsdFilePath Path to XML schema file for validation
+     * @param options Generation options
+     * @throws IOException If file operations fail
+     * @throws TemplateException If template processing fails
+     */
+    public static void generateXml(
+            List<Map<String, String>> data,
+            String paymentInitiationMessageType,
+            String xmlFilePath,
+            String xsdFilePath,
+            GenerationOptions options) throws IOException, TemplateException {
+
+        if (options.getCheckpointInterval() > 0) {
+            throw new IllegalArgumentException("Checkpointing needs streamed input.");
+        }
 
         // Define a mapping between the XML types and the XML generators
         Map<String, String> xmlGenerators = new HashMap<>();
@@ -46,22 +124,15 @@ public class GenerateXml {
         xmlGenerators.put("pain.001.001.08", "createXmlV8");
         xmlGenerators.put("pain.001.001.09", "createXmlV9");
 
-        Map<String, String> templateMapping = new HashMap<>();
-        templateMapping.put("pain.001.001.03", "/pain00100103/template.ftl");
-        templateMapping.put("pain.001.001.04", "/pain00100104/template.ftl");
-        templateMapping.put("pain.001.001.05", "/pain00100105/template.ftl");
-        templateMapping.put("pain.001.001.06", "/pain00100106/template.ftl");
-        templateMapping.put("pain.001.001.07", "/pain00100107/template.ftl");
-        templateMapping.put("pain.001.001.08", "/pain00100108/template.ftl");
-        templateMapping.put("pain.001.001.09", "/pain00100109/template.ftl");
-
         // Check if the provided payment_initiation_message_type exists in the mapping
         if (xmlGenerators.containsKey(paymentInitiationMessageType)) {
             // Check if data is not empty
             if (data == null || data.isEmpty()) {
                 System.out.println("Error: No data to process.");
-                System.exit(1);
+                throw new IllegalArgumentException("Error: No data to process.");
             }
+            RunMetrics metrics = options.getMetrics();
+            metrics.addRows(data.size());
             String nbOfTxsStr = data.get(0).getOrDefault("nb_of_txs", String.valueOf(data.size()));
             int nbOfTxs;
             try {
@@ -76,46 +147,488 @@ public class GenerateXml {
                 throw new IllegalArgumentException("Invalid nb_of_txs value: " + nbOfTxsStr);
             }
 
-            //Map<String, String> namespaces = RegisterNamespaces.registerNamespaces(paymentInitiationMessageType);
-            // Setup FreeMarker configuration
-            Configuration cfg = new Configuration(Configuration.VERSION_2_3_34);
-            cfg.setLogTemplateExceptions(true);
-            cfg.setDirectoryForTemplateLoading(new File("src/main/java/com/pain001/templates"));
-            cfg.setDefaultEncoding("UTF-8");
+            if (options.isSplitOutput()) {
+                int limit = transactionLimit(data.get(0), data.size(), paymentInitiationMessageType);
+                String outputFilePath = resolveOutputFilePath(xmlFilePath, paymentInitiationMessageType, options);
+                metrics.setOutputFilePath(outputFilePath);
+                new SplitWriter(paymentInitiationMessageType, outputFilePath, xsdFilePath, options)
+                        .write(data.subList(0, limit).iterator(), data.get(0).get("id"));
+                return;
+            }
 
+            //Map<String, String> namespaces = RegisterNamespaces.registerNamespaces(paymentInitiationMessageType);
             // Load the FreeMarker template
             //Template template = cfg.getTemplate(xmlFilePath);
-            Template template = cfg.getTemplate(templateMapping.get(paymentInitiationMessageType));
+            Template template = TemplateEngine.getTemplate(paymentInitiationMessageType);
 
             // Prepare data for template rendering based on pain version
-            Map<String, Object> xmlData = prepareDataForTemplate(data, paymentInitiationMessageType);
+            Map<String, Object> xmlData = metrics.time(Stage.PREPARE, () -> options.isGroupPaymentInformation()
+                    ? prepareGroupedDataForTemplate(data, paymentInitiationMessageType, new CtrlSum())
+                    : prepareDataForTemplate(data, paymentInitiationMessageType));
+            if (TransactionLayout.forMessageType(paymentInitiationMessageType) == null) {
+                metrics.addTransactions(1);
+            } else {
+                metrics.addTransactions(options.isGroupPaymentInformation()
+                        ? data.size() : transactionLimit(data.get(0), data.size(), paymentInitiationMessageType));
+            }
 /*            xmlData.put("namespaceDecl", namespaces.get("namespaceDecl"));
             xmlData.put("namespace", namespaces.get("default"));
             xmlData.put("xsiNamespace", namespaces.get("xsi"));*/
 
             // Generate updated XML file path
-            String updatedXmlFilePath = generateUpdatedXmlFilePath(xmlFilePath, paymentInitiationMessageType);
+            String updatedXmlFilePath = resolveOutputFilePath(xmlFilePath, paymentInitiationMessageType, options);
+
+            // Write the XML content to the file and validate it against the XSD schema
+            writeXml(template, xmlData, updatedXmlFilePath, xsdFilePath, options);
+        } else {
+            // Handle the case when the payment_initiation_message_type is not valid
+            System.out.println("Error: Invalid XML message type: " + paymentInitiationMessageType);
+            throw new IllegalArgumentException("Error: Invalid XML message type: " + paymentInitiationMessageType);
+        }
+    }
+
+    /**
+     * Generates an ISO 20022 pain.001 XML file by streaming rows from a {@link RowSource}.
+     * <p>
+     * The source is read twice: a first pass collects the first row and the totals that
+     * go into the group header, a second pass feeds the transactions to the template
+     * one row at a time while the output is written. No pass keeps the rows in memory,
+     * so heap use stays flat regardless of the input size.
+     *
+     * @param source Re-readable source of payment rows
+     * @param paymentInitiationMessageType String indicating message type such as "pain.001.001.03"
+     * @param xmlFilePath Path to write generated XML file to
+     * @param xsdFilePath Path to XML schema file for validation
+     * @throws IOException If file operations fail
+     * @throws TemplateException If template processing fails
+     */
+    public static void generateXml(
+            RowSource source,
+            String paymentInitiationMessageType,
+            String xmlFilePath,
+            String xsdFilePath) throws IOException, TemplateException {
+        generateXml(source, paymentInitiationMessageType, xmlFilePath, xsdFilePath, new GenerationOptions().setStreaming(true));
+    }
+
+    /**
+     * Generates an ISO 20022 pain.001 XML file by streaming rows from a {@link RowSource}.
+     *
+     * @param source Re-readable source of payment rows
+     * @param paymentInitiationMessageType String indicating message type such as "pain.001.001.03"
+     * @param xmlFilePath Path to write generated XML file to
+     * @param xsdFilePath Path to XML schema file for validation
+     * @param options Generation options
+     * @throws IOException If file operations fail
+     * @throws TemplateException If template processing fails
+     */
+    public static void generateXml(
+            RowSource source,
+            String paymentInitiationMessageType,
+            String xmlFilePath,
+            String xsdFilePath,
+            GenerationOptions options) throws IOException, TemplateException {
+        generateXml(source, paymentInitiationMessageType, xmlFilePath, xsdFilePath, options, null);
+    }
+
+    /**
+     * Generates an ISO 20022 pain.001 XML file by streaming rows from a {@link RowSource}
+     * whose totals were already gathered, e.g. by a {@link StreamTotals.Collector} run in
+     * the validation pass, so the rows are only read again to be rendered.
+     *
+     * @param source Re-readable source of payment rows
+     * @param paymentInitiationMessageType String indicating message type such as "pain.001.001.03"
+     * @param xmlFilePath Path to write generated XML file to
+     * @param xsdFilePath Path to XML schema file for validation
+     * @param options Generation options
+     * @param totals Totals of the source, or null to read the source once more for them
+     * @throws IOException If file operations fail
+     * @throws TemplateException If template processing fails
+     */
+    public static void generateXml(
+            RowSource source,
+            String paymentInitiationMessageType,
+            String xmlFilePath,
+            String xsdFilePath,
+            GenerationOptions options,
+            StreamTotals totals) throws IOException, TemplateException {
+
+        if (!TemplateEngine.supports(paymentInitiationMessageType)) {
+            System.out.println("Error: Invalid XML message type: " + paymentInitiationMessageType);
+            throw new IllegalArgumentException("Error: Invalid XML message type: " + paymentInitiationMessageType);
+        }
+
+        if (options.isGroupPaymentInformation() && !options.isSplitOutput()) {
+            generateGroupedXml(source, paymentInitiationMessageType, xmlFilePath, xsdFilePath, options);
+            return;
+        }
+
+        if (options.getCheckpointInterval() > 0) {
+            generateCheckpointedXml(source, paymentInitiationMessageType, xmlFilePath, xsdFilePath, options, totals);
+            return;
+        }
+
+        // First pass, unless done already: header row, row count and control sum
+        RunMetrics metrics = options.getMetrics();
+        totals = totals != null ? totals : scanTotals(source, paymentInitiationMessageType, metrics);
+        metrics.addRows(totals.rowCount);
+        Map<String, String> firstRow = totals.firstRow;
+        long txCount = totals.transactionCount;
+        if (options.isSplitOutput()) {
+            String outputFilePath = resolveOutputFilePath(xmlFilePath, paymentInitiationMessageType, options);
+            metrics.setOutputFilePath(outputFilePath);
+            List<String> parts;
+            try (RowCursor cursor = source.open()) {
+                parts = new SplitWriter(paymentInitiationMessageType, outputFilePath, xsdFilePath, options)
+                        .write(new LimitedIterator(cursor, txCount), firstRow.get("id"));
+            }
+            System.out.println(txCount + " transactions streamed from " + source.describe() + " into " + parts.size() + " files");
+            return;
+        }
+
+        Template template = TemplateEngine.getTemplate(paymentInitiationMessageType);
+        Map<String, Object> xmlData = prepareHeaderData(firstRow, paymentInitiationMessageType);
+        if (COMPUTED_TOTALS_TYPES.contains(paymentInitiationMessageType)) {
+            xmlData.put("nb_of_txs", String.valueOf(txCount));
+            xmlData.put("ctrl_sum", totals.ctrlSum.toString());
+        }
 
-            // Write the XML content to the file
-            try (Writer fileWriter = new FileWriter(updatedXmlFilePath)) {
-                template.process(xmlData, fileWriter);
+        String updatedXmlFilePath = resolveOutputFilePath(xmlFilePath, paymentInitiationMessageType, options);
+
+        // Second pass: render the transactions as they are read
+        try (RowCursor cursor = source.open()) {
+            if (TransactionLayout.forMessageType(paymentInitiationMessageType) != null) {
+                xmlData.put("transactions", new TransactionIterator(cursor, paymentInitiationMessageType, txCount));
+                metrics.addTransactions(txCount);
+            } else {
+                metrics.addTransactions(1);
+            }
+            putSinglePaymentInformation(xmlData);
+            writeXml(template, xmlData, updatedXmlFilePath, xsdFilePath, options);
+        }
+        System.out.println(txCount + " transactions streamed from " + source.describe());
+    }
+
+    /**
+     * Reads a source once for the header row, the number of transactions and their
+     * control sum, and checks the number of transactions requested by the header row.
+     */
+    private static StreamTotals scanTotals(RowSource source, String paymentInitiationMessageType, RunMetrics metrics)
+            throws IOException {
+        StreamTotals.Collector collector = new StreamTotals.Collector(paymentInitiationMessageType);
+        List<String> errors = new ArrayList<>(1);
+        metrics.time(Stage.PREPARE, () -> {
+            try (RowCursor cursor = source.open()) {
+                long rowNumber = 0;
+                while (cursor.hasNext()) {
+                    collector.check(cursor.next(), ++rowNumber, errors);
+                    if (!errors.isEmpty()) {
+                        throw new IllegalArgumentException(errors.get(0));
+                    }
+                }
+            }
+        });
+        return collector.totals();
+    }
+
+    /**
+     * Streams rows into a single output file, saving a {@link Checkpoint} every
+     * {@link GenerationOptions#getCheckpointInterval()} transactions. If a checkpoint of
+     * an earlier run with the same input and output exists, the output is cut back to
+     * it and the run continues from the recorded input offset; the file it produces is
+     * identical to that of an uninterrupted run.
+     * <p>
+     * When resuming, the template is rendered from the start and its output is discarded
+     * until the first remaining transaction is requested, so the part already on disk is
+     * neither rendered nor read again. The result is validated by reading the file back.
+     */
+    private static void generateCheckpointedXml(
+            RowSource rowSource,
+            String paymentInitiationMessageType,
+            String xmlFilePath,
+            String xsdFilePath,
+            GenerationOptions options,
+            StreamTotals totals) throws IOException, TemplateException {
+
+        if (!(rowSource instanceof SeekableRowSource)) {
+            throw new IllegalArgumentException("Checkpointing needs a source that can be reopened at a row, such as a streamed CSV file.");
+        }
+        if (options.isSplitOutput()) {
+            throw new IllegalArgumentException("Checkpointing is not supported for a split output.");
+        }
+        if (options.getOutputSink() != null) {
+            throw new IllegalArgumentException("Checkpointing needs a file output.");
+        }
+        if (options.getPendingOutputs() != null) {
+            throw new IllegalArgumentException("A checkpointed output is published by its own run.");
+        }
+        TransactionLayout layout = transactionListLayout(paymentInitiationMessageType, "Checkpointing");
+        SeekableRowSource source = (SeekableRowSource) rowSource;
+        RunMetrics metrics = options.getMetrics();
+
+        String outputFilePath = resolveOutputFilePath(xmlFilePath, paymentInitiationMessageType, options);
+        if (isCompressed(outputFilePath)) {
+            // A gzip stream cannot be cut back to a checkpoint and continued
+            throw new IllegalArgumentException("Checkpointing is not supported for a compressed output.");
+        }
+        metrics.setOutputFilePath(outputFilePath);
+        String checkpointFilePath = Checkpoint.filePathFor(outputFilePath);
+        // The message is written next to the output and renamed into place once it is complete and valid
+        String partialFilePath = Checkpoint.partialFilePathFor(outputFilePath);
+        String fingerprint = source.fingerprint();
+        Checkpoint checkpoint = Checkpoint.load(checkpointFilePath);
+        if (checkpoint != null && !checkpoint.matches(paymentInitiationMessageType, fingerprint, outputFilePath)) {
+            System.out.println("Ignoring checkpoint " + checkpointFilePath + " of a different input or output");
+            checkpoint = null;
+        }
+
+        Map<String, String> firstRow;
+        Checkpoint start;
+        if (checkpoint == null) {
+            totals = totals != null ? totals : scanTotals(source, paymentInitiationMessageType, metrics);
+            metrics.addRows(totals.rowCount);
+            firstRow = totals.firstRow;
+            boolean computed = COMPUTED_TOTALS_TYPES.contains(paymentInitiationMessageType);
+            start = new Checkpoint(paymentInitiationMessageType, fingerprint, outputFilePath, totals.rowCount,
+                    totals.transactionCount, computed ? String.valueOf(totals.transactionCount) : null,
+                    computed ? totals.ctrlSum.toString() : null, 0, 0, 0, 0);
+        } else {
+            try (RowCursor cursor = source.open()) {
+                firstRow = cursor.next();
+            }
+            metrics.addRows(checkpoint.rowCount);
+            start = checkpoint;
+            System.out.println("Resuming " + outputFilePath + " after " + checkpoint.rowsEmitted + " of "
+                    + checkpoint.transactionCount + " transactions");
+            // Drop whatever was written after the checkpoint
+            try (FileChannel channel = FileChannel.open(Paths.get(partialFilePath), StandardOpenOption.WRITE)) {
+                channel.truncate(checkpoint.outputPosition);
             }
+        }
+
+        Template template = TemplateEngine.getTemplate(paymentInitiationMessageType);
+        Map<String, Object> xmlData = prepareHeaderData(firstRow, paymentInitiationMessageType);
+        if (start.nbOfTxs != null) {
+            xmlData.put("nb_of_txs", start.nbOfTxs);
+            xmlData.put("ctrl_sum", start.ctrlSum);
+        }
+
+        FileOutputStream fileOutput = new FileOutputStream(partialFilePath, checkpoint != null);
+        MeteredOutputStream fileStream = new MeteredOutputStream(fileOutput);
+        long renderStart = System.nanoTime();
+        CheckpointingIterator transactions;
+        try (SeekableRowCursor cursor = source.open(start.inputOffset);
+             ResumingWriter writer = new ResumingWriter(openWriter(fileStream, false, options), checkpoint != null)) {
+            transactions = new CheckpointingIterator(cursor, layout.newMapper(), start, checkpointFilePath,
+                    options.getCheckpointInterval(), writer, fileOutput, fileStream);
+            xmlData.put("transactions", transactions);
+            putSinglePaymentInformation(xmlData);
+            template.process(xmlData, writer);
+        } finally {
+            recordWrite(metrics, fileStream, renderStart);
+        }
+        if (transactions.emitted != start.transactionCount) {
+            throw new IllegalStateException("Expected " + start.transactionCount + " transactions but wrote "
+                    + transactions.emitted + "; the input changed during the run.");
+        }
+        if (start.ctrlSum != null && CtrlSum.parseUnits(start.ctrlSum) != transactions.emittedAmountUnits) {
+            throw new IllegalStateException("The written transactions do not add up to the control sum " + start.ctrlSum + ".");
+        }
+        metrics.addTransactions(start.transactionCount);
+        Checkpoint.delete(checkpointFilePath);
 
-            System.out.println("A new XML file has been created at " + updatedXmlFilePath);
+        try {
+            metrics.time(Stage.XSD_VALIDATION, () -> validateGeneratedXml(partialFilePath, xsdFilePath));
+        } catch (XmlValidationException e) {
+            Files.deleteIfExists(Paths.get(partialFilePath));
+            throw e;
+        }
+        OutputSink.publish(Paths.get(partialFilePath), Paths.get(outputFilePath), options.getFsyncPolicy());
+        System.out.println("A new XML file has been created at " + outputFilePath);
+        System.out.println(start.transactionCount + " transactions streamed from " + source.describe()
+                + (checkpoint != null ? ", resumed after " + checkpoint.rowsEmitted : ""));
+    }
 
-            // Validate the updated XML file against the XSD schema
-            boolean isValid = com.pain001.xml.XmlValidator.validateViaXsd(updatedXmlFilePath, xsdFilePath);
+    /**
+     * Groups the rows of a source into payment information blocks in a single pass and
+     * renders them. The grouped transactions are held in memory until they are written.
+     */
+    private static void generateGroupedXml(
+            RowSource source,
+            String paymentInitiationMessageType,
+            String xmlFilePath,
+            String xsdFilePath,
+            GenerationOptions options) throws IOException, TemplateException {
 
-            if (!isValid) {
+        RunMetrics metrics = options.getMetrics();
+        PaymentGroups groups = new PaymentGroups(transactionListLayout(paymentInitiationMessageType, "Grouping payment information"));
+        Map<String, String> firstRow = metrics.time(Stage.PREPARE, () -> {
+            Map<String, String> first = null;
+            try (RowCursor cursor = source.open()) {
+                long index = 0;
+                while (cursor.hasNext()) {
+                    Map<String, String> row = cursor.next();
+                    if (first == null) {
+                        first = row;
+                    }
+                    groups.add(row, parseAmount(row, index++));
+                }
+                metrics.addRows(index);
+            }
+            return first;
+        });
+        if (firstRow == null) {
+            System.out.println("Error: No data to process.");
+            throw new IllegalArgumentException("Error: No data to process.");
+        }
+
+        Template template = TemplateEngine.getTemplate(paymentInitiationMessageType);
+        Map<String, Object> xmlData = metrics.time(Stage.PREPARE, () -> {
+            Map<String, Object> headerData = prepareHeaderData(firstRow, paymentInitiationMessageType);
+            putPaymentInformationGroups(headerData, groups, paymentInitiationMessageType);
+            return headerData;
+        });
+        metrics.addTransactions(groups.transactionCount());
+
+        String updatedXmlFilePath = resolveOutputFilePath(xmlFilePath, paymentInitiationMessageType, options);
+        writeXml(template, xmlData, updatedXmlFilePath, xsdFilePath, options);
+        System.out.println(groups.transactionCount() + " transactions in " + groups.groups().size()
+                + " payment information blocks from " + source.describe());
+    }
+
+    /**
+     * Renders the message data into the output file, or the sink of the options, and
+     * validates the result against the XSD schema. The file only appears at its path
+     * once it is valid, or is held back in the pending outputs of the options.
+     */
+    static void writeXml(
+            Template template,
+            Map<String, Object> xmlData,
+            String updatedXmlFilePath,
+            String xsdFilePath,
+            GenerationOptions options) throws IOException, TemplateException {
+
+        OutputSink sink = options.getOutputSink();
+        boolean compressed = sink != null ? options.isCompressOutput() : isCompressed(updatedXmlFilePath);
+        if (sink == null) {
+            sink = OutputSink.toFile(updatedXmlFilePath, options.getFsyncPolicy());
+        }
+        options.getMetrics().setOutputFilePath(sink.getFilePath());
+        renderXml(template, xmlData, sink, compressed, xsdFilePath, options);
+        if (options.getPendingOutputs() != null) {
+            options.getPendingOutputs().add(sink);
+        } else {
+            publish(sink);
+        }
+    }
+
+    /**
+     * Renders the message data into a sink and validates the result against the XSD
+     * schema, either while writing (tee mode) or by reading the sink back. Sinks that
+     * cannot be read back are always validated while writing. The sink is discarded if
+     * rendering or validation fails, and left unpublished otherwise.
+     *
+     * @return The number of bytes written to the sink
+     */
+    static long renderXml(
+            Template template,
+            Map<String, Object> xmlData,
+            OutputSink sink,
+            boolean compressed,
+            String xsdFilePath,
+            GenerationOptions options) throws IOException, TemplateException {
+
+        RunMetrics metrics = options.getMetrics();
+        boolean validateWhileWriting = options.isValidateWhileWriting() || !sink.isReadable();
+        boolean written = false;
+        try {
+            // Time spent in the sink is writing; the rest of the render call, encoding and compression included, is rendering
+            MeteredOutputStream sinkStream = new MeteredOutputStream(sink.open());
+            long renderStart = System.nanoTime();
+            try (Writer writer = validateWhileWriting
+                    ? new ValidatingWriter(openWriter(sinkStream, compressed, options), xsdFilePath)
+                    : openWriter(sinkStream, compressed, options)) {
+                template.process(xmlData, writer);
+            } catch (XmlValidationException e) {
+                System.err.println(e.getMessage());
                 System.out.println("Error: Invalid XML data.");
-                System.exit(1);
+                throw e;
+            } finally {
+                recordWrite(metrics, sinkStream, renderStart);
+            }
+
+            if (validateWhileWriting) {
+                System.out.println("The XML has been validated against " + xsdFilePath + " while writing");
             } else {
-                System.out.println("The XML has been validated against " + xsdFilePath);
+                metrics.time(Stage.XSD_VALIDATION, () -> validateGeneratedXml(sink, compressed, xsdFilePath));
+            }
+            written = true;
+            return sinkStream.getBytes();
+        } finally {
+            if (!written) {
+                sink.discard();
             }
+        }
+    }
+
+    /**
+     * Publishes a rendered and validated message.
+     */
+    static void publish(OutputSink sink) throws IOException {
+        sink.publish();
+        if (sink.getFilePath() != null) {
+            System.out.println("A new XML file has been created at " + sink.getFilePath());
         } else {
-            // Handle the case when the payment_initiation_message_type is not valid
-            System.out.println("Error: Invalid XML message type: " + paymentInitiationMessageType);
-            System.exit(1);
+            System.out.println("The XML has been written to the " + sink.describe());
+        }
+    }
+
+    /**
+     * Encodes the XML as UTF-8, the encoding of the XML declaration, behind buffers of the
+     * configured size so the stream below sees few large writes.
+     */
+    private static Writer openWriter(OutputStream out, boolean compressed, GenerationOptions options) throws IOException {
+        int bufferSize = options.getOutputBufferSize();
+        OutputStream bytes = compressed ? new GZIPOutputStream(out, bufferSize) : new BufferedOutputStream(out, bufferSize);
+        return new BufferedWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8), bufferSize);
+    }
+
+    private static void recordWrite(RunMetrics metrics, MeteredOutputStream fileStream, long renderStart) {
+        metrics.addStageNanos(Stage.RENDER, System.nanoTime() - renderStart - fileStream.getNanos());
+        metrics.addStageNanos(Stage.WRITE, fileStream.getNanos());
+        metrics.addFile(fileStream.getBytes());
+    }
+
+    /**
+     * Validates a written, unpublished message against the XSD schema by reading it back.
+     *
+     * @throws XmlValidationException If the message does not conform to the schema
+     */
+    private static void validateGeneratedXml(OutputSink sink, boolean compressed, String xsdFilePath) throws IOException {
+        boolean isValid;
+        try (InputStream written = sink.reopen();
+             InputStream in = compressed ? new GZIPInputStream(written) : written) {
+            isValid = com.pain001.xml.XmlValidator.validateViaXsd(in, xsdFilePath);
+        }
+        if (!isValid) {
+            System.out.println("Error: Invalid XML data.");
+            throw new XmlValidationException("Error: Invalid XML data in " + sink.describe(), null);
+        }
+        System.out.println("The XML has been validated against " + xsdFilePath);
+    }
+
+    /**
+     * Validates the generated XML file against the XSD schema.
+     *
+     * @throws XmlValidationException If the file does not conform to the schema
+     */
+    private static void validateGeneratedXml(String updatedXmlFilePath, String xsdFilePath) throws XmlValidationException {
+        boolean isValid = com.pain001.xml.XmlValidator.validateViaXsd(updatedXmlFilePath, xsdFilePath);
+
+        if (!isValid) {
+            System.out.println("Error: Invalid XML data.");
+            throw new XmlValidationException("Error: Invalid XML data in " + updatedXmlFilePath, null);
+        } else {
+            System.out.println("The XML has been validated against " + xsdFilePath);
         }
     }
 
@@ -127,8 +640,153 @@ public class GenerateXml {
      * @return Map containing prepared data for template rendering
      */
     private static Map<String, Object> prepareDataForTemplate(List<Map<String, String>> data, String paymentInitiationMessageType) {
+        Map<String, Object> templateData = prepareHeaderData(data.get(0), paymentInitiationMessageType);
+        if (TransactionLayout.forMessageType(paymentInitiationMessageType) == null) {
+            putSinglePaymentInformation(templateData);
+            return templateData;
+        }
+
+        int limit = transactionLimit(data.get(0), data.size(), paymentInitiationMessageType);
+        TransactionLayout.Mapper mapper = TransactionLayout.forMessageType(paymentInitiationMessageType).newMapper();
+        List<Map<String, String>> transactions = new ArrayList<>(limit);
+        CtrlSum ctrlSum = new CtrlSum();
+        for (int i = 0; i < limit; i++) {
+            Map<String, String> row = data.get(i);
+            transactions.add(mapper.map(row));
+            if (COMPUTED_TOTALS_TYPES.contains(paymentInitiationMessageType)) {
+                ctrlSum.add(row.get(CURRENCY_FIELD), parseAmount(row, i));
+            }
+        }
+        templateData.put("transactions", transactions);
+        if (COMPUTED_TOTALS_TYPES.contains(paymentInitiationMessageType)) {
+            templateData.put("nb_of_txs", String.valueOf(transactions.size()));
+            templateData.put("ctrl_sum", ctrlSum.toString());
+        }
+        putSinglePaymentInformation(templateData);
+        return templateData;
+    }
+
+    /**
+     * Prepares data for the FreeMarker template with the rows grouped into payment
+     * information blocks. Every row becomes a transaction, and the group header totals
+     * are computed over all groups.
+     *
+     * @param data The input payment data
+     * @param paymentInitiationMessageType The pain version
+     * @param ctrlSum Control sum the amounts of all groups are added to
+     * @return Map containing prepared data for template rendering
+     */
+    private static Map<String, Object> prepareGroupedDataForTemplate(List<Map<String, String>> data, String paymentInitiationMessageType,
+                                                                     CtrlSum ctrlSum) {
+        PaymentGroups groups = new PaymentGroups(transactionListLayout(paymentInitiationMessageType, "Grouping payment information"));
+        for (int i = 0; i < data.size(); i++) {
+            Map<String, String> row = data.get(i);
+            groups.add(row, parseAmount(row, i));
+        }
+        ctrlSum.merge(groups.ctrlSum());
+        Map<String, Object> templateData = prepareHeaderData(data.get(0), paymentInitiationMessageType);
+        putPaymentInformationGroups(templateData, groups, paymentInitiationMessageType);
+        return templateData;
+    }
+
+    /**
+     * Exposes the header data as the only payment information block, as the templates
+     * list "payment_informations".
+     */
+    private static void putSinglePaymentInformation(Map<String, Object> templateData) {
+        templateData.put("payment_informations", Collections.singletonList(new HashMap<>(templateData)));
+    }
+
+    /**
+     * Adds one payment information block per group, with its own transactions, number
+     * of transactions and control sum, and sets the group header totals.
+     */
+    private static void putPaymentInformationGroups(Map<String, Object> templateData, PaymentGroups groups,
+                                                    String paymentInitiationMessageType) {
+        String idField = PAYMENT_INFORMATION_ID_FIELDS.getOrDefault(paymentInitiationMessageType, PAYMENT_INFORMATION_ID_FIELD);
+        List<Map<String, Object>> paymentInformations = new ArrayList<>(groups.groups().size());
+        Set<Object> usedIds = new HashSet<>();
+        for (PaymentGroups.Group group : groups.groups()) {
+            Map<String, Object> paymentInformation = prepareHeaderData(group.firstRow(), paymentInitiationMessageType);
+            // Groups opened by rows sharing an id get a numeric suffix to keep PmtInfId unique
+            Object id = paymentInformation.get(idField);
+            if (!usedIds.add(id)) {
+                id = id + "-" + (paymentInformations.size() + 1);
+                usedIds.add(id);
+                paymentInformation.put(idField, id);
+            }
+            paymentInformation.put("transactions", group.transactions());
+            paymentInformation.put("pmt_inf_nb_of_txs", String.valueOf(group.transactions().size()));
+            paymentInformation.put("pmt_inf_ctrl_sum", group.ctrlSum().toString());
+            paymentInformations.add(paymentInformation);
+        }
+        templateData.put("payment_informations", paymentInformations);
+        templateData.put("nb_of_txs", String.valueOf(groups.transactionCount()));
+        templateData.put("ctrl_sum", groups.ctrlSum().toString());
+    }
+
+    /**
+     * Prepares the template data of one part of a split output. The part is a complete
+     * message of its own: the header comes from its first row, and its message id,
+     * number of transactions and control sum cover only its rows.
+     *
+     * @param rows The rows of the part
+     * @param paymentInitiationMessageType The pain version
+     * @param messageId The message id of the part
+     * @param options Generation options; grouping is applied within the part
+     * @param ctrlSum Control sum the amounts of the part are added to
+     * @return Map containing prepared data for template rendering
+     */
+    static Map<String, Object> preparePartData(List<Map<String, String>> rows, String paymentInitiationMessageType,
+                                               String messageId, GenerationOptions options, CtrlSum ctrlSum) {
+        Map<String, Object> templateData;
+        if (options.isGroupPaymentInformation()) {
+            templateData = prepareGroupedDataForTemplate(rows, paymentInitiationMessageType, ctrlSum);
+        } else {
+            TransactionLayout.Mapper mapper = transactionListLayout(paymentInitiationMessageType, "Splitting the output").newMapper();
+            List<Map<String, String>> transactions = new ArrayList<>(rows.size());
+            CtrlSum partSum = new CtrlSum();
+            for (int i = 0; i < rows.size(); i++) {
+                Map<String, String> row = rows.get(i);
+                transactions.add(mapper.map(row));
+                partSum.add(row.get(CURRENCY_FIELD), parseAmount(row, i));
+            }
+            ctrlSum.merge(partSum);
+            templateData = prepareHeaderData(rows.get(0), paymentInitiationMessageType);
+            templateData.put("transactions", transactions);
+            templateData.put("nb_of_txs", String.valueOf(transactions.size()));
+            templateData.put("ctrl_sum", partSum.toString());
+        }
+        templateData.put("id", messageId);
+        if (!options.isGroupPaymentInformation()) {
+            putSinglePaymentInformation(templateData);
+        }
+        return templateData;
+    }
+
+    /**
+     * @param paymentInitiationMessageType The pain version
+     * @param feature Name of the feature that needs a transaction list, for the error message
+     * @return The transaction layout of a version whose template lists transactions
+     * @throws IllegalArgumentException If the version renders a single transaction only
+     */
+    static TransactionLayout transactionListLayout(String paymentInitiationMessageType, String feature) {
+        TransactionLayout layout = TransactionLayout.forMessageType(paymentInitiationMessageType);
+        if (layout == null || !TRANSACTION_LIST_TYPES.contains(paymentInitiationMessageType)) {
+            throw new IllegalArgumentException(feature + " is not supported for " + paymentInitiationMessageType);
+        }
+        return layout;
+    }
+
+    /**
+     * Prepares the group header and payment information fields, which are taken from the first row.
+     *
+     * @param firstRow The first input row
+     * @param paymentInitiationMessageType The pain version
+     * @return Map containing the header fields for template rendering
+     */
+    static Map<String, Object> prepareHeaderData(Map<String, String> firstRow, String paymentInitiationMessageType) {
         Map<String, Object> templateData = new HashMap<>();
-        Map<String, String> firstRow = data.get(0);
 
         switch (paymentInitiationMessageType) {
             case "pain.001.001.03":
@@ -153,46 +811,7 @@ public class GenerateXml {
                 templateData.put("debtor_country_code", firstRow.get("debtor_country_code"));
                 templateData.put("debtor_account_IBAN", firstRow.get("debtor_account_IBAN"));
                 templateData.put("debtor_agent_BIC", firstRow.get("debtor_agent_BIC"));
-                String nbOfTxsStr = getOrDefault(firstRow, "nb_of_txs", String.valueOf(data.size()));
-                int nbOfTxs;
-                try {
-                    nbOfTxs = Integer.parseInt(nbOfTxsStr);
-                } catch (NumberFormatException e) {
-                    nbOfTxs = data.size(); // Fallback to actual data size
-                }
-                List<Map<String, String>> transactions = new ArrayList<>();
-                double ctrlSum = 0.0;
-                for (int i = 0; i < Math.min(data.size(), nbOfTxs); i++) {
-                    Map<String, String> row = data.get(i);
-                    Map<String, String> transaction = new HashMap<>();
-                    transaction.put("payment_id", row.get("payment_id"));
-                    transaction.put("payment_amount", row.getOrDefault("payment_amount", ""));
-                    transaction.put("payment_currency", row.getOrDefault("payment_currency", ""));
-                    transaction.put("charge_bearer", row.get("charge_bearer"));
-                    transaction.put("creditor_agent_BIC", row.get("creditor_agent_BIC"));
-                    transaction.put("creditor_name", row.get("creditor_name"));
-                    transaction.put("creditor_street_name", row.get("creditor_street_name"));
-                    transaction.put("creditor_building_number", row.get("creditor_building_number"));
-                    transaction.put("creditor_postal_code", row.get("creditor_postal_code"));
-                    transaction.put("creditor_town_name", row.get("creditor_town_name"));
-                    transaction.put("creditor_country_code", row.get("creditor_country_code"));
-                    transaction.put("creditor_account_IBAN", row.get("creditor_account_IBAN"));
-                    transaction.put("purpose_code", row.get("purpose_code"));
-                    transaction.put("reference_number", row.get("reference_number"));
-                    transaction.put("reference_date", row.get("reference_date"));
-                    transactions.add(transaction);
-                    try {
-                        String amountStr = getOrDefault(row, "payment_amount", "0.0");
-                        ctrlSum += Double.parseDouble(amountStr);
-                    } catch (NumberFormatException e) {
-                        throw new IllegalArgumentException("Invalid payment_amount in row " + (i + 1) + ": " + row.get("payment_amount"));
-                    }
-                }
-                templateData.put("transactions", transactions);
-                templateData.put("nb_of_txs", String.valueOf(transactions.size()));
-                templateData.put("ctrl_sum", String.format("%.2f", ctrlSum));
                 break;
-
             case "pain.001.001.04":
                 templateData.put("id", getOrDefault(firstRow, "id", ""));
                 templateData.put("date", getOrDefault(firstRow, "date", ""));
@@ -234,46 +853,7 @@ public class GenerateXml {
                 templateData.put("purpose_code", getOrDefault(firstRow, "purpose_code", ""));
                 templateData.put("reference_number", getOrDefault(firstRow, "reference_number", ""));
                 templateData.put("reference_date", getOrDefault(firstRow, "reference_date", ""));
-                String nbOfTxsStrV4 = getOrDefault(firstRow, "nb_of_txs", String.valueOf(data.size()));
-                int nbOfTxsV4;
-                try {
-                    nbOfTxsV4 = Integer.parseInt(nbOfTxsStrV4);
-                } catch (NumberFormatException e) {
-                    nbOfTxsV4 = data.size(); // Fallback to actual data size
-                }
-                List<Map<String, String>> transactionsV4 = new ArrayList<>();
-                double ctrlSumV4 = 0.0;
-                for (int i = 0; i < Math.min(data.size(), nbOfTxsV4); i++) {
-                    Map<String, String> row = data.get(i);
-                    Map<String, String> transaction = new HashMap<>();
-                    transaction.put("payment_instruction_id", getOrDefault(row, "payment_id", ""));
-                    transaction.put("payment_end_to_end_id", getOrDefault(row, "reference_number", ""));
-                    transaction.put("payment_currency", getOrDefault(row, "payment_currency", "EUR"));
-                    transaction.put("payment_amount", getOrDefault(row, "payment_amount", ""));
-                    transaction.put("charge_bearer", getOrDefault(row, "charge_bearer", ""));
-                    transaction.put("creditor_agent_BIC", getOrDefault(row, "creditor_agent_BIC", ""));
-                    transaction.put("creditor_name", getOrDefault(row, "creditor_name", ""));
-                    transaction.put("creditor_street", getOrDefault(row, "creditor_street_name", ""));
-                    transaction.put("creditor_building_number", getOrDefault(row, "creditor_building_number", ""));
-                    transaction.put("creditor_postal_code", getOrDefault(row, "creditor_postal_code", ""));
-                    transaction.put("creditor_town", getOrDefault(row, "creditor_town_name", ""));
-                    transaction.put("creditor_account_IBAN", getOrDefault(row, "creditor_account_IBAN", ""));
-                    transaction.put("purpose_code", getOrDefault(row, "purpose_code", ""));
-                    transaction.put("reference_number", getOrDefault(row, "reference_number", ""));
-                    transaction.put("reference_date", getOrDefault(row, "reference_date", ""));
-                    transactionsV4.add(transaction);
-                    try {
-                        String amountStr = getOrDefault(row, "payment_amount", "0.0");
-                        ctrlSumV4 += Double.parseDouble(amountStr);
-                    } catch (NumberFormatException e) {
-                        throw new IllegalArgumentException("Invalid payment_amount in row " + (i + 1) + ": " + row.get("payment_amount"));
-                    }
-                }
-                templateData.put("transactions", transactionsV4);
-                templateData.put("nb_of_txs", String.valueOf(transactionsV4.size()));
-                templateData.put("ctrl_sum", String.format("%.2f", ctrlSumV4));
                 break;
-
             case "pain.001.001.05":
                 templateData.put("id", firstRow.get("id"));
                 templateData.put("date", firstRow.get("date"));
@@ -316,8 +896,6 @@ public class GenerateXml {
                 templateData.put("reference_number", firstRow.get("reference_number"));
                 templateData.put("reference_date", firstRow.get("reference_date"));
                 break;
-
-            // Add implementations for versions 6-9 similar to the patterns above
             case "pain.001.001.06":
                 templateData.put("id",firstRow.get("id"));
                 templateData.put("date",firstRow.get("date"));
@@ -357,20 +935,6 @@ public class GenerateXml {
                 templateData.put("purpose_code",firstRow.get("purpose_code"));
                 templateData.put("reference_number",firstRow.get("reference_number"));
                 templateData.put("reference_date",firstRow.get("reference_date"));
-                List<Map<String, String>> transactionV6 = new ArrayList<>();
-                for (Map<String, String> row : data) {
-                    Map<String, String> transaction = new HashMap<>();
-                    transaction.put("payment_id", row.get("payment_id"));
-                    transaction.put("payment_amount", row.getOrDefault("payment_amount", ""));
-                    transaction.put("payment_currency", row.getOrDefault("payment_currency", ""));
-                    transaction.put("charge_bearer", row.get("charge_bearer"));
-                    transaction.put("creditor_agent_BIC", row.get("creditor_agent_BIC"));
-                    transaction.put("creditor_name", row.get("creditor_name"));
-                    transaction.put("creditor_account_IBAN", row.get("creditor_account_IBAN"));
-                    transaction.put("creditor_remittance_information", row.get("creditor_remittance_information"));
-                    transactionV6.add(transaction);
-                }
-                templateData.put("transactions", transactionV6);
                 break;
             case "pain.001.001.07":
                 templateData.put("id",firstRow.get("id"));
@@ -395,30 +959,6 @@ public class GenerateXml {
                 templateData.put("debtor_country",firstRow.get("debtor_country"));
                 templateData.put("debtor_account_IBAN",firstRow.get("debtor_account_IBAN"));
                 templateData.put("debtor_agent_BIC",firstRow.get("debtor_agent_BIC"));
-                List<Map<String, String>> transactionV7 = new ArrayList<>();
-                for (Map<String, String> row : data) {
-                    Map<String, String> transaction = new HashMap<>();
-                    transaction.put("payment_instruction_id",row.get("payment_instruction_id"));
-                    transaction.put("payment_end_to_end_id",row.get("payment_end_to_end_id"));
-                    transaction.put("payment_id", row.get("payment_id"));
-                    transaction.put("payment_amount", row.getOrDefault("payment_amount", ""));
-                    transaction.put("payment_currency", row.getOrDefault("payment_currency", ""));
-                    transaction.put("charge_bearer", row.get("charge_bearer"));
-                    transaction.put("creditor_name",row.get("creditor_name"));
-                    transaction.put("creditor_street",row.get("creditor_street"));
-                    transaction.put("creditor_building_number",row.get("creditor_building_number"));
-                    transaction.put("creditor_postal_code",row.get("creditor_postal_code"));
-                    transaction.put("creditor_town",row.get("creditor_town"));
-                    transaction.put("creditor_country",row.get("creditor_country"));
-                    transaction.put("creditor_account_IBAN",row.get("creditor_account_IBAN"));
-                    transaction.put("creditor_agent_BICFI",row.get("creditor_agent_BICFI"));
-                    transaction.put("creditor_remittance_information", row.get("creditor_remittance_information"));
-                    transaction.put("purpose_code",row.get("purpose_code"));
-                    transaction.put("reference_number",row.get("reference_number"));
-                    transaction.put("reference_date",row.get("reference_date"));
-                    transactionV7.add(transaction);
-                }
-                templateData.put("transactions", transactionV7);
                 break;
             case "pain.001.001.08":
                 templateData.put("id",firstRow.get("id"));
@@ -443,32 +983,8 @@ public class GenerateXml {
                 templateData.put("debtor_country",firstRow.get("debtor_country"));
                 templateData.put("debtor_account_IBAN",firstRow.get("debtor_account_IBAN"));
                 templateData.put("debtor_agent_BIC",firstRow.get("debtor_agent_BIC"));
-                List<Map<String, String>> transactionV8 = new ArrayList<>();
-                for (Map<String, String> row : data) {
-                    Map<String, String> transaction = new HashMap<>();
-                    transaction.put("payment_id",row.get("payment_id"));
-                    transaction.put("payment_instruction_id",row.get("payment_instruction_id"));
-                    transaction.put("payment_end_to_end_id",row.get("payment_end_to_end_id"));
-                    transaction.put("payment_currency",row.get("payment_currency"));
-                    transaction.put("payment_amount",row.get("payment_amount"));
-                    transaction.put("charge_bearer",row.get("charge_bearer"));
-                    transaction.put("creditor_name",row.get("creditor_name"));
-                    transaction.put("creditor_street",row.get("creditor_street"));
-                    transaction.put("creditor_building_number",row.get("creditor_building_number"));
-                    transaction.put("creditor_postal_code",row.get("creditor_postal_code"));
-                    transaction.put("creditor_town",row.get("creditor_town"));
-                    transaction.put("creditor_country",row.get("creditor_country"));
-                    transaction.put("creditor_account_IBAN",row.get("creditor_account_IBAN"));
-                    transaction.put("creditor_agent_BICFI",row.get("creditor_agent_BICFI"));
-                    transaction.put("purpose_code",row.get("purpose_code"));
-                    transaction.put("reference_number",row.get("reference_number"));
-                    transaction.put("reference_date",row.get("reference_date"));
-                    transactionV8.add(transaction);
-                }
-                templateData.put("transactions", transactionV8);
                 break;
             case "pain.001.001.09":
-                // Similar implementation as above versions, with appropriate field mappings
                 templateData.put("id", firstRow.get("id"));
                 templateData.put("date", firstRow.get("date"));
                 templateData.put("nb_of_txs", firstRow.get("nb_of_txs"));
@@ -481,32 +997,129 @@ public class GenerateXml {
                 templateData.put("debtor_account_IBAN", firstRow.get("debtor_account_IBAN"));
                 templateData.put("debtor_agent_BIC", firstRow.get("debtor_agent_BIC"));
                 templateData.put("charge_bearer", firstRow.get("charge_bearer"));
-                // Add remaining fields for these versions
-
-                List<Map<String, String>> transactionV9 = new ArrayList<>();
-                for (Map<String, String> row : data) {
-                    Map<String, String> transaction = new HashMap<>();
-                    transaction.put("payment_id", row.get("payment_id"));
-                    transaction.put("payment_amount", row.get("payment_amount"));
-                    transaction.put("payment_currency", getOrDefault(row, "payment_currency", ""));
-                    transaction.put("charge_bearer", row.get("charge_bearer"));
-                    transaction.put("creditor_agent_BIC", row.get("creditor_agent_BIC"));
-                    transaction.put("creditor_name", row.get("creditor_name"));
-                    transaction.put("creditor_account_IBAN", row.get("creditor_account_IBAN"));
-                    transaction.put("creditor_remittance_information", row.get("remittance_information"));
-                    transactionV9.add(transaction);
-                }
-                templateData.put("transactions", transactionV9);
                 break;
 
             default:
                 System.out.println("Unexpected message type: " + paymentInitiationMessageType);
-                System.exit(1);
+                throw new IllegalArgumentException("Unexpected message type: " + paymentInitiationMessageType);
         }
 
         return templateData;
     }
 
+    /**
+     * Returns the input columns a message type reads without falling back to a default:
+     * the header columns read from the first row and the columns of its transactions. A
+     * row without a value for one of them renders an empty or missing element.
+     *
+     * @param paymentInitiationMessageType The pain version
+     * @return The column names
+     */
+    public static Set<String> columnsWithoutDefault(String paymentInitiationMessageType) {
+        Set<String> columns = new LinkedHashSet<>();
+        // Records plain lookups; lookups with a default see an absent column and do not ask for its value
+        Map<String, String> probe = new AbstractMap<String, String>() {
+            @Override
+            public String get(Object key) {
+                columns.add((String) key);
+                return null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return false;
+            }
+
+            @Override
+            public Set<Entry<String, String>> entrySet() {
+                return Collections.emptySet();
+            }
+        };
+        prepareHeaderData(probe, paymentInitiationMessageType);
+        TransactionLayout layout = TransactionLayout.forMessageType(paymentInitiationMessageType);
+        if (layout != null) {
+            columns.addAll(layout.columnsWithoutDefault());
+        }
+        return columns;
+    }
+
+    /**
+     * Returns every input column a message type reads, with or without a default: the
+     * header columns, the columns of its transactions and those the totals and the
+     * payment information groups are computed from. Other columns do not change the output.
+     *
+     * @param paymentInitiationMessageType The pain version
+     * @return The column names
+     */
+    public static Set<String> columnsRead(String paymentInitiationMessageType) {
+        Set<String> columns = new LinkedHashSet<>();
+        // Records every lookup, including the presence checks of lookups with a default
+        Map<String, String> probe = new AbstractMap<String, String>() {
+            @Override
+            public String get(Object key) {
+                columns.add((String) key);
+                return null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                columns.add((String) key);
+                return false;
+            }
+
+            @Override
+            public Set<Entry<String, String>> entrySet() {
+                return Collections.emptySet();
+            }
+        };
+        prepareHeaderData(probe, paymentInitiationMessageType);
+        TransactionLayout layout = TransactionLayout.forMessageType(paymentInitiationMessageType);
+        if (layout != null) {
+            columns.addAll(layout.columns());
+        }
+        columns.add("id");
+        columns.add("nb_of_txs");
+        columns.add("payment_amount");
+        columns.add(CURRENCY_FIELD);
+        columns.add(PAYMENT_INFORMATION_ID_FIELDS.getOrDefault(paymentInitiationMessageType, PAYMENT_INFORMATION_ID_FIELD));
+        columns.addAll(Arrays.asList(PaymentGroups.KEY_COLUMNS));
+        return columns;
+    }
+
+    /**
+     * Returns how many rows become transactions. Versions 03 and 04 honour the
+     * nb_of_txs value of the first row; the other versions render every row.
+     */
+    static int transactionLimit(Map<String, String> firstRow, int rowCount, String paymentInitiationMessageType) {
+        if (!COMPUTED_TOTALS_TYPES.contains(paymentInitiationMessageType)) {
+            return rowCount;
+        }
+        String nbOfTxsStr = getOrDefault(firstRow, "nb_of_txs", String.valueOf(rowCount));
+        int nbOfTxs;
+        try {
+            nbOfTxs = Integer.parseInt(nbOfTxsStr);
+        } catch (NumberFormatException e) {
+            nbOfTxs = rowCount; // Fallback to actual data size
+        }
+        return Math.max(0, Math.min(rowCount, nbOfTxs));
+    }
+
+    /**
+     * Parses the payment amount of a row for the control sum.
+     *
+     * @param row The input row
+     * @param index Zero-based index of the row, used in the error message
+     * @return The payment amount in {@link CtrlSum} units
+     */
+    static long parseAmount(Map<String, String> row, long index) {
+        try {
+            String amountStr = getOrDefault(row, "payment_amount", "0.0");
+            return CtrlSum.parseUnits(amountStr);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid payment_amount in row " + (index + 1) + ": " + row.get("payment_amount"));
+        }
+    }
+
     /**
      * Helper method to get a value from a map with a default fallback
      */
@@ -517,6 +1130,27 @@ public class GenerateXml {
         return defaultValue;
     }
 
+    /**
+     * Returns the explicit output path from the options, or the path derived from the template path
+     */
+    private static String resolveOutputFilePath(String xmlFilePath, String paymentInitiationMessageType, GenerationOptions options) {
+        String outputFilePath = options.getOutputFilePath() != null
+                ? options.getOutputFilePath()
+                : generateUpdatedXmlFilePath(xmlFilePath, paymentInitiationMessageType);
+        if (options.isCompressOutput() && !isCompressed(outputFilePath)) {
+            outputFilePath += GZIP_SUFFIX;
+        }
+        return outputFilePath;
+    }
+
+    /**
+     * @param filePath Path of an output file
+     * @return true if the file is written gzip-compressed, judging by its ".gz" extension
+     */
+    static boolean isCompressed(String filePath) {
+        return filePath.endsWith(GZIP_SUFFIX);
+    }
+
     /**
      * Generates updated XML file path based on the original path and message type
      */
@@ -549,6 +1183,186 @@ public class GenerateXml {
         return validator.validate(xmlFilePath, xsdFilePath);
     }
 
+    /**
+     * Lazily maps rows from an open cursor to template transactions. FreeMarker lists
+     * it exactly once, so each row can be dropped as soon as its block is written.
+     */
+    private static class TransactionIterator implements Iterator<Map<String, String>> {
+        private final RowCursor cursor;
+        private final TransactionLayout.Mapper mapper;
+        private final long limit;
+        private long emitted;
+
+        TransactionIterator(RowCursor cursor, String paymentInitiationMessageType, long limit) {
+            this.cursor = cursor;
+            this.mapper = TransactionLayout.forMessageType(paymentInitiationMessageType).newMapper();
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return emitted < limit && cursor.hasNext();
+        }
+
+        @Override
+        public Map<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            emitted++;
+            return mapper.map(cursor.next());
+        }
+    }
+
+    /**
+     * Maps rows to transactions like {@link TransactionIterator} and saves a checkpoint
+     * before every n-th transaction. The template asks for the next transaction only once
+     * the previous one is written, so at that point the output ends between two
+     * transactions.
+     */
+    private static class CheckpointingIterator implements Iterator<Map<String, String>> {
+        private final SeekableRowCursor cursor;
+        private final TransactionLayout.Mapper mapper;
+        private final Checkpoint start;
+        private final String checkpointFilePath;
+        private final long interval;
+        private final ResumingWriter writer;
+        private final FileOutputStream fileOutput;
+        private final MeteredOutputStream fileStream;
+        private final boolean computedTotals;
+        private long emitted;
+        private long emittedAmountUnits;
+
+        CheckpointingIterator(SeekableRowCursor cursor, TransactionLayout.Mapper mapper, Checkpoint start,
+                              String checkpointFilePath, long interval, ResumingWriter writer,
+                              FileOutputStream fileOutput, MeteredOutputStream fileStream) {
+            this.cursor = cursor;
+            this.mapper = mapper;
+            this.start = start;
+            this.checkpointFilePath = checkpointFilePath;
+            this.interval = interval;
+            this.writer = writer;
+            this.fileOutput = fileOutput;
+            this.fileStream = fileStream;
+            this.computedTotals = start.nbOfTxs != null;
+            this.emitted = start.rowsEmitted;
+            this.emittedAmountUnits = start.emittedAmountUnits;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return emitted < start.transactionCount && cursor.hasNext();
+        }
+
+        @Override
+        public Map<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map<String, String> row = cursor.next();
+            // Everything rendered before the first remaining transaction is already on disk
+            writer.resume();
+            if (emitted != start.rowsEmitted && emitted % interval == 0) {
+                saveCheckpoint(cursor.offset());
+            }
+            if (computedTotals) {
+                emittedAmountUnits += parseAmount(row, emitted);
+            }
+            emitted++;
+            return mapper.map(row);
+        }
+
+        private void saveCheckpoint(long inputOffset) {
+            try {
+                writer.flush();
+                fileOutput.getChannel().force(false);
+                long outputPosition = start.outputPosition + fileStream.getBytes();
+                new Checkpoint(start.messageType, start.sourceFingerprint, start.outputFilePath, start.rowCount,
+                        start.transactionCount, start.nbOfTxs, start.ctrlSum, emitted, inputOffset, outputPosition,
+                        emittedAmountUnits).save(checkpointFilePath);
+            } catch (IOException e) {
+                // The run itself is not affected; a restart resumes from an older checkpoint
+                System.out.println("Unable to save checkpoint " + checkpointFilePath + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Passes writes through, or discards them until {@link #resume()} is called.
+     */
+    private static final class ResumingWriter extends Writer {
+        private final Writer out;
+        private boolean discarding;
+
+        ResumingWriter(Writer out, boolean discarding) {
+            this.out = out;
+            this.discarding = discarding;
+        }
+
+        void resume() {
+            discarding = false;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            if (!discarding) {
+                out.write(cbuf, off, len);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            if (!discarding) {
+                out.write(str, off, len);
+            }
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if (!discarding) {
+                out.write(c);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Yields at most a given number of rows from an iterator.
+     */
+    private static class LimitedIterator implements Iterator<Map<String, String>> {
+        private final Iterator<Map<String, String>> rows;
+        private final long limit;
+        private long emitted;
+
+        LimitedIterator(Iterator<Map<String, String>> rows, long limit) {
+            this.rows = rows;
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return emitted < limit && rows.hasNext();
+        }
+
+        @Override
+        public Map<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            emitted++;
+            return rows.next();
+        }
+    }
+
     // Inner class for XML validation
     private static class XmlValidator {
         public boolean validate(String xmlFilePath, String xsdFilePath) {
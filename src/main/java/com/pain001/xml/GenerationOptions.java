@@ -0,0 +1,340 @@
+package com.pain001.xml;
+
+import com.pain001.data.PaymentIdIndex;
+import com.pain001.metrics.RunMetrics;
+
+/**
+ * Optional settings for generating a pain.001 file. The defaults reproduce the
+ * original behaviour: the input is loaded into memory, the XML is written to disk
+ * and then read back for XSD validation. Output files are written as UTF-8 to a
+ * temporary file and renamed into place once they are valid.
+ */
+public class GenerationOptions {
+    /**
+     * Default size in bytes of the character and byte buffers in front of the output.
+     */
+    public static final int DEFAULT_OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private boolean streaming;
+    private boolean validateWhileWriting;
+    private String outputFilePath;
+    private boolean parallelValidation;
+    private boolean mappedCsvParsing;
+    private boolean groupPaymentInformation;
+    private int maxTransactionsPerFile;
+    private long maxBytesPerFile;
+    private int writerThreads = Runtime.getRuntime().availableProcessors();
+    private RunMetrics metrics;
+    private boolean writeMetricsSummary;
+    private long checkpointInterval;
+    private boolean compressOutput;
+    private OutputSink outputSink;
+    private PendingOutputs pendingOutputs;
+    private int outputBufferSize = DEFAULT_OUTPUT_BUFFER_SIZE;
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.NONE;
+    private PaymentIdIndex paymentIdIndex;
+    private boolean rejectDuplicatePayments = true;
+    private boolean rejectInvalidAccounts;
+
+    public GenerationOptions() {
+    }
+
+    /**
+     * Copies another set of options, e.g. to derive per-job options from shared defaults.
+     *
+     * @param other The options to copy.
+     */
+    public GenerationOptions(GenerationOptions other) {
+        this.streaming = other.streaming;
+        this.validateWhileWriting = other.validateWhileWriting;
+        this.outputFilePath = other.outputFilePath;
+        this.parallelValidation = other.parallelValidation;
+        this.mappedCsvParsing = other.mappedCsvParsing;
+        this.groupPaymentInformation = other.groupPaymentInformation;
+        this.maxTransactionsPerFile = other.maxTransactionsPerFile;
+        this.maxBytesPerFile = other.maxBytesPerFile;
+        this.writerThreads = other.writerThreads;
+        // Not the metrics: every run derived from shared defaults collects its own
+        this.writeMetricsSummary = other.writeMetricsSummary;
+        this.checkpointInterval = other.checkpointInterval;
+        this.compressOutput = other.compressOutput;
+        this.outputSink = other.outputSink;
+        this.pendingOutputs = other.pendingOutputs;
+        this.outputBufferSize = other.outputBufferSize;
+        this.fsyncPolicy = other.fsyncPolicy;
+        // Shared, so the jobs of a batch also catch the ids repeated between their files
+        this.paymentIdIndex = other.paymentIdIndex;
+        this.rejectDuplicatePayments = other.rejectDuplicatePayments;
+        this.rejectInvalidAccounts = other.rejectInvalidAccounts;
+    }
+
+    /**
+     * @return true if input rows are streamed instead of loaded into memory.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public GenerationOptions setStreaming(boolean streaming) {
+        this.streaming = streaming;
+        return this;
+    }
+
+    /**
+     * @return true if the XML is validated against the XSD while it is being written
+     * (tee mode) instead of by re-reading the written file.
+     */
+    public boolean isValidateWhileWriting() {
+        return validateWhileWriting;
+    }
+
+    public GenerationOptions setValidateWhileWriting(boolean validateWhileWriting) {
+        this.validateWhileWriting = validateWhileWriting;
+        return this;
+    }
+
+    /**
+     * @return The output file path, or null to derive it from the template path and message type.
+     */
+    public String getOutputFilePath() {
+        return outputFilePath;
+    }
+
+    public GenerationOptions setOutputFilePath(String outputFilePath) {
+        this.outputFilePath = outputFilePath;
+        return this;
+    }
+
+    /**
+     * @return true if in-memory input rows are validated in parallel chunks on the
+     * common fork/join pool.
+     */
+    public boolean isParallelValidation() {
+        return parallelValidation;
+    }
+
+    public GenerationOptions setParallelValidation(boolean parallelValidation) {
+        this.parallelValidation = parallelValidation;
+        return this;
+    }
+
+    /**
+     * @return true if CSV files are read as UTF-8 through memory-mapped chunks parsed on
+     * several cores, instead of through commons-csv with the platform charset.
+     */
+    public boolean isMappedCsvParsing() {
+        return mappedCsvParsing;
+    }
+
+    public GenerationOptions setMappedCsvParsing(boolean mappedCsvParsing) {
+        this.mappedCsvParsing = mappedCsvParsing;
+        return this;
+    }
+
+    /**
+     * @return true if rows are grouped into one payment information block per debtor
+     * account, debtor agent, execution date, payment method and currency, instead of
+     * taking the payment information fields from the first row.
+     */
+    public boolean isGroupPaymentInformation() {
+        return groupPaymentInformation;
+    }
+
+    public GenerationOptions setGroupPaymentInformation(boolean groupPaymentInformation) {
+        this.groupPaymentInformation = groupPaymentInformation;
+        return this;
+    }
+
+    /**
+     * @return The maximum number of transactions per output file, or 0 for no limit.
+     */
+    public int getMaxTransactionsPerFile() {
+        return maxTransactionsPerFile;
+    }
+
+    public GenerationOptions setMaxTransactionsPerFile(int maxTransactionsPerFile) {
+        this.maxTransactionsPerFile = maxTransactionsPerFile;
+        return this;
+    }
+
+    /**
+     * @return The maximum size of an output file in bytes, or 0 for no limit.
+     */
+    public long getMaxBytesPerFile() {
+        return maxBytesPerFile;
+    }
+
+    public GenerationOptions setMaxBytesPerFile(long maxBytesPerFile) {
+        this.maxBytesPerFile = maxBytesPerFile;
+        return this;
+    }
+
+    /**
+     * @return The number of threads that write the parts of a split output.
+     */
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    public GenerationOptions setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+        return this;
+    }
+
+    /**
+     * @return The metrics the run reports to, or {@link RunMetrics#DISABLED} if none are set.
+     */
+    public RunMetrics getMetrics() {
+        return metrics != null ? metrics : RunMetrics.DISABLED;
+    }
+
+    public GenerationOptions setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * @return true if a JSON run summary is written next to the output, e.g. "x.metrics.json" for "x.xml".
+     */
+    public boolean isWriteMetricsSummary() {
+        return writeMetricsSummary;
+    }
+
+    public GenerationOptions setWriteMetricsSummary(boolean writeMetricsSummary) {
+        this.writeMetricsSummary = writeMetricsSummary;
+        return this;
+    }
+
+    /**
+     * @return The number of transactions between two checkpoints of a streamed run, or 0
+     * for no checkpoints. A checkpointed run that is interrupted resumes from its last
+     * checkpoint when it is started again with the same input and output, and validates
+     * the output after writing it. Only streamed CSV input rendered by FreeMarker into a
+     * single file can be checkpointed.
+     */
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public GenerationOptions setCheckpointInterval(long checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+        return this;
+    }
+
+    /**
+     * @return true if the output is written gzip-compressed, with ".gz" appended to the
+     * output path. Output paths that already end in ".gz" are always compressed. The XSD
+     * validation reads the uncompressed XML.
+     */
+    public boolean isCompressOutput() {
+        return compressOutput;
+    }
+
+    public GenerationOptions setCompressOutput(boolean compressOutput) {
+        this.compressOutput = compressOutput;
+        return this;
+    }
+
+    /**
+     * @return The sink that receives the message instead of the output file, or null to
+     * write the file. A sink takes a single message, so it cannot be used with a split or
+     * checkpointed output, and batch jobs always write their own files.
+     */
+    public OutputSink getOutputSink() {
+        return outputSink;
+    }
+
+    public GenerationOptions setOutputSink(OutputSink outputSink) {
+        this.outputSink = outputSink;
+        return this;
+    }
+
+    /**
+     * @return The holder that receives the rendered and validated messages instead of
+     * publishing them, so the caller publishes them along with others; null to publish
+     * each message as soon as it is valid.
+     */
+    public PendingOutputs getPendingOutputs() {
+        return pendingOutputs;
+    }
+
+    public GenerationOptions setPendingOutputs(PendingOutputs pendingOutputs) {
+        this.pendingOutputs = pendingOutputs;
+        return this;
+    }
+
+    /**
+     * @return The size in bytes of the buffers between the renderer and the output.
+     */
+    public int getOutputBufferSize() {
+        return outputBufferSize;
+    }
+
+    public GenerationOptions setOutputBufferSize(int outputBufferSize) {
+        if (outputBufferSize <= 0) {
+            throw new IllegalArgumentException("Error: Output buffer size must be positive.");
+        }
+        this.outputBufferSize = outputBufferSize;
+        return this;
+    }
+
+    /**
+     * @return How far output files are forced to disk before they are renamed into place.
+     */
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public GenerationOptions setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        this.fsyncPolicy = fsyncPolicy;
+        return this;
+    }
+
+    /**
+     * @return The index of the payment ids already sent, or null to skip the duplicate
+     * check. The ids of the input are looked up and reserved before any XML is written,
+     * and kept once the output has been published.
+     */
+    public PaymentIdIndex getPaymentIdIndex() {
+        return paymentIdIndex;
+    }
+
+    public GenerationOptions setPaymentIdIndex(PaymentIdIndex paymentIdIndex) {
+        this.paymentIdIndex = paymentIdIndex;
+        return this;
+    }
+
+    /**
+     * @return true if a run with duplicate payment ids fails before writing, false if the
+     * duplicates are only reported.
+     */
+    public boolean isRejectDuplicatePayments() {
+        return rejectDuplicatePayments;
+    }
+
+    public GenerationOptions setRejectDuplicatePayments(boolean rejectDuplicatePayments) {
+        this.rejectDuplicatePayments = rejectDuplicatePayments;
+        return this;
+    }
+
+    /**
+     * @return true if a run with an invalid IBAN or BIC fails validation, false if the
+     * invalid identifiers are only logged as warnings.
+     */
+    public boolean isRejectInvalidAccounts() {
+        return rejectInvalidAccounts;
+    }
+
+    public GenerationOptions setRejectInvalidAccounts(boolean rejectInvalidAccounts) {
+        this.rejectInvalidAccounts = rejectInvalidAccounts;
+        return this;
+    }
+
+    /**
+     * @return true if the output is split into several numbered files, each a complete
+     * message within the transaction count and byte size limits.
+     */
+    public boolean isSplitOutput() {
+        return maxTransactionsPerFile > 0 || maxBytesPerFile > 0;
+    }
+}
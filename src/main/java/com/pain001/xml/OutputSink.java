@@ -0,0 +1,342 @@
+package com.pain001.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+/**
+ * Destination of one generated message.
+ * <p>
+ * The message is written to the stream returned by {@link #open()}, which the caller
+ * closes. Once it has been validated, {@link #publish()} makes it visible; if rendering
+ * or validation fails, {@link #discard()} drops it instead. Sinks that can be read back
+ * are validated by re-reading them; the others are validated while they are written.
+ * <p>
+ * File sinks write to a hidden temporary file next to the target and rename it into
+ * place, so a job watching the directory never picks up a partial or invalid file.
+ */
+public abstract class OutputSink {
+    private static final Logger LOGGER = Logger.getLogger(OutputSink.class.getName());
+
+    /**
+     * @param filePath    Path of the file to create or replace.
+     * @param fsyncPolicy How far the file is forced to disk before it is published.
+     * @return A sink that publishes the file with an atomic rename.
+     */
+    public static OutputSink toFile(String filePath, FsyncPolicy fsyncPolicy) {
+        return new FileSink(Paths.get(filePath), fsyncPolicy);
+    }
+
+    /**
+     * @param out Stream to write to; it is flushed but not closed.
+     * @return A sink that writes straight through, e.g. to a socket.
+     */
+    public static OutputSink toStream(OutputStream out) {
+        return new StreamSink(out);
+    }
+
+    /**
+     * @param channel     Channel to write to from its current position; it is not closed.
+     * @param fsyncPolicy {@link FsyncPolicy#NONE} to leave flushing to the operating
+     *                    system, otherwise the channel is forced when the message is published.
+     * @return A sink that writes into an open file, e.g. after a header written by the caller.
+     */
+    public static OutputSink toChannel(FileChannel channel, FsyncPolicy fsyncPolicy) {
+        return new ChannelSink(channel, fsyncPolicy);
+    }
+
+    /**
+     * @return A sink that keeps the message in memory.
+     */
+    public static MemorySink inMemory() {
+        return new MemorySink();
+    }
+
+    /**
+     * @return The stream to write the encoded message to. Called once.
+     * @throws IOException If the destination cannot be opened.
+     */
+    public abstract OutputStream open() throws IOException;
+
+    /**
+     * @return true if the written message can be read back with {@link #reopen()}.
+     */
+    public boolean isReadable() {
+        return false;
+    }
+
+    /**
+     * @return The written message, once the stream returned by {@link #open()} is closed.
+     * @throws IOException If the message cannot be read.
+     */
+    public InputStream reopen() throws IOException {
+        throw new UnsupportedOperationException(describe() + " cannot be read back");
+    }
+
+    /**
+     * Makes the written and validated message visible.
+     *
+     * @throws IOException If the message cannot be published.
+     */
+    public void publish() throws IOException {
+    }
+
+    /**
+     * Drops a message that failed, where the sink allows it. Does not throw.
+     */
+    public void discard() {
+    }
+
+    /**
+     * @return The path of the published file, or null if the sink does not write a file.
+     */
+    public String getFilePath() {
+        return null;
+    }
+
+    /**
+     * @return A description of the destination for messages.
+     */
+    public abstract String describe();
+
+    /**
+     * Renames a fully written temporary file over its target, forcing it to disk as the
+     * policy asks.
+     *
+     * @param temporary   The written file, in the same directory as the target.
+     * @param target      The file to create or replace.
+     * @param fsyncPolicy How far to force the file to disk.
+     * @throws IOException If the file cannot be forced or renamed.
+     */
+    static void publish(Path temporary, Path target, FsyncPolicy fsyncPolicy) throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NONE) {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            LOGGER.warning("Atomic rename not supported, replacing " + target + " non-atomically");
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (fsyncPolicy == FsyncPolicy.FILE_AND_DIRECTORY) {
+            forceDirectory(target.toAbsolutePath().getParent());
+        }
+    }
+
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory; the file itself is on disk
+            LOGGER.fine("Unable to force directory " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private static final class FileSink extends OutputSink {
+        private final Path target;
+        private final FsyncPolicy fsyncPolicy;
+        private Path temporary;
+
+        FileSink(Path target, FsyncPolicy fsyncPolicy) {
+            this.target = target;
+            this.fsyncPolicy = fsyncPolicy;
+        }
+
+        @Override
+        public OutputStream open() throws IOException {
+            // Hidden and without the target's extension, so pickup jobs do not match it.
+            // Created like the target would be, unlike Files.createTempFile, which makes it owner-only.
+            temporary = target.resolveSibling("." + target.getFileName() + "."
+                    + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            return Files.newOutputStream(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+
+        @Override
+        public boolean isReadable() {
+            return true;
+        }
+
+        @Override
+        public InputStream reopen() throws IOException {
+            return Files.newInputStream(temporary);
+        }
+
+        @Override
+        public void publish() throws IOException {
+            publish(temporary, target, fsyncPolicy);
+            temporary = null;
+        }
+
+        @Override
+        public void discard() {
+            if (temporary == null) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException e) {
+                LOGGER.warning("Unable to delete " + temporary + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public String getFilePath() {
+            return target.toString();
+        }
+
+        @Override
+        public String describe() {
+            return target.toString();
+        }
+    }
+
+    private static final class StreamSink extends OutputSink {
+        private final OutputStream out;
+
+        StreamSink(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public OutputStream open() {
+            return new UnclosedOutputStream(out);
+        }
+
+        @Override
+        public String describe() {
+            return "output stream";
+        }
+    }
+
+    private static final class ChannelSink extends OutputSink {
+        private final FileChannel channel;
+        private final FsyncPolicy fsyncPolicy;
+
+        ChannelSink(FileChannel channel, FsyncPolicy fsyncPolicy) {
+            this.channel = channel;
+            this.fsyncPolicy = fsyncPolicy;
+        }
+
+        @Override
+        public OutputStream open() {
+            return new UnclosedOutputStream(Channels.newOutputStream(channel));
+        }
+
+        @Override
+        public void publish() throws IOException {
+            if (fsyncPolicy != FsyncPolicy.NONE) {
+                channel.force(true);
+            }
+        }
+
+        @Override
+        public String describe() {
+            return "file channel";
+        }
+    }
+
+    /**
+     * Keeps a message in memory, e.g. to answer a request or hand it to another API.
+     */
+    public static final class MemorySink extends OutputSink {
+        private final Buffer buffer = new Buffer();
+
+        private MemorySink() {
+        }
+
+        @Override
+        public OutputStream open() {
+            buffer.reset();
+            return buffer;
+        }
+
+        @Override
+        public boolean isReadable() {
+            return true;
+        }
+
+        @Override
+        public InputStream reopen() {
+            return buffer.toInputStream();
+        }
+
+        @Override
+        public void discard() {
+            buffer.reset();
+        }
+
+        @Override
+        public String describe() {
+            return "memory buffer";
+        }
+
+        /**
+         * @return A copy of the written message.
+         */
+        public byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+
+        /**
+         * @return The size of the written message in bytes.
+         */
+        public int size() {
+            return buffer.size();
+        }
+
+        /**
+         * @param out Stream to copy the written message to.
+         * @throws IOException If writing fails.
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            buffer.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads the buffer in place instead of copying it.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(64 * 1024);
+        }
+
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+
+    /**
+     * Flushes instead of closing the stream it wraps, which belongs to the caller.
+     */
+    private static final class UnclosedOutputStream extends FilterOutputStream {
+        UnclosedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.pain001.xml;
+
+import com.pain001.data.CtrlSum;
+import com.pain001.data.PaymentRow;
+import com.pain001.data.RowSchema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Partitions payment rows into payment information blocks in a single hash-based pass.
+ * <p>
+ * Rows that share the debtor account IBAN, debtor agent BIC, requested execution date,
+ * payment method and transaction currency end up in the same group. Groups keep the
+ * order in which their first row appeared, and transactions keep their input order
+ * within a group. Each group holds its mapped transactions, so the whole partition is
+ * kept in memory until it is rendered.
+ */
+final class PaymentGroups {
+    static final String[] KEY_COLUMNS = {
+            "debtor_account_IBAN",
+            "debtor_agent_BIC",
+            "requested_execution_date",
+            "payment_method"
+    };
+    private static final String CURRENCY_FIELD = "payment_currency";
+
+    private final TransactionLayout.Mapper mapper;
+    private final Map<GroupKey, Group> groups = new LinkedHashMap<>();
+    // Reused for lookups; a copy is stored only when a new group is created
+    private final GroupKey probe = new GroupKey(new String[KEY_COLUMNS.length + 1]);
+    private RowSchema boundSchema;
+    private int[] keyOrdinals;
+    private long transactionCount;
+    private final CtrlSum ctrlSum = new CtrlSum();
+
+    /**
+     * @param layout The transaction layout of the pain version being generated.
+     */
+    PaymentGroups(TransactionLayout layout) {
+        this.mapper = layout.newMapper();
+    }
+
+    /**
+     * Adds a row to its group, creating the group on first sight.
+     *
+     * @param row    The input row.
+     * @param amount The parsed payment amount of the row, in {@link CtrlSum} units.
+     */
+    void add(Map<String, String> row, long amount) {
+        PaymentRow transaction = mapper.map(row);
+        fillKey(row, transaction);
+
+        Group group = groups.get(probe);
+        if (group == null) {
+            group = new Group(row);
+            groups.put(new GroupKey(probe.values.clone()), group);
+        }
+        group.transactions.add(transaction);
+        group.ctrlSum.add(null, amount);
+        transactionCount++;
+        ctrlSum.add(probe.values[KEY_COLUMNS.length], amount);
+    }
+
+    private void fillKey(Map<String, String> row, PaymentRow transaction) {
+        String[] values = probe.values;
+        if (row instanceof PaymentRow) {
+            PaymentRow paymentRow = (PaymentRow) row;
+            if (paymentRow.schema() != boundSchema) {
+                boundSchema = paymentRow.schema();
+                keyOrdinals = boundSchema.ordinals(Arrays.asList(KEY_COLUMNS));
+            }
+            for (int i = 0; i < KEY_COLUMNS.length; i++) {
+                values[i] = paymentRow.get(keyOrdinals[i]);
+            }
+        } else {
+            for (int i = 0; i < KEY_COLUMNS.length; i++) {
+                values[i] = row.get(KEY_COLUMNS[i]);
+            }
+        }
+        // Group on the currency that is rendered, after layout defaults are applied
+        values[KEY_COLUMNS.length] = transaction.get(CURRENCY_FIELD);
+        probe.rehash();
+    }
+
+    /**
+     * @return The groups in order of first appearance.
+     */
+    Collection<Group> groups() {
+        return groups.values();
+    }
+
+    long transactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * @return The control sum of all groups, with subtotals per rendered currency.
+     */
+    CtrlSum ctrlSum() {
+        return ctrlSum;
+    }
+
+    /**
+     * One payment information block: the row that opened it and its transactions.
+     */
+    static final class Group {
+        private final Map<String, String> firstRow;
+        private final List<Map<String, String>> transactions = new ArrayList<>();
+        private final CtrlSum ctrlSum = new CtrlSum();
+
+        Group(Map<String, String> firstRow) {
+            this.firstRow = firstRow;
+        }
+
+        Map<String, String> firstRow() {
+            return firstRow;
+        }
+
+        List<Map<String, String>> transactions() {
+            return transactions;
+        }
+
+        CtrlSum ctrlSum() {
+            return ctrlSum;
+        }
+    }
+
+    private static final class GroupKey {
+        private final String[] values;
+        private int hash;
+
+        GroupKey(String[] values) {
+            this.values = values;
+            rehash();
+        }
+
+        void rehash() {
+            hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof GroupKey && Arrays.equals(values, ((GroupKey) o).values);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.pain001.xml;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rendered and validated messages that are held back so that several of them are
+ * published together: all of them once every message is written, or none of them.
+ * <p>
+ * Set on the {@link GenerationOptions} of a run, it receives the messages the run would
+ * otherwise publish, e.g. the outputs of the versions of a fan-out run or the parts of a
+ * split output. Instances are thread-safe.
+ */
+public final class PendingOutputs {
+    private final List<OutputSink> sinks = new ArrayList<>();
+    private boolean discarded;
+
+    /**
+     * Holds a message back, or drops it at once if the outputs were already discarded.
+     *
+     * @param sink A rendered and validated message.
+     */
+    void add(OutputSink sink) {
+        synchronized (sinks) {
+            if (!discarded) {
+                sinks.add(sink);
+                return;
+            }
+        }
+        sink.discard();
+    }
+
+    /**
+     * @return The number of messages held back.
+     */
+    public int size() {
+        synchronized (sinks) {
+            return sinks.size();
+        }
+    }
+
+    /**
+     * Publishes the messages in the order they were added.
+     *
+     * @throws IOException If a message cannot be published; the messages published before
+     *                     it are deleted again and the others dropped.
+     */
+    public void publishAll() throws IOException {
+        List<OutputSink> held;
+        synchronized (sinks) {
+            held = new ArrayList<>(sinks);
+            sinks.clear();
+        }
+        try {
+            publishAll(held);
+        } catch (IOException | RuntimeException e) {
+            discardAll();
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the messages held back, and any message added afterwards. Does not throw.
+     */
+    public void discardAll() {
+        synchronized (sinks) {
+            discarded = true;
+            for (OutputSink sink : sinks) {
+                sink.discard();
+            }
+            sinks.clear();
+        }
+    }
+
+    /**
+     * Publishes messages in order. If one cannot be published, the files published before
+     * it are deleted again and the messages after it dropped.
+     *
+     * @param sinks Rendered and validated messages.
+     * @throws IOException If a message cannot be published.
+     */
+    static void publishAll(List<OutputSink> sinks) throws IOException {
+        int published = 0;
+        try {
+            for (OutputSink sink : sinks) {
+                GenerateXml.publish(sink);
+                published++;
+            }
+        } catch (IOException | RuntimeException e) {
+            for (int i = 0; i < sinks.size(); i++) {
+                OutputSink sink = sinks.get(i);
+                if (i >= published) {
+                    sink.discard();
+                } else if (sink.getFilePath() != null) {
+                    try {
+                        Files.deleteIfExists(Paths.get(sink.getFilePath()));
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                }
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.pain001.xml;
+
+import com.pain001.constants.Constants;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide cache of compiled XSD schemas.
+ * <p>
+ * A compiled {@link Schema} is immutable and thread-safe, so each XSD is parsed once and
+ * shared. {@link Validator} instances are not thread-safe; they are handed out per thread
+ * and reset before every use.
+ */
+public class SchemaRegistry {
+    private static final Logger LOGGER = Logger.getLogger(SchemaRegistry.class.getName());
+    private static final String TEMPLATES_RESOURCE_ROOT = "/com/pain001/templates/";
+
+    // Keyed by the location the schema is compiled from, see fileKey
+    private static final ConcurrentMap<String, Schema> SCHEMAS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Map<String, Validator>> VALIDATORS = new ThreadLocal<Map<String, Validator>>() {
+        @Override
+        protected Map<String, Validator> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    /**
+     * Compiles the bundled schema of every type in {@link Constants#VALID_XML_TYPES}.
+     * Intended to be called once at startup so the first request does not pay for it.
+     */
+    public static void preload() {
+        for (String messageType : Constants.VALID_XML_TYPES) {
+            getSchema(messageType);
+        }
+        LOGGER.info("Preloaded " + Constants.VALID_XML_TYPES.size() + " XSD schemas.");
+    }
+
+    /**
+     * Compiles the schema of every type in {@link Constants#VALID_XML_TYPES} from a
+     * directory laid out like the bundled templates, e.g. "pain00100103/pain.001.001.03.xsd",
+     * so that validations against those files find them compiled.
+     *
+     * @param templatesDirectory Directory containing one directory per message type.
+     */
+    public static void preload(String templatesDirectory) {
+        for (String messageType : Constants.VALID_XML_TYPES) {
+            getSchemaForFile(new File(new File(templatesDirectory, typeDirectory(messageType)),
+                    messageType + ".xsd").getPath());
+        }
+        LOGGER.info("Preloaded " + Constants.VALID_XML_TYPES.size() + " XSD schemas from '" + templatesDirectory + "'.");
+    }
+
+    /**
+     * Returns the compiled bundled schema for a message type.
+     *
+     * @param messageType The payment initiation message type (e.g. "pain.001.001.03").
+     * @return The compiled schema.
+     */
+    public static Schema getSchema(String messageType) {
+        return compiledSchema(bundledSchemaKey(messageType));
+    }
+
+    /**
+     * Returns the compiled schema for an XSD file, compiling it on first use.
+     *
+     * @param xsdFilePath Path to the XSD schema file.
+     * @return The compiled schema.
+     */
+    public static Schema getSchemaForFile(String xsdFilePath) {
+        return compiledSchema(fileKey(xsdFilePath));
+    }
+
+    /**
+     * Returns this thread's validator for a message type's bundled schema.
+     *
+     * @param messageType The payment initiation message type.
+     * @return A reset validator owned by the calling thread.
+     */
+    public static Validator getValidator(String messageType) {
+        return threadValidator(bundledSchemaKey(messageType));
+    }
+
+    /**
+     * Returns this thread's validator for an XSD file.
+     *
+     * @param xsdFilePath Path to the XSD schema file.
+     * @return A reset validator owned by the calling thread.
+     */
+    public static Validator getValidatorForFile(String xsdFilePath) {
+        return threadValidator(fileKey(xsdFilePath));
+    }
+
+    private static Schema compiledSchema(String key) {
+        return SCHEMAS.computeIfAbsent(key, location -> compile(new StreamSource(location)));
+    }
+
+    private static Validator threadValidator(String key) {
+        Map<String, Validator> validators = VALIDATORS.get();
+        Validator validator = validators.get(key);
+        if (validator == null) {
+            validator = compiledSchema(key).newValidator();
+            validators.put(key, validator);
+        } else {
+            validator.reset();
+        }
+        return validator;
+    }
+
+    /**
+     * Resolves a bundled schema to the same key as {@link #fileKey} when the classpath is
+     * a directory, so both lookups share one compiled schema.
+     */
+    private static String bundledSchemaKey(String messageType) {
+        if (!Constants.VALID_XML_TYPES.contains(messageType)) {
+            throw new IllegalArgumentException("Error: Invalid XML message type: '" + messageType + "'.");
+        }
+        String resource = TEMPLATES_RESOURCE_ROOT + typeDirectory(messageType) + "/" + messageType + ".xsd";
+        URL url = SchemaRegistry.class.getResource(resource);
+        if (url == null) {
+            throw new IllegalStateException("Bundled XSD schema '" + resource + "' is not on the classpath.");
+        }
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return fileKey(new File(url.toURI()).getPath());
+            } catch (URISyntaxException e) {
+                // Fall back to the URL
+            }
+        }
+        return url.toExternalForm();
+    }
+
+    private static String typeDirectory(String messageType) {
+        return "pain" + messageType.replace("pain.", "").replace(".", "");
+    }
+
+    private static Schema compile(StreamSource source) {
+        try {
+            // SchemaFactory is not thread-safe, so every compilation gets its own
+            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            return factory.newSchema(source);
+        } catch (SAXException e) {
+            throw new IllegalStateException("Unable to compile XSD schema '" + source.getSystemId() + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Schemas are cached under the URI of their canonical file, which is also the system
+     * id the schema is compiled from, so relative includes resolve against it.
+     */
+    private static String fileKey(String xsdFilePath) {
+        File file = new File(xsdFilePath);
+        try {
+            file = file.getCanonicalFile();
+        } catch (IOException e) {
+            file = file.getAbsoluteFile();
+        }
+        return file.toURI().toString();
+    }
+}
@@ -0,0 +1,306 @@
+package com.pain001.xml;
+
+import com.pain001.data.CtrlSum;
+import com.pain001.metrics.MeteredOutputStream;
+import com.pain001.metrics.RunMetrics;
+import com.pain001.metrics.Stage;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cuts a stream of payment rows into several complete pain.001 messages and writes them
+ * to numbered files in parallel.
+ * <p>
+ * Rows are read on the calling thread and handed to a fixed pool of writers one part at
+ * a time; at most two parts per writer are held in memory. Each part gets its own
+ * message id, number of transactions and control sum, and is validated against the XSD
+ * like a single output file. The parts are published together once every part is
+ * written and valid; if one fails, none of them appears.
+ * <p>
+ * With a byte limit, the number of transactions per part is estimated by rendering the
+ * first rows. A part that still comes out too large is split in half and rewritten before
+ * it is published, so "x_007.xml" may be replaced by "x_007-1.xml" and "x_007-2.xml".
+ */
+final class SplitWriter {
+    // Rows rendered up front to estimate the size of a transaction
+    private static final int CALIBRATION_ROWS = 256;
+    // Parts are filled to this share of the byte limit, leaving room for longer rows
+    private static final double SIZE_MARGIN = 0.9;
+    private static final int MAX_MESSAGE_ID_LENGTH = 35;
+
+    private final String paymentInitiationMessageType;
+    private final String outputFilePath;
+    private final String xsdFilePath;
+    private final GenerationOptions options;
+    private final Template template;
+    // Control sum of the written parts, merged by the writer threads
+    private final CtrlSum ctrlSum = new CtrlSum();
+    // Written parts, so they can be dropped if another part fails
+    private final PendingOutputs written = new PendingOutputs();
+    private String baseMessageId;
+
+    /**
+     * @param paymentInitiationMessageType The pain version, e.g. "pain.001.001.09"
+     * @param outputFilePath Path the part numbers are added to, e.g. "x.xml" becomes "x_001.xml"
+     * @param xsdFilePath Path to XML schema file for validation
+     * @param options Generation options with the transaction count and/or byte limit
+     * @throws IOException If the template cannot be loaded
+     */
+    SplitWriter(String paymentInitiationMessageType, String outputFilePath, String xsdFilePath,
+                GenerationOptions options) throws IOException {
+        GenerateXml.transactionListLayout(paymentInitiationMessageType, "Splitting the output");
+        if (options.getOutputSink() != null) {
+            throw new IllegalArgumentException("A split output is written to files, not to an output sink.");
+        }
+        this.paymentInitiationMessageType = paymentInitiationMessageType;
+        this.outputFilePath = outputFilePath;
+        this.xsdFilePath = xsdFilePath;
+        this.options = options;
+        this.template = TemplateEngine.getTemplate(paymentInitiationMessageType);
+    }
+
+    /**
+     * Writes all rows as numbered part files.
+     *
+     * @param rows The rows to write, in order
+     * @param baseMessageId Message id of the whole input; each part appends its number
+     * @return The paths of the written files, in order
+     * @throws IOException If writing, validating or publishing a part fails; no part is left published
+     * @throws TemplateException If template processing fails
+     */
+    List<String> write(Iterator<Map<String, String>> rows, String baseMessageId) throws IOException, TemplateException {
+        this.baseMessageId = baseMessageId != null ? baseMessageId : "";
+
+        List<Map<String, String>> calibration = new ArrayList<>();
+        int partSize = options.getMaxTransactionsPerFile() > 0 ? options.getMaxTransactionsPerFile() : Integer.MAX_VALUE;
+        if (options.getMaxBytesPerFile() > 0) {
+            while (calibration.size() < CALIBRATION_ROWS && rows.hasNext()) {
+                calibration.add(rows.next());
+            }
+            if (!calibration.isEmpty()) {
+                RunMetrics.Timer timer = options.getMetrics().time(Stage.PREPARE);
+                try {
+                    partSize = Math.min(partSize, estimatePartSize(calibration));
+                } finally {
+                    timer.close();
+                }
+            }
+        }
+
+        int threads = Math.max(1, options.getWriterThreads());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Semaphore slots = new Semaphore(threads * 2);
+        List<Future<List<OutputSink>>> futures = new ArrayList<>();
+        boolean published = false;
+        try {
+            Iterator<Map<String, String>> calibrated = calibration.iterator();
+            List<Map<String, String>> part = new ArrayList<>();
+            int partNumber = 0;
+            while (calibrated.hasNext() || rows.hasNext()) {
+                part.add(calibrated.hasNext() ? calibrated.next() : rows.next());
+                if (part.size() == partSize || !(calibrated.hasNext() || rows.hasNext())) {
+                    final List<Map<String, String>> partRows = part;
+                    final String label = String.format("%03d", ++partNumber);
+                    slots.acquire();
+                    futures.add(pool.submit(() -> {
+                        try {
+                            return writePart(label, partRows);
+                        } finally {
+                            slots.release();
+                        }
+                    }));
+                    part = new ArrayList<>();
+                }
+            }
+            if (futures.isEmpty()) {
+                System.out.println("Error: No data to process.");
+                throw new IllegalArgumentException("Error: No data to process.");
+            }
+
+            List<OutputSink> sinks = new ArrayList<>();
+            for (Future<List<OutputSink>> future : futures) {
+                sinks.addAll(future.get());
+            }
+            if (options.getPendingOutputs() != null) {
+                // Published along with the other outputs of the run
+                for (OutputSink sink : sinks) {
+                    options.getPendingOutputs().add(sink);
+                }
+            } else {
+                PendingOutputs.publishAll(sinks);
+            }
+            published = true;
+            List<String> paths = new ArrayList<>();
+            for (OutputSink sink : sinks) {
+                paths.add(sink.getFilePath());
+            }
+            System.out.println("Split output into " + paths.size() + " files at " + outputFilePath
+                    + " with a total control sum of " + ctrlSum);
+            return paths;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing split output", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof TemplateException) {
+                throw (TemplateException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to write split output", cause);
+        } finally {
+            pool.shutdownNow();
+            if (!published) {
+                written.discardAll();
+            }
+        }
+    }
+
+    /**
+     * Renders a part, halving it until every file is within the byte limit.
+     *
+     * @return The written and validated files, not yet published
+     */
+    private List<OutputSink> writePart(String label, List<Map<String, String>> rows) throws IOException, TemplateException {
+        String path = partFilePath(label);
+        CtrlSum partSum = new CtrlSum();
+        Map<String, Object> xmlData = options.getMetrics().time(Stage.PREPARE,
+                () -> GenerateXml.preparePartData(rows, paymentInitiationMessageType, messageId(label), options, partSum));
+        OutputSink sink = OutputSink.toFile(path, options.getFsyncPolicy());
+        long size = GenerateXml.renderXml(template, xmlData, sink, GenerateXml.isCompressed(path), xsdFilePath, options);
+
+        long maxBytes = options.getMaxBytesPerFile();
+        List<OutputSink> sinks = new ArrayList<>();
+        if (maxBytes > 0 && size > maxBytes) {
+            // Dropped before it is published, so an oversized part never appears
+            sink.discard();
+            if (rows.size() == 1) {
+                throw new IllegalArgumentException("A single transaction does not fit into " + maxBytes
+                        + " bytes: " + path + " has " + size + " bytes.");
+            }
+            int mid = rows.size() / 2;
+            sinks.addAll(writePart(label + "-1", rows.subList(0, mid)));
+            sinks.addAll(writePart(label + "-2", rows.subList(mid, rows.size())));
+            return sinks;
+        }
+        written.add(sink);
+        options.getMetrics().addTransactions(rows.size());
+        synchronized (ctrlSum) {
+            ctrlSum.merge(partSum);
+        }
+        sinks.add(sink);
+        return sinks;
+    }
+
+    /**
+     * Estimates how many transactions fit into the byte limit from the rendered size of
+     * the calibration rows.
+     */
+    private int estimatePartSize(List<Map<String, String>> rows) throws IOException, TemplateException {
+        long single = renderedSize(rows.subList(0, 1));
+        long perTransaction = single;
+        long overhead = 0;
+        if (rows.size() > 1) {
+            long all = renderedSize(rows);
+            perTransaction = Math.max(1, (all - single) / (rows.size() - 1));
+            overhead = Math.max(0, single - perTransaction);
+        }
+        long budget = (long) (options.getMaxBytesPerFile() * SIZE_MARGIN) - overhead;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, budget / perTransaction));
+    }
+
+    private long renderedSize(List<Map<String, String>> rows) throws IOException, TemplateException {
+        Map<String, Object> xmlData = GenerateXml.preparePartData(rows, paymentInitiationMessageType, messageId("000"), options, new CtrlSum());
+        if (GenerateXml.isCompressed(outputFilePath)) {
+            // The limit applies to the compressed files, so measure the rows compressed
+            MeteredOutputStream counter = new MeteredOutputStream(new DiscardingOutputStream());
+            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(counter), StandardCharsets.UTF_8)) {
+                template.process(xmlData, writer);
+            }
+            return counter.getBytes();
+        }
+        CountingWriter counter = new CountingWriter();
+        template.process(xmlData, counter);
+        return counter.bytes;
+    }
+
+    private String messageId(String label) {
+        String suffix = "-" + label;
+        String base = baseMessageId;
+        if (base.length() + suffix.length() > MAX_MESSAGE_ID_LENGTH) {
+            base = base.substring(0, Math.max(0, MAX_MESSAGE_ID_LENGTH - suffix.length()));
+        }
+        return base + suffix;
+    }
+
+    private String partFilePath(String label) {
+        // "x.xml.gz" becomes "x_001.xml.gz"
+        String compressedSuffix = GenerateXml.isCompressed(outputFilePath) ? ".gz" : "";
+        String path = outputFilePath.substring(0, outputFilePath.length() - compressedSuffix.length());
+        int dot = path.lastIndexOf('.');
+        int separator = path.lastIndexOf(File.separatorChar);
+        if (dot <= separator) {
+            return path + "_" + label + compressedSuffix;
+        }
+        return path.substring(0, dot) + "_" + label + path.substring(dot) + compressedSuffix;
+    }
+
+    private static final class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    /**
+     * Discards the characters written to it, counting their size in UTF-8.
+     */
+    private static final class CountingWriter extends Writer {
+        private long bytes;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                char c = cbuf[i];
+                if (c < 0x80) {
+                    bytes++;
+                } else if (c < 0x800 || Character.isSurrogate(c)) {
+                    // A surrogate pair is 4 bytes, 2 per char
+                    bytes += 2;
+                } else {
+                    bytes += 3;
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
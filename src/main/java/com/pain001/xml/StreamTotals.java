@@ -0,0 +1,109 @@
+package com.pain001.xml;
+
+import com.pain001.data.CtrlSum;
+import com.pain001.data.ParallelValidation;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Header row and totals of a streamed source: the number of rows, how many of them
+ * become transactions and, for versions whose NbOfTxs and CtrlSum are computed, their
+ * control sum.
+ * <p>
+ * The totals are gathered by a {@link Collector} that sees every row once, either in a
+ * pass of its own or chained into the validation pass, so rendering is the only other
+ * read of the source.
+ */
+public final class StreamTotals {
+    final Map<String, String> firstRow;
+    final long rowCount;
+    final long transactionCount;
+    final CtrlSum ctrlSum;
+
+    private StreamTotals(Map<String, String> firstRow, long rowCount, long transactionCount, CtrlSum ctrlSum) {
+        this.firstRow = firstRow;
+        this.rowCount = rowCount;
+        this.transactionCount = transactionCount;
+        this.ctrlSum = ctrlSum;
+    }
+
+    /**
+     * @return The number of rows read.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return The number of rows that become transactions.
+     */
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Adds up the rows of a source in order. A payment amount that cannot be parsed is
+     * reported as an error of its row. Not thread-safe; the rows must be checked
+     * sequentially, from row 1.
+     */
+    public static final class Collector implements ParallelValidation.RowCheck<Map<String, String>> {
+        private final String paymentInitiationMessageType;
+        private final boolean computed;
+        private final CtrlSum ctrlSum = new CtrlSum();
+        private Map<String, String> firstRow;
+        private long rowCount;
+        private int limit = Integer.MAX_VALUE;
+
+        /**
+         * @param paymentInitiationMessageType The message type being generated.
+         */
+        public Collector(String paymentInitiationMessageType) {
+            this.paymentInitiationMessageType = paymentInitiationMessageType;
+            this.computed = GenerateXml.COMPUTED_TOTALS_TYPES.contains(paymentInitiationMessageType);
+        }
+
+        @Override
+        public void check(Map<String, String> row, long rowNumber, List<String> errors) {
+            if (firstRow == null) {
+                firstRow = row;
+                limit = GenerateXml.transactionLimit(firstRow, Integer.MAX_VALUE, paymentInitiationMessageType);
+            }
+            if (computed && rowCount < limit) {
+                try {
+                    ctrlSum.add(row.get(GenerateXml.CURRENCY_FIELD), GenerateXml.parseAmount(row, rowCount));
+                } catch (IllegalArgumentException e) {
+                    errors.add("Error: " + e.getMessage() + ".");
+                }
+            }
+            rowCount++;
+        }
+
+        /**
+         * Returns the totals of the rows checked so far and checks the number of
+         * transactions requested by the header row.
+         *
+         * @return The totals.
+         * @throws IllegalArgumentException If no row was checked or nb_of_txs is invalid.
+         */
+        public StreamTotals totals() {
+            if (firstRow == null) {
+                System.out.println("Error: No data to process.");
+                throw new IllegalArgumentException("Error: No data to process.");
+            }
+            String nbOfTxsStr = firstRow.getOrDefault("nb_of_txs", String.valueOf(rowCount));
+            try {
+                long nbOfTxs = Long.parseLong(nbOfTxsStr);
+                if (nbOfTxs > rowCount) {
+                    throw new IllegalArgumentException("nb_of_txs (" + nbOfTxs + ") exceeds available data rows (" + rowCount + ").");
+                }
+                if (nbOfTxs <= 0) {
+                    throw new IllegalArgumentException("nb_of_txs must be positive.");
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid nb_of_txs value: " + nbOfTxsStr);
+            }
+            return new StreamTotals(firstRow, rowCount, Math.min(rowCount, limit), ctrlSum);
+        }
+    }
+}
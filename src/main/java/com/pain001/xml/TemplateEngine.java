@@ -0,0 +1,114 @@
+package com.pain001.xml;
+
+import com.pain001.constants.Constants;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide FreeMarker engine.
+ * <p>
+ * A single {@link Configuration} loads the bundled templates from the classpath and is
+ * never modified after construction, which makes it safe to share between threads.
+ * Compiled {@link Template}s are immutable as well, so concurrent renders reuse them
+ * instead of re-parsing the template files for every generated message.
+ */
+public class TemplateEngine {
+    private static final Logger LOGGER = Logger.getLogger(TemplateEngine.class.getName());
+    private static final String TEMPLATES_RESOURCE_ROOT = "/com/pain001/templates";
+
+    private static final Map<String, String> TEMPLATE_MAPPING = new HashMap<>();
+    static {
+        TEMPLATE_MAPPING.put("pain.001.001.03", "pain00100103/template.ftl");
+        TEMPLATE_MAPPING.put("pain.001.001.04", "pain00100104/template.ftl");
+        TEMPLATE_MAPPING.put("pain.001.001.05", "pain00100105/template.ftl");
+        TEMPLATE_MAPPING.put("pain.001.001.06", "pain00100106/template.ftl");
+        TEMPLATE_MAPPING.put("pain.001.001.07", "pain00100107/template.ftl");
+        TEMPLATE_MAPPING.put("pain.001.001.08", "pain00100108/template.ftl");
+        TEMPLATE_MAPPING.put("pain.001.001.09", "pain00100109/template.ftl");
+    }
+
+    private static final Configuration CONFIGURATION = createConfiguration();
+    private static final ConcurrentMap<String, Template> TEMPLATES = new ConcurrentHashMap<>();
+
+    private static Configuration createConfiguration() {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_34);
+        cfg.setLogTemplateExceptions(true);
+        cfg.setClassForTemplateLoading(TemplateEngine.class, TEMPLATES_RESOURCE_ROOT);
+        cfg.setDefaultEncoding("UTF-8");
+        // Bundled templates never change at runtime: skip locale probing and staleness checks
+        cfg.setLocalizedLookup(false);
+        cfg.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
+        return cfg;
+    }
+
+    /**
+     * Compiles the template of every type in {@link Constants#VALID_XML_TYPES}.
+     * Intended to be called once at startup so the first render does not pay for it.
+     */
+    public static void preload() {
+        for (String messageType : Constants.VALID_XML_TYPES) {
+            getTemplate(messageType);
+        }
+        LOGGER.info("Preloaded " + Constants.VALID_XML_TYPES.size() + " FreeMarker templates.");
+    }
+
+    /**
+     * @param messageType The payment initiation message type.
+     * @return true if a template is bundled for the message type.
+     */
+    public static boolean supports(String messageType) {
+        return TEMPLATE_MAPPING.containsKey(messageType);
+    }
+
+    /**
+     * Returns the compiled template for a message type.
+     *
+     * @param messageType The payment initiation message type (e.g. "pain.001.001.03").
+     * @return The shared compiled template.
+     */
+    public static Template getTemplate(String messageType) {
+        String templateName = TEMPLATE_MAPPING.get(messageType);
+        if (templateName == null) {
+            throw new IllegalArgumentException("Error: Invalid XML message type: '" + messageType + "'.");
+        }
+        return TEMPLATES.computeIfAbsent(messageType, key -> loadTemplate(templateName));
+    }
+
+    /**
+     * @param messageType The payment initiation message type.
+     * @return The classpath resource of the bundled template source.
+     */
+    static String getTemplateResource(String messageType) {
+        String templateName = TEMPLATE_MAPPING.get(messageType);
+        if (templateName == null) {
+            throw new IllegalArgumentException("Error: Invalid XML message type: '" + messageType + "'.");
+        }
+        return TEMPLATES_RESOURCE_ROOT + "/" + templateName;
+    }
+
+    /**
+     * Returns the shared configuration, for callers that load templates by name.
+     * The configuration must not be modified.
+     *
+     * @return The shared FreeMarker configuration.
+     */
+    public static Configuration getConfiguration() {
+        return CONFIGURATION;
+    }
+
+    private static Template loadTemplate(String templateName) {
+        try {
+            return CONFIGURATION.getTemplate(templateName);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to load template '" + templateName + "'.", e);
+        }
+    }
+}
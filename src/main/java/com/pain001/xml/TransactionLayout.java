@@ -0,0 +1,217 @@
+package com.pain001.xml;
+
+import com.pain001.data.PaymentRow;
+import com.pain001.data.RowSchema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes which input columns become the fields of one template transaction for a
+ * pain version, e.g. input column "payment_id" becomes "payment_instruction_id" in
+ * pain.001.001.04.
+ * <p>
+ * Layouts are built once and shared. A {@link Mapper} resolves the source columns to
+ * ordinals of the input {@link RowSchema} once, so mapping a {@link PaymentRow} is a
+ * series of array reads into a new array-backed row.
+ */
+final class TransactionLayout {
+    private static final Map<String, TransactionLayout> LAYOUTS = new HashMap<>();
+    static {
+        LAYOUTS.put("pain.001.001.03", new TransactionLayout()
+                .field("payment_id", "payment_id")
+                .field("payment_amount", "payment_amount", "")
+                .field("payment_currency", "payment_currency", "")
+                .field("charge_bearer", "charge_bearer")
+                .field("creditor_agent_BIC", "creditor_agent_BIC")
+                .field("creditor_name", "creditor_name")
+                .field("creditor_street_name", "creditor_street_name")
+                .field("creditor_building_number", "creditor_building_number")
+                .field("creditor_postal_code", "creditor_postal_code")
+                .field("creditor_town_name", "creditor_town_name")
+                .field("creditor_country_code", "creditor_country_code")
+                .field("creditor_account_IBAN", "creditor_account_IBAN")
+                .field("purpose_code", "purpose_code")
+                .field("reference_number", "reference_number")
+                .field("reference_date", "reference_date"));
+        LAYOUTS.put("pain.001.001.04", new TransactionLayout()
+                .field("payment_instruction_id", "payment_id", "")
+                .field("payment_end_to_end_id", "reference_number", "")
+                .field("payment_currency", "payment_currency", "EUR")
+                .field("payment_amount", "payment_amount", "")
+                .field("charge_bearer", "charge_bearer", "")
+                .field("creditor_agent_BIC", "creditor_agent_BIC", "")
+                .field("creditor_name", "creditor_name", "")
+                .field("creditor_street", "creditor_street_name", "")
+                .field("creditor_building_number", "creditor_building_number", "")
+                .field("creditor_postal_code", "creditor_postal_code", "")
+                .field("creditor_town", "creditor_town_name", "")
+                .field("creditor_account_IBAN", "creditor_account_IBAN", "")
+                .field("purpose_code", "purpose_code", "")
+                .field("reference_number", "reference_number", "")
+                .field("reference_date", "reference_date", ""));
+        LAYOUTS.put("pain.001.001.06", new TransactionLayout()
+                .field("payment_id", "payment_id")
+                .field("payment_amount", "payment_amount", "")
+                .field("payment_currency", "payment_currency", "")
+                .field("charge_bearer", "charge_bearer")
+                .field("creditor_agent_BIC", "creditor_agent_BIC")
+                .field("creditor_name", "creditor_name")
+                .field("creditor_account_IBAN", "creditor_account_IBAN")
+                .field("creditor_remittance_information", "creditor_remittance_information"));
+        LAYOUTS.put("pain.001.001.07", new TransactionLayout()
+                .field("payment_instruction_id", "payment_instruction_id")
+                .field("payment_end_to_end_id", "payment_end_to_end_id")
+                .field("payment_id", "payment_id")
+                .field("payment_amount", "payment_amount", "")
+                .field("payment_currency", "payment_currency", "")
+                .field("charge_bearer", "charge_bearer")
+                .field("creditor_name", "creditor_name")
+                .field("creditor_street", "creditor_street")
+                .field("creditor_building_number", "creditor_building_number")
+                .field("creditor_postal_code", "creditor_postal_code")
+                .field("creditor_town", "creditor_town")
+                .field("creditor_country", "creditor_country")
+                .field("creditor_account_IBAN", "creditor_account_IBAN")
+                .field("creditor_agent_BICFI", "creditor_agent_BICFI")
+                .field("creditor_remittance_information", "creditor_remittance_information")
+                .field("purpose_code", "purpose_code")
+                .field("reference_number", "reference_number")
+                .field("reference_date", "reference_date"));
+        LAYOUTS.put("pain.001.001.08", new TransactionLayout()
+                .field("payment_id", "payment_id")
+                .field("payment_instruction_id", "payment_instruction_id")
+                .field("payment_end_to_end_id", "payment_end_to_end_id")
+                .field("payment_currency", "payment_currency")
+                .field("payment_amount", "payment_amount")
+                .field("charge_bearer", "charge_bearer")
+                .field("creditor_name", "creditor_name")
+                .field("creditor_street", "creditor_street")
+                .field("creditor_building_number", "creditor_building_number")
+                .field("creditor_postal_code", "creditor_postal_code")
+                .field("creditor_town", "creditor_town")
+                .field("creditor_country", "creditor_country")
+                .field("creditor_account_IBAN", "creditor_account_IBAN")
+                .field("creditor_agent_BICFI", "creditor_agent_BICFI")
+                .field("purpose_code", "purpose_code")
+                .field("reference_number", "reference_number")
+                .field("reference_date", "reference_date"));
+        LAYOUTS.put("pain.001.001.09", new TransactionLayout()
+                .field("payment_id", "payment_id")
+                .field("payment_amount", "payment_amount")
+                .field("payment_currency", "payment_currency", "")
+                .field("charge_bearer", "charge_bearer")
+                .field("creditor_agent_BIC", "creditor_agent_BIC")
+                .field("creditor_name", "creditor_name")
+                .field("creditor_account_IBAN", "creditor_account_IBAN")
+                .field("creditor_remittance_information", "remittance_information"));
+    }
+
+    private final List<String> fields = new ArrayList<>();
+    private final List<String> sourceColumns = new ArrayList<>();
+    private final List<String> defaults = new ArrayList<>();
+    private RowSchema transactionSchema;
+
+    private TransactionLayout field(String field, String sourceColumn) {
+        return field(field, sourceColumn, null);
+    }
+
+    /**
+     * Adds a transaction field.
+     *
+     * @param field        Name of the field in the template.
+     * @param sourceColumn Input column the value is read from.
+     * @param defaultValue Value used when the column is absent or null; may be null.
+     */
+    private TransactionLayout field(String field, String sourceColumn, String defaultValue) {
+        fields.add(field);
+        sourceColumns.add(sourceColumn);
+        defaults.add(defaultValue);
+        transactionSchema = new RowSchema(fields);
+        return this;
+    }
+
+    /**
+     * @param paymentInitiationMessageType The pain version.
+     * @return The layout, or null if the version has no transaction list.
+     */
+    static TransactionLayout forMessageType(String paymentInitiationMessageType) {
+        return LAYOUTS.get(paymentInitiationMessageType);
+    }
+
+    /**
+     * @param field Name of a field in the template.
+     * @return The input column the field is read from, or null if the layout has no such field.
+     */
+    String sourceColumn(String field) {
+        int index = fields.indexOf(field);
+        return index < 0 ? null : sourceColumns.get(index);
+    }
+
+    /**
+     * @return The input columns of all fields.
+     */
+    List<String> columns() {
+        return Collections.unmodifiableList(sourceColumns);
+    }
+
+    /**
+     * @return The input columns of the fields that have no default value.
+     */
+    List<String> columnsWithoutDefault() {
+        List<String> columns = new ArrayList<>();
+        for (int i = 0; i < sourceColumns.size(); i++) {
+            if (defaults.get(i) == null) {
+                columns.add(sourceColumns.get(i));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * @return A new mapper; mappers cache resolved ordinals and are not thread-safe.
+     */
+    Mapper newMapper() {
+        return new Mapper();
+    }
+
+    /**
+     * Maps input rows to transaction rows, re-resolving ordinals only when the input
+     * schema changes.
+     */
+    final class Mapper {
+        private final String[] defaultValues = defaults.toArray(new String[0]);
+        private RowSchema boundSchema;
+        private int[] ordinals;
+
+        PaymentRow map(Map<String, String> row) {
+            String[] values = new String[defaultValues.length];
+            if (row instanceof PaymentRow) {
+                PaymentRow paymentRow = (PaymentRow) row;
+                if (paymentRow.schema() != boundSchema) {
+                    boundSchema = paymentRow.schema();
+                    ordinals = boundSchema.ordinals(sourceColumns);
+                }
+                for (int i = 0; i < values.length; i++) {
+                    String value = paymentRow.get(ordinals[i]);
+                    values[i] = value != null ? value : defaultValues[i];
+                }
+            } else {
+                for (int i = 0; i < values.length; i++) {
+                    String value = row.get(sourceColumns.get(i));
+                    values[i] = value != null ? value : defaultValues[i];
+                }
+            }
+            return new PaymentRow(transactionSchema, values);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionLayout" + Arrays.toString(fields.toArray());
+    }
+}
@@ -0,0 +1,210 @@
+package com.pain001.xml;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Validator;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writer that tees everything written to it into a sink and into an XSD {@link Validator}
+ * running on a background thread.
+ * <p>
+ * Characters are handed to the validator in fixed-size chunks through a bounded queue, so
+ * the document is rendered once and never read back from disk. As soon as the validator
+ * reports a violation, the next write fails with an {@link XmlValidationException}, which
+ * aborts rendering. {@link #close()} waits for the validator to reach the end of the
+ * document and rethrows a violation found in the tail of the output.
+ */
+public class ValidatingWriter extends Writer {
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int QUEUED_CHUNKS = 16;
+    private static final char[] END_OF_DOCUMENT = new char[0];
+
+    // Pooled threads keep their SchemaRegistry validators between documents
+    private static final ExecutorService VALIDATION_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "xsd-validator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Writer sink;
+    private final BlockingQueue<char[]> chunks = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+    private final Future<?> validation;
+    private volatile Exception violation;
+
+    private char[] buffer = new char[CHUNK_SIZE];
+    private int count;
+    private boolean closed;
+
+    /**
+     * @param sink        Writer that receives the XML, e.g. the output file.
+     * @param xsdFilePath Path to the XSD schema the XML is validated against.
+     */
+    public ValidatingWriter(Writer sink, String xsdFilePath) {
+        this.sink = sink;
+        this.validation = VALIDATION_EXECUTOR.submit(() -> {
+            ChunkReader reader = new ChunkReader();
+            try {
+                Validator validator = SchemaRegistry.getValidatorForFile(xsdFilePath);
+                validator.validate(new StreamSource(reader));
+            } catch (Exception e) {
+                violation = e;
+            } finally {
+                // Unblock the writer if the validator stopped before the end of the document
+                reader.drain();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        sink.write(cbuf, off, len);
+        while (len > 0) {
+            int n = Math.min(len, CHUNK_SIZE - count);
+            System.arraycopy(cbuf, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == CHUNK_SIZE) {
+                handOff();
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureOpen();
+        sink.write(str, off, len);
+        while (len > 0) {
+            int n = Math.min(len, CHUNK_SIZE - count);
+            str.getChars(off, off + n, buffer, count);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == CHUNK_SIZE) {
+                handOff();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        sink.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (count > 0) {
+                char[] tail = new char[count];
+                System.arraycopy(buffer, 0, tail, 0, count);
+                enqueue(tail);
+            }
+            enqueue(END_OF_DOCUMENT);
+            validation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for XSD validation.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("XSD validation failed unexpectedly.", e.getCause());
+        } finally {
+            sink.close();
+        }
+        checkViolation();
+    }
+
+    private void handOff() throws IOException {
+        checkViolation();
+        enqueue(buffer);
+        buffer = new char[CHUNK_SIZE];
+        count = 0;
+    }
+
+    private void enqueue(char[] chunk) throws IOException {
+        try {
+            chunks.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while handing XML to the validator.", e);
+        }
+    }
+
+    private void checkViolation() throws XmlValidationException {
+        Exception e = violation;
+        if (e != null) {
+            throw new XmlValidationException("XML Validation Error: " + e.getMessage(), e);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Writer is closed.");
+        }
+    }
+
+    /**
+     * Reader side of the chunk queue, consumed by the validator thread.
+     */
+    private class ChunkReader extends Reader {
+        private char[] current = new char[0];
+        private int position;
+        private boolean finished;
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (!finished && position == current.length) {
+                current = take();
+                position = 0;
+                finished = current == END_OF_DOCUMENT;
+            }
+            if (finished) {
+                return -1;
+            }
+            int n = Math.min(len, current.length - position);
+            System.arraycopy(current, position, cbuf, off, n);
+            position += n;
+            return n;
+        }
+
+        void drain() {
+            try {
+                while (!finished) {
+                    finished = take() == END_OF_DOCUMENT;
+                }
+            } catch (IOException e) {
+                // Interrupted: nothing is left to unblock
+            }
+        }
+
+        private char[] take() throws IOException {
+            try {
+                return chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for XML.", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            // The queue is owned by the enclosing writer
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.pain001.xml;
+
+import java.io.IOException;
+
+/**
+ * Signals that generated XML violates its XSD schema. Extends {@link IOException} so it
+ * can surface through {@link java.io.Writer} calls made while the XML is being written.
+ */
+public class XmlValidationException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public XmlValidationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -2,12 +2,13 @@ package com.pain001.xml;
 
 import org.xml.sax.SAXException;
 
-import javax.xml.XMLConstants;
 import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Utility class for validating XML files against XSD schemas.
@@ -22,16 +23,36 @@ public class XmlValidator {
      * @return true if the XML is valid according to the schema, false otherwise
      */
     public static boolean validateViaXsd(String xmlFilePath, String xsdFilePath) {
-        try {
-            // Load the XML Schema (XSD)
-            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            Schema schema = factory.newSchema(new File(xsdFilePath));
+        if (!GenerateXml.isCompressed(xmlFilePath)) {
+            return validate(new StreamSource(new File(xmlFilePath)), xsdFilePath);
+        }
+        // Compressed output is validated while it is decompressed, without a temporary file
+        try (InputStream in = new GZIPInputStream(new FileInputStream(xmlFilePath))) {
+            return validate(new StreamSource(in, new File(xmlFilePath).toURI().toString()), xsdFilePath);
+        } catch (IOException e) {
+            System.err.println("Unexpected Error: " + e.getMessage());
+            return false;
+        }
+    }
 
-            // Create Validator
-            Validator validator = schema.newValidator();
+    /**
+     * Validates an XML document read from a stream against an XSD schema.
+     *
+     * @param xml         The XML document; it is not closed
+     * @param xsdFilePath Path to the XSD schema file
+     * @return true if the XML is valid according to the schema, false otherwise
+     */
+    public static boolean validateViaXsd(InputStream xml, String xsdFilePath) {
+        return validate(new StreamSource(xml), xsdFilePath);
+    }
+
+    private static boolean validate(StreamSource source, String xsdFilePath) {
+        try {
+            // Reuse the compiled XML Schema (XSD) and this thread's Validator
+            Validator validator = SchemaRegistry.getValidatorForFile(xsdFilePath);
 
             // Validate XML against XSD
-            validator.validate(new StreamSource(new File(xmlFilePath)));
+            validator.validate(source);
 
             System.out.println("XML is valid.");
             return true;
@@ -43,4 +64,4 @@ public class XmlValidator {
         }
         return false;
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,6 @@
 package com.pain001.xml;
-import java.io.File;
-import java.io.FileWriter;
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.OutputKeys;
@@ -37,10 +37,15 @@ public class XmlWriter {
             transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
             transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
 
-            // Write XML to file
-            try (FileWriter writer = new FileWriter(new File(xmlFilePath))) {
-                transformer.transform(new DOMSource(doc), new StreamResult(writer));
+            // Write XML to file, encoded as declared, and rename it into place once complete
+            OutputSink sink = OutputSink.toFile(xmlFilePath, FsyncPolicy.NONE);
+            try (OutputStream out = new BufferedOutputStream(sink.open())) {
+                transformer.transform(new DOMSource(doc), new StreamResult(out));
+            } catch (Exception e) {
+                sink.discard();
+                throw e;
             }
+            sink.publish();
 
             System.out.println("XML successfully written to: " + xmlFilePath);
 
@@ -0,0 +1,69 @@
+package com.pain001.core;
+
+import com.pain001.xml.GenerationOptions;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+public class FanOutTest extends TestCase {
+    private static final String TEMPLATES = "src/main/java/com/pain001/templates/";
+
+    private File directory;
+    private String dataFilePath;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("fanout").toFile();
+        dataFilePath = new File(directory, "payments.csv").getPath();
+        Files.copy(Paths.get(TEMPLATES + "pain00100108/template.csv"), Paths.get(dataFilePath));
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    public void testAllVersionsArePublished() throws Exception {
+        File out08 = new File(directory, "out08.xml");
+        File out09 = new File(directory, "out09.xml");
+
+        List<BatchResult> results = CoreProcessor.processFanOut(Arrays.asList(
+                job("pain.001.001.08", out08.getPath()), job("pain.001.001.09", out09.getPath())), 2);
+
+        assertTrue(results.get(0).toString(), results.get(0).isSuccess());
+        assertTrue(results.get(1).toString(), results.get(1).isSuccess());
+        assertTrue(out08.exists());
+        assertTrue(out09.exists());
+    }
+
+    public void testOneFailingVersionPublishesNothing() throws Exception {
+        File out08 = new File(directory, "out08.xml");
+        // The directory does not exist, so this version cannot be written
+        File out09 = new File(new File(directory, "missing"), "out09.xml");
+
+        List<BatchResult> results = CoreProcessor.processFanOut(Arrays.asList(
+                job("pain.001.001.08", out08.getPath()), job("pain.001.001.09", out09.getPath())), 2);
+
+        assertFalse(results.get(0).isSuccess());
+        assertTrue(results.get(0).getFailure().getMessage(), results.get(0).getFailure().getMessage().contains("not published"));
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(1).getFailure() instanceof IOException);
+        assertFalse(out08.exists());
+        // Only the data file is left
+        assertEquals(Arrays.asList("payments.csv"), Arrays.asList(directory.list()));
+    }
+
+    private BatchJob job(String messageType, String outputFilePath) {
+        String templateDirectory = TEMPLATES + "pain" + messageType.replace("pain.", "").replace(".", "") + "/";
+        return new BatchJob(messageType, templateDirectory + "template.xml", templateDirectory + messageType + ".xsd",
+                dataFilePath, new GenerationOptions().setOutputFilePath(outputFilePath));
+    }
+}
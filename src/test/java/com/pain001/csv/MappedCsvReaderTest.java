@@ -0,0 +1,160 @@
+package com.pain001.csv;
+
+import com.pain001.data.RowCursor;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class MappedCsvReaderTest extends TestCase {
+    private static final int CHUNK_SIZE = 4096;
+
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = File.createTempFile("mapped", ".csv");
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    public void testPlainRecords() throws IOException {
+        assertSameAsCsvLoader("id,name,amount\n1,Alice,10.00\n2,Bob,20.50\n");
+    }
+
+    public void testQuotedFields() throws IOException {
+        assertSameAsCsvLoader("id,name,note\n"
+                + "1,\"Doe, John\",\"said \"\"hi\"\"\"\n"
+                + "2,\"\",\"\"\"\"\n"
+                + "3,plain,\"a,b,c\"\n");
+    }
+
+    public void testMultilineFields() throws IOException {
+        assertSameAsCsvLoader("id,address\n"
+                + "1,\"Main Street 1\nApt 2\n\"\n"
+                + "2,\"line\r\nbreak\"\n"
+                + "3,\"\n\"\n");
+    }
+
+    public void testCrlfRecords() throws IOException {
+        assertSameAsCsvLoader("id,name\r\n1,Alice\r\n2,\"Bob\r\nJr\"\r\n3,Carol\r\n");
+    }
+
+    public void testEmptyLinesAndMissingTrailingFields() throws IOException {
+        assertSameAsCsvLoader("id,name,amount\n\n1,Alice\n\n\n2,Bob,3\n3\n");
+    }
+
+    public void testNoFinalLineBreak() throws IOException {
+        assertSameAsCsvLoader("id,name\n1,Alice\n2,\"Bob\"");
+    }
+
+    public void testMultiByteCharacters() throws IOException {
+        assertSameAsCsvLoader("id,name\n1,Zoë Müller\n2,\"東京, 日本\"\n3,€\n");
+    }
+
+    /**
+     * Many rows with quoted line breaks and CRLF, so records and quoted fields straddle
+     * the boundaries of small chunks.
+     */
+    public void testChunkBoundaries() throws IOException {
+        Random random = new Random(42);
+        StringBuilder csv = new StringBuilder("id,name,note,amount\r\n");
+        for (int i = 0; i < 3000; i++) {
+            csv.append(i).append(',').append(field(random)).append(',').append(field(random)).append(',')
+                    .append(random.nextInt(100000)).append('.').append(random.nextInt(100))
+                    .append(random.nextBoolean() ? "\r\n" : "\n");
+        }
+        assertSameAsCsvLoader(csv.toString());
+    }
+
+    public void testSelectedColumns() throws IOException {
+        write("id,name,amount\n1,\"Doe, John\",10\n2,Bob,20\n");
+        List<Map<String, String>> rows = new MappedCsvReader(file.getPath())
+                .columns(Arrays.asList("amount", "id", "missing")).chunkSize(CHUNK_SIZE).readAll();
+
+        assertEquals(2, rows.size());
+        assertEquals("1", rows.get(0).get("id"));
+        assertEquals("10", rows.get(0).get("amount"));
+        assertNull(rows.get(0).get("name"));
+        assertFalse(rows.get(0).containsKey("missing"));
+        assertEquals("20", rows.get(1).get("amount"));
+    }
+
+    public void testCursorCanBeReopened() throws IOException {
+        write("id\n1\n2\n");
+        MappedCsvReader reader = new MappedCsvReader(file.getPath()).chunkSize(CHUNK_SIZE);
+        assertEquals(reader.readAll(), reader.readAll());
+        try (RowCursor cursor = reader.open()) {
+            assertTrue(cursor.hasNext());
+            assertEquals("1", cursor.next().get("id"));
+        }
+    }
+
+    public void testUnterminatedQuoteFails() throws IOException {
+        write("id,name\n1,\"Alice\n2,Bob\n");
+        try {
+            new MappedCsvReader(file.getPath()).chunkSize(CHUNK_SIZE).readAll();
+            fail("Unterminated quote accepted");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    public void testUnterminatedQuoteInLaterChunkFails() throws IOException {
+        StringBuilder csv = new StringBuilder("id,name\n");
+        for (int i = 0; i < 2000; i++) {
+            csv.append(i).append(",name").append(i).append('\n');
+        }
+        write(csv.append("2000,\"open\n").toString());
+        try {
+            new MappedCsvReader(file.getPath()).chunkSize(CHUNK_SIZE).readAll();
+            fail("Unterminated quote accepted");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("quoted field"));
+        }
+    }
+
+    private static String field(Random random) {
+        switch (random.nextInt(6)) {
+            case 0:
+                return "";
+            case 1:
+                return "\"quoted, with comma\"";
+            case 2:
+                return "\"two\nlines\"";
+            case 3:
+                return "\"crlf\r\ninside \"\"quotes\"\"\"";
+            case 4:
+                return "ünïcödé";
+            default:
+                return "value" + random.nextInt(1000);
+        }
+    }
+
+    private void assertSameAsCsvLoader(String csv) throws IOException {
+        write(csv);
+        List<Map<String, String>> expected = CsvLoader.loadCsvData(file.getPath());
+        for (int chunkSize : new int[]{CHUNK_SIZE, CHUNK_SIZE + 1, 1024 * 1024}) {
+            List<Map<String, String>> actual = new MappedCsvReader(file.getPath()).chunkSize(chunkSize).readAll();
+            assertEquals("chunk size " + chunkSize, expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals("row " + (i + 1) + ", chunk size " + chunkSize,
+                        new ArrayList<>(expected.get(i).entrySet()), new ArrayList<>(actual.get(i).entrySet()));
+            }
+        }
+    }
+
+    private void write(String csv) throws IOException {
+        Files.write(file.toPath(), csv.getBytes(StandardCharsets.UTF_8));
+    }
+}
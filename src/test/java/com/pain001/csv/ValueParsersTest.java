@@ -0,0 +1,109 @@
+package com.pain001.csv;
+
+import junit.framework.TestCase;
+
+import java.time.format.DateTimeFormatter;
+
+public class ValueParsersTest extends TestCase {
+
+    private static final String[] INTEGERS = {
+            "0", "7", "-7", "+7", "0042", "2147483647", "-2147483648", "2147483648", "-2147483649",
+            "99999999999", "", "-", "+", "1.0", "1e3", " 1", "1 ", "1_000", "--1", "１２", "-٣", "1²"
+    };
+
+    private static final String[] DECIMALS = {
+            "0", "1500.75", "-0.01", "+3", ".5", "5.", ".", "1e3", "1E-3", "1e", "1e+", "2.5e+10",
+            " 42 ", "\t1.5\n", "", " ", "NaN", "-Infinity", "+Infinity", "Infinity ", "NaNa",
+            "1.5d", "1.5F", "1.5x", "1,5", "1.2.3", "0x1p3", "0x1.8p1", "0x", "0xG", "-", "e5", "1..2"
+    };
+
+    private static final String[] DATES = {
+            "2024-02-27", "2024-02-29", "2023-02-29", "2000-02-29", "1900-02-29", "2024-04-31",
+            "2024-12-31", "2024-13-01", "2024-00-10", "2024-01-00", "0000-01-01", "2024-1-01",
+            "2024/01/01", "20240101", "2024-01-01T12:30:45", "2024-01-01T23:59:59",
+            "2024-01-01T24:00:00", "2024-01-01T24:00:01", "2024-01-01T12:60:00",
+            "2024-01-01T12:30:60", "2024-02-31T10:00:00", "2024-02-32T10:00:00", "0000-01-01T00:00:00",
+            "2024-01-01 12:30:45", "2024-01-01T12:30", "2024-01-01T12:30:45Z",
+            "2024-01-01T12:30:45.5", "2024-01-01T1a:30:45", ""
+    };
+
+    public void testIntegerMatchesParseInt() {
+        for (String value : INTEGERS) {
+            assertEquals("'" + value + "'", parsesAsInteger(value), ValueParsers.isInteger(value));
+        }
+    }
+
+    public void testIntegerLimits() {
+        assertTrue(ValueParsers.isInteger("2147483647"));
+        assertTrue(ValueParsers.isInteger("-2147483648"));
+        assertFalse(ValueParsers.isInteger("2147483648"));
+        assertFalse(ValueParsers.isInteger("-2147483649"));
+    }
+
+    public void testDecimalMatchesParseDouble() {
+        for (String value : DECIMALS) {
+            assertEquals("'" + value + "'", parsesAsDouble(value), ValueParsers.isDecimal(value));
+        }
+    }
+
+    public void testBoolean() {
+        assertTrue(ValueParsers.isBoolean("true"));
+        assertTrue(ValueParsers.isBoolean("FALSE"));
+        assertTrue(ValueParsers.isBoolean("True"));
+        assertFalse(ValueParsers.isBoolean("yes"));
+        assertFalse(ValueParsers.isBoolean("1"));
+        assertFalse(ValueParsers.isBoolean(" true"));
+        assertFalse(ValueParsers.isBoolean(""));
+    }
+
+    public void testDateMatchesFormatters() {
+        for (String value : DATES) {
+            assertEquals("'" + value + "'", parsesAsDate(value), ValueParsers.isDate(value));
+        }
+    }
+
+    public void testDate() {
+        assertTrue(ValueParsers.isDate("2024-02-29"));
+        assertFalse(ValueParsers.isDate("2023-02-29"));
+        assertTrue(ValueParsers.isDate("2024-01-01T24:00:00"));
+        assertFalse(ValueParsers.isDate("2024-01-01T12:30:45Z"));
+    }
+
+    private static boolean parsesAsInteger(String value) {
+        try {
+            Integer.parseInt(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean parsesAsDouble(String value) {
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The date check CsvValidator made before the non-throwing parsers.
+     */
+    private static boolean parsesAsDate(String value) {
+        if (value.endsWith("Z")) {
+            value = value.replace("Z", "+00:00");
+        }
+        try {
+            DateTimeFormatter.ISO_LOCAL_DATE.parse(value);
+            return true;
+        } catch (RuntimeException e) {
+            try {
+                DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss").parse(value);
+                return true;
+            } catch (RuntimeException e2) {
+                return false;
+            }
+        }
+    }
+}
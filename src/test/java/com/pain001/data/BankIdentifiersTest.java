@@ -0,0 +1,206 @@
+package com.pain001.data;
+
+import junit.framework.TestCase;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BankIdentifiersTest extends TestCase {
+
+    private static final String[] VALID_IBANS = {
+            "DE89370400440532013000",
+            "GB82WEST12345698765432",
+            "NL91ABNA0417164300",
+            "FR1420041010050500013M02606",
+            "NO9386011117947",
+            "CH9300762011623852957",
+            "MT84MALT011000012345MTLCAST001S",
+            "MU17BOMM0101101030300200000MUR",
+            "SC18SSCB11010000000000001497USD",
+            "LC55HEMM000100010012001200023015",
+            "BR1800360305000010009795493C1"
+    };
+
+    public void testValidIbans() {
+        for (String iban : VALID_IBANS) {
+            assertTrue(iban, BankIdentifiers.isValidIban(iban));
+        }
+    }
+
+    public void testWrongCheckDigits() {
+        assertFalse(BankIdentifiers.isValidIban("DE88370400440532013000"));
+        assertFalse(BankIdentifiers.isValidIban("GB82WEST12345698765433"));
+        assertFalse(BankIdentifiers.isValidIban("MU17BOMM0101101030300200000MUS"));
+    }
+
+    public void testSwappedCharacters() {
+        assertFalse(BankIdentifiers.isValidIban("DE89370400440532013000".replace("0532", "0523")));
+    }
+
+    public void testCheckDigitsNeverComputed() {
+        // 00, 01 and 99 fail even where the remainder would come out as 1
+        assertFalse(BankIdentifiers.isValidIban(withCheckDigits("DE", "370400440532013000", "00")));
+        assertFalse(BankIdentifiers.isValidIban(withCheckDigits("DE", "370400440532013000", "01")));
+        assertFalse(BankIdentifiers.isValidIban(withCheckDigits("DE", "370400440532013000", "99")));
+    }
+
+    public void testCountryLength() {
+        assertFalse(BankIdentifiers.isValidIban("DE8937040044053201300"));
+        assertFalse(BankIdentifiers.isValidIban("NL91ABNA04171643001"));
+        // Countries outside the registry only need the general limits
+        String unlisted = computeIban("ZZ", "123456789012345678901");
+        assertTrue(unlisted, BankIdentifiers.isValidIban(unlisted));
+        assertFalse(BankIdentifiers.isValidIban(computeIban("ZZ", "1234567890")));
+        assertFalse(BankIdentifiers.isValidIban(computeIban("ZZ", "123456789012345678901234567890123")));
+    }
+
+    public void testCharacterClasses() {
+        assertFalse(BankIdentifiers.isValidIban("de89370400440532013000"));
+        assertFalse(BankIdentifiers.isValidIban("DE89 3704 0044 0532 0130 00"));
+        assertFalse(BankIdentifiers.isValidIban("DEX9370400440532013000"));
+        assertFalse(BankIdentifiers.isValidIban("DE8937040044053201300-"));
+        assertFalse(BankIdentifiers.isValidIban("DE893704004405320130é0"));
+        assertFalse(BankIdentifiers.isValidIban(""));
+    }
+
+    public void testLowerCaseAccountPartIsAccepted() {
+        assertTrue(BankIdentifiers.isValidIban("GB82west12345698765432"));
+    }
+
+    /**
+     * Long digit runs followed by letters must not overflow the running remainder.
+     */
+    public void testMatchesBigIntegerOnLongAccountNumbers() {
+        String[] accounts = {
+                "99999999999999999999999999ZZZZ",
+                "9999999999999999ZZZZZZZZZZZZZZ",
+                "999999999999999999Z9Z9Z9Z9Z9Z9",
+                "ZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZ",
+                "123456789012345678901234567890"
+        };
+        for (String account : accounts) {
+            String iban = computeIban("ZZ", account);
+            assertTrue(iban, BankIdentifiers.isValidIban(iban));
+            assertFalse(iban, BankIdentifiers.isValidIban(iban.substring(0, 2) + bump(iban.substring(2, 4)) + account));
+        }
+    }
+
+    public void testValidBics() {
+        assertTrue(BankIdentifiers.isValidBic("DEUTDEFF"));
+        assertTrue(BankIdentifiers.isValidBic("DEUTDEFF500"));
+        assertTrue(BankIdentifiers.isValidBic("NEDSZAJJXXX"));
+        assertTrue(BankIdentifiers.isValidBic("1234DE12"));
+        assertTrue(BankIdentifiers.isValidBic("RBKOXKPR"));
+    }
+
+    public void testInvalidBics() {
+        assertFalse(BankIdentifiers.isValidBic("DEUTDEF"));
+        assertFalse(BankIdentifiers.isValidBic("DEUTDEFF5"));
+        assertFalse(BankIdentifiers.isValidBic("DEUTDEFF5000"));
+        assertFalse(BankIdentifiers.isValidBic("deutdeff"));
+        assertFalse(BankIdentifiers.isValidBic("DEUT1EFF"));
+        assertFalse(BankIdentifiers.isValidBic("DEUTQQFF"));
+        assertFalse(BankIdentifiers.isValidBic("DEUTDEFF-00"));
+        assertFalse(BankIdentifiers.isValidBic(""));
+    }
+
+    public void testRowCheckerRejects() {
+        BankIdentifiers.RowChecker checker = new BankIdentifiers.RowChecker(true);
+        Map<String, String> row = new HashMap<>();
+        row.put("debtor_account_IBAN", "DE89370400440532013000");
+        row.put("creditor_account_IBAN", "DE88370400440532013000");
+        row.put("debtor_agent_BIC", "DEUTDEFF");
+        row.put("creditor_agent_BIC", "");
+        row.put("forwarding_agent_BIC", "DEUTQQFF");
+        List<String> errors = new ArrayList<>();
+        ParallelValidation.Warnings warnings = new ParallelValidation.Warnings();
+
+        checker.check(row, 7, errors, warnings);
+
+        assertEquals(2, errors.size());
+        assertTrue(errors.get(0), errors.get(0).contains("'creditor_account_IBAN' in row 7"));
+        assertTrue(errors.get(1), errors.get(1).contains("Invalid BIC 'DEUTQQFF'"));
+        assertEquals(0, warnings.getCount());
+    }
+
+    public void testRowCheckerWarns() {
+        BankIdentifiers.RowChecker checker = new BankIdentifiers.RowChecker(false);
+        Map<String, String> row = new HashMap<>();
+        row.put("creditor_account_IBAN", "DE88370400440532013000");
+        row.put("debtor_agent_BIC", "DEUT");
+        List<String> errors = new ArrayList<>();
+
+        ParallelValidation.Warnings warnings = new ParallelValidation.Warnings();
+
+        checker.check(row, 1, errors, warnings);
+        checker.check(row, 2, errors, warnings);
+
+        assertTrue(errors.isEmpty());
+        assertEquals(4, warnings.getCount());
+        assertTrue(warnings.getMessages().get(3), warnings.getMessages().get(3).contains("'DEUT'"));
+        assertTrue(warnings.getMessages().get(3), warnings.getMessages().get(3).endsWith("in row 2."));
+    }
+
+    public void testParallelWarningsInRowOrder() {
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            Map<String, String> row = new HashMap<>();
+            row.put("debtor_account_IBAN", i % 3 == 2 ? "DE88370400440532013000" : "DE89370400440532013000");
+            rows.add(row);
+        }
+        List<String> errors = new ArrayList<>();
+        ParallelValidation.Warnings sequential = new ParallelValidation.Warnings();
+        BankIdentifiers.RowChecker checker = new BankIdentifiers.RowChecker(false);
+        for (int i = 0; i < rows.size(); i++) {
+            checker.check(rows.get(i), i + 1, errors, sequential);
+        }
+
+        ParallelValidation.Warnings parallel = new ParallelValidation.Warnings();
+        errors = ParallelValidation.validate(rows, () -> new ParallelValidation.RowCheck<Map<String, String>>() {
+            private final BankIdentifiers.RowChecker accounts = new BankIdentifiers.RowChecker(false);
+
+            @Override
+            public void check(Map<String, String> row, long rowNumber, List<String> errors) {
+                fail("Checked without warnings");
+            }
+
+            @Override
+            public void check(Map<String, String> row, long rowNumber, List<String> errors,
+                              ParallelValidation.Warnings warnings) {
+                accounts.check(row, rowNumber, errors, warnings);
+            }
+        }, false, parallel);
+
+        assertTrue(errors.isEmpty());
+        assertEquals(6666, sequential.getCount());
+        assertEquals(sequential.getCount(), parallel.getCount());
+        assertEquals(10, parallel.getMessages().size());
+        assertEquals(sequential.getMessages(), parallel.getMessages());
+        assertTrue(parallel.getMessages().get(0), parallel.getMessages().get(0).endsWith("in row 3."));
+    }
+
+    private static String withCheckDigits(String country, String account, String checkDigits) {
+        return country + checkDigits + account;
+    }
+
+    /**
+     * Computes the check digits of an account number the straightforward way.
+     */
+    private static String computeIban(String country, String account) {
+        StringBuilder digits = new StringBuilder();
+        for (char c : (account + country + "00").toCharArray()) {
+            digits.append(Character.getNumericValue(c));
+        }
+        int check = 98 - new BigInteger(digits.toString()).mod(BigInteger.valueOf(97)).intValue();
+        return country + (check < 10 ? "0" : "") + check + account;
+    }
+
+    private static String bump(String checkDigits) {
+        int value = Integer.parseInt(checkDigits);
+        int bumped = value == 98 ? 2 : value + 1;
+        return (bumped < 10 ? "0" : "") + bumped;
+    }
+}
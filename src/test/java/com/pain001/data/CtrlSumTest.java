@@ -0,0 +1,148 @@
+package com.pain001.data;
+
+import junit.framework.TestCase;
+
+import java.math.BigDecimal;
+
+public class CtrlSumTest extends TestCase {
+
+    public void testParseUnits() {
+        assertEquals(123450000L, CtrlSum.parseUnits("1234.5"));
+        assertEquals(300000L, CtrlSum.parseUnits("+3"));
+        assertEquals(50000L, CtrlSum.parseUnits(".5"));
+        assertEquals(700000L, CtrlSum.parseUnits("7."));
+        assertEquals(0L, CtrlSum.parseUnits("0.00"));
+        assertEquals(1000L, CtrlSum.parseUnits(" 0.01\t"));
+    }
+
+    public void testParseNegativeUnits() {
+        assertEquals(-1000L, CtrlSum.parseUnits("-0.01"));
+        assertEquals(-150075000L, CtrlSum.parseUnits(" -1500.75 "));
+    }
+
+    public void testParseAllowsFiveFractionDigits() {
+        assertEquals(112345L, CtrlSum.parseUnits("1.12345"));
+        assertEquals(112345L, CtrlSum.parseUnits("1.1234500000"));
+        assertEquals(1L, CtrlSum.parseUnits("0.00001"));
+    }
+
+    public void testParseRejectsMoreFractionDigits() {
+        assertInvalid("1.123456");
+        assertInvalid("0.000001");
+    }
+
+    public void testParseRejectsMalformedAmounts() {
+        assertInvalid("");
+        assertInvalid(" ");
+        assertInvalid("-");
+        assertInvalid(".");
+        assertInvalid("1e3");
+        assertInvalid("1.2.3");
+        assertInvalid("1,000.00");
+        assertInvalid("--1");
+        assertInvalid("NaN");
+    }
+
+    public void testParseOverflow() {
+        // Long.MAX_VALUE units
+        assertEquals(Long.MAX_VALUE, CtrlSum.parseUnits("92233720368547.75807"));
+        assertInvalid("92233720368547.75808");
+        assertInvalid("100000000000000");
+        assertInvalid("99999999999999999999999");
+    }
+
+    public void testAddKeepsCurrencySubtotals() {
+        CtrlSum sum = new CtrlSum();
+        sum.add("EUR", CtrlSum.parseUnits("10.50"));
+        sum.add("USD", CtrlSum.parseUnits("2.25"));
+        sum.add("EUR", CtrlSum.parseUnits("-0.50"));
+        sum.add(null, CtrlSum.parseUnits("1"));
+
+        assertEquals(4L, sum.count());
+        assertEquals("13.25", sum.toString());
+        assertEquals(2, sum.byCurrency().size());
+        assertEquals("10.00", sum.byCurrency().get("EUR").toString());
+        assertEquals(2, sum.byCurrency().get("EUR").count());
+        assertEquals("2.25", sum.byCurrency().get("USD").toString());
+        assertEquals("EUR", sum.byCurrency().keySet().iterator().next());
+    }
+
+    public void testManyDecimalAmountsDoNotDrift() {
+        CtrlSum sum = new CtrlSum();
+        long tenth = CtrlSum.parseUnits("0.1");
+        for (int i = 0; i < 1_000_000; i++) {
+            sum.add("EUR", tenth);
+        }
+        assertEquals(1_000_000L, sum.count());
+        assertEquals("100000.00", sum.toString());
+        assertEquals(new BigDecimal("100000.00000"), sum.toBigDecimal());
+    }
+
+    public void testMergeInAnyOrder() {
+        CtrlSum first = new CtrlSum();
+        first.add("EUR", CtrlSum.parseUnits("1.10"));
+        first.add("CHF", CtrlSum.parseUnits("3"));
+        CtrlSum second = new CtrlSum();
+        second.add("EUR", CtrlSum.parseUnits("2.20"));
+        second.add("USD", CtrlSum.parseUnits("0.00005"));
+
+        CtrlSum forward = new CtrlSum().merge(first).merge(second);
+        CtrlSum backward = new CtrlSum().merge(second).merge(first);
+
+        assertEquals(forward.units(), backward.units());
+        assertEquals(4L, forward.count());
+        assertEquals("6.30005", forward.toString());
+        assertEquals("3.30", forward.byCurrency().get("EUR").toString());
+        assertEquals("3.30", backward.byCurrency().get("EUR").toString());
+        assertEquals(3, backward.byCurrency().size());
+        assertEquals("1.10", first.byCurrency().get("EUR").toString());
+    }
+
+    public void testAddOverflowFails() {
+        CtrlSum sum = new CtrlSum();
+        sum.add("EUR", Long.MAX_VALUE);
+        try {
+            sum.add("EUR", 1L);
+            fail("Overflow accepted");
+        } catch (ArithmeticException expected) {
+            assertTrue(expected.getMessage().contains("after 1 amounts"));
+        }
+    }
+
+    public void testMergeOverflowFails() {
+        CtrlSum big = new CtrlSum();
+        big.add(null, Long.MAX_VALUE);
+        CtrlSum one = new CtrlSum();
+        one.add(null, 1L);
+        try {
+            one.merge(big);
+            fail("Overflow accepted");
+        } catch (ArithmeticException expected) {
+            // expected
+        }
+    }
+
+    public void testFormat() {
+        assertEquals("0.00", new CtrlSum().toString());
+        assertEquals("100.00", sumOf("100").toString());
+        assertEquals("1500.75", sumOf("1500.75").toString());
+        assertEquals("0.125", sumOf("0.125").toString());
+        assertEquals("-2.50", sumOf("-2.5").toString());
+        assertEquals("92233720368547.75807", sumOf("92233720368547.75807").toString());
+    }
+
+    private static CtrlSum sumOf(String amount) {
+        CtrlSum sum = new CtrlSum();
+        sum.add(null, CtrlSum.parseUnits(amount));
+        return sum;
+    }
+
+    private static void assertInvalid(String amount) {
+        try {
+            CtrlSum.parseUnits(amount);
+            fail("Accepted '" + amount + "'");
+        } catch (NumberFormatException expected) {
+            // expected
+        }
+    }
+}
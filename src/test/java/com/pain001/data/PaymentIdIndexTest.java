@@ -0,0 +1,175 @@
+package com.pain001.data;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PaymentIdIndexTest extends TestCase {
+    private File directory;
+    private String indexPath;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("payment-ids").toFile();
+        indexPath = new File(directory, "sent.idx").getPath();
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    public void testReservationFindsDuplicates() throws IOException {
+        try (PaymentIdIndex index = PaymentIdIndex.open(indexPath)) {
+            assertTrue(index.add("sent-before"));
+            try (PaymentIdIndex.Reservation reservation = index.reserve()) {
+                assertTrue(reservation.add("PaymentID1"));
+                assertFalse(reservation.add("PaymentID1"));
+                assertFalse(reservation.add("sent-before"));
+                assertEquals(1, reservation.count());
+                reservation.commit();
+            }
+            assertTrue(index.contains("PaymentID1"));
+            assertEquals(2, index.size());
+        }
+        assertTrue(journals().isEmpty());
+    }
+
+    public void testRollbackRemovesTheRunsIds() throws IOException {
+        try (PaymentIdIndex index = PaymentIdIndex.open(indexPath)) {
+            index.add("sent-before");
+            try (PaymentIdIndex.Reservation reservation = index.reserve()) {
+                reservation.add("PaymentID1");
+                reservation.add("PaymentID2");
+            }
+            assertFalse(index.contains("PaymentID1"));
+            assertFalse(index.contains("PaymentID2"));
+            assertTrue(index.contains("sent-before"));
+            assertEquals(1, index.size());
+
+            // The rolled back ids can be sent again
+            try (PaymentIdIndex.Reservation reservation = index.reserve()) {
+                assertTrue(reservation.add("PaymentID1"));
+                reservation.commit();
+            }
+        }
+        try (PaymentIdIndex index = PaymentIdIndex.open(indexPath)) {
+            assertTrue(index.contains("PaymentID1"));
+            assertEquals(2, index.size());
+        }
+    }
+
+    public void testOpenRollsBackUnfinishedRun() throws IOException {
+        Path journalCopy = new File(directory, "journal.copy").toPath();
+        try (PaymentIdIndex index = PaymentIdIndex.open(indexPath)) {
+            try (PaymentIdIndex.Reservation committed = index.reserve()) {
+                committed.add("committed");
+                committed.commit();
+            }
+            PaymentIdIndex.Reservation unfinished = index.reserve();
+            for (int i = 0; i < 100; i++) {
+                unfinished.add("PaymentID" + i);
+            }
+            index.force();
+            // Keep the journal as a process that dies here would leave it
+            List<Path> journals = journals();
+            assertEquals(1, journals.size());
+            Files.copy(journals.get(0), journalCopy);
+            index.close();
+            unfinished.close();
+            Files.move(journalCopy, journals.get(0));
+        }
+
+        try (PaymentIdIndex index = PaymentIdIndex.open(indexPath)) {
+            assertTrue(journals().isEmpty());
+            assertEquals(1, index.size());
+            assertTrue(index.contains("committed"));
+            for (int i = 0; i < 100; i++) {
+                assertFalse(index.contains("PaymentID" + i));
+            }
+        }
+    }
+
+    public void testTableGrows() throws IOException {
+        File file = new File(indexPath);
+        try (PaymentIdIndex index = PaymentIdIndex.open(indexPath, 1024)) {
+            long initialLength = file.length();
+            try (PaymentIdIndex.Reservation reservation = index.reserve()) {
+                for (int i = 0; i < 10000; i++) {
+                    assertTrue(reservation.add("PaymentID" + i));
+                }
+                reservation.commit();
+            }
+            assertTrue(file.length() > initialLength);
+            assertEquals(10000, index.size());
+        }
+        try (PaymentIdIndex index = PaymentIdIndex.open(indexPath)) {
+            assertEquals(10000, index.size());
+            for (int i = 0; i < 10000; i++) {
+                assertTrue(index.contains("PaymentID" + i));
+            }
+            assertFalse(index.contains("PaymentID10000"));
+        }
+    }
+
+    public void testRollbackAfterGrowth() throws IOException {
+        try (PaymentIdIndex index = PaymentIdIndex.open(indexPath, 1024)) {
+            index.add("sent-before");
+            try (PaymentIdIndex.Reservation reservation = index.reserve()) {
+                for (int i = 0; i < 5000; i++) {
+                    reservation.add("PaymentID" + i);
+                }
+            }
+            assertEquals(1, index.size());
+            assertTrue(index.contains("sent-before"));
+            assertFalse(index.contains("PaymentID0"));
+            assertFalse(index.contains("PaymentID4999"));
+        }
+    }
+
+    public void testSecondOpenIsRejected() throws IOException {
+        try (PaymentIdIndex index = PaymentIdIndex.open(indexPath)) {
+            index.add("PaymentID1");
+            try {
+                PaymentIdIndex.open(indexPath).close();
+                fail("Opened the index twice");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("already open"));
+            }
+            // The failed open leaves the first instance usable
+            assertTrue(index.contains("PaymentID1"));
+        }
+        try (PaymentIdIndex index = PaymentIdIndex.open(indexPath)) {
+            assertTrue(index.contains("PaymentID1"));
+        }
+    }
+
+    public void testOpenRejectsOtherFiles() throws IOException {
+        Files.write(new File(indexPath).toPath(), new byte[8192]);
+        try {
+            PaymentIdIndex.open(indexPath).close();
+            fail("Opened a file that is not an index");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("is not a payment id index"));
+        }
+    }
+
+    private List<Path> journals() throws IOException {
+        List<Path> journals = new ArrayList<Path>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory.toPath(), "*.journal")) {
+            for (Path path : paths) {
+                journals.add(path);
+            }
+        }
+        return journals;
+    }
+}
@@ -0,0 +1,171 @@
+package com.pain001.xml;
+
+import com.pain001.csv.CsvRowSource;
+import com.pain001.data.SeekableRowCursor;
+import com.pain001.data.SeekableRowSource;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+public class CheckpointResumeTest extends TestCase {
+    private static final String MESSAGE_TYPE = "pain.001.001.09";
+    private static final String TEMPLATE_DIRECTORY = "src/main/java/com/pain001/templates/pain00100109";
+    private static final String XML_FILE_PATH = TEMPLATE_DIRECTORY + "/template.xml";
+    private static final String XSD_FILE_PATH = TEMPLATE_DIRECTORY + "/" + MESSAGE_TYPE + ".xsd";
+    private static final int ROWS = 300;
+    private static final int CHECKPOINT_INTERVAL = 7;
+
+    private File directory;
+    private String dataFilePath;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("checkpoint").toFile();
+        dataFilePath = new File(directory, "payments.csv").getPath();
+        StringBuilder csv = new StringBuilder("id,date,nb_of_txs,initiator_name,payment_information_id,payment_method,"
+                + "batch_booking,ctrl_sum,service_level_code,requested_execution_date,debtor_name,debtor_account_IBAN,"
+                + "debtor_agent_BIC,charge_bearer,payment_id,payment_amount,currency,creditor_agent_BIC,creditor_name,"
+                + "creditor_account_IBAN,remittance_information,forwarding_agent_BIC,payment_currency\n");
+        for (int i = 1; i <= ROWS; i++) {
+            // Multi-byte and quoted names move character offsets away from byte offsets
+            String creditor = i % 3 == 0 ? "\"Müller, Jörg " + i + "\"" : "Creditor " + i;
+            csv.append(i).append(",2023-03-10T15:30:47,").append(ROWS).append(",John Doe,Payment-Info-12345,TRF,TRUE,")
+                    .append(ROWS).append(",SEPA,2023-03-12,Acme Corp,DE75512108001245126162,DEUTDEFFXXX,DEBT,PaymentID")
+                    .append(i).append(',').append(i).append('.').append(i % 100).append(",EUR,DEUTDEFFXXX,")
+                    .append(creditor).append(",DE68210501700024690959,Invoice ").append(i).append(",FA98765,EUR\n");
+        }
+        Files.write(new File(dataFilePath).toPath(), csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    public void testResumedRunWritesTheSameFile() throws Exception {
+        String reference = new File(directory, "reference.xml").getPath();
+        GenerateXml.generateXml(new CsvRowSource(dataFilePath), MESSAGE_TYPE, XML_FILE_PATH, XSD_FILE_PATH,
+                new GenerationOptions().setStreaming(true).setOutputFilePath(reference));
+
+        String output = new File(directory, "resumed.xml").getPath();
+        try {
+            GenerateXml.generateXml(new CrashingSource(dataFilePath, 100), MESSAGE_TYPE, XML_FILE_PATH, XSD_FILE_PATH,
+                    checkpointed(output));
+            fail("The interrupted run completed");
+        } catch (Exception expected) {
+            // simulated crash
+        }
+        assertFalse(new File(output).exists());
+        Checkpoint checkpoint = Checkpoint.load(Checkpoint.filePathFor(output));
+        assertNotNull(checkpoint);
+        assertTrue(checkpoint.rowsEmitted > 0 && checkpoint.rowsEmitted < 100);
+        assertTrue(new File(Checkpoint.partialFilePathFor(output)).length() >= checkpoint.outputPosition);
+
+        GenerateXml.generateXml(new CsvRowSource(dataFilePath), MESSAGE_TYPE, XML_FILE_PATH, XSD_FILE_PATH,
+                checkpointed(output));
+
+        assertTrue(Arrays.equals(Files.readAllBytes(new File(reference).toPath()),
+                Files.readAllBytes(new File(output).toPath())));
+        assertFalse(new File(Checkpoint.filePathFor(output)).exists());
+        assertFalse(new File(Checkpoint.partialFilePathFor(output)).exists());
+    }
+
+    public void testCheckpointOfOtherInputIsIgnored() throws Exception {
+        String output = new File(directory, "restarted.xml").getPath();
+        try {
+            GenerateXml.generateXml(new CrashingSource(dataFilePath, 50), MESSAGE_TYPE, XML_FILE_PATH, XSD_FILE_PATH,
+                    checkpointed(output));
+            fail("The interrupted run completed");
+        } catch (Exception expected) {
+            // simulated crash
+        }
+        assertNotNull(Checkpoint.load(Checkpoint.filePathFor(output)));
+        // Same length, other content and modification time
+        byte[] data = Files.readAllBytes(new File(dataFilePath).toPath());
+        String changed = new String(data, StandardCharsets.UTF_8).replace("Invoice 1,", "Invoice 9,");
+        Files.write(new File(dataFilePath).toPath(), changed.getBytes(StandardCharsets.UTF_8));
+        assertTrue(new File(dataFilePath).setLastModified(System.currentTimeMillis() + 10_000));
+
+        GenerateXml.generateXml(new CsvRowSource(dataFilePath), MESSAGE_TYPE, XML_FILE_PATH, XSD_FILE_PATH,
+                checkpointed(output));
+
+        String reference = new File(directory, "reference.xml").getPath();
+        GenerateXml.generateXml(new CsvRowSource(dataFilePath), MESSAGE_TYPE, XML_FILE_PATH, XSD_FILE_PATH,
+                new GenerationOptions().setStreaming(true).setOutputFilePath(reference));
+        assertTrue(Arrays.equals(Files.readAllBytes(new File(reference).toPath()),
+                Files.readAllBytes(new File(output).toPath())));
+    }
+
+    private static GenerationOptions checkpointed(String output) {
+        return new GenerationOptions().setStreaming(true).setCheckpointInterval(CHECKPOINT_INTERVAL)
+                .setOutputFilePath(output);
+    }
+
+    /**
+     * A CSV source whose rendering cursor fails after some rows, as if the process died.
+     */
+    private static final class CrashingSource implements SeekableRowSource {
+        private final CsvRowSource source;
+        private final int rowsBeforeCrash;
+
+        CrashingSource(String filePath, int rowsBeforeCrash) {
+            this.source = new CsvRowSource(filePath);
+            this.rowsBeforeCrash = rowsBeforeCrash;
+        }
+
+        @Override
+        public SeekableRowCursor open() throws IOException {
+            return source.open();
+        }
+
+        @Override
+        public SeekableRowCursor open(long offset) throws IOException {
+            SeekableRowCursor cursor = source.open(offset);
+            return new SeekableRowCursor() {
+                private int rows;
+
+                @Override
+                public long offset() {
+                    return cursor.offset();
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return cursor.hasNext();
+                }
+
+                @Override
+                public Map<String, String> next() {
+                    if (rows++ == rowsBeforeCrash) {
+                        throw new UncheckedIOException(new IOException("Simulated crash"));
+                    }
+                    return cursor.next();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    cursor.close();
+                }
+            };
+        }
+
+        @Override
+        public String fingerprint() throws IOException {
+            return source.fingerprint();
+        }
+
+        @Override
+        public String describe() {
+            return source.describe();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.pain001.xml;
+
+import com.pain001.data.ParallelValidation;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FacetRulesTest extends TestCase {
+    private static final String MESSAGE_TYPE = "pain.001.001.09";
+    private static final String XSD_FILE_PATH = "src/main/java/com/pain001/templates/pain00100109/" + MESSAGE_TYPE + ".xsd";
+    private static final String LONG_TEXT = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor "
+            + "incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam";
+
+    public void testBundledSchemaChecksTemplateColumns() {
+        FacetRules rules = FacetRules.forSchema(MESSAGE_TYPE, XSD_FILE_PATH);
+
+        assertTrue(rules.size() > 0);
+        assertTrue(rules.columns().contains("creditor_name"));
+        assertTrue(rules.columns().contains("payment_amount"));
+        // Computed while rendering
+        assertFalse(rules.columns().contains("nb_of_txs"));
+        assertTrue(check(validRow(), 2).isEmpty());
+    }
+
+    public void testMaxLength() {
+        assertTrue(LONG_TEXT.length() > 140);
+        Map<String, String> row = validRow();
+        row.put("creditor_name", LONG_TEXT);
+
+        assertViolation(row, "'creditor_name' in row 2", "is longer than 140 characters");
+    }
+
+    public void testPattern() {
+        Map<String, String> row = validRow();
+        row.put("creditor_agent_BIC", "DEUT-DE-FF");
+
+        assertViolation(row, "'creditor_agent_BIC' in row 2", "does not match pattern");
+    }
+
+    public void testEnumeration() {
+        Map<String, String> row = validRow();
+        row.put("charge_bearer", "NONE");
+
+        // A payment information column, checked where a block starts
+        assertViolation(row, "'charge_bearer' in row 1", "is not one of");
+    }
+
+    public void testFractionDigits() {
+        Map<String, String> row = validRow();
+        row.put("payment_amount", "1.123456");
+
+        assertViolation(row, "'payment_amount' in row 2", "has more than 5 fraction digits");
+        // Trailing zeros do not count
+        row.put("payment_amount", "1.1234500");
+        assertTrue(check(row, 2).isEmpty());
+    }
+
+    public void testTotalDigits() {
+        Map<String, String> row = validRow();
+        row.put("payment_amount", "12345678901234.56789");
+
+        assertViolation(row, "'payment_amount' in row 2", "has more than 18 digits");
+    }
+
+    public void testNotADecimal() {
+        Map<String, String> row = validRow();
+        row.put("payment_amount", "1,50");
+
+        assertViolation(row, "'payment_amount' in row 2", "is not a decimal number");
+    }
+
+    public void testHeaderColumnsOnlyInFirstRow() {
+        Map<String, String> row = validRow();
+        row.put("id", LONG_TEXT);
+
+        assertTrue(check(row, 2).isEmpty());
+        assertViolation(row, "'id' in row 1", "is longer than 35 characters");
+    }
+
+    public void testEmptyValuesAreLeftToRequiredColumnChecks() {
+        Map<String, String> row = validRow();
+        row.put("creditor_name", "");
+
+        assertTrue(check(row, 2).isEmpty());
+    }
+
+    public void testUnsupportedDirectiveYieldsNoRules() {
+        String template = "<Document><#assign name = creditor_name><Nm>${name}</Nm></Document>";
+
+        FacetRules rules = FacetRules.compile(MESSAGE_TYPE, XSD_FILE_PATH, template);
+
+        assertEquals(0, rules.size());
+        assertTrue(rules.columns().isEmpty());
+        assertNull(rules.rowCheck(false));
+    }
+
+    public void testUnreadableSchemaYieldsNoRules() {
+        FacetRules rules = FacetRules.compile(MESSAGE_TYPE, "does/not/exist.xsd", "<Document/>");
+
+        assertEquals(0, rules.size());
+    }
+
+    /**
+     * @param where The column and row of the error, e.g. "'id' in row 1".
+     */
+    private static void assertViolation(Map<String, String> row, String where, String violation) {
+        long rowNumber = Long.parseLong(where.substring(where.lastIndexOf(' ') + 1));
+        List<String> errors = check(row, rowNumber);
+        assertEquals(errors.toString(), 1, errors.size());
+        assertTrue(errors.get(0), errors.get(0).contains(where));
+        assertTrue(errors.get(0), errors.get(0).contains(violation));
+    }
+
+    private static List<String> check(Map<String, String> row, long rowNumber) {
+        ParallelValidation.RowCheck<Map<String, String>> check =
+                FacetRules.forSchema(MESSAGE_TYPE, XSD_FILE_PATH).rowCheck(false);
+        List<String> errors = new ArrayList<>();
+        check.check(row, rowNumber, errors);
+        return errors;
+    }
+
+    private static Map<String, String> validRow() {
+        Map<String, String> row = new HashMap<>();
+        row.put("id", "MSG-1");
+        row.put("initiator_name", "John Doe");
+        row.put("payment_id", "PaymentID1");
+        row.put("payment_method", "TRF");
+        row.put("debtor_name", "Acme Corp");
+        row.put("debtor_account_IBAN", "DE75512108001245126162");
+        row.put("debtor_agent_BIC", "DEUTDEFFXXX");
+        row.put("charge_bearer", "DEBT");
+        row.put("payment_currency", "EUR");
+        row.put("payment_amount", "100.50");
+        row.put("creditor_agent_BIC", "DEUTDEFFXXX");
+        row.put("creditor_name", "Creditor 1");
+        row.put("creditor_account_IBAN", "DE68210501700024690959");
+        return row;
+    }
+}
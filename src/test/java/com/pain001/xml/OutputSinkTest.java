@@ -0,0 +1,111 @@
+package com.pain001.xml;
+
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class OutputSinkTest extends TestCase {
+    private static final String XSD = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">"
+            + "<xs:element name=\"Doc\"><xs:complexType><xs:sequence>"
+            + "<xs:element name=\"Amt\" type=\"xs:decimal\" maxOccurs=\"unbounded\"/>"
+            + "</xs:sequence></xs:complexType></xs:element></xs:schema>";
+
+    private File directory;
+    private String xsdFilePath;
+    private Template template;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("sink").toFile();
+        xsdFilePath = new File(directory, "doc.xsd").getPath();
+        Files.write(new File(xsdFilePath).toPath(), XSD.getBytes(StandardCharsets.UTF_8));
+        template = new Template("doc", new StringReader(
+                "<Doc><#list amounts as amount><Amt>${amount}</Amt></#list></Doc>"), TemplateEngine.getConfiguration());
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    public void testPublishRenamesIntoPlace() throws Exception {
+        File target = new File(directory, "out.xml");
+        OutputSink sink = OutputSink.toFile(target.getPath(), FsyncPolicy.NONE);
+
+        GenerateXml.renderXml(template, amounts("1.00", "2.50"), sink, false, xsdFilePath, new GenerationOptions());
+        assertFalse(target.exists());
+        assertEquals(1, temporaryFiles().length);
+
+        GenerateXml.publish(sink);
+        assertTrue(target.exists());
+        assertEquals(0, temporaryFiles().length);
+        assertEquals("<Doc><Amt>1.00</Amt><Amt>2.50</Amt></Doc>",
+                new String(Files.readAllBytes(target.toPath()), StandardCharsets.UTF_8));
+    }
+
+    public void testFailedValidationLeavesNoFile() throws Exception {
+        assertInvalidLeavesNoFile(new GenerationOptions());
+    }
+
+    public void testFailedValidationWhileWritingLeavesNoFile() throws Exception {
+        assertInvalidLeavesNoFile(new GenerationOptions().setValidateWhileWriting(true));
+    }
+
+    public void testFailedRenderLeavesNoFile() throws Exception {
+        File target = new File(directory, "out.xml");
+        OutputSink sink = OutputSink.toFile(target.getPath(), FsyncPolicy.NONE);
+        try {
+            GenerateXml.renderXml(template, new HashMap<String, Object>(), sink, false, xsdFilePath,
+                    new GenerationOptions());
+            fail("Rendered a template without its data");
+        } catch (TemplateException expected) {
+            // amounts is missing
+        }
+        assertFalse(target.exists());
+        assertEquals(0, temporaryFiles().length);
+    }
+
+    public void testMemorySinkKeepsMessage() throws Exception {
+        OutputSink.MemorySink sink = OutputSink.inMemory();
+
+        GenerateXml.renderXml(template, amounts("3"), sink, false, xsdFilePath, new GenerationOptions());
+
+        assertEquals("<Doc><Amt>3</Amt></Doc>", new String(sink.toByteArray(), StandardCharsets.UTF_8));
+        sink.discard();
+        assertEquals(0, sink.size());
+    }
+
+    private void assertInvalidLeavesNoFile(GenerationOptions options) throws Exception {
+        File target = new File(directory, "out.xml");
+        OutputSink sink = OutputSink.toFile(target.getPath(), FsyncPolicy.NONE);
+        try {
+            GenerateXml.renderXml(template, amounts("1.00", "abc"), sink, false, xsdFilePath, options);
+            fail("Accepted an invalid document");
+        } catch (XmlValidationException expected) {
+            // abc is not a decimal
+        }
+        assertFalse(target.exists());
+        assertEquals(0, temporaryFiles().length);
+    }
+
+    private File[] temporaryFiles() {
+        return directory.listFiles((dir, name) -> name.endsWith(".tmp"));
+    }
+
+    private static Map<String, Object> amounts(String... amounts) {
+        return new HashMap<String, Object>(Collections.singletonMap("amounts", Arrays.asList(amounts)));
+    }
+}
@@ -0,0 +1,153 @@
+package com.pain001.xml;
+
+import com.pain001.data.CtrlSum;
+import com.pain001.data.PaymentRow;
+import com.pain001.data.RowSchema;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+public class PaymentGroupsTest extends TestCase {
+    private static final String[] COLUMNS = {
+            "payment_id", "debtor_account_IBAN", "debtor_agent_BIC", "requested_execution_date",
+            "payment_method", "payment_currency", "payment_amount"
+    };
+
+    public void testGroupsInOrderOfFirstAppearance() {
+        PaymentGroups groups = newGroups("pain.001.001.09");
+        add(groups, row("1", "DE89370400440532013000", "2024-01-01", "EUR", "10.00"));
+        add(groups, row("2", "GB82WEST12345698765432", "2024-01-01", "EUR", "20.00"));
+        add(groups, row("3", "DE89370400440532013000", "2024-01-01", "EUR", "30.00"));
+        add(groups, row("4", "DE89370400440532013000", "2024-01-02", "EUR", "40.00"));
+        add(groups, row("5", "GB82WEST12345698765432", "2024-01-01", "EUR", "50.00"));
+
+        assertEquals(5L, groups.transactionCount());
+        assertEquals(Arrays.asList("1", "2", "4"), firstRowIds(groups));
+        Iterator<PaymentGroups.Group> it = groups.groups().iterator();
+        assertEquals(Arrays.asList("1", "3"), paymentIds(it.next()));
+        assertEquals(Arrays.asList("2", "5"), paymentIds(it.next()));
+        assertEquals(Arrays.asList("4"), paymentIds(it.next()));
+    }
+
+    public void testControlSums() {
+        PaymentGroups groups = newGroups("pain.001.001.09");
+        add(groups, row("1", "DE89370400440532013000", "2024-01-01", "EUR", "10.10"));
+        add(groups, row("2", "DE89370400440532013000", "2024-01-01", "CHF", "0.05"));
+        add(groups, row("3", "DE89370400440532013000", "2024-01-01", "EUR", "5.90"));
+
+        Iterator<PaymentGroups.Group> it = groups.groups().iterator();
+        PaymentGroups.Group eur = it.next();
+        PaymentGroups.Group chf = it.next();
+        assertEquals("16.00", eur.ctrlSum().toString());
+        assertEquals(2L, eur.ctrlSum().count());
+        assertEquals("0.05", chf.ctrlSum().toString());
+        assertEquals("16.05", groups.ctrlSum().toString());
+        assertEquals("16.00", groups.ctrlSum().byCurrency().get("EUR").toString());
+        assertEquals("0.05", groups.ctrlSum().byCurrency().get("CHF").toString());
+    }
+
+    public void testEveryKeyColumnSplitsGroups() {
+        PaymentGroups groups = newGroups("pain.001.001.09");
+        Map<String, String> base = row("1", "DE89370400440532013000", "2024-01-01", "EUR", "1");
+        add(groups, base);
+        for (String column : new String[]{"debtor_account_IBAN", "debtor_agent_BIC", "requested_execution_date",
+                "payment_method", "payment_currency"}) {
+            Map<String, String> other = new HashMap<>(base);
+            other.put(column, base.get(column) + "X");
+            add(groups, other);
+        }
+        add(groups, new HashMap<>(base));
+
+        assertEquals(6, groups.groups().size());
+        assertEquals(2, groups.groups().iterator().next().transactions().size());
+    }
+
+    public void testGroupsOnRenderedCurrency() {
+        // pain.001.001.04 renders EUR for a transaction without currency
+        PaymentGroups groups = newGroups("pain.001.001.04");
+        Map<String, String> withoutCurrency = row("1", "DE89370400440532013000", "2024-01-01", null, "1");
+        withoutCurrency.remove("payment_currency");
+        add(groups, withoutCurrency);
+        add(groups, row("2", "DE89370400440532013000", "2024-01-01", "EUR", "2"));
+
+        assertEquals(1, groups.groups().size());
+        assertEquals("3.00", groups.ctrlSum().byCurrency().get("EUR").toString());
+    }
+
+    public void testPaymentRowsGroupLikeMaps() {
+        List<Map<String, String>> rows = Arrays.asList(
+                row("1", "DE89370400440532013000", "2024-01-01", "EUR", "1"),
+                row("2", "GB82WEST12345698765432", "2024-01-01", "EUR", "2"),
+                row("3", "DE89370400440532013000", "2024-01-01", "EUR", "3"));
+        RowSchema schema = new RowSchema(Arrays.asList(COLUMNS));
+        // A second schema with the columns in another order, as from another source
+        List<String> reversed = new ArrayList<>(Arrays.asList(COLUMNS));
+        Collections.reverse(reversed);
+        RowSchema otherSchema = new RowSchema(reversed);
+
+        PaymentGroups fromMaps = newGroups("pain.001.001.09");
+        PaymentGroups fromRows = newGroups("pain.001.001.09");
+        for (int i = 0; i < rows.size(); i++) {
+            add(fromMaps, rows.get(i));
+            add(fromRows, toPaymentRow(rows.get(i), i == 1 ? otherSchema : schema));
+        }
+
+        assertEquals(firstRowIds(fromMaps), firstRowIds(fromRows));
+        Iterator<PaymentGroups.Group> maps = fromMaps.groups().iterator();
+        Iterator<PaymentGroups.Group> paymentRows = fromRows.groups().iterator();
+        while (maps.hasNext()) {
+            assertEquals(paymentIds(maps.next()), paymentIds(paymentRows.next()));
+        }
+        assertEquals(fromMaps.ctrlSum().units(), fromRows.ctrlSum().units());
+    }
+
+    private static PaymentGroups newGroups(String messageType) {
+        return new PaymentGroups(TransactionLayout.forMessageType(messageType));
+    }
+
+    private static void add(PaymentGroups groups, Map<String, String> row) {
+        groups.add(row, CtrlSum.parseUnits(row.get("payment_amount")));
+    }
+
+    private static Map<String, String> row(String id, String iban, String date, String currency, String amount) {
+        Map<String, String> row = new HashMap<>();
+        row.put("payment_id", id);
+        row.put("debtor_account_IBAN", iban);
+        row.put("debtor_agent_BIC", "DEUTDEFF");
+        row.put("requested_execution_date", date);
+        row.put("payment_method", "TRF");
+        row.put("payment_currency", currency);
+        row.put("payment_amount", amount);
+        return row;
+    }
+
+    private static PaymentRow toPaymentRow(Map<String, String> row, RowSchema schema) {
+        String[] values = new String[schema.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = row.get(schema.column(i));
+        }
+        return new PaymentRow(schema, values);
+    }
+
+    private static List<String> firstRowIds(PaymentGroups groups) {
+        List<String> ids = new ArrayList<>();
+        for (PaymentGroups.Group group : groups.groups()) {
+            ids.add(group.firstRow().get("payment_id"));
+        }
+        return ids;
+    }
+
+    private static List<String> paymentIds(PaymentGroups.Group group) {
+        List<String> ids = new ArrayList<>();
+        for (Map<String, String> transaction : group.transactions()) {
+            ids.add(transaction.get("payment_id"));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,103 @@
+package com.pain001.xml;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class PendingOutputsTest extends TestCase {
+    private File directory;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("pending").toFile();
+    }
+
+    @Override
+    protected void tearDown() {
+        delete(directory);
+    }
+
+    public void testPublishAllPublishesInOrder() throws IOException {
+        PendingOutputs outputs = new PendingOutputs();
+        outputs.add(written("a.xml"));
+        outputs.add(written("b.xml"));
+        assertEquals(2, outputs.size());
+        assertFalse(new File(directory, "a.xml").exists());
+
+        outputs.publishAll();
+
+        assertEquals(0, outputs.size());
+        assertEquals("a.xml", read("a.xml"));
+        assertEquals("b.xml", read("b.xml"));
+        assertEquals(0, temporaryFiles().length);
+    }
+
+    public void testPublishAllRollsBackPublishedFiles() throws IOException {
+        // A non-empty directory cannot be replaced by the second file
+        File blocked = new File(directory, "b.xml");
+        assertTrue(blocked.mkdir());
+        assertTrue(new File(blocked, "keep").createNewFile());
+        PendingOutputs outputs = new PendingOutputs();
+        outputs.add(written("a.xml"));
+        outputs.add(written("b.xml"));
+        outputs.add(written("c.xml"));
+
+        try {
+            outputs.publishAll();
+            fail("Published over a directory");
+        } catch (IOException expected) {
+            // b.xml cannot be renamed into place
+        }
+
+        assertFalse(new File(directory, "a.xml").exists());
+        assertTrue(blocked.isDirectory());
+        assertFalse(new File(directory, "c.xml").exists());
+        assertEquals(0, temporaryFiles().length);
+    }
+
+    public void testDiscardAllDropsLaterOutputs() throws IOException {
+        PendingOutputs outputs = new PendingOutputs();
+        outputs.add(written("a.xml"));
+        outputs.discardAll();
+        outputs.add(written("b.xml"));
+
+        assertEquals(0, outputs.size());
+        outputs.publishAll();
+        assertFalse(new File(directory, "a.xml").exists());
+        assertFalse(new File(directory, "b.xml").exists());
+        assertEquals(0, temporaryFiles().length);
+    }
+
+    /**
+     * @return A file sink holding its own name, written but not published.
+     */
+    private OutputSink written(String name) throws IOException {
+        OutputSink sink = OutputSink.toFile(new File(directory, name).getPath(), FsyncPolicy.NONE);
+        try (OutputStream out = sink.open()) {
+            out.write(name.getBytes(StandardCharsets.UTF_8));
+        }
+        return sink;
+    }
+
+    private String read(String name) throws IOException {
+        return new String(Files.readAllBytes(new File(directory, name).toPath()), StandardCharsets.UTF_8);
+    }
+
+    private File[] temporaryFiles() {
+        return directory.listFiles((dir, name) -> name.endsWith(".tmp"));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
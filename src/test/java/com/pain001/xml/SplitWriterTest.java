@@ -0,0 +1,162 @@
+package com.pain001.xml;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SplitWriterTest extends TestCase {
+    private static final String MESSAGE_TYPE = "pain.001.001.09";
+    private static final String TEMPLATE_DIRECTORY = "src/main/java/com/pain001/templates/pain00100109";
+    private static final String XML_FILE_PATH = TEMPLATE_DIRECTORY + "/template.xml";
+    private static final String XSD_FILE_PATH = TEMPLATE_DIRECTORY + "/" + MESSAGE_TYPE + ".xsd";
+    private static final String LONG_TEXT = repeat("Lorem ipsum dolor sit amet ", 6).substring(0, 140);
+
+    private File directory;
+    private String outputFilePath;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("split").toFile();
+        outputFilePath = new File(directory, "payments.xml").getPath();
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    public void testTransactionLimit() throws Exception {
+        GenerateXml.generateXml(rows(250, 0), MESSAGE_TYPE, XML_FILE_PATH, XSD_FILE_PATH,
+                options().setMaxTransactionsPerFile(100));
+
+        assertEquals(Arrays.asList("payments_001.xml", "payments_002.xml", "payments_003.xml"), outputFiles());
+        assertEquals(100, transactions("payments_001.xml"));
+        assertEquals(100, transactions("payments_002.xml"));
+        assertEquals(50, transactions("payments_003.xml"));
+        String last = read("payments_003.xml");
+        assertTrue(last.contains("<NbOfTxs>50</NbOfTxs>"));
+        assertTrue(last.contains("<MsgId>MSG-1-003</MsgId>"));
+    }
+
+    public void testByteLimit() throws Exception {
+        long maxBytes = 40_000;
+        GenerateXml.generateXml(rows(300, 0), MESSAGE_TYPE, XML_FILE_PATH, XSD_FILE_PATH,
+                options().setMaxBytesPerFile(maxBytes));
+
+        List<String> files = outputFiles();
+        assertTrue(files.toString(), files.size() > 1);
+        int total = 0;
+        for (String file : files) {
+            assertTrue(file + " is too large", new File(directory, file).length() <= maxBytes);
+            total += transactions(file);
+        }
+        assertEquals(300, total);
+    }
+
+    public void testOversizedPartIsSplitAgain() throws Exception {
+        long maxBytes = 40_000;
+        // The size per transaction is estimated from the short rows at the start
+        GenerateXml.generateXml(rows(600, 300), MESSAGE_TYPE, XML_FILE_PATH, XSD_FILE_PATH,
+                options().setMaxBytesPerFile(maxBytes));
+
+        List<String> files = outputFiles();
+        boolean resplit = false;
+        int total = 0;
+        for (String file : files) {
+            assertTrue(file + " is too large", new File(directory, file).length() <= maxBytes);
+            resplit |= file.matches("payments_\\d{3}-1\\.xml");
+            total += transactions(file);
+        }
+        assertTrue(files.toString(), resplit);
+        assertEquals(600, total);
+    }
+
+    public void testNoPartIsPublishedIfOneFails() throws Exception {
+        List<Map<String, String>> rows = rows(250, 0);
+        // Not a BIC, so the last part fails XSD validation
+        rows.get(240).put("creditor_agent_BIC", "not a BIC");
+        try {
+            GenerateXml.generateXml(rows, MESSAGE_TYPE, XML_FILE_PATH, XSD_FILE_PATH,
+                    options().setMaxTransactionsPerFile(100));
+            fail("Published an invalid part");
+        } catch (XmlValidationException expected) {
+            // the third part is invalid
+        }
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    private GenerationOptions options() {
+        return new GenerationOptions().setOutputFilePath(outputFilePath).setWriterThreads(2);
+    }
+
+    /**
+     * @param count     Number of rows.
+     * @param firstLong Number of short rows before the rows with long names and remittance
+     *                  information; 0 for none.
+     */
+    private static List<Map<String, String>> rows(int count, int firstLong) {
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            boolean isLong = i > firstLong && firstLong > 0;
+            Map<String, String> row = new HashMap<>();
+            row.put("id", "MSG-1");
+            row.put("date", "2023-03-10T15:30:47");
+            row.put("nb_of_txs", String.valueOf(count));
+            row.put("initiator_name", "John Doe");
+            row.put("payment_information_id", "Payment-Info-12345");
+            row.put("payment_method", "TRF");
+            row.put("batch_booking", "true");
+            row.put("ctrl_sum", String.valueOf(count));
+            row.put("service_level_code", "SEPA");
+            row.put("requested_execution_date", "2023-03-12");
+            row.put("debtor_name", "Acme Corp");
+            row.put("debtor_account_IBAN", "DE75512108001245126162");
+            row.put("debtor_agent_BIC", "DEUTDEFFXXX");
+            row.put("charge_bearer", "DEBT");
+            row.put("payment_id", "PaymentID" + i);
+            row.put("payment_amount", i + "." + (i % 100));
+            row.put("currency", "EUR");
+            row.put("payment_currency", "EUR");
+            row.put("creditor_agent_BIC", "DEUTDEFFXXX");
+            row.put("creditor_name", isLong ? LONG_TEXT : "Creditor " + i);
+            row.put("creditor_account_IBAN", "DE68210501700024690959");
+            row.put("remittance_information", isLong ? LONG_TEXT : "Invoice " + i);
+            row.put("forwarding_agent_BIC", "FA98765");
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private List<String> outputFiles() {
+        List<String> files = new ArrayList<>(Arrays.asList(directory.list()));
+        files.sort(null);
+        return files;
+    }
+
+    private int transactions(String file) throws IOException {
+        return read(file).split("<CdtTrfTxInf>", -1).length - 1;
+    }
+
+    private String read(String file) throws IOException {
+        return new String(Files.readAllBytes(new File(directory, file).toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,169 @@
+package com.pain001.xml;
+
+import freemarker.template.Template;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class ValidatingWriterTest extends TestCase {
+    private static final String XSD = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">"
+            + "<xs:element name=\"Doc\"><xs:complexType><xs:sequence>"
+            + "<xs:element name=\"Amt\" type=\"xs:decimal\" maxOccurs=\"unbounded\"/>"
+            + "</xs:sequence></xs:complexType></xs:element></xs:schema>";
+    // Several chunks of the writer
+    private static final int LARGE_DOCUMENT_AMOUNTS = 100_000;
+
+    private File directory;
+    private String xsdFilePath;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("tee").toFile();
+        xsdFilePath = new File(directory, "doc.xsd").getPath();
+        Files.write(new File(xsdFilePath).toPath(), XSD.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    public void testValidDocumentIsWrittenThrough() throws IOException {
+        StringWriter sink = new StringWriter();
+        try (Writer writer = new ValidatingWriter(sink, xsdFilePath)) {
+            writer.write("<Doc>");
+            for (int i = 0; i < LARGE_DOCUMENT_AMOUNTS; i++) {
+                writer.write("<Amt>" + i + ".50</Amt>");
+            }
+            writer.write("</Doc>");
+        }
+        assertTrue(sink.toString().startsWith("<Doc><Amt>0.50</Amt><Amt>1.50</Amt>"));
+        assertTrue(sink.toString().endsWith("<Amt>" + (LARGE_DOCUMENT_AMOUNTS - 1) + ".50</Amt></Doc>"));
+    }
+
+    public void testViolationAbortsWriting() throws IOException {
+        ValidatingWriter writer = new ValidatingWriter(new StringWriter(), xsdFilePath);
+        int written = 0;
+        try {
+            writer.write("<Doc><Amt>abc</Amt>");
+            for (; written < LARGE_DOCUMENT_AMOUNTS; written++) {
+                writer.write("<Amt>1</Amt>");
+            }
+            writer.write("</Doc>");
+            writer.close();
+            fail("Accepted an invalid document");
+        } catch (XmlValidationException expected) {
+            // abc is not a decimal
+        } finally {
+            closeQuietly(writer);
+        }
+        assertTrue("Writing was not aborted", written < LARGE_DOCUMENT_AMOUNTS);
+    }
+
+    public void testInvalidDocumentIsNotPublished() throws Exception {
+        Template template = new Template("doc", new StringReader(
+                "<Doc><#list amounts as amount><Amt>${amount}</Amt></#list></Doc>"), TemplateEngine.getConfiguration());
+        Map<String, Object> data = new HashMap<String, Object>(
+                Collections.singletonMap("amounts", Arrays.asList("1.00", "abc")));
+        File target = new File(directory, "out.xml");
+        try {
+            GenerateXml.writeXml(template, data, target.getPath(), xsdFilePath,
+                    new GenerationOptions().setValidateWhileWriting(true));
+            fail("Published an invalid document");
+        } catch (XmlValidationException expected) {
+            // abc is not a decimal
+        }
+        assertFalse(target.exists());
+        assertEquals(Arrays.asList("doc.xsd"), Arrays.asList(directory.list()));
+    }
+
+    public void testValidatorEndsWhenWriterFails() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Exception> run = executor.submit(() -> {
+                ValidatingWriter writer = new ValidatingWriter(new FailingWriter(100_000), xsdFilePath);
+                try {
+                    writer.write("<Doc>");
+                    for (int i = 0; i < LARGE_DOCUMENT_AMOUNTS; i++) {
+                        writer.write("<Amt>1</Amt>");
+                    }
+                    return null;
+                } catch (IOException e) {
+                    return e;
+                } finally {
+                    closeQuietly(writer);
+                }
+            });
+            Exception failure = run.get(30, TimeUnit.SECONDS);
+            assertNotNull("The sink did not fail", failure);
+            assertEquals("disk full", failure.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+        for (Map.Entry<Thread, StackTraceElement[]> thread : Thread.getAllStackTraces().entrySet()) {
+            if (thread.getKey().getName().equals("xsd-validator")) {
+                for (StackTraceElement frame : thread.getValue()) {
+                    assertFalse("A validator still waits for XML",
+                            frame.getClassName().startsWith(ValidatingWriter.class.getName()));
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(Writer writer) {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            // the document is incomplete or invalid
+        }
+    }
+
+    /**
+     * Fails once a number of characters is written, like a full disk.
+     */
+    private static final class FailingWriter extends FilterWriter {
+        private int remaining;
+
+        FailingWriter(int capacity) {
+            super(new StringWriter());
+            this.remaining = capacity;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            consume(len);
+            super.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            consume(len);
+            super.write(str, off, len);
+        }
+
+        private void consume(int len) throws IOException {
+            if (len > remaining) {
+                throw new IOException("disk full");
+            }
+            remaining -= len;
+        }
+    }
+}